@@ -33,8 +33,12 @@
  */
 package net.imglib2.cache;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
 
+import net.imglib2.cache.stats.CacheStats;
+
 public interface AbstractCache< K, V > extends Invalidate< K >
 {
 	V getIfPresent( K key );
@@ -132,4 +136,46 @@ public interface AbstractCache< K, V > extends Invalidate< K >
 	 */
 	@Override
 	void invalidateAll( long parallelismThreshold );
+
+	/**
+	 * Returns a snapshot of the performance counters of this cache. Caches
+	 * that do not record statistics return {@link CacheStats#empty()}.
+	 */
+	default CacheStats stats()
+	{
+		return CacheStats.empty();
+	}
+
+	/**
+	 * Register a listener that is notified asynchronously, in the common
+	 * {@link ForkJoinPool}, when entries are removed from this cache.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             if this cache does not report removals
+	 */
+	default void addRemovalListener( final RemovalListener< ? super K, ? super V > listener )
+	{
+		addRemovalListener( listener, ForkJoinPool.commonPool() );
+	}
+
+	/**
+	 * Register a listener that is notified on {@code executor} when entries
+	 * are removed from this cache. Which {@link RemovalCause}s are reported
+	 * depends on the implementation. Caches that do not report removals throw
+	 * {@link UnsupportedOperationException}.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             if this cache does not report removals
+	 */
+	default void addRemovalListener( final RemovalListener< ? super K, ? super V > listener, final Executor executor )
+	{
+		throw new UnsupportedOperationException( getClass().getSimpleName() + " does not report removals" );
+	}
+
+	/**
+	 * Unregister a listener that was registered with
+	 * {@link #addRemovalListener(RemovalListener, Executor)}.
+	 */
+	default void removeRemovalListener( final RemovalListener< ? super K, ? super V > listener )
+	{}
 }
@@ -0,0 +1,84 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A {@link CacheLoader} that can load the values for many keys in one call.
+ * This is useful for backends that have much higher throughput for
+ * multi-block reads, for example ranged reads of neighbouring chunks, or one
+ * request per shard.
+ * <p>
+ * {@link LoaderCache#getAll(Collection, CacheLoader)} uses
+ * {@link #getAll(Collection)} to load missing values. The fetchers of volatile
+ * caches combine queued requests into batches of up to
+ * {@link #maxBatchSize()} keys.
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ *
+ * @author Tobias Pietzsch
+ */
+public interface BatchCacheLoader< K, V > extends CacheLoader< K, V >
+{
+	/**
+	 * Load the values for {@code keys}. Keys that are missing from the
+	 * returned map are loaded individually with {@link #get(Object)}.
+	 *
+	 * @param keys
+	 *            keys to load, at most {@link #maxBatchSize()}.
+	 * @return map from keys to loaded values.
+	 */
+	Map< K, V > getAll( Collection< ? extends K > keys ) throws Exception;
+
+	/**
+	 * Returns the maximum number of keys to pass to one
+	 * {@link #getAll(Collection)} call.
+	 */
+	default int maxBatchSize()
+	{
+		return 64;
+	}
+
+	@Override
+	default V get( final K key ) throws Exception
+	{
+		return getAll( Collections.singletonList( key ) ).get( key );
+	}
+}
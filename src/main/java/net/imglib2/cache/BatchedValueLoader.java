@@ -0,0 +1,102 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * The {@link CacheLoader} with which
+ * {@link LoaderCache#getAll(Collection, CacheLoader)} inserts values that were
+ * loaded together by a {@link BatchCacheLoader}. Each value takes almost no
+ * time to "load". Caches add the {@link #getLoadTimeShare() share} of the
+ * batch duration to the load time that they record, so that the duration of
+ * the batch is split across its keys.
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ *
+ * @author Tobias Pietzsch
+ */
+public final class BatchedValueLoader< K, V > implements CacheLoader< K, V >
+{
+	private final Map< ? super K, ? extends V > loaded;
+
+	private final CacheLoader< ? super K, ? extends V > loader;
+
+	private final long loadTimeShare;
+
+	/**
+	 * @param loaded
+	 *            the values loaded by the batch
+	 * @param loader
+	 *            loads keys that are missing from {@code loaded}
+	 * @param loadTimeShare
+	 *            the duration of the batch (in nanoseconds) divided by the
+	 *            number of keys
+	 */
+	BatchedValueLoader( final Map< ? super K, ? extends V > loaded, final CacheLoader< ? super K, ? extends V > loader, final long loadTimeShare )
+	{
+		this.loaded = loaded;
+		this.loader = loader;
+		this.loadTimeShare = loadTimeShare;
+	}
+
+	@Override
+	public V get( final K key ) throws Exception
+	{
+		final V value = loaded.get( key );
+		return value != null ? value : loader.get( key );
+	}
+
+	/**
+	 * Returns the time (in nanoseconds) to add to the recorded load time of
+	 * each key.
+	 */
+	public long getLoadTimeShare()
+	{
+		return loadTimeShare;
+	}
+
+	/**
+	 * Returns the {@link #getLoadTimeShare() load time share} of
+	 * {@code loader} if it is a {@code BatchedValueLoader}, or 0.
+	 */
+	public static long loadTimeShare( final CacheLoader< ?, ? > loader )
+	{
+		return loader instanceof BatchedValueLoader ? ( ( BatchedValueLoader< ?, ? > ) loader ).loadTimeShare : 0;
+	}
+}
@@ -33,6 +33,9 @@
  */
 package net.imglib2.cache;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 import net.imglib2.cache.util.CacheAsUncheckedCacheAdapter;
@@ -44,6 +47,30 @@ public interface Cache< K, V > extends AbstractCache< K, V >, CacheLoader< K, V
 	@Override
 	V get( K key ) throws ExecutionException;
 
+	/**
+	 * Get the values for all {@code keys}, loading them if necessary. Caches
+	 * that are backed by a {@link BatchCacheLoader} load missing values in
+	 * batches, other caches load them one by one.
+	 *
+	 * @return map from {@code keys} to values.
+	 */
+	default Map< K, V > getAll( final Collection< ? extends K > keys ) throws ExecutionException
+	{
+		final Map< K, V > values = new HashMap<>();
+		for ( final K key : keys )
+			values.put( key, get( key ) );
+		return values;
+	}
+
+	/**
+	 * Returns how many keys {@link #getAll(Collection)} can load together
+	 * more efficiently than one by one, or 1 if there is no benefit.
+	 */
+	default int maxBatchSize()
+	{
+		return 1;
+	}
+
 	default UncheckedCache< K, V > unchecked()
 	{
 		return new CacheAsUncheckedCacheAdapter<>( this );
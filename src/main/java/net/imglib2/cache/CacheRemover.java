@@ -36,6 +36,9 @@ package net.imglib2.cache;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
 
+import net.imglib2.cache.stats.CacheStats;
+import net.imglib2.cache.stats.CacheTracer;
+
 /**
  * Handles entries that are removed from a cache (by propagating to a
  * higher-level cache, writing to disk, or similar).
@@ -133,4 +136,24 @@ public interface CacheRemover< K, V, D > extends Invalidate< K >
 	@Override
 	default void invalidateAll( final long parallelismThreshold )
 	{};
+
+	/**
+	 * Returns the number of bytes that {@link #onRemoval(Object, Object)}
+	 * writes for {@code valueData}, or -1 if unknown. This is reported to the
+	 * {@link CacheTracer} when an {@link IoSync} writes back an entry.
+	 */
+	default long getWriteBackBytes( final K key, final D valueData )
+	{
+		return -1;
+	}
+
+	/**
+	 * Returns a snapshot of the performance counters of this remover (for
+	 * example, the number of values written back). Removers that do not
+	 * record statistics return {@link CacheStats#empty()}.
+	 */
+	default CacheStats stats()
+	{
+		return CacheStats.empty();
+	}
 }
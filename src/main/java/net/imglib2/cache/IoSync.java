@@ -37,12 +37,15 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Predicate;
 
 import net.imglib2.cache.ref.SoftRefLoaderRemoverCache;
+import net.imglib2.cache.stats.CacheStats;
+import net.imglib2.cache.stats.CacheTracing;
 
 /**
  * Handle concurrent loading and saving of cache entries. It can be used
@@ -69,6 +72,13 @@ import net.imglib2.cache.ref.SoftRefLoaderRemoverCache;
  * potentially modified. If we don't care about corrupt disk data, only
  * consistency of data in memory, then this is not a problem.
  * </p>
+ * <p>
+ * Writers do not hold monitors while writing, so they can be run on virtual
+ * threads. On Java 21 and later, pass
+ * {@code Thread.ofVirtual().name("io-sync-writer-", 0).factory()} to
+ * {@link #IoSync(CacheLoader, CacheRemover, int, int, ThreadFactory)} to do
+ * so.
+ * </p>
  *
  * @param <K>
  *            key type
@@ -161,19 +171,49 @@ public class IoSync< K, V, D > implements CacheLoader< K, V >, CacheRemover< K,
 			final CacheRemover< K, V, D > saver,
 			final int numThreads,
 			final int maxQueueSize )
+	{
+		this( loader, saver, numThreads, maxQueueSize, createThreadFactory( numThreads ) );
+	}
+
+	/**
+	 * Create a new {@link IoSync} that asynchronously forwards to the specified
+	 * {@link CacheRemover}. The specified number of {@link Writer} threads
+	 * is created by {@code threadFactory} and started to handle writing values
+	 * through {@code saver}.
+	 *
+	 * @param loader
+	 *            used to load values that are <em>not</em> currently enqueued
+	 *            for writing.
+	 * @param saver
+	 *            used to asynchronously write removed values.
+	 * @param numThreads
+	 *            how many writer threads to start (may be 0).
+	 * @param maxQueueSize
+	 *            the maximum size of the write queue. When the queue is full,
+	 *            {@link CacheRemover#onRemoval(Object, Object)} will block
+	 *            until earlier values have been written.
+	 * @param threadFactory
+	 *            creates the writer threads. For example, this may create
+	 *            virtual threads.
+	 */
+	public IoSync(
+			final CacheLoader< K, V > loader,
+			final CacheRemover< K, V, D > saver,
+			final int numThreads,
+			final int maxQueueSize,
+			final ThreadFactory threadFactory )
 	{
 		this.saver = saver;
 		this.loader = loader;
 		map = new ConcurrentHashMap<>();
 		queue = new PausableQueue<>( maxQueueSize, numThreads, false );
 
-		final String[] names = createThreadNames( numThreads );
 		for ( int i = 0; i < numThreads; ++i )
 		{
-			final Writer t = new Writer( names[ i ] );
-			t.setDaemon( true );
-			t.start();
-			writers.add( t );
+			final Writer w = new Writer();
+			w.thread = threadFactory.newThread( w );
+			w.thread.start();
+			writers.add( w );
 		}
 	}
 
@@ -243,6 +283,21 @@ public class IoSync< K, V, D > implements CacheLoader< K, V >, CacheRemover< K,
 		return saver.reconstruct( key, valueData );
 	}
 
+	@Override
+	public long getWriteBackBytes( final K key, final D valueData )
+	{
+		return saver.getWriteBackBytes( key, valueData );
+	}
+
+	/**
+	 * Returns the statistics of the {@code saver}.
+	 */
+	@Override
+	public CacheStats stats()
+	{
+		return saver.stats();
+	}
+
 	@Override
 	public V get( final K key ) throws Exception
 	{
@@ -259,6 +314,11 @@ public class IoSync< K, V, D > implements CacheLoader< K, V >, CacheRemover< K,
 
 		final AtomicInteger generation;
 
+		/**
+		 * Only one Writer can write data for the same key simultaneously.
+		 */
+		final ReentrantLock lock = new ReentrantLock();
+
 		Entry( final D valueData, final int generation )
 		{
 			this.valueData = valueData;
@@ -397,11 +457,16 @@ public class IoSync< K, V, D > implements CacheLoader< K, V >, CacheRemover< K,
 				 * Writer can write data for the same key
 				 * simultaneously.
 				 */
-				synchronized ( entry )
+				entry.lock.lock();
+				try
 				{
 					final int writeGeneration = entry.generation.get();
 					final D valueData = entry.valueData;
+					final boolean trace = CacheTracing.isEnabled();
+					final long t0 = trace ? System.nanoTime() : 0;
 					saver.onRemoval( key, valueData );
+					if ( trace )
+						CacheTracing.wroteBack( key, saver.getWriteBackBytes( key, valueData ), System.nanoTime() - t0 );
 
 					/*
 					 * Because of the implementation of Entry.equals,
@@ -410,18 +475,19 @@ public class IoSync< K, V, D > implements CacheLoader< K, V >, CacheRemover< K,
 					 */
 					map.remove( key, new Entry( valueData, writeGeneration ) );
 				}
+				finally
+				{
+					entry.lock.unlock();
+				}
 			}
 		}
 	}
 
-	class Writer extends Thread
+	class Writer implements Runnable
 	{
 		private volatile boolean shutdown = false;
 
-		public Writer( final String name )
-		{
-			super( name );
-		}
+		Thread thread;
 
 		/**
 		 * Shutdown this {@code Writer}: The {@code Writer} will be interrupted
@@ -431,7 +497,7 @@ public class IoSync< K, V, D > implements CacheLoader< K, V >, CacheRemover< K,
 		public void shutdown()
 		{
 			shutdown = true;
-			interrupt();
+			thread.interrupt();
 		}
 
 		@Override
@@ -465,4 +531,20 @@ public class IoSync< K, V, D > implements CacheLoader< K, V >, CacheRemover< K,
 
 		return names;
 	}
+
+	/**
+	 * Create a factory for daemon writer threads named
+	 * {@code io-sync-N-writer-1} ... {@code io-sync-N-writer-numThreads}.
+	 */
+	static ThreadFactory createThreadFactory( final int numThreads )
+	{
+		final String[] names = createThreadNames( numThreads );
+		final AtomicInteger index = new AtomicInteger();
+		return r -> {
+			final int i = index.getAndIncrement();
+			final Thread t = i < names.length ? new Thread( r, names[ i ] ) : new Thread( r );
+			t.setDaemon( true );
+			return t;
+		};
+	}
 }
@@ -33,6 +33,11 @@
  */
 package net.imglib2.cache;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 import net.imglib2.cache.util.KeyBimap;
@@ -43,6 +48,65 @@ public interface LoaderCache< K, V > extends AbstractCache< K, V >
 {
 	V get( K key, CacheLoader< ? super K, ? extends V > loader ) throws ExecutionException;
 
+	/**
+	 * Get the values for all {@code keys}, loading them with {@code loader} if
+	 * necessary. If {@code loader} is a {@link BatchCacheLoader}, values that
+	 * are not present are loaded with as few
+	 * {@link BatchCacheLoader#getAll(Collection)} calls as possible, and then
+	 * inserted with {@link #get(Object, CacheLoader)}. If another thread
+	 * inserts a value for the same key concurrently, that value wins. The
+	 * duration of each batch is split evenly across the loads of its keys in
+	 * the {@link #stats() statistics} (see {@link BatchedValueLoader}).
+	 *
+	 * @return map from {@code keys} to values.
+	 */
+	default Map< K, V > getAll( final Collection< ? extends K > keys, final CacheLoader< ? super K, ? extends V > loader ) throws ExecutionException
+	{
+		final Map< K, V > values = new HashMap<>();
+		if ( !( loader instanceof BatchCacheLoader ) )
+		{
+			for ( final K key : keys )
+				values.put( key, get( key, loader ) );
+			return values;
+		}
+
+		final List< K > missing = new ArrayList<>();
+		for ( final K key : keys )
+		{
+			final V value = getIfPresent( key );
+			if ( value != null )
+				values.put( key, value );
+			else
+				missing.add( key );
+		}
+
+		final BatchCacheLoader< ? super K, ? extends V > batchLoader = ( BatchCacheLoader< ? super K, ? extends V > ) loader;
+		final int batchSize = Math.max( 1, batchLoader.maxBatchSize() );
+		for ( int from = 0; from < missing.size(); from += batchSize )
+		{
+			final List< K > batch = missing.subList( from, Math.min( from + batchSize, missing.size() ) );
+			final Map< ? super K, ? extends V > loaded;
+			final long start = System.nanoTime();
+			try
+			{
+				loaded = batchLoader.getAll( batch );
+			}
+			catch ( final InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+				throw new ExecutionException( e );
+			}
+			catch ( final Exception e )
+			{
+				throw new ExecutionException( e );
+			}
+			final BatchedValueLoader< K, V > batchedLoader = new BatchedValueLoader<>( loaded, loader, ( System.nanoTime() - start ) / batch.size() );
+			for ( final K key : batch )
+				values.put( key, get( key, batchedLoader ) );
+		}
+		return values;
+	}
+
 	default Cache< K, V > withLoader( final CacheLoader< K, V > loader )
 	{
 		return new LoaderCacheAsCacheAdapter<>( this, loader );
@@ -559,7 +559,7 @@ public interface AccessIo< A >
 		@Override
 		public int getBytesPerElement()
 		{
-			return 1;
+			return 2;
 		}
 
 		protected char[] loadData( final ByteBuffer bytes, final int numElements )
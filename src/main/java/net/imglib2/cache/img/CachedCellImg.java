@@ -33,7 +33,16 @@
  */
 package net.imglib2.cache.img;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.Interval;
 import net.imglib2.cache.Cache;
+import net.imglib2.cache.ref.BulkAccess;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.basictypeaccess.DataAccess;
 import net.imglib2.img.cell.Cell;
@@ -41,6 +50,7 @@ import net.imglib2.img.cell.CellGrid;
 import net.imglib2.img.cell.LazyCellImg;
 import net.imglib2.type.NativeType;
 import net.imglib2.util.Fraction;
+import net.imglib2.util.IntervalIndexer;
 
 /**
  * A {@link LazyCellImg} that creates empty Cells lazily when they are accessed
@@ -97,4 +107,153 @@ public class CachedCellImg< T extends NativeType< T >, A extends DataAccess > ex
 	{
 		return accessType;
 	}
+
+	/**
+	 * Receives progress of {@link CachedCellImg#prefetch prefetching}.
+	 */
+	@FunctionalInterface
+	public interface PrefetchProgress
+	{
+		/**
+		 * Called after each cell is loaded, concurrently from the threads
+		 * that load cells.
+		 *
+		 * @param numLoaded
+		 *            number of cells loaded so far.
+		 * @param numCells
+		 *            total number of cells to load.
+		 */
+		void cellLoaded( long numLoaded, long numCells );
+	}
+
+	/**
+	 * Load all cells of this image in parallel, using one task per available
+	 * processor on {@code executor}, and wait until they are loaded.
+	 * <p>
+	 * Loaded cells are retained like cells that are accessed normally (see
+	 * {@link #prefetch(Interval, Executor, int, boolean, PrefetchProgress)
+	 * promote}). Whether they actually stay in memory depends on the cache:
+	 * A bounded cache keeps only as many cells as its bound allows, and a cache
+	 * with soft references keeps them only until the garbage collector
+	 * reclaims them. Cells of a {@link DiskCachedCellImg} that are dropped
+	 * from memory are written to disk.
+	 * <p>
+	 * Loading blocks on I/O, so {@code executor} should not be the common
+	 * {@link ForkJoinPool}.
+	 */
+	public void materialize( final Executor executor ) throws ExecutionException, InterruptedException
+	{
+		prefetch( this, executor, Runtime.getRuntime().availableProcessors(), true, null ).get();
+	}
+
+	/**
+	 * Load all cells that intersect {@code interval}, using one task per
+	 * available processor on {@code executor}.
+	 *
+	 * @see #prefetch(Interval, Executor, int, boolean, PrefetchProgress)
+	 */
+	public CompletableFuture< Void > prefetch( final Interval interval, final Executor executor )
+	{
+		return prefetch( interval, executor, Runtime.getRuntime().availableProcessors(), false, null );
+	}
+
+	/**
+	 * Load all cells that intersect {@code interval} in parallel.
+	 * <p>
+	 * Cells are loaded through the {@link #getCache() cache}, by
+	 * {@code parallelism} tasks running on {@code executor}. If
+	 * {@code promote == false}, loading is done with {@link BulkAccess}, so
+	 * that bounded caches do not evict the cells that are currently retained
+	 * to make room for the prefetched cells. Prefetched cells then stay in
+	 * memory only as long as they are referenced elsewhere (or until they are
+	 * garbage-collected, for caches that keep soft references). Cells of a
+	 * {@link DiskCachedCellImg} are written to disk when they are removed. If
+	 * {@code promote == true}, prefetched cells are retained like cells that
+	 * are accessed normally.
+	 * <p>
+	 * If loading a cell fails, the returned future completes exceptionally
+	 * and the remaining cells are not loaded. Cancelling the returned future
+	 * stops loading remaining cells.
+	 *
+	 * @param interval
+	 *            cells intersecting this interval are loaded.
+	 * @param executor
+	 *            runs the loading tasks.
+	 * @param parallelism
+	 *            number of tasks that load cells concurrently.
+	 * @param promote
+	 *            whether prefetched cells may replace retained cells in a
+	 *            bounded cache.
+	 * @param progress
+	 *            notified after each cell is loaded, may be {@code null}.
+	 * @return a future that completes when all cells are loaded.
+	 */
+	public CompletableFuture< Void > prefetch(
+			final Interval interval,
+			final Executor executor,
+			final int parallelism,
+			final boolean promote,
+			final PrefetchProgress progress )
+	{
+		if ( parallelism < 1 )
+			throw new IllegalArgumentException( "parallelism must be at least 1" );
+
+		final CellGrid grid = getCellGrid();
+		final int n = grid.numDimensions();
+		final long[] gridDimensions = grid.getGridDimensions();
+		final long[] gridMin = new long[ n ];
+		final long[] gridSize = new long[ n ];
+		long numCells = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			final long min = Math.max( interval.min( d ), 0 );
+			final long max = Math.min( interval.max( d ), grid.imgDimension( d ) - 1 );
+			if ( min > max )
+				return CompletableFuture.completedFuture( null );
+			gridMin[ d ] = min / grid.cellDimension( d );
+			gridSize[ d ] = max / grid.cellDimension( d ) - gridMin[ d ] + 1;
+			numCells *= gridSize[ d ];
+		}
+
+		final long total = numCells;
+		final CompletableFuture< Void > result = new CompletableFuture<>();
+		final AtomicLong next = new AtomicLong();
+		final AtomicLong numLoaded = new AtomicLong();
+		final int numTasks = ( int ) Math.min( parallelism, total );
+		final AtomicInteger numRunning = new AtomicInteger( numTasks );
+		final Runnable task = () -> {
+			final long[] position = new long[ n ];
+			try
+			{
+				for ( long i; !result.isDone() && ( i = next.getAndIncrement() ) < total; )
+				{
+					IntervalIndexer.indexToPositionWithOffset( i, gridSize, gridMin, position );
+					final Long key = IntervalIndexer.positionToIndex( position, gridDimensions );
+					if ( promote )
+						cache.get( key );
+					else
+						BulkAccess.call( () -> cache.get( key ) );
+					final long loaded = numLoaded.incrementAndGet();
+					if ( progress != null )
+						progress.cellLoaded( loaded, total );
+				}
+				if ( numRunning.decrementAndGet() == 0 )
+					result.complete( null );
+			}
+			catch ( final Throwable e )
+			{
+				result.completeExceptionally( e );
+			}
+		};
+		try
+		{
+			for ( int t = 0; t < numTasks; ++t )
+				executor.execute( task );
+		}
+		catch ( final RuntimeException e )
+		{
+			result.completeExceptionally( e );
+		}
+		return result;
+	}
 }
@@ -0,0 +1,142 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.img;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.imglib2.Dirty;
+import net.imglib2.cache.volatiles.CreateInvalid;
+import net.imglib2.img.basictypeaccess.AccessFlags;
+import net.imglib2.img.basictypeaccess.ArrayDataAccessFactory;
+import net.imglib2.img.basictypeaccess.volatiles.VolatileArrayDataAccess;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.CellGrid.CellDimensionsAndSteps;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.PrimitiveType;
+import net.imglib2.util.Fraction;
+
+/**
+ * A {@link CreateInvalid} that produces invalid cells of
+ * {@link VolatileArrayDataAccess} type {@code A}, with the correct dimensions,
+ * etc.
+ * <p>
+ * Invalid cells with the same number of entities share one invalid access.
+ * Usually all cells of a {@link CellGrid} have the same size, except for
+ * cells at the border of the grid, so only a handful of arrays are allocated,
+ * instead of one per key that has not been loaded yet. The shared accesses
+ * are read-only by convention: Writing to the access of an invalid cell
+ * modifies all invalid cells of the same size that have been created so far.
+ * For {@link AccessFlags#DIRTY dirty} variants, shared accesses are created
+ * non-dirty. Once a shared access has been marked dirty (by writing to it),
+ * it is not handed out again, and subsequent invalid cells of that size get a
+ * new, non-dirty access.
+ * <p>
+ * Usually, it should be created through static helper methods
+ * {@link #get(CellGrid, Fraction, PrimitiveType, Set)} or
+ * {@link #get(CellGrid, NativeType, Set)} to get the desired primitive type
+ * and dirty variant.
+ * </p>
+ *
+ * @param <A>
+ *            access type
+ *
+ * @author Tobias Pietzsch
+ */
+public class CreateInvalidVolatileCell< A extends VolatileArrayDataAccess< A > > implements CreateInvalid< Long, Cell< A > >
+{
+	private final CellGrid grid;
+
+	private final Fraction entitiesPerPixel;
+
+	private final A creator;
+
+	/**
+	 * Shared invalid accesses, by number of entities.
+	 */
+	private final ConcurrentHashMap< Integer, A > invalidAccesses = new ConcurrentHashMap<>();
+
+	public CreateInvalidVolatileCell(
+			final CellGrid grid,
+			final Fraction entitiesPerPixel,
+			final A creator )
+	{
+		this.grid = grid;
+		this.entitiesPerPixel = entitiesPerPixel;
+		this.creator = creator;
+	}
+
+	@Override
+	public Cell< A > createInvalid( final Long key ) throws Exception
+	{
+		final long index = key;
+		final long[] cellMin = new long[ grid.numDimensions() ];
+		final CellDimensionsAndSteps dimsAndSteps = grid.getCellDimensions( index, cellMin );
+		final int numEntities = ( int ) entitiesPerPixel.mulCeil( dimsAndSteps.numPixels() );
+		A access = invalidAccesses.get( numEntities );
+		if ( access == null || isDirty( access ) )
+			access = invalidAccesses.compute( numEntities, ( n, a ) -> a == null || isDirty( a ) ? creator.createArray( n, false ) : a );
+		return new Cell<>( dimsAndSteps, cellMin, access );
+	}
+
+	private static boolean isDirty( final Object access )
+	{
+		return access instanceof Dirty && ( ( Dirty ) access ).isDirty();
+	}
+
+	public static < T extends NativeType< T >, A extends VolatileArrayDataAccess< A > > CreateInvalidVolatileCell< A > get(
+			final CellGrid grid,
+			final T type,
+			final Set< AccessFlags > flags )
+	{
+		return get( grid, type.getEntitiesPerPixel(), type.getNativeTypeFactory().getPrimitiveType(), flags );
+	}
+
+	/**
+	 * Create a {@link CreateInvalidVolatileCell} for the given primitive type.
+	 * {@link AccessFlags#VOLATILE} is implied, {@code flags} only determines
+	 * whether accesses are {@link AccessFlags#DIRTY dirty}.
+	 */
+	public static < A extends VolatileArrayDataAccess< A > > CreateInvalidVolatileCell< A > get(
+			final CellGrid grid,
+			final Fraction entitiesPerPixel,
+			final PrimitiveType primitiveType,
+			final Set< AccessFlags > flags )
+	{
+		final boolean dirty = flags.contains( AccessFlags.DIRTY );
+		final A creator = ArrayDataAccessFactory.get( primitiveType, AccessFlags.fromBooleansDirtyVolatile( dirty, true ) );
+		return creator == null ? null : new CreateInvalidVolatileCell<>( grid, entitiesPerPixel, creator );
+	}
+}
@@ -60,17 +60,43 @@ public class DiskCachedCellImg< T extends NativeType< T >, A extends DataAccess
 
 	private final IoSync< ?, ?, ? > iosync;
 
+	private final DiskCellCache< ? > diskcache;
+
+	public DiskCachedCellImg(
+			final DiskCachedCellImgFactory< T > factory,
+			final CellGrid grid,
+			final Fraction entitiesPerPixel,
+			final Cache< Long, Cell< A > > cache,
+			final IoSync< ?, ?, ? > iosync,
+			final A accessType )
+	{
+		this( factory, grid, entitiesPerPixel, cache, iosync, null, accessType );
+	}
+
 	public DiskCachedCellImg(
 			final DiskCachedCellImgFactory< T > factory,
 			final CellGrid grid,
 			final Fraction entitiesPerPixel,
 			final Cache< Long, Cell< A > > cache,
 			final IoSync< ?, ?, ? > iosync,
+			final DiskCellCache< ? > diskcache,
 			final A accessType )
 	{
 		super( grid, entitiesPerPixel, cache, accessType );
 		this.factory = factory;
 		this.iosync = iosync;
+		this.diskcache = diskcache;
+	}
+
+	/**
+	 * Returns the {@link DiskCellCache} that stores cells of this image, for
+	 * example to query its {@link DiskCellCache#getDiskThroughput()
+	 * throughput}. Returns {@code null} if the image was constructed without
+	 * it.
+	 */
+	public DiskCellCache< ? > getDiskCellCache()
+	{
+		return diskcache;
 	}
 
 	/**
@@ -234,10 +234,17 @@ public class DiskCachedCellImgFactory< T extends NativeType< T > > extends Nativ
 						AccessIo.get( type, options.accessFlags() ),
 						entitiesPerPixel );
 
-		final IoSync< Long, Cell< A >, A > iosync = new IoSync<>(
-				diskcache,
-				options.numIoThreads(),
-				options.maxIoQueueSize() );
+		final IoSync< Long, Cell< A >, A > iosync = options.ioThreadFactory() == null
+				? new IoSync<>(
+						diskcache,
+						options.numIoThreads(),
+						options.maxIoQueueSize() )
+				: new IoSync<>(
+						diskcache,
+						diskcache,
+						options.numIoThreads(),
+						options.maxIoQueueSize(),
+						options.ioThreadFactory() );
 
 		LoaderRemoverCache< Long, Cell< A >, A > listenableCache;
 		switch ( options.cacheType() )
@@ -251,9 +258,11 @@ public class DiskCachedCellImgFactory< T extends NativeType< T > > extends Nativ
 			break;
 		}
 
-		final Cache< Long, Cell< A > > cache = listenableCache
+		Cache< Long, Cell< A > > cache = listenableCache
 				.withRemover( iosync )
 				.withLoader( iosync );
+		if ( options.prefetchParallelism() > 0 )
+			cache = new PrefetchingCellCache<>( cache, grid, options.prefetchParallelism() );
 
 		final A accessType = ArrayDataAccessFactory.get( typeFactory, options.accessFlags() );
 		final DiskCachedCellImg< T, ? extends A > img = new DiskCachedCellImg<>(
@@ -262,6 +271,7 @@ public class DiskCachedCellImgFactory< T extends NativeType< T > > extends Nativ
 				entitiesPerPixel,
 				cache,
 				iosync,
+				diskcache,
 				accessType );
 		img.setLinkedType( typeFactory.createLinkedType( img ) );
 		return img;
@@ -33,17 +33,18 @@
  */
 package net.imglib2.cache.img;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel.MapMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.EnumSet;
@@ -53,6 +54,11 @@ import java.util.function.Predicate;
 import net.imglib2.cache.CacheLoader;
 import net.imglib2.cache.CacheRemover;
 import net.imglib2.cache.IoSync;
+import net.imglib2.cache.iotiming.CacheIoTiming;
+import net.imglib2.cache.iotiming.IoThroughput;
+import net.imglib2.cache.stats.CacheStats;
+import net.imglib2.cache.stats.CacheTracing;
+import net.imglib2.cache.stats.StatsCounter;
 import net.imglib2.img.cell.Cell;
 import net.imglib2.img.cell.CellGrid;
 import net.imglib2.img.cell.CellGrid.CellDimensionsAndSteps;
@@ -64,7 +70,11 @@ import net.imglib2.util.Intervals;
  * to a disk cache. Currently blocks are simply written as flat files to a
  * specified directory. {@link #createTempDirectory(String, boolean)} can be
  * used to create a temporary directory that will be automatically removed when
- * the JVM shuts down.
+ * the JVM shuts down. Files are read and written through heap buffers. (They
+ * are not memory-mapped, because a mapping is only released when its buffer is
+ * garbage-collected, and the number of mappings per process is limited.) A
+ * file that is shorter than its cell fails to load with an
+ * {@link EOFException}.
  * <p>
  * Blocks which are not in the diskcache (yet) are obtained from a backing
  * {@link CacheLoader}.
@@ -73,6 +83,15 @@ import net.imglib2.util.Intervals;
  * A {@link DiskCellCache} should be connected to a in-memory cache through
  * {@link IoSync} if the cache will be used concurrently by multiple threads!
  * </em></p>
+ * <p>
+ * Bytes and operations are counted separately for the disk tier
+ * ({@link #getDiskThroughput()}) and for the backing loader
+ * ({@link #getBackingLoaderThroughput()}), to see which of them is the
+ * bottleneck. For the disk tier, the actual bytes read and written are
+ * counted. For the backing loader, only the size of the cell data it produced
+ * is known. Bytes read from disk are also reported to the current
+ * {@link CacheIoTiming#getIoStatistics() IoStatistics}.
+ * </p>
  *
  * @param <A>
  *            access type
@@ -93,6 +112,12 @@ public class DiskCellCache< A > implements CacheRemover< Long, Cell< A >, A >, C
 
 	private final CacheLoader< Long, Cell< A > > backingLoader;
 
+	private final StatsCounter stats = new StatsCounter();
+
+	private final IoThroughput diskThroughput = new IoThroughput( "disk read", "disk write" );
+
+	private final IoThroughput backingLoaderThroughput = new IoThroughput( "loaded cell data" );
+
 	public DiskCellCache(
 			final Path blockcache,
 			final CellGrid grid,
@@ -122,23 +147,35 @@ public class DiskCellCache< A > implements CacheRemover< Long, Cell< A >, A >, C
 	{
 		final long index = key;
 		final String filename = blockname( index );
+		final long[] cellMin = new long[ n ];
+		final CellDimensionsAndSteps dimsAndSteps = grid.getCellDimensions( index, cellMin );
+		final long numEntities = entitiesPerPixel.mulCeil( dimsAndSteps.numPixels() );
+		final long bytesize = numEntities * accessIo.getBytesPerElement();
 
 		if ( new File( filename ).exists() )
 		{
-			final long[] cellMin = new long[ n ];
-			final CellDimensionsAndSteps dimsAndSteps = grid.getCellDimensions( index, cellMin );
-			final long numEntities = entitiesPerPixel.mulCeil( dimsAndSteps.numPixels() );
-			final long bytesize = numEntities * accessIo.getBytesPerElement();
-			try ( final RandomAccessFile mmFile = new RandomAccessFile( filename, "r" ) )
+			final boolean trace = CacheTracing.isEnabled();
+			final long t0 = trace ? System.nanoTime() : 0;
+			try ( final FileChannel channel = FileChannel.open( Paths.get( filename ), StandardOpenOption.READ ) )
 			{
-				final MappedByteBuffer in = mmFile.getChannel().map( MapMode.READ_ONLY, 0, bytesize );
+				final ByteBuffer in = ByteBuffer.allocate( ( int ) bytesize );
+				while ( in.hasRemaining() )
+					if ( channel.read( in ) < 0 )
+						throw new EOFException( filename + ": expected " + bytesize + " bytes, found " + in.position() );
+				in.rewind();
 				final A access = accessIo.load( in, ( int ) numEntities );
+				diskThroughput.recordRead( bytesize );
+				if ( trace )
+					CacheTracing.diskRead( key, bytesize, System.nanoTime() - t0 );
+				CacheIoTiming.getIoStatistics().incIoBytes( bytesize );
 				return new Cell<>( dimsAndSteps, cellMin, access );
 			}
 		}
 		else
 		{
-			return backingLoader.get( key );
+			final Cell< A > cell = backingLoader.get( key );
+			backingLoaderThroughput.recordRead( bytesize );
+			return cell;
 		}
 	}
 
@@ -163,21 +200,76 @@ public class DiskCellCache< A > implements CacheRemover< Long, Cell< A >, A >, C
 		final long index = key;
 		final String filename = blockname( index );
 
-		final long[] cellMin = new long[ n ];
-		final int[] cellDims = new int[ n ];
-		grid.getCellDimensions( index, cellMin, cellDims );
-		final long blocksize = entitiesPerPixel.mulCeil( Intervals.numElements( cellDims ) );
+		final long blocksize = blocksize( index );
 		final long bytesize = blocksize * accessIo.getBytesPerElement();
-		try (
-				final RandomAccessFile mmFile = new RandomAccessFile( filename, "rw" ); )
+		final boolean trace = CacheTracing.isEnabled();
+		final long t0 = trace ? System.nanoTime() : 0;
+		try ( final FileChannel channel = FileChannel.open( Paths.get( filename ), StandardOpenOption.CREATE, StandardOpenOption.WRITE ) )
 		{
-			final MappedByteBuffer out = mmFile.getChannel().map( MapMode.READ_WRITE, 0, bytesize );
+			final ByteBuffer out = ByteBuffer.allocate( ( int ) bytesize );
 			accessIo.save( valueData, out, ( int ) blocksize );
+			// some AccessIo implementations advance the position, others don't
+			out.rewind();
+			while ( out.hasRemaining() )
+				channel.write( out );
 		}
 		catch ( final IOException e )
 		{
 			throw new RuntimeException( e );
 		}
+		stats.recordWriteBack( bytesize );
+		diskThroughput.recordWrite( bytesize );
+		if ( trace )
+			CacheTracing.diskWritten( key, bytesize, System.nanoTime() - t0 );
+	}
+
+	@Override
+	public long getWriteBackBytes( final Long key, final A valueData )
+	{
+		return blocksize( key ) * accessIo.getBytesPerElement();
+	}
+
+	/**
+	 * Returns the number of entities in the cell with the given index.
+	 */
+	private long blocksize( final long index )
+	{
+		final long[] cellMin = new long[ n ];
+		final int[] cellDims = new int[ n ];
+		grid.getCellDimensions( index, cellMin, cellDims );
+		return entitiesPerPixel.mulCeil( Intervals.numElements( cellDims ) );
+	}
+
+	/**
+	 * Returns statistics with the number of cells and bytes written to disk.
+	 */
+	@Override
+	public CacheStats stats()
+	{
+		return stats.snapshot();
+	}
+
+	/**
+	 * Returns bytes and operations read from and written to disk. Writes are
+	 * recorded by {@link #onRemoval(Long, Object)}, which is called by the
+	 * writer threads of {@link IoSync}.
+	 */
+	public IoThroughput getDiskThroughput()
+	{
+		return diskThroughput;
+	}
+
+	/**
+	 * Returns the number and data size of cells obtained from the backing
+	 * {@link CacheLoader}, because they were not in the disk cache, as the
+	 * "read" stream. These are not the bytes the backing loader read: that is
+	 * not known here, and may be more (for example, for compressed sources) or
+	 * less (for generated data) than the size of the cell data. Only reads are
+	 * counted.
+	 */
+	public IoThroughput getBackingLoaderThroughput()
+	{
+		return backingLoaderThroughput;
 	}
 
 	@Override
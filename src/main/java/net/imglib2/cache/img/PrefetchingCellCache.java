@@ -0,0 +1,464 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.img;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import net.imglib2.cache.Cache;
+import net.imglib2.cache.RemovalListener;
+import net.imglib2.cache.iotiming.IoTimeBudget;
+import net.imglib2.cache.queue.FetcherThreads;
+import net.imglib2.cache.ref.BulkAccess;
+import net.imglib2.cache.stats.CacheStats;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * A {@link Cache} of {@link Cell}s that forwards to another cache and
+ * speculatively loads cells that are likely to be requested next.
+ * <p>
+ * Predictions are made per thread, from the sequence of cells that the thread
+ * {@link #get(Long) requests}. Requests made by fetcher threads (see
+ * {@link FetcherThreads#isFetcherThread()}) are not used for predictions: they
+ * follow the order of the fetch queue, not the movement of a client. Neither
+ * are requests made with {@link BulkAccess} active: a bulk sweep does not
+ * want its neighbourhood kept in memory. When the requested cell changes, the
+ * cell one step further in the direction of movement (e.g., the next cell
+ * along a scanline of a cursor sweep, or in the direction an interactive view
+ * is panned) is predicted at priority level 0. The face-adjacent neighbours of
+ * the requested cell are predicted at priority level 1.
+ * <p>
+ * Predicted cells are loaded by at most {@code parallelism} tasks running on
+ * an {@link Executor}. Unless an executor is specified, the tasks run on
+ * dedicated daemon threads that are shared by all prefetching caches (and
+ * terminate when idle), so that blocking I/O does not occupy the common
+ * {@link java.util.concurrent.ForkJoinPool}. Predicted cells are loaded with
+ * {@link BulkAccess} active, so that speculative loads do not displace
+ * retained cells from a bounded cache. The most recent predictions are loaded
+ * first. At most {@code maxPending} predictions are remembered, older
+ * predictions are dropped. The time spent loading predicted cells is limited
+ * by an {@link IoTimeBudget} that is replenished periodically, so that
+ * prefetching cannot saturate the I/O that is needed for cells that are
+ * actually requested. Level 1 predictions get half of the budget of level 0.
+ *
+ * @param <A>
+ *            access type of the cells
+ *
+ * @author Tobias Pietzsch
+ */
+public class PrefetchingCellCache< A > implements Cache< Long, Cell< A > >
+{
+	private static final int NUM_LEVELS = 2;
+
+	private static final long BUDGET_PERIOD = 100_000_000L;
+
+	/**
+	 * Runs the prefetch tasks of caches that are created without an
+	 * executor. The number of tasks is bounded by the {@code parallelism} of
+	 * each cache.
+	 */
+	private static final Executor DEFAULT_EXECUTOR = Executors.newCachedThreadPool( new ThreadFactory()
+	{
+		private final AtomicInteger index = new AtomicInteger();
+
+		@Override
+		public Thread newThread( final Runnable r )
+		{
+			final Thread t = new Thread( r, "PrefetchingCellCache-" + index.getAndIncrement() );
+			t.setDaemon( true );
+			return t;
+		}
+	} );
+
+	private final Cache< Long, Cell< A > > cache;
+
+	private final CellGrid grid;
+
+	private final long[] gridDimensions;
+
+	private final int n;
+
+	private final Executor executor;
+
+	private final int parallelism;
+
+	private final int maxPending;
+
+	/**
+	 * Predicted keys that are waiting to be loaded, per priority level. The
+	 * most recent predictions are at the head.
+	 */
+	private final ConcurrentLinkedDeque< Long >[] queues;
+
+	/**
+	 * Keys in {@link #queues}. Used to avoid predicting the same key twice.
+	 */
+	private final Set< Long > pending = ConcurrentHashMap.newKeySet();
+
+	private final AtomicInteger numDrainTasks = new AtomicInteger();
+
+	private final IoTimeBudget budget = new IoTimeBudget();
+
+	private final long[] partialBudget;
+
+	private final AtomicLong budgetResetTime = new AtomicLong();
+
+	private final ThreadLocal< Access > lastAccess;
+
+	/**
+	 * Create a prefetching cache, running up to {@code parallelism}
+	 * prefetch tasks on dedicated daemon threads.
+	 *
+	 * @param cache
+	 *            the cache to load cells from.
+	 * @param grid
+	 *            the grid of the cells in {@code cache}.
+	 * @param parallelism
+	 *            maximum number of cells that are prefetched concurrently.
+	 */
+	public PrefetchingCellCache( final Cache< Long, Cell< A > > cache, final CellGrid grid, final int parallelism )
+	{
+		this( cache, grid, parallelism, DEFAULT_EXECUTOR, 256, BUDGET_PERIOD / 2 );
+	}
+
+	/**
+	 * Create a prefetching cache.
+	 *
+	 * @param cache
+	 *            the cache to load cells from.
+	 * @param grid
+	 *            the grid of the cells in {@code cache}.
+	 * @param parallelism
+	 *            maximum number of cells that are prefetched concurrently.
+	 * @param executor
+	 *            runs the prefetch tasks.
+	 * @param maxPending
+	 *            maximum number of predicted cells waiting to be loaded.
+	 * @param ioTimePerThread
+	 *            time (in nanoseconds) per 100 ms period and prefetch task
+	 *            that may be spent loading level 0 predictions.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	public PrefetchingCellCache(
+			final Cache< Long, Cell< A > > cache,
+			final CellGrid grid,
+			final int parallelism,
+			final Executor executor,
+			final int maxPending,
+			final long ioTimePerThread )
+	{
+		if ( parallelism < 1 )
+			throw new IllegalArgumentException( "parallelism must be at least 1" );
+		this.cache = cache;
+		this.grid = grid;
+		this.gridDimensions = grid.getGridDimensions();
+		this.n = gridDimensions.length;
+		this.executor = executor;
+		this.parallelism = parallelism;
+		this.maxPending = maxPending;
+		queues = new ConcurrentLinkedDeque[ NUM_LEVELS ];
+		for ( int i = 0; i < NUM_LEVELS; ++i )
+			queues[ i ] = new ConcurrentLinkedDeque<>();
+		final long allowance = ioTimePerThread * parallelism;
+		partialBudget = new long[] { allowance, allowance / 2 };
+		budgetResetTime.set( System.nanoTime() - BUDGET_PERIOD );
+		lastAccess = ThreadLocal.withInitial( () -> new Access( n ) );
+	}
+
+	@Override
+	public Cell< A > getIfPresent( final Long key )
+	{
+		return cache.getIfPresent( key );
+	}
+
+	@Override
+	public Cell< A > get( final Long key ) throws ExecutionException
+	{
+		final Cell< A > cell = cache.get( key );
+		if ( !FetcherThreads.isFetcherThread() && !BulkAccess.isActive() )
+			accessed( key );
+		return cell;
+	}
+
+	@Override
+	public void persist( final Long key )
+	{
+		cache.persist( key );
+	}
+
+	@Override
+	public void persistIf( final Predicate< Long > condition )
+	{
+		cache.persistIf( condition );
+	}
+
+	@Override
+	public void persistAll()
+	{
+		cache.persistAll();
+	}
+
+	@Override
+	public void invalidate( final Long key )
+	{
+		cancelPrefetch( key::equals );
+		cache.invalidate( key );
+	}
+
+	@Override
+	public void invalidateIf( final long parallelismThreshold, final Predicate< Long > condition )
+	{
+		cancelPrefetch( condition );
+		cache.invalidateIf( parallelismThreshold, condition );
+	}
+
+	@Override
+	public void invalidateAll( final long parallelismThreshold )
+	{
+		cancelPrefetch( key -> true );
+		cache.invalidateAll( parallelismThreshold );
+	}
+
+	@Override
+	public void addRemovalListener( final RemovalListener< ? super Long, ? super Cell< A > > listener, final Executor executor )
+	{
+		cache.addRemovalListener( listener, executor );
+	}
+
+	@Override
+	public void removeRemovalListener( final RemovalListener< ? super Long, ? super Cell< A > > listener )
+	{
+		cache.removeRemovalListener( listener );
+	}
+
+	@Override
+	public CacheStats stats()
+	{
+		return cache.stats();
+	}
+
+	/**
+	 * Remove pending predictions matching {@code condition}. Prefetches that
+	 * are already running are not affected.
+	 */
+	private void cancelPrefetch( final Predicate< Long > condition )
+	{
+		for ( final ConcurrentLinkedDeque< Long > queue : queues )
+			queue.removeIf( condition );
+		pending.removeIf( condition );
+	}
+
+	/**
+	 * The last cell requested by a thread.
+	 */
+	private static final class Access
+	{
+		long key = -1;
+
+		final long[] position;
+
+		final long[] current;
+
+		final long[] neighbour;
+
+		Access( final int n )
+		{
+			position = new long[ n ];
+			current = new long[ n ];
+			neighbour = new long[ n ];
+		}
+	}
+
+	private void accessed( final long key )
+	{
+		final Access access = lastAccess.get();
+		if ( access.key == key )
+			return;
+
+		final long[] current = access.current;
+		final long[] neighbour = access.neighbour;
+		grid.getCellGridPositionFlat( key, current );
+
+		// Predict the next cell in the direction of movement, if the previous
+		// cell is adjacent (including diagonally) to the current one.
+		if ( access.key >= 0 )
+		{
+			boolean adjacent = true;
+			for ( int d = 0; d < n && adjacent; ++d )
+				adjacent = Math.abs( current[ d ] - access.position[ d ] ) <= 1;
+			if ( adjacent )
+			{
+				for ( int d = 0; d < n; ++d )
+					neighbour[ d ] = 2 * current[ d ] - access.position[ d ];
+				predict( neighbour, 0 );
+			}
+		}
+
+		// Predict the face-adjacent neighbours.
+		for ( int d = 0; d < n; ++d )
+		{
+			System.arraycopy( current, 0, neighbour, 0, n );
+			neighbour[ d ] = current[ d ] - 1;
+			predict( neighbour, 1 );
+			neighbour[ d ] = current[ d ] + 1;
+			predict( neighbour, 1 );
+		}
+
+		System.arraycopy( current, 0, access.position, 0, n );
+		access.key = key;
+	}
+
+	private void predict( final long[] gridPosition, final int level )
+	{
+		for ( int d = 0; d < n; ++d )
+			if ( gridPosition[ d ] < 0 || gridPosition[ d ] >= gridDimensions[ d ] )
+				return;
+
+		final Long key = IntervalIndexer.positionToIndex( gridPosition, gridDimensions );
+		if ( !pending.add( key ) )
+			return;
+		queues[ level ].addFirst( key );
+		if ( pending.size() > maxPending )
+			dropOldest();
+		schedule();
+	}
+
+	/**
+	 * Drop the oldest prediction of the lowest priority level.
+	 */
+	private void dropOldest()
+	{
+		for ( int i = NUM_LEVELS - 1; i >= 0; --i )
+		{
+			final Long key = queues[ i ].pollLast();
+			if ( key != null )
+			{
+				pending.remove( key );
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Submit a drain task, unless {@code parallelism} tasks are running
+	 * already.
+	 */
+	private void schedule()
+	{
+		while ( true )
+		{
+			final int c = numDrainTasks.get();
+			if ( c >= parallelism )
+				return;
+			if ( numDrainTasks.compareAndSet( c, c + 1 ) )
+				break;
+		}
+		executor.execute( this::drain );
+	}
+
+	private void drain()
+	{
+		try
+		{
+			BulkAccess.run( this::loadPredicted );
+		}
+		finally
+		{
+			numDrainTasks.decrementAndGet();
+		}
+
+		// A prediction may have been added after the queues were found empty,
+		// but before the task count was decremented.
+		for ( final ConcurrentLinkedDeque< Long > queue : queues )
+		{
+			if ( !queue.isEmpty() )
+			{
+				schedule();
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Load predicted keys until the queues are empty.
+	 */
+	private void loadPredicted()
+	{
+		Long key;
+		int level;
+		while ( true )
+		{
+			key = null;
+			for ( level = 0; level < NUM_LEVELS && key == null; ++level )
+				key = queues[ level ].pollFirst();
+			if ( key == null )
+				break;
+			--level;
+			pending.remove( key );
+
+			replenishBudget();
+			if ( budget.timeLeft( level ) <= 0 )
+				continue;
+
+			final long t0 = System.nanoTime();
+			try
+			{
+				cache.get( key );
+			}
+			catch ( final ExecutionException e )
+			{
+				// ignore: the cell will be loaded again when it is requested
+			}
+			budget.use( System.nanoTime() - t0, level );
+		}
+	}
+
+	private void replenishBudget()
+	{
+		final long now = System.nanoTime();
+		final long t = budgetResetTime.get();
+		if ( now - t >= BUDGET_PERIOD && budgetResetTime.compareAndSet( t, now ) )
+			budget.reset( partialBudget );
+	}
+}
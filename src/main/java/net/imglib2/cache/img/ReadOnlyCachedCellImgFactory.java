@@ -147,7 +147,9 @@ public class ReadOnlyCachedCellImgFactory
 			loaderCache = new SoftRefLoaderCache<>();
 			break;
 		}
-		final Cache< Long, Cell< A > > cache = loaderCache.withLoader( loader );
+		Cache< Long, Cell< A > > cache = loaderCache.withLoader( loader );
+		if ( options.prefetchParallelism() > 0 )
+			cache = new PrefetchingCellCache<>( cache, grid, options.prefetchParallelism() );
 
 		return new CachedCellImg<>( grid, type, cache, accessType );
 	}
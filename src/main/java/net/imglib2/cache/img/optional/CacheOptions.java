@@ -85,6 +85,21 @@ public interface CacheOptions< T > extends Options< T >
 		return setValue( "maxCacheSize", maxCacheSize );
 	}
 
+	/**
+	 * Set the number of cells that may be prefetched concurrently. If {@code >
+	 * 0}, cells that are likely to be accessed next (based on the direction in
+	 * which the image is traversed, and the neighbours of accessed cells) are
+	 * loaded in the background. See {@code PrefetchingCellCache}.
+	 *
+	 * @param parallelism
+	 *            maximum number of cells prefetched concurrently (default is
+	 *            0, that is, no prefetching).
+	 */
+	default T prefetchParallelism( final int parallelism )
+	{
+		return setValue( "prefetchParallelism", parallelism );
+	}
+
 	/**
 	 * Rough in-memory cache types.
 	 *
@@ -124,6 +139,7 @@ public interface CacheOptions< T > extends Options< T >
 		{
 			action.accept( "cacheType", cacheType() );
 			action.accept( "maxCacheSize", maxCacheSize() );
+			action.accept( "prefetchParallelism", prefetchParallelism() );
 		}
 
 		default CacheType cacheType()
@@ -135,5 +151,10 @@ public interface CacheOptions< T > extends Options< T >
 		{
 			return getValueOrDefault( "maxCacheSize", 1000L );
 		}
+
+		default int prefetchParallelism()
+		{
+			return getValueOrDefault( "prefetchParallelism", 0 );
+		}
 	}
 }
@@ -34,6 +34,7 @@
 package net.imglib2.cache.img.optional;
 
 import java.nio.file.Path;
+import java.util.concurrent.ThreadFactory;
 import java.util.function.BiConsumer;
 import net.imglib2.cache.img.CellLoader;
 import net.imglib2.cache.img.DiskCachedCellImg;
@@ -58,6 +59,21 @@ public interface DiskCacheOptions< T > extends Options< T >
 		return setValue( "numIoThreads", numIoThreads );
 	}
 
+	/**
+	 * Specify how the threads that handle asynchronous writing are created.
+	 * For example, on Java 21 and later, pass
+	 * {@code Thread.ofVirtual().factory()} to run the writers on virtual
+	 * threads.
+	 *
+	 * @param threadFactory
+	 *            creates the writer threads (default is {@code null}, which
+	 *            means that daemon platform threads are created).
+	 */
+	default T ioThreadFactory( final ThreadFactory threadFactory )
+	{
+		return setValue( "ioThreadFactory", threadFactory );
+	}
+
 	/**
 	 * Set the maximum size of the disk write queue. When the queue is full,
 	 * removing entries from the cache will block until earlier values have been
@@ -185,6 +201,7 @@ public interface DiskCacheOptions< T > extends Options< T >
 		default void forEach( BiConsumer< String, Object > action )
 		{
 			action.accept( "numIoThreads", numIoThreads() );
+			action.accept( "ioThreadFactory", ioThreadFactory() );
 			action.accept( "maxIoQueueSize", maxIoQueueSize() );
 			action.accept( "cacheDirectory", cacheDirectory() );
 			action.accept( "tempDirectory", tempDirectory() );
@@ -198,6 +215,11 @@ public interface DiskCacheOptions< T > extends Options< T >
 			return getValueOrDefault( "numIoThreads", 1 );
 		}
 
+		default ThreadFactory ioThreadFactory()
+		{
+			return getValueOrDefault( "ioThreadFactory", null );
+		}
+
 		default int maxIoQueueSize()
 		{
 			return getValueOrDefault( "maxIoQueueSize", 10 );
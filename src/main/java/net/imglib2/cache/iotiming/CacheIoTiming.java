@@ -38,6 +38,13 @@ import java.util.concurrent.ConcurrentHashMap;
 /**
  * Utilities for per {@link ThreadGroup} measuring and budgeting of time spent
  * in (blocking) IO.
+ * <p>
+ * Alternatively, {@link IoStatistics} can be made current for the calling
+ * thread explicitly, with {@link #setIoStatistics(IoStatistics)} or
+ * {@link #runWith(IoStatistics, Runnable)}. This should be used if the thread
+ * group does not identify the render pipeline that a thread works for, for
+ * example, for pooled threads that serve several viewers. Explicitly set
+ * statistics take precedence over the per {@link ThreadGroup} statistics.
  *
  * @author Tobias Pietzsch
  */
@@ -45,9 +52,19 @@ public class CacheIoTiming
 {
 	private static final ConcurrentHashMap< ThreadGroup, IoStatistics > perThreadGroupIoStatistics = new ConcurrentHashMap<>();
 
+	private static final ThreadLocal< IoStatistics > current = new ThreadLocal<>();
+
+	/**
+	 * Returns the {@link IoStatistics} that were set for the current thread
+	 * with {@link #setIoStatistics(IoStatistics)}, or (if none were set) the
+	 * statistics of the current thread's {@link ThreadGroup}.
+	 */
 	public static IoStatistics getIoStatistics()
 	{
-		return getIoStatistics( Thread.currentThread().getThreadGroup() );
+		final IoStatistics statistics = current.get();
+		return statistics != null
+				? statistics
+				: getIoStatistics( Thread.currentThread().getThreadGroup() );
 	}
 
 	public static IoStatistics getIoStatistics( final ThreadGroup key )
@@ -68,6 +85,42 @@ public class CacheIoTiming
 		return statistics;
 	}
 
+	/**
+	 * Make {@code statistics} (and its {@link IoTimeBudget}) current for the
+	 * current thread, until it is replaced by another call. Returns the
+	 * previously set statistics, which should be restored when done. Setting
+	 * {@code null} reverts to the statistics of the current thread's
+	 * {@link ThreadGroup}.
+	 *
+	 * @return the previously set statistics, or {@code null}.
+	 */
+	public static IoStatistics setIoStatistics( final IoStatistics statistics )
+	{
+		final IoStatistics previous = current.get();
+		if ( statistics == null )
+			current.remove();
+		else
+			current.set( statistics );
+		return previous;
+	}
+
+	/**
+	 * Run {@code runnable} on the current thread with {@code statistics}
+	 * current, and restore the previous statistics afterwards.
+	 */
+	public static void runWith( final IoStatistics statistics, final Runnable runnable )
+	{
+		final IoStatistics previous = setIoStatistics( statistics );
+		try
+		{
+			runnable.run();
+		}
+		finally
+		{
+			setIoStatistics( previous );
+		}
+	}
+
 	public static IoTimeBudget getIoTimeBudget()
 	{
 		return getIoStatistics().getIoTimeBudget();
@@ -33,74 +33,174 @@
  */
 package net.imglib2.cache.iotiming;
 
-import java.util.concurrent.ConcurrentHashMap;
-
-import net.imglib2.util.StopWatch;
-
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures time spent in (blocking) IO and the number of bytes read, by a
+ * group of threads (see {@link CacheIoTiming}).
+ * <p>
+ * {@link #getIoNanoTime()} is the wall-clock time during which at least one
+ * thread of the group was in IO, {@link #getCumulativeIoNanoTime()} is the
+ * sum of the IO times of all threads.
+ * <p>
+ * Calls to {@link #start()} and {@link #stop()} may be nested (for example,
+ * when a loader that records IO time calls another one that does). Only the
+ * outermost pair on each thread is timed, so nested IO is not counted twice.
+ * <p>
+ * All methods are thread-safe and do not lock. The start time and nesting
+ * depth of each thread are kept in a {@link ThreadLocal}, so that nothing is
+ * retained for threads that have terminated.
+ */
 public class IoStatistics
 {
-	private final ConcurrentHashMap< Thread, StopWatch > perThreadStopWatches = new ConcurrentHashMap<>();
+	/**
+	 * Immutable snapshot of the threads currently in IO and the accumulated
+	 * times. Replaced by compare-and-set in {@link #start()} and
+	 * {@link #stop()}.
+	 */
+	private static final class State
+	{
+		/**
+		 * Number of threads currently in IO.
+		 */
+		final int numRunningThreads;
+
+		/**
+		 * The time when {@link #numRunningThreads} last became non-zero.
+		 */
+		final long startTime;
+
+		/**
+		 * Time during which {@link #numRunningThreads} was non-zero, up to
+		 * {@link #startTime}.
+		 */
+		final long accumulated;
+
+		/**
+		 * Sum of the start times of the threads currently in IO.
+		 */
+		final long startTimeSum;
+
+		/**
+		 * Sum of the IO times of all threads, for completed intervals.
+		 */
+		final long cumulative;
+
+		State( final int numRunningThreads, final long startTime, final long accumulated, final long startTimeSum, final long cumulative )
+		{
+			this.numRunningThreads = numRunningThreads;
+			this.startTime = startTime;
+			this.accumulated = accumulated;
+			this.startTimeSum = startTimeSum;
+			this.cumulative = cumulative;
+		}
+
+		State start( final long now )
+		{
+			return numRunningThreads == 0
+					? new State( 1, now, accumulated, now, cumulative )
+					: new State( numRunningThreads + 1, startTime, accumulated, startTimeSum + now, cumulative );
+		}
+
+		State stop( final long now, final long threadStartTime )
+		{
+			return numRunningThreads == 1
+					? new State( 0, 0, accumulated + now - startTime, 0, cumulative + now - threadStartTime )
+					: new State( numRunningThreads - 1, startTime, accumulated, startTimeSum - threadStartTime, cumulative + now - threadStartTime );
+		}
+
+		long nanoTime( final long now )
+		{
+			return numRunningThreads > 0
+					? accumulated + now - startTime
+					: accumulated;
+		}
+
+		long cumulativeNanoTime( final long now )
+		{
+			return cumulative + numRunningThreads * now - startTimeSum;
+		}
+	}
+
+	private final AtomicReference< State > state = new AtomicReference<>( new State( 0, 0, 0, 0, 0 ) );
 
-	private final StopWatch stopWatch;
+	/**
+	 * Per-thread nesting depth of {@link #start()}/{@link #stop()} calls, and
+	 * the time of the outermost {@link #start()}.
+	 */
+	private static final class ThreadState
+	{
+		int depth;
+
+		long startTime;
+	}
 
-	private int numRunningThreads;
+	private final ThreadLocal< ThreadState > threadState = ThreadLocal.withInitial( ThreadState::new );
 
-	private long ioBytes;
+	private final LongAdder ioBytes = new LongAdder();
 
 	private final IoTimeBudget ioTimeBudget;
 
 	public IoStatistics()
 	{
-		stopWatch = StopWatch.createStopped();
-		ioBytes = 0;
-		numRunningThreads = 0;
 		ioTimeBudget = new IoTimeBudget();
 	}
 
-	public synchronized void start()
+	public void start()
 	{
-		getThreadStopWatch().start();
-		if( numRunningThreads++ == 0 )
-			stopWatch.start();
+		final ThreadState ts = threadState.get();
+		if ( ts.depth++ > 0 )
+			return;
+
+		final long now = System.nanoTime();
+		ts.startTime = now;
+		State s;
+		do
+			s = state.get();
+		while ( !state.compareAndSet( s, s.start( now ) ) );
 	}
 
-	public synchronized void stop()
+	/**
+	 * Stop timing IO of the current thread, if this matches the outermost
+	 * {@link #start()}. Calls without a matching {@link #start()} are ignored.
+	 */
+	public void stop()
 	{
-		getThreadStopWatch().stop();
-		if( --numRunningThreads == 0 )
-			stopWatch.stop();
+		final ThreadState ts = threadState.get();
+		if ( ts.depth == 0 || --ts.depth > 0 )
+			return;
+
+		final long now = System.nanoTime();
+		final long start = ts.startTime;
+		State s;
+		do
+			s = state.get();
+		while ( !state.compareAndSet( s, s.stop( now, start ) ) );
 	}
 
 	public void incIoBytes( final long n )
 	{
-		ioBytes += n;
+		ioBytes.add( n );
 	}
 
 	public long getIoBytes()
 	{
-		return ioBytes;
+		return ioBytes.sum();
 	}
 
 	public long getIoNanoTime()
 	{
-		return stopWatch.nanoTime();
+		return state.get().nanoTime( System.nanoTime() );
 	}
 
 	public long getCumulativeIoNanoTime()
 	{
-		long sum = 0;
-		for ( final StopWatch w : perThreadStopWatches.values() )
-			sum += w.nanoTime();
-		return sum;
+		return state.get().cumulativeNanoTime( System.nanoTime() );
 	}
 
 	public IoTimeBudget getIoTimeBudget()
 	{
 		return ioTimeBudget;
 	}
-
-	private StopWatch getThreadStopWatch()
-	{
-		return perThreadStopWatches.computeIfAbsent( Thread.currentThread(), k -> StopWatch.createStopped() );
-	}
 }
@@ -0,0 +1,274 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.iotiming;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts bytes and operations of a reading and a writing stream, for example
+ * reads and writes of a disk cache, or loads from a backing loader.
+ * <p>
+ * Besides the totals, throughput ({@link #getReadBytesPerSecond() bytes per
+ * second}) and IOPS ({@link #getReadOpsPerSecond() operations per second})
+ * are averaged over the last {@value #WINDOW_SECONDS} completed seconds (or
+ * fewer, if this {@link IoThroughput} was created more recently).
+ * <p>
+ * The two streams can be named (for {@link #toString()}), if "read" and
+ * "write" do not describe what is counted. An {@code IoThroughput} that counts
+ * only one stream is created with {@link #IoThroughput(String)}.
+ * <p>
+ * All methods are thread-safe and do not lock. Totals are exact. Rates are
+ * approximate: an operation that is recorded concurrently with the start of
+ * a new second may be lost from the rolling window.
+ *
+ * @author Tobias Pietzsch
+ */
+public class IoThroughput
+{
+	/**
+	 * Number of completed seconds over which rates are averaged.
+	 */
+	public static final int WINDOW_SECONDS = 5;
+
+	private final LongSupplier nanoTime;
+
+	private final long startSecond;
+
+	private final String readName;
+
+	/**
+	 * Name of the writing stream, or {@code null} if only reads are counted.
+	 */
+	private final String writeName;
+
+	private final Stream read = new Stream();
+
+	private final Stream write = new Stream();
+
+	public IoThroughput()
+	{
+		this( "read", "write" );
+	}
+
+	/**
+	 * Create an {@code IoThroughput} that counts only reads.
+	 * {@link #recordWrite(long)} is not supported, and {@link #toString()}
+	 * shows only the reading stream.
+	 *
+	 * @param readName
+	 *            name of the reading stream, used by {@link #toString()}.
+	 */
+	public IoThroughput( final String readName )
+	{
+		this( readName, null, System::nanoTime );
+	}
+
+	/**
+	 * @param readName
+	 *            name of the reading stream, used by {@link #toString()}.
+	 * @param writeName
+	 *            name of the writing stream, used by {@link #toString()}.
+	 */
+	public IoThroughput( final String readName, final String writeName )
+	{
+		this( readName, writeName, System::nanoTime );
+	}
+
+	/**
+	 * Constructor with a custom clock, for testing.
+	 */
+	IoThroughput( final String readName, final String writeName, final LongSupplier nanoTime )
+	{
+		this.readName = readName;
+		this.writeName = writeName;
+		this.nanoTime = nanoTime;
+		startSecond = currentSecond();
+	}
+
+	/**
+	 * Record that {@code bytes} bytes were read in one operation.
+	 */
+	public void recordRead( final long bytes )
+	{
+		read.record( currentSecond(), bytes );
+	}
+
+	/**
+	 * Record that {@code bytes} bytes were written in one operation.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             if only reads are counted.
+	 */
+	public void recordWrite( final long bytes )
+	{
+		if ( writeName == null )
+			throw new UnsupportedOperationException( readName + " counts only reads" );
+		write.record( currentSecond(), bytes );
+	}
+
+	public long getReadBytes()
+	{
+		return read.bytes.sum();
+	}
+
+	public long getReadOps()
+	{
+		return read.ops.sum();
+	}
+
+	public long getWriteBytes()
+	{
+		return write.bytes.sum();
+	}
+
+	public long getWriteOps()
+	{
+		return write.ops.sum();
+	}
+
+	public double getReadBytesPerSecond()
+	{
+		return perSecond( read.byteRate );
+	}
+
+	public double getReadOpsPerSecond()
+	{
+		return perSecond( read.opRate );
+	}
+
+	public double getWriteBytesPerSecond()
+	{
+		return perSecond( write.byteRate );
+	}
+
+	public double getWriteOpsPerSecond()
+	{
+		return perSecond( write.opRate );
+	}
+
+	@Override
+	public String toString()
+	{
+		if ( writeName == null )
+			return String.format( "%s: %d ops, %d bytes (%.1f ops/s, %.2f MB/s)",
+					readName, getReadOps(), getReadBytes(), getReadOpsPerSecond(), getReadBytesPerSecond() / 1e6 );
+		return String.format( "%s: %d ops, %d bytes (%.1f ops/s, %.2f MB/s); %s: %d ops, %d bytes (%.1f ops/s, %.2f MB/s)",
+				readName, getReadOps(), getReadBytes(), getReadOpsPerSecond(), getReadBytesPerSecond() / 1e6,
+				writeName, getWriteOps(), getWriteBytes(), getWriteOpsPerSecond(), getWriteBytesPerSecond() / 1e6 );
+	}
+
+	private double perSecond( final Rate rate )
+	{
+		final long second = currentSecond();
+		final long numSeconds = Math.min( WINDOW_SECONDS, second - startSecond );
+		return numSeconds > 0
+				? ( double ) rate.sum( second ) / numSeconds
+				: 0;
+	}
+
+	private long currentSecond()
+	{
+		return nanoTime.getAsLong() / 1_000_000_000L;
+	}
+
+	private static final class Stream
+	{
+		final LongAdder bytes = new LongAdder();
+
+		final LongAdder ops = new LongAdder();
+
+		final Rate byteRate = new Rate();
+
+		final Rate opRate = new Rate();
+
+		void record( final long second, final long n )
+		{
+			bytes.add( n );
+			ops.increment();
+			byteRate.add( second, n );
+			opRate.add( second, 1 );
+		}
+	}
+
+	/**
+	 * Ring of per-second counts. Each bucket is tagged with the second it
+	 * counts, and is reset when it is reused for a later second.
+	 */
+	private static final class Rate
+	{
+		/**
+		 * One bucket for the current (incomplete) second, and one spare so
+		 * that the oldest bucket of the window is not reused while it is
+		 * read.
+		 */
+		private static final int NUM_BUCKETS = WINDOW_SECONDS + 2;
+
+		private final AtomicLongArray seconds = new AtomicLongArray( NUM_BUCKETS );
+
+		private final AtomicLongArray counts = new AtomicLongArray( NUM_BUCKETS );
+
+		Rate()
+		{
+			for ( int i = 0; i < NUM_BUCKETS; ++i )
+				seconds.set( i, Long.MIN_VALUE );
+		}
+
+		void add( final long second, final long n )
+		{
+			final int i = ( int ) Math.floorMod( second, ( long ) NUM_BUCKETS );
+			final long s = seconds.get( i );
+			if ( s < second && seconds.compareAndSet( i, s, second ) )
+				counts.set( i, 0 );
+			counts.addAndGet( i, n );
+		}
+
+		/**
+		 * Returns the sum of the counts of the {@link #WINDOW_SECONDS}
+		 * seconds before {@code second}.
+		 */
+		long sum( final long second )
+		{
+			long sum = 0;
+			for ( int i = 0; i < NUM_BUCKETS; ++i )
+			{
+				final long s = seconds.get( i );
+				if ( s < second && s >= second - WINDOW_SECONDS )
+					sum += counts.get( i );
+			}
+			return sum;
+		}
+	}
+}
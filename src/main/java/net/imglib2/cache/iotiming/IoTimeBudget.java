@@ -33,6 +33,8 @@
  */
 package net.imglib2.cache.iotiming;
 
+import java.util.concurrent.atomic.AtomicLongArray;
+
 /**
  * Budget of time that can be spent in blocking IO. The budget is grouped by
  * priority levels, where level 0 is the highest priority. The budget for
@@ -40,14 +42,20 @@ package net.imglib2.cache.iotiming;
  * <em>j</em>.
  *
  * For BDV, the time unit of {@link IoTimeBudget} values is nanoseconds.
+ * <p>
+ * An {@code IoTimeBudget} is usually shared by all threads that render one
+ * frame (see {@link CacheIoTiming}). It is thread-safe without locking:
+ * {@link #use(long, int)} subtracts atomically from each level, so that
+ * concurrent threads draw from the same budget without blocking each other.
+ * The ordering between levels is restored on a best-effort basis.
  */
 public class IoTimeBudget
 {
-	private long[] budget;
+	private volatile AtomicLongArray budget;
 
 	public IoTimeBudget()
 	{
-		budget = new long[] { 0 };
+		budget = new AtomicLongArray( 1 );
 	}
 
 	/**
@@ -59,30 +67,28 @@ public class IoTimeBudget
 	 *            <em>n</em>. The budget for level <em>i&gt;j</em> must always
 	 *            be smaller-equal the budget for level <em>j</em>.
 	 */
-	public synchronized void reset( final long[] partialBudget )
+	public void reset( final long[] partialBudget )
 	{
 		if ( partialBudget == null || partialBudget.length == 0 )
 			clear();
 		else
 		{
-			if ( partialBudget.length == budget.length )
-				System.arraycopy( partialBudget, 0, budget, 0, budget.length );
-			else
-				budget = partialBudget.clone();
-
-			for ( int i = 1; i < budget.length; ++i )
-				if ( budget[ i ] > budget[ i - 1 ] )
-					budget[ i ] = budget[ i - 1 ];
+			final long[] b = partialBudget.clone();
+			for ( int i = 1; i < b.length; ++i )
+				if ( b[ i ] > b[ i - 1 ] )
+					b[ i ] = b[ i - 1 ];
+			budget = new AtomicLongArray( b );
 		}
 	}
 
 	/**
 	 * Set the budget to 0 (for all levels).
 	 */
-	public synchronized void clear()
+	public void clear()
 	{
-		for ( int i = 0; i < budget.length; ++i )
-			budget[ i ] = 0;
+		final AtomicLongArray b = budget;
+		for ( int i = 0; i < b.length(); ++i )
+			b.set( i, 0 );
 	}
 
 	/**
@@ -92,10 +98,11 @@ public class IoTimeBudget
 	 *            priority level. must be greater &ge; 0.
 	 * @return time left for the specified priority level.
 	 */
-	public synchronized long timeLeft( final int level )
+	public long timeLeft( final int level )
 	{
-		final int blevel = Math.min( level, budget.length - 1 );
-		return budget[ blevel ];
+		final AtomicLongArray b = budget;
+		final int blevel = Math.min( level, b.length() - 1 );
+		return b.get( blevel );
 	}
 
 	/**
@@ -111,18 +118,33 @@ public class IoTimeBudget
 	 * @param level
 	 *            priority level. must be greater &ge; 0.
 	 */
-	public synchronized void use( final long t, final int level )
+	public void use( final long t, final int level )
 	{
-		final int blevel = Math.min( level, budget.length - 1 );
+		final AtomicLongArray b = budget;
+		final int n = b.length();
+		final int blevel = Math.min( level, n - 1 );
 		int l = 0;
 		for ( ; l <= blevel; ++l )
-			budget[ l ] -= t;
-		for ( ; l < budget.length && budget[ l ] > budget[ l - 1 ]; ++l )
-			budget[ l ] = budget[ l - 1 ];
+			b.addAndGet( l, -t );
+		for ( ; l < n; ++l )
+		{
+			final long max = b.get( l - 1 );
+			long bl;
+			do
+			{
+				bl = b.get( l );
+				if ( bl <= max )
+					return;
+			}
+			while ( !b.compareAndSet( l, bl, max ) );
+		}
 	}
 
 	/**
 	 * Returns how much time is left for the specified priority level.
+	 * <p>
+	 * This is the same as {@link #timeLeft(int)}, which no longer requires
+	 * locking.
 	 *
 	 * @param level
 	 *            priority level. must be greater &ge; 0.
@@ -130,8 +152,6 @@ public class IoTimeBudget
 	 */
 	public long estimateTimeLeft( final int level )
 	{
-		final long[] b = budget;
-		final int blevel = Math.min( level, b.length - 1 );
-		return b[ blevel ];
+		return timeLeft( level );
 	}
 }
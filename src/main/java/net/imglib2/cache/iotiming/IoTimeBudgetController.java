@@ -0,0 +1,247 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.iotiming;
+
+import net.imglib2.cache.stats.CacheStats;
+
+/**
+ * Adjusts the {@link IoTimeBudget} of a render pipeline from frame to frame,
+ * such that frames are rendered at a target frame rate, instead of resetting
+ * it with a fixed, hand-tuned budget.
+ * <p>
+ * Usage: call {@link #startFrame(IoStatistics)} before rendering a frame,
+ * which resets the budget of the given {@link IoStatistics}, and
+ * {@link #endFrame(IoStatistics, CacheStats)} after the frame is rendered,
+ * which measures the frame and computes the budget for the next frame.
+ * Alternatively, measurements can be fed to
+ * {@link #update(long, long, long, double)} directly.
+ * <p>
+ * The budget for level 0 tracks the time that is left of the target frame
+ * time after rendering (that is, frame time minus time blocked in IO,
+ * averaged over recent frames). It is
+ * <ul>
+ * <li>halved when a frame that blocked in IO took longer than the target
+ * frame time,</li>
+ * <li>moved gradually towards the time left when a frame had cache misses,
+ * </li>
+ * <li>not increased when a frame had no misses (the budget was not needed),
+ * and</li>
+ * <li>set to 0 if the time left is much shorter than the average time to
+ * load a value (waiting for a load would rarely succeed).</li>
+ * </ul>
+ * The budget for level <em>i</em> is the budget for level <em>i-1</em>
+ * multiplied by a constant ratio.
+ * <p>
+ * This class is not thread-safe. It is meant to be used by the thread that
+ * drives rendering of frames.
+ *
+ * @author Tobias Pietzsch
+ */
+public class IoTimeBudgetController
+{
+	/**
+	 * Weight of the latest frame in averages over recent frames.
+	 */
+	private static final double SMOOTHING = 0.25;
+
+	/**
+	 * If the time left is shorter than this fraction of the average load
+	 * time, the budget is set to 0.
+	 */
+	private static final double MIN_LATENCY_FRACTION = 0.25;
+
+	private final long targetFrameTime;
+
+	private final double levelRatio;
+
+	private final long[] budget;
+
+	private double renderTime = -1;
+
+	private double loadLatency = 0;
+
+	private long frameStartTime;
+
+	private long frameStartIoTime;
+
+	private boolean haveCacheStats = false;
+
+	private long missCount;
+
+	private long loadCount;
+
+	private long totalLoadTime;
+
+	/**
+	 * Create a controller with two priority levels, where the budget for
+	 * level 1 is a tenth of the budget for level 0.
+	 *
+	 * @param targetFrameRate
+	 *            frames per second
+	 */
+	public IoTimeBudgetController( final double targetFrameRate )
+	{
+		this( targetFrameRate, 2, 0.1 );
+	}
+
+	/**
+	 * @param targetFrameRate
+	 *            frames per second
+	 * @param numLevels
+	 *            number of priority levels
+	 * @param levelRatio
+	 *            ratio of the budget for level <em>i</em> to the budget for
+	 *            level <em>i-1</em>.
+	 */
+	public IoTimeBudgetController( final double targetFrameRate, final int numLevels, final double levelRatio )
+	{
+		if ( targetFrameRate <= 0 )
+			throw new IllegalArgumentException( "targetFrameRate must be > 0" );
+		if ( numLevels < 1 )
+			throw new IllegalArgumentException( "numLevels must be >= 1" );
+		if ( levelRatio < 0 || levelRatio > 1 )
+			throw new IllegalArgumentException( "levelRatio must be in [0, 1]" );
+		this.targetFrameTime = ( long ) ( 1e9 / targetFrameRate );
+		this.levelRatio = levelRatio;
+		this.budget = new long[ numLevels ];
+		setLevel0( targetFrameTime / 2 );
+	}
+
+	/**
+	 * Returns the budget (in nanoseconds, for each priority level) that the
+	 * next frame will be started with.
+	 */
+	public long[] getBudget()
+	{
+		return budget.clone();
+	}
+
+	/**
+	 * Reset the {@link IoTimeBudget} of {@code statistics} to
+	 * {@link #getBudget()}, and start measuring a frame.
+	 */
+	public void startFrame( final IoStatistics statistics )
+	{
+		statistics.getIoTimeBudget().reset( budget );
+		frameStartIoTime = statistics.getIoNanoTime();
+		frameStartTime = System.nanoTime();
+	}
+
+	/**
+	 * Finish measuring a frame, without information about cache misses. The
+	 * frame is assumed to have had misses.
+	 */
+	public void endFrame( final IoStatistics statistics )
+	{
+		final long frameTime = System.nanoTime() - frameStartTime;
+		final long ioTime = statistics.getIoNanoTime() - frameStartIoTime;
+		update( frameTime, ioTime, -1, 0 );
+	}
+
+	/**
+	 * Finish measuring a frame. Cache misses and load times during the frame
+	 * are taken from the difference of {@code cacheStats} to the stats passed
+	 * in the previous call.
+	 *
+	 * @param statistics
+	 *            the IO statistics passed to {@link #startFrame(IoStatistics)}
+	 * @param cacheStats
+	 *            current {@link CacheStats} of the cache (or sum over the
+	 *            caches) that the frame was rendered from.
+	 */
+	public void endFrame( final IoStatistics statistics, final CacheStats cacheStats )
+	{
+		final long frameTime = System.nanoTime() - frameStartTime;
+		final long ioTime = statistics.getIoNanoTime() - frameStartIoTime;
+		final long misses = haveCacheStats ? cacheStats.getMissCount() - missCount : -1;
+		final long loads = cacheStats.getLoadCount() - loadCount;
+		final double latency = loads > 0
+				? ( double ) ( cacheStats.getTotalLoadTime() - totalLoadTime ) / loads
+				: 0;
+		haveCacheStats = true;
+		missCount = cacheStats.getMissCount();
+		loadCount = cacheStats.getLoadCount();
+		totalLoadTime = cacheStats.getTotalLoadTime();
+		update( frameTime, ioTime, misses, latency );
+	}
+
+	/**
+	 * Compute the budget for the next frame from measurements of the last
+	 * frame.
+	 *
+	 * @param frameTime
+	 *            time it took to render the frame, in nanoseconds.
+	 * @param ioTime
+	 *            time during which rendering was blocked in IO, in
+	 *            nanoseconds.
+	 * @param numMisses
+	 *            number of cache misses during the frame, or a negative value
+	 *            if unknown.
+	 * @param averageLoadTime
+	 *            average time to load a value during the frame, in
+	 *            nanoseconds, or 0 if unknown.
+	 * @return the new budget (which is also returned by {@link #getBudget()}).
+	 */
+	public long[] update( final long frameTime, final long ioTime, final long numMisses, final double averageLoadTime )
+	{
+		final long t = Math.max( 0, frameTime - ioTime );
+		renderTime = renderTime < 0 ? t : renderTime + SMOOTHING * ( t - renderTime );
+		if ( averageLoadTime > 0 )
+			loadLatency = loadLatency == 0 ? averageLoadTime : loadLatency + SMOOTHING * ( averageLoadTime - loadLatency );
+
+		final long timeLeft = Math.max( 0, targetFrameTime - ( long ) renderTime );
+		final long b = budget[ 0 ];
+		long next;
+		if ( frameTime > targetFrameTime && ioTime > 0 )
+			next = Math.min( timeLeft, b / 2 );
+		else if ( numMisses == 0 )
+			next = Math.min( timeLeft, b );
+		else
+			next = b + ( long ) ( SMOOTHING * ( timeLeft - b ) );
+		if ( timeLeft < MIN_LATENCY_FRACTION * loadLatency )
+			next = 0;
+		setLevel0( next );
+		return getBudget();
+	}
+
+	private void setLevel0( final long b )
+	{
+		double l = Math.max( 0, Math.min( b, targetFrameTime ) );
+		for ( int i = 0; i < budget.length; ++i )
+		{
+			budget[ i ] = ( long ) l;
+			l *= levelRatio;
+		}
+	}
+}
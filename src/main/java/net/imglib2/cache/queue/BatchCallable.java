@@ -0,0 +1,74 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.queue;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * A request in a {@link BlockingFetchQueues} that can be run together with
+ * other requests. When {@link FetcherThreads} take a {@code BatchCallable},
+ * they remove up to {@link #maxBatchSize()}{@code - 1} more requests of the
+ * same priority that are {@link #isBatchableWith(Object) batchable with} it
+ * from the queue, and run them all with {@link #callBatch(List)}.
+ *
+ * @author Tobias Pietzsch
+ */
+public interface BatchCallable extends Callable< Void >
+{
+	/**
+	 * Returns the maximum number of requests (including this one) to run in
+	 * one {@link #callBatch(List)}. If this is 1, {@link #call()} is used.
+	 */
+	int maxBatchSize();
+
+	/**
+	 * Returns the priority with which this request was enqueued. Only
+	 * requests of the same priority are batched.
+	 */
+	int getPriority();
+
+	/**
+	 * Whether {@code other} can be run in the same {@link #callBatch(List)} as
+	 * this request.
+	 */
+	boolean isBatchableWith( Object other );
+
+	/**
+	 * Run all requests in {@code batch}. The first element is this request,
+	 * all other elements are {@link #isBatchableWith(Object) batchable with}
+	 * it.
+	 */
+	void callBatch( List< Callable< ? > > batch ) throws Exception;
+}
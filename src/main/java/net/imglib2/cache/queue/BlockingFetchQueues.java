@@ -35,22 +35,36 @@ package net.imglib2.cache.queue;
 
 import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+import net.imglib2.cache.stats.CacheTracing;
+import net.imglib2.cache.stats.FetchMetrics;
 
 /**
  * TODO revise javadoc
  *
  * Queueing structure (intended for cache entries to be fetched). There is an
- * array of {@link ArrayDeque}s, ordered by priority. Elements are
+ * array of deques, ordered by priority. Elements are
  * {@link #put(Object, int, boolean)} with a priority and added to one of the
  * queues, accordingly. {@link #take()} returns an element from the highest
  * priority non-empty queue. Furthermore, there is a prefetch deque of bounded
  * size to provides elements when all the queues are exhausted. {@link #clearToPrefetch()}
  * empties all queues, and moves the removed elements to the prefetch queue.
  * <p>
- * Locking is adapted from {@link ArrayBlockingQueue}.
+ * The deques are {@link ConcurrentLinkedDeque}s, so {@code put()} and
+ * {@code take()} do not need a lock as long as there are elements to take.
+ * The lock is only taken by consumers that have to wait (because the queue is
+ * empty or paused), by producers that have to wake up waiting consumers, and
+ * by the operations that restructure the queue ({@link #clearToPrefetch()},
+ * {@link #clear()}, {@link #ensureNumPriorities(int)}, {@link #pause()}).
  * <p>
  * {@link BlockingFetchQueues} is constructed with the number of priority levels
  * <em>n</em>. Priorities are consecutive integers <em>0 ... n-1</em>, where 0
@@ -59,6 +73,18 @@ import java.util.concurrent.locks.ReentrantLock;
  * <p>
  * The number of priority levels can be increased (after construction) using
  * {@link #ensureNumPriorities(int)}.
+ * <p>
+ * Elements that implement {@link Revocable} and have been revoked after they
+ * were enqueued are skipped by {@link #take()} and dropped by
+ * {@link #clearToPrefetch()}.
+ * <p>
+ * Strict priority order can starve the lower priority levels and the
+ * prefetch deque, if higher priority elements keep arriving. To prevent this,
+ * an {@link #setAgingThreshold(long, TimeUnit) aging threshold} can be set.
+ * How long elements waited before they were taken is recorded per priority
+ * level, see {@link #getMeanWaitNanos(int)} and
+ * {@link #getMaxWaitNanos(int)}. More detailed {@link FetchMetrics} can be
+ * installed with {@link #setMetrics(FetchMetrics)}.
  *
  * @param <E>
  *            element type.
@@ -67,27 +93,59 @@ import java.util.concurrent.locks.ReentrantLock;
  */
 public class BlockingFetchQueues< E >
 {
-	private ArrayDeque< E >[] queues;
+	/**
+	 * Pseudo priority level, to query the wait statistics of the prefetch
+	 * deque.
+	 */
+	public static final int PREFETCH = FetchMetrics.PREFETCH;
+
+	private volatile Level< E >[] queues;
 
-	private int maxPriority;
+	private volatile int maxPriority;
 
 	private final int prefetchCapacity;
 
-	private final ArrayDeque< E > prefetch;
+	/**
+	 * Elements are only added to {@code prefetch} in
+	 * {@link #clearToPrefetch()}, while holding {@link #lock}.
+	 */
+	private final Level< E > prefetch;
 
-	/** Number of elements in the queue */
-	private int count;
+	/**
+	 * Source of the enqueue and dequeue times of elements (in nanoseconds).
+	 */
+	private final LongSupplier nanoTime;
+
+	/**
+	 * Elements that have waited longer than this (in nanoseconds) are taken
+	 * before elements of higher priority. {@code 0} means no aging.
+	 */
+	private volatile long agingNanos = 0;
+
+	/**
+	 * Receives enqueue and dequeue events, or {@code null}.
+	 */
+	private volatile FetchMetrics metrics;
 
 	/** Whether the queue is paused */
-	private boolean paused;
+	private volatile boolean paused;
 
-	/** Number of consumer threads. */
-	private final int numConsumers;
+	/**
+	 * Number of consumer threads. Modified only while holding {@link #lock}.
+	 */
+	private int numConsumers;
 
-	/** Number of consumer threads waiting in {@code take()} */
-	private int waitCount;
+	/**
+	 * Number of consumer threads waiting in {@code take()}. Modified only while
+	 * holding {@link #lock}. Read without the lock by producers, to decide
+	 * whether they need to signal.
+	 */
+	private volatile int waitCount;
 
-	/** Main lock guarding all accesses */
+	/**
+	 * Lock guarding waiting and restructuring (but not plain {@code put()} and
+	 * {@code take()}).
+	 */
 	private final ReentrantLock lock;
 
 	/** Condition for waiting take()s */
@@ -96,28 +154,130 @@ public class BlockingFetchQueues< E >
 	/** Condition for waiting pause() */
 	private final Condition isPaused;
 
+	/**
+	 * Run after elements are added and when the queue is resumed, to notify
+	 * consumers that do not wait in {@link #take()}.
+	 */
+	private volatile Runnable notEmptyCallback;
+
 	/** incremented with every {@link #clearToPrefetch()} call */
 	private volatile long currentFrame = 0;
 
+	/**
+	 * An element, with the time when it was enqueued.
+	 */
+	private static final class Queued< E >
+	{
+		final E element;
+
+		final long enqueueTime;
+
+		Queued( final E element, final long enqueueTime )
+		{
+			this.element = element;
+			this.enqueueTime = enqueueTime;
+		}
+	}
+
+	/**
+	 * The deque of one priority level, and statistics of how long its
+	 * elements waited before they were taken.
+	 */
+	private static final class Level< E >
+	{
+		final int priority;
+
+		final LongSupplier nanoTime;
+
+		final ConcurrentLinkedDeque< Queued< E > > deque = new ConcurrentLinkedDeque<>();
+
+		final LongAdder numTaken = new LongAdder();
+
+		final LongAdder totalWaitNanos = new LongAdder();
+
+		final AtomicLong maxWaitNanos = new AtomicLong();
+
+		Level( final int priority, final LongSupplier nanoTime )
+		{
+			this.priority = priority;
+			this.nanoTime = nanoTime;
+		}
+
+		E taken( final Queued< E > queued, final FetchMetrics metrics )
+		{
+			final long wait = nanoTime.getAsLong() - queued.enqueueTime;
+			numTaken.increment();
+			totalWaitNanos.add( wait );
+			if ( wait > maxWaitNanos.get() )
+				maxWaitNanos.accumulateAndGet( wait, Math::max );
+			if ( metrics != null )
+				metrics.dequeued( priority, wait );
+			if ( CacheTracing.isEnabled() )
+				CacheTracing.fetchDequeued( keyOf( queued.element ), priority, wait );
+			return queued.element;
+		}
+
+		/**
+		 * Remove and return the first element that is not revoked, or
+		 * {@code null}.
+		 */
+		E pollFirst( final FetchMetrics metrics )
+		{
+			for ( Queued< E > q; ( q = deque.pollFirst() ) != null; )
+				if ( !isRevoked( q.element ) )
+					return taken( q, metrics );
+			return null;
+		}
+
+		/**
+		 * Remove and return the last element that is not revoked, or
+		 * {@code null}.
+		 */
+		E pollLast( final FetchMetrics metrics )
+		{
+			for ( Queued< E > q; ( q = deque.pollLast() ) != null; )
+				if ( !isRevoked( q.element ) )
+					return taken( q, metrics );
+			return null;
+		}
+
+		void resetStatistics()
+		{
+			numTaken.reset();
+			totalWaitNanos.reset();
+			maxWaitNanos.set( 0 );
+		}
+	}
+
 	public BlockingFetchQueues( final int numPriorities, final int numConsumers )
 	{
 		this( numPriorities, numConsumers, 16384 );
 	}
 
-	@SuppressWarnings( "unchecked" )
 	public BlockingFetchQueues( final int numPriorities, final int numConsumers, final int prefetchCapacity )
 	{
+		this( numPriorities, numConsumers, prefetchCapacity, System::nanoTime );
+	}
+
+	/**
+	 * Constructor with a custom clock, for testing.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	BlockingFetchQueues( final int numPriorities, final int numConsumers, final int prefetchCapacity, final LongSupplier nanoTime )
+	{
+		this.nanoTime = nanoTime;
 		if ( numPriorities < 1 )
 			throw new IllegalArgumentException( "expected numPriorities >= 1" );
-		queues = new ArrayDeque[ numPriorities ];
-		maxPriority = numPriorities - 1;
+		final Level< E >[] queues = new Level[ numPriorities ];
 		for ( int i = 0; i < numPriorities; ++i )
-			queues[ i ] = new ArrayDeque<>();
+			queues[ i ] = new Level<>( i, nanoTime );
+		this.queues = queues;
+		maxPriority = numPriorities - 1;
 
 		this.numConsumers = numConsumers;
 
 		this.prefetchCapacity = prefetchCapacity;
-		prefetch = new ArrayDeque<>( prefetchCapacity );
+		prefetch = new Level<>( PREFETCH, nanoTime );
 
 		lock = new ReentrantLock();
 		notEmpty = lock.newCondition();
@@ -159,16 +319,39 @@ public class BlockingFetchQueues< E >
 	 *            enqueue element at the back (FIFO)
 	 */
 	public void put_unsafe( final E element, final int priority, final boolean enqueuToFront )
+	{
+		final Queued< E > queued = new Queued<>( element, nanoTime.getAsLong() );
+		if ( enqueuToFront )
+			queues[ priority ].deque.addFirst( queued );
+		else
+			queues[ priority ].deque.addLast( queued );
+
+		final FetchMetrics m = metrics;
+		if ( m != null )
+			m.enqueued( priority );
+		if ( CacheTracing.isEnabled() )
+			CacheTracing.fetchEnqueued( keyOf( element ), priority );
+
+		/*
+		 * A consumer increments waitCount before it checks the queues for the
+		 * last time and then waits. We added the element before reading
+		 * waitCount. So either the consumer sees the element, or we see the
+		 * consumer and signal.
+		 */
+		if ( waitCount > 0 )
+			signalNotEmpty();
+
+		final Runnable callback = notEmptyCallback;
+		if ( callback != null )
+			callback.run();
+	}
+
+	private void signalNotEmpty()
 	{
 		final ReentrantLock lock = this.lock;
 		lock.lock();
 		try
 		{
-			if ( enqueuToFront )
-				queues[ priority ].addFirst( element );
-			else
-				queues[ priority ].add( element );
-			++count;
 			notEmpty.signal();
 		}
 		finally
@@ -187,20 +370,32 @@ public class BlockingFetchQueues< E >
 	 */
 	public E take() throws InterruptedException
 	{
+		if ( !paused )
+		{
+			final E element = pollElement();
+			if ( element != null )
+				return element;
+		}
+
 		final ReentrantLock lock = this.lock;
 		lock.lockInterruptibly();
 		try
 		{
-			if ( ++waitCount == numConsumers )
+			if ( ++waitCount >= numConsumers )
 				isPaused.signal();
-			while ( count == 0 || paused )
+			while ( true )
+			{
+				if ( !paused )
+				{
+					final E element = pollElement();
+					if ( element != null )
+					{
+						--waitCount;
+						return element;
+					}
+				}
 				notEmpty.await();
-			--waitCount;
-			--count;
-			for ( final ArrayDeque< E > q : queues )
-				if ( !q.isEmpty() )
-					return q.remove();
-			return prefetch.poll();
+			}
 		}
 		finally
 		{
@@ -208,9 +403,142 @@ public class BlockingFetchQueues< E >
 		}
 	}
 
+	/**
+	 * Remove and return an element from the highest priority non-empty queue,
+	 * or from the prefetch deque if all queues are empty. Returns {@code null}
+	 * if the prefetch deque is also empty, or if the queue is paused.
+	 * <p>
+	 * Consumers that use {@code poll()} instead of {@link #take()} should
+	 * {@link #registerConsumer() register} while they are polling, so that
+	 * {@link #pause()} waits for them to finish.
+	 *
+	 * @return element, or {@code null}.
+	 */
+	public E poll()
+	{
+		return paused ? null : pollElement();
+	}
+
+	private E pollElement()
+	{
+		final Level< E >[] queues = this.queues;
+		final FetchMetrics metrics = this.metrics;
+		if ( agingNanos > 0 )
+		{
+			final E element = pollAged( queues, metrics );
+			if ( element != null )
+				return element;
+		}
+		for ( final Level< E > q : queues )
+		{
+			final E element = q.pollFirst( metrics );
+			if ( element != null )
+				return element;
+		}
+		return prefetch.pollFirst( metrics );
+	}
+
+	/**
+	 * Remove and return the oldest element that has waited longer than the
+	 * aging threshold, or {@code null} if there is none. Only the ends of
+	 * each deque are examined, see {@link #setAgingThreshold(long, TimeUnit)}.
+	 */
+	private E pollAged( final Level< E >[] queues, final FetchMetrics metrics )
+	{
+		final Level< E > level = agedLevel( queues );
+		if ( level == null )
+			return null;
+		final Queued< E > head = level.deque.peekFirst();
+		final Queued< E > tail = level.deque.peekLast();
+		return head == null || ( tail != null && tail.enqueueTime - head.enqueueTime < 0 )
+				? level.pollLast( metrics )
+				: level.pollFirst( metrics );
+	}
+
+	/**
+	 * Returns the level (priority queue or prefetch deque) that has the
+	 * oldest element that has waited longer than the aging threshold at one
+	 * of its ends, or {@code null} if there is none.
+	 */
+	private Level< E > agedLevel( final Level< E >[] queues )
+	{
+		long oldest = nanoTime.getAsLong() - agingNanos;
+		Level< E > level = null;
+		for ( int i = 0; i <= queues.length; ++i )
+		{
+			final Level< E > q = i < queues.length ? queues[ i ] : prefetch;
+			final Queued< E > head = q.deque.peekFirst();
+			if ( head != null && head.enqueueTime - oldest < 0 )
+			{
+				oldest = head.enqueueTime;
+				level = q;
+			}
+			final Queued< E > tail = q.deque.peekLast();
+			if ( tail != null && tail.enqueueTime - oldest < 0 )
+			{
+				oldest = tail.enqueueTime;
+				level = q;
+			}
+		}
+		return level;
+	}
+
+	/**
+	 * Remove up to {@code maxElements} elements matching {@code filter} from
+	 * the queue of the specified priority, and add them to {@code c}. Only
+	 * the first {@code 4 * maxElements} elements of the queue are examined.
+	 * Revoked elements are skipped.
+	 * <p>
+	 * If {@link #setAgingThreshold(long, TimeUnit) aging} is enabled and an
+	 * element of another priority level (or of the prefetch deque) has waited
+	 * longer than the aging threshold, nothing is drained, so that the aged
+	 * element is taken next.
+	 *
+	 * @return the number of elements added to {@code c}.
+	 */
+	public int drainTo( final Collection< ? super E > c, final int maxElements, final int priority, final Predicate< ? super E > filter )
+	{
+		if ( maxElements <= 0 || paused )
+			return 0;
+		final Level< E >[] queues = this.queues;
+		final Level< E > level = queues[ Math.max( Math.min( priority, maxPriority ), 0 ) ];
+		if ( agingNanos > 0 )
+		{
+			final Level< E > aged = agedLevel( queues );
+			if ( aged != null && aged != level )
+				return 0;
+		}
+		final FetchMetrics metrics = this.metrics;
+		final int maxExamined = 4 * maxElements;
+		int examined = 0;
+		int n = 0;
+		for ( final Queued< E > q : level.deque )
+		{
+			if ( n >= maxElements || ++examined > maxExamined )
+				break;
+			// removeFirstOccurrence() fails if a concurrent poll() took the element
+			if ( !isRevoked( q.element ) && filter.test( q.element ) && level.deque.removeFirstOccurrence( q ) )
+			{
+				c.add( level.taken( q, metrics ) );
+				++n;
+			}
+		}
+		return n;
+	}
+
+	private static boolean isRevoked( final Object element )
+	{
+		return element instanceof Revocable && ( ( Revocable ) element ).isRevoked();
+	}
+
+	private static Object keyOf( final Object element )
+	{
+		return element instanceof Keyed ? ( ( Keyed ) element ).getKey() : element;
+	}
+
 	/**
 	 * Ensure that at least {@code numPriorities} priority levels (each with a
-	 * separate {@code ArrayDeque}) exist.
+	 * separate deque) exist.
 	 */
 	public void ensureNumPriorities( final int numPriorities )
 	{
@@ -219,9 +547,10 @@ public class BlockingFetchQueues< E >
 		try
 		{
 			if ( numPriorities > maxPriority + 1 ) {
-				queues = Arrays.copyOf( queues, numPriorities );
+				final Level< E >[] newQueues = Arrays.copyOf( queues, numPriorities );
 				for ( int i = maxPriority + 1; i < numPriorities; i++ )
-					queues[ i ] = new ArrayDeque<>();
+					newQueues[ i ] = new Level<>( i, nanoTime );
+				queues = newQueues;
 				maxPriority = numPriorities - 1;
 			}
 		}
@@ -231,6 +560,42 @@ public class BlockingFetchQueues< E >
 		}
 	}
 
+	/**
+	 * Set the aging threshold. If an element of a lower priority queue, or of
+	 * the prefetch deque, has waited longer than this, it is taken before the
+	 * elements of higher priority queues. Among such elements, the oldest is
+	 * taken first.
+	 * <p>
+	 * To keep {@link #take()} cheap, only the first and last element of each
+	 * deque are checked for their age. This finds the oldest element of a
+	 * deque if its elements are enqueued either all at the front or all at
+	 * the back. If both are mixed, an old element in the middle of a deque is
+	 * only aged out once it reaches one of the ends.
+	 * <p>
+	 * {@link #drainTo(Collection, int, int, Predicate)} does not drain while
+	 * an element of another level is aged.
+	 * <p>
+	 * With a threshold of 0 (the default), elements are strictly taken in
+	 * priority order.
+	 *
+	 * @param time
+	 *            the aging threshold, or 0 to disable aging.
+	 * @param unit
+	 *            the time unit of {@code time}.
+	 */
+	public void setAgingThreshold( final long time, final TimeUnit unit )
+	{
+		agingNanos = Math.max( 0, unit.toNanos( time ) );
+	}
+
+	/**
+	 * Returns the aging threshold in nanoseconds, or 0 if aging is disabled.
+	 */
+	public long getAgingThresholdNanos()
+	{
+		return agingNanos;
+	}
+
 	/**
 	 * Pause the queue. While the queue is paused, all consumer threads are held
 	 * in {@code take()}. The {@code pause()} method itself blocks until all (of
@@ -251,7 +616,7 @@ public class BlockingFetchQueues< E >
 			if ( !paused )
 			{
 				paused = true;
-				while ( waitCount != numConsumers )
+				while ( waitCount < numConsumers )
 					isPaused.await();
 			}
 		}
@@ -261,6 +626,78 @@ public class BlockingFetchQueues< E >
 		}
 	}
 
+	/**
+	 * Set the number of consumer threads that {@link #pause()} waits for.
+	 * This must be updated when consumers are added or removed, such as by
+	 * an adaptive {@link FetcherThreads} pool.
+	 */
+	public void setNumConsumers( final int numConsumers )
+	{
+		final ReentrantLock lock = this.lock;
+		lock.lock();
+		try
+		{
+			this.numConsumers = numConsumers;
+			if ( waitCount >= numConsumers )
+				isPaused.signalAll();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Add a consumer that {@link #pause()} has to wait for. A consumer that
+	 * does not block in {@link #take()} registers while it is processing
+	 * elements, and {@link #deregisterConsumer() deregisters} when it stops.
+	 */
+	public void registerConsumer()
+	{
+		final ReentrantLock lock = this.lock;
+		lock.lock();
+		try
+		{
+			++numConsumers;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Remove a consumer added by {@link #registerConsumer()}.
+	 */
+	public void deregisterConsumer()
+	{
+		final ReentrantLock lock = this.lock;
+		lock.lock();
+		try
+		{
+			if ( waitCount >= --numConsumers )
+				isPaused.signalAll();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Set a callback that is run (on the calling thread) after each
+	 * {@code put()} and after {@link #resume()}. This is used to schedule
+	 * consumers that {@link #poll()} instead of waiting in {@link #take()}.
+	 * The callback should return quickly.
+	 *
+	 * @param callback
+	 *            the callback, or {@code null} to remove it.
+	 */
+	public void setNotEmptyCallback( final Runnable callback )
+	{
+		notEmptyCallback = callback;
+	}
+
 	public void resume() throws InterruptedException
 	{
 		final ReentrantLock lock = this.lock;
@@ -277,12 +714,24 @@ public class BlockingFetchQueues< E >
 		{
 			lock.unlock();
 		}
+
+		final Runnable callback = notEmptyCallback;
+		if ( callback != null )
+			callback.run();
+	}
+
+	public boolean isPaused()
+	{
+		return paused;
 	}
 
 	/**
 	 * Atomically removes all of the elements from this queue. All queues will
 	 * be empty after this call returns. Removed elements are moved to the
 	 * {@link #prefetch} deque.
+	 * <p>
+	 * Elements that are {@code put()} concurrently with this call may end up
+	 * either in the prefetch deque or in their queue.
 	 */
 	public void clearToPrefetch()
 	{
@@ -292,41 +741,45 @@ public class BlockingFetchQueues< E >
 		{
 			++currentFrame;
 
-//			System.out.println( "prefetch size before clear = " + prefetch.size() );
-
-			// make room in the prefetch deque
-			final int toRemoveFromPrefetch = Math.max( 0, Math.min( prefetch.size(), count - prefetchCapacity ) );
-//			System.out.println( "toRemoveFromPrefetch = " + toRemoveFromPrefetch );
-			if ( toRemoveFromPrefetch == prefetch.size() )
-				prefetch.clear();
-			else
-				for ( int i = 0; i < toRemoveFromPrefetch; ++i )
-					prefetch.remove();
+			final Level< E >[] queues = this.queues;
 
 			// move queue contents to the prefetch
 			int c = prefetchCapacity; // prefetch capacity left
-			// add elements of first queue to the front of the prefetch
-			final ArrayDeque< E > q0 = queues[ 0 ];
-			final int q0n = Math.min( q0.size(), c );
-			for ( int i = 0; i < q0n; ++i )
-				prefetch.addFirst( q0.removeLast() );
-			q0.clear();
-			c -= q0n;
-			// add elements of remaining queues to the end of the prefetch
+			// take elements from the end of the first queue, preserving order
+			final ArrayDeque< Queued< E > > head = new ArrayDeque<>();
+			for ( Queued< E > q; ( q = queues[ 0 ].deque.pollLast() ) != null; )
+				if ( c > 0 && !isRevoked( q.element ) )
+				{
+					head.addFirst( q );
+					--c;
+				}
+			// take elements of remaining queues in order
+			final ArrayDeque< Queued< E > > tail = new ArrayDeque<>();
 			for ( int j = 1; j < queues.length; ++j )
-			{
-				final ArrayDeque< E > q = queues[ j ];
-				final int qn = Math.min( q.size(), c );
-				for ( int i = 0; i < qn; ++i )
-					prefetch.addLast( q.removeFirst() );
-				q.clear();
-				c -= qn;
-			}
-
-			// update count: only prefetch is non-empty now
-			count = prefetch.size();
-
-//			System.out.println( "prefetch size after clearToPrefetch = " + prefetch.size() );
+				for ( Queued< E > q; ( q = queues[ j ].deque.pollFirst() ) != null; )
+					if ( c > 0 && !isRevoked( q.element ) )
+					{
+						tail.addLast( q );
+						--c;
+					}
+
+			// make room in the prefetch deque, by removing from its front
+			final ConcurrentLinkedDeque< Queued< E > > prefetch = this.prefetch.deque;
+			final ArrayDeque< Queued< E > > old = new ArrayDeque<>();
+			for ( Queued< E > q; ( q = prefetch.pollFirst() ) != null; )
+				if ( !isRevoked( q.element ) )
+					old.addLast( q );
+			while ( old.size() > c )
+				old.removeFirst();
+
+			// elements of the first queue go to the front of the prefetch,
+			// elements of remaining queues go to the end
+			prefetch.addAll( head );
+			prefetch.addAll( old );
+			prefetch.addAll( tail );
+
+			if ( waitCount > 0 )
+				notEmpty.signalAll();
 		}
 		finally
 		{
@@ -345,10 +798,9 @@ public class BlockingFetchQueues< E >
 		lock.lock();
 		try
 		{
-			for ( final ArrayDeque< E > queue : queues )
-				queue.clear();
-			prefetch.clear();
-			count = 0;
+			for ( final Level< E > queue : queues )
+				queue.deque.clear();
+			prefetch.deque.clear();
 		}
 		finally
 		{
@@ -356,6 +808,98 @@ public class BlockingFetchQueues< E >
 		}
 	}
 
+	/**
+	 * Returns {@code true} if there are no elements in any of the queues or in
+	 * the prefetch deque. Revoked elements that have not been removed yet
+	 * count as elements.
+	 */
+	public boolean isEmpty()
+	{
+		for ( final Level< E > q : queues )
+			if ( !q.deque.isEmpty() )
+				return false;
+		return prefetch.deque.isEmpty();
+	}
+
+	/**
+	 * Returns how many elements have been taken from the queue of the
+	 * specified priority (or from the prefetch deque, if
+	 * {@code priority == }{@link #PREFETCH}).
+	 */
+	public long getNumTaken( final int priority )
+	{
+		return level( priority ).numTaken.sum();
+	}
+
+	/**
+	 * Returns the mean time (in nanoseconds) that elements taken from the
+	 * queue of the specified priority (or from the prefetch deque, if
+	 * {@code priority == }{@link #PREFETCH}) have waited since they were
+	 * enqueued.
+	 */
+	public double getMeanWaitNanos( final int priority )
+	{
+		final Level< E > level = level( priority );
+		final long n = level.numTaken.sum();
+		return n == 0 ? 0 : ( double ) level.totalWaitNanos.sum() / n;
+	}
+
+	/**
+	 * Returns the maximum time (in nanoseconds) that an element taken from the
+	 * queue of the specified priority (or from the prefetch deque, if
+	 * {@code priority == }{@link #PREFETCH}) has waited since it was enqueued.
+	 */
+	public long getMaxWaitNanos( final int priority )
+	{
+		return level( priority ).maxWaitNanos.get();
+	}
+
+	/**
+	 * Reset the wait statistics of all priority levels and of the prefetch
+	 * deque.
+	 */
+	public void resetWaitStatistics()
+	{
+		for ( final Level< E > q : queues )
+			q.resetStatistics();
+		prefetch.resetStatistics();
+	}
+
+	/**
+	 * Returns the number of elements in the queue of the specified priority
+	 * (or in the prefetch deque, if {@code priority == }{@link #PREFETCH}),
+	 * including revoked elements that have not been removed yet. This takes
+	 * time linear in the number of elements.
+	 */
+	public int getQueueDepth( final int priority )
+	{
+		return level( priority ).deque.size();
+	}
+
+	/**
+	 * Install {@link FetchMetrics} that are notified when elements are
+	 * enqueued and taken. Volatile caches that use this queue also report
+	 * completed requests to these metrics. If {@code metrics} is {@code null}
+	 * (the default), no events are reported.
+	 */
+	public void setMetrics( final FetchMetrics metrics )
+	{
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Returns the installed {@link FetchMetrics}, or {@code null}.
+	 */
+	public FetchMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	private Level< E > level( final int priority )
+	{
+		return priority == PREFETCH ? prefetch : queues[ priority ];
+	}
+
 	public int getNumPriorities()
 	{
 		return maxPriority + 1;
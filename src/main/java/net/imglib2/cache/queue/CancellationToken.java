@@ -0,0 +1,104 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.queue;
+
+import java.util.concurrent.CancellationException;
+
+import net.imglib2.cache.CacheLoader;
+
+/**
+ * Signals that a load running on a fetcher thread is no longer needed.
+ * <p>
+ * While a fetcher thread loads an entry, the token for that load is available
+ * to the {@link CacheLoader} through {@link #current()}. Loaders that can
+ * abort part-way (for example, between reading chunks) may poll
+ * {@link #isCancelled()} or call {@link #throwIfCancelled()}. A load that
+ * fails after its token was cancelled is dropped instead of being retried.
+ * Loaders that ignore the token simply run to completion.
+ * <p>
+ * Outside of a cancellable load, {@link #current()} returns a token that is
+ * never cancelled.
+ *
+ * @author Tobias Pietzsch
+ */
+public final class CancellationToken
+{
+	private static final CancellationToken NEVER = new CancellationToken();
+
+	private static final ThreadLocal< CancellationToken > current = new ThreadLocal<>();
+
+	private volatile boolean cancelled;
+
+	/**
+	 * Returns the token of the load running on the current thread.
+	 */
+	public static CancellationToken current()
+	{
+		final CancellationToken token = current.get();
+		return token == null ? NEVER : token;
+	}
+
+	/**
+	 * Make {@code token} the {@link #current()} token of the current thread.
+	 *
+	 * @return the previous token, to be restored by the caller.
+	 */
+	public static CancellationToken setCurrent( final CancellationToken token )
+	{
+		final CancellationToken previous = current.get();
+		current.set( token );
+		return previous;
+	}
+
+	public boolean isCancelled()
+	{
+		return cancelled;
+	}
+
+	/**
+	 * @throws CancellationException
+	 *             if this token has been cancelled.
+	 */
+	public void throwIfCancelled() throws CancellationException
+	{
+		if ( cancelled )
+			throw new CancellationException();
+	}
+
+	public void cancel()
+	{
+		if ( this != NEVER )
+			cancelled = true;
+	}
+}
@@ -34,8 +34,22 @@
 package net.imglib2.cache.queue;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.IntFunction;
 
 /**
@@ -48,12 +62,48 @@ import java.util.function.IntFunction;
  * </ol>
  * {@link FetcherThreads} are employed by the cache to
  * asynchronously load values.
+ * <p>
+ * Fetchers do not use {@code synchronized} blocks for pausing and waiting, so
+ * they can be run on virtual threads. On Java 21 and later, use
+ * {@link #createWithFactory(BlockingFetchQueues, int, ThreadFactory)} with
+ * {@code Thread.ofVirtual().name("Fetcher-", 0).factory()} to do so.
+ * <p>
+ * The number of fetcher threads is either fixed, or adapted to the observed
+ * load latency and throughput, see
+ * {@link #adaptive(BlockingFetchQueues, int, int, ThreadFactory)}.
+ * Alternatively, fetching can be run as tasks on a shared {@link Executor},
+ * see {@link #onExecutor(BlockingFetchQueues, int, Executor)}.
  *
  * @author Tobias Pietzsch
  */
 public class FetcherThreads
 {
-	private final ArrayList< Fetcher > fetchers;
+	/**
+	 * Set while the current thread runs requests taken from a fetch queue.
+	 */
+	private static final ThreadLocal< Boolean > fetching = new ThreadLocal<>();
+
+	private final BlockingFetchQueues< Callable< ? > > queue;
+
+	private final ThreadFactory threadFactory;
+
+	private final CopyOnWriteArrayList< Fetcher > fetchers = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Adapts the number of fetchers, or {@code null} if the number of fetchers
+	 * is fixed.
+	 */
+	private final Adaptive adaptive;
+
+	/**
+	 * Runs fetch tasks on an {@link Executor}, or {@code null} if fetching is
+	 * done by dedicated threads.
+	 */
+	private final Drain drain;
+
+	private volatile long pauseUntilTimeMillis = 0;
+
+	private volatile boolean shutdown = false;
 
 	/**
 	 * Create (and start) a set of fetcher threads.
@@ -82,14 +132,158 @@ public class FetcherThreads
 			final int numFetcherThreads,
 			final IntFunction< String > threadIndexToName )
 	{
-		fetchers = new ArrayList<>( numFetcherThreads );
-		for ( int i = 0; i < numFetcherThreads; ++i )
+		this( daemonThreadFactory( threadIndexToName ), queue, numFetcherThreads );
+	}
+
+	/**
+	 * Create (and start) a set of fetcher threads.
+	 * <p>
+	 * The threads are created by the given {@code threadFactory}. This can be
+	 * used to run fetchers on virtual threads, e.g., by passing
+	 * {@code Thread.ofVirtual().factory()} (Java 21 and later).
+	 *
+	 * @param queue the queue from which request keys are taken.
+	 * @param numFetcherThreads how many parallel fetcher threads to start.
+	 * @param threadFactory creates the fetcher threads.
+	 */
+	public static FetcherThreads createWithFactory(
+			final BlockingFetchQueues< Callable< ? > > queue,
+			final int numFetcherThreads,
+			final ThreadFactory threadFactory )
+	{
+		return new FetcherThreads( threadFactory, queue, numFetcherThreads );
+	}
+
+	/**
+	 * Create (and start) a set of fetcher threads, the number of which is
+	 * adapted between {@code minFetcherThreads} and {@code maxFetcherThreads}.
+	 * <p>
+	 * The pool starts with {@code minFetcherThreads} fetchers. Periodically,
+	 * the mean latency and the throughput of the loads completed in the
+	 * last period are evaluated:
+	 * <ul>
+	 * <li>If the latency exceeds twice the baseline (the lowest latency
+	 * observed recently), the loader is assumed to be saturated and the number
+	 * of fetchers is halved.</li>
+	 * <li>If the previous period added a fetcher but throughput did not
+	 * increase, that fetcher is removed again.</li>
+	 * <li>Otherwise, if requests are waiting in the {@code queue}, a fetcher is
+	 * added.</li>
+	 * </ul>
+	 * Removed fetchers stop taking requests from the queue. Their threads
+	 * terminate if they are not needed again within a minute.
+	 * <p>
+	 * The number of consumers of {@code queue} (see
+	 * {@link BlockingFetchQueues#setNumConsumers(int)}) is kept up to date
+	 * with the number of fetchers, so that {@link BlockingFetchQueues#pause()}
+	 * works as expected.
+	 *
+	 * @param queue the queue from which request keys are taken.
+	 * @param minFetcherThreads minimum number of parallel fetcher threads.
+	 * @param maxFetcherThreads maximum number of parallel fetcher threads.
+	 * @param threadFactory creates the fetcher threads.
+	 */
+	public static FetcherThreads adaptive(
+			final BlockingFetchQueues< Callable< ? > > queue,
+			final int minFetcherThreads,
+			final int maxFetcherThreads,
+			final ThreadFactory threadFactory )
+	{
+		if ( minFetcherThreads < 1 || maxFetcherThreads < minFetcherThreads )
+			throw new IllegalArgumentException( "expected 1 <= minFetcherThreads <= maxFetcherThreads" );
+		return new FetcherThreads( queue, minFetcherThreads, maxFetcherThreads, threadFactory );
+	}
+
+	/**
+	 * Fetch on the given {@code executor} instead of dedicated threads. Up to
+	 * {@code parallelism} tasks are submitted to the executor. Each task
+	 * {@link BlockingFetchQueues#poll() polls} requests from the queue and
+	 * loads them until the queue is empty, then it completes. New tasks are
+	 * submitted when requests are added to the queue.
+	 * <p>
+	 * This allows many caches to share one process-wide pool (such as a
+	 * {@code ForkJoinPool}, or an executor that starts a virtual thread per
+	 * task on Java 21 and later), instead of each cache starting its own
+	 * fetcher threads.
+	 * <p>
+	 * {@link #pauseUntil(long)}, {@link #wakeUp()}, {@link #shutdown()}, and
+	 * {@link BlockingFetchQueues#pause()} work as for dedicated threads,
+	 * except that a load that is in progress is not interrupted by
+	 * {@link #pauseUntil(long)}.
+	 *
+	 * @param queue the queue from which request keys are taken.
+	 * @param parallelism maximum number of concurrent fetch tasks.
+	 * @param executor runs the fetch tasks.
+	 */
+	public static FetcherThreads onExecutor(
+			final BlockingFetchQueues< Callable< ? > > queue,
+			final int parallelism,
+			final Executor executor )
+	{
+		if ( parallelism < 1 )
+			throw new IllegalArgumentException( "expected parallelism >= 1" );
+		return new FetcherThreads( executor, queue, parallelism );
+	}
+
+	/*
+	 * NB: The ThreadFactory (and the Executor below) come first, so that
+	 * lambdas passed to the public (queue, numFetcherThreads,
+	 * threadIndexToName) constructor are not ambiguous.
+	 */
+	private FetcherThreads(
+			final ThreadFactory threadFactory,
+			final BlockingFetchQueues< Callable< ? > > queue,
+			final int numFetcherThreads )
+	{
+		this.queue = queue;
+		this.threadFactory = threadFactory;
+		this.adaptive = null;
+		this.drain = null;
+		startFetchers( numFetcherThreads );
+	}
+
+	private FetcherThreads(
+			final BlockingFetchQueues< Callable< ? > > queue,
+			final int minFetcherThreads,
+			final int maxFetcherThreads,
+			final ThreadFactory threadFactory )
+	{
+		this.queue = queue;
+		this.threadFactory = threadFactory;
+		this.adaptive = new Adaptive( minFetcherThreads, maxFetcherThreads );
+		this.drain = null;
+		queue.setNumConsumers( minFetcherThreads );
+		startFetchers( minFetcherThreads );
+	}
+
+	private FetcherThreads(
+			final Executor executor,
+			final BlockingFetchQueues< Callable< ? > > queue,
+			final int parallelism )
+	{
+		this.queue = queue;
+		this.threadFactory = null;
+		this.adaptive = null;
+		this.drain = new Drain( parallelism, executor );
+		queue.setNumConsumers( 0 );
+		queue.setNotEmptyCallback( drain::schedule );
+		drain.schedule();
+	}
+
+	private void startFetchers( final int numFetchers )
+	{
+		final Fetcher[] added = new Fetcher[ numFetchers ];
+		for ( int i = 0; i < numFetchers; ++i )
+		{
+			final Fetcher f = new Fetcher( queue, adaptive );
+			f.pauseUntilTimeMillis = pauseUntilTimeMillis;
+			f.thread = threadFactory.newThread( f );
+			added[ i ] = f;
+		}
+		for ( final Fetcher f : added )
 		{
-			final Fetcher f = new Fetcher( queue );
-			f.setDaemon( true );
-			f.setName( threadIndexToName.apply( i ) );
 			fetchers.add( f );
-			f.start();
+			f.thread.start();
 		}
 	}
 
@@ -107,8 +301,11 @@ public class FetcherThreads
 	 */
 	public void pauseUntil( final long timeMillis )
 	{
+		pauseUntilTimeMillis = timeMillis;
 		for ( final Fetcher f : fetchers )
 			f.pauseUntil( timeMillis );
+		if ( drain != null )
+			drain.scheduleWakeUp();
 	}
 
 	/**
@@ -118,42 +315,517 @@ public class FetcherThreads
 	 */
 	public void wakeUp()
 	{
+		pauseUntilTimeMillis = 0;
 		for ( final Fetcher f : fetchers )
 			f.wakeUp();
+		if ( drain != null )
+			drain.schedule();
 	}
 
 	public void shutdown()
 	{
+		if ( adaptive != null )
+		{
+			adaptive.lock.lock();
+			try
+			{
+				shutdown = true;
+			}
+			finally
+			{
+				adaptive.lock.unlock();
+			}
+		}
+		else
+			shutdown = true;
 		for ( final Fetcher f : fetchers )
 			f.shutdown();
+		if ( drain != null )
+		{
+			queue.setNotEmptyCallback( null );
+			drain.shutdown();
+		}
+	}
+
+	/**
+	 * Returns the number of fetchers that currently take requests from the
+	 * queue.
+	 */
+	public int getNumFetchers()
+	{
+		if ( adaptive != null )
+			return adaptive.running;
+		if ( drain != null )
+			return drain.parallelism;
+		return fetchers.size();
+	}
+
+	/**
+	 * Returns {@code true} if the current thread is a fetcher thread, or an
+	 * executor thread that is currently running requests taken from a fetch
+	 * queue. Caches can use this to tell requests made by clients from the
+	 * loads that fetchers make on their behalf.
+	 */
+	public static boolean isFetcherThread()
+	{
+		return fetching.get() != null;
+	}
+
+	/**
+	 * If {@code loader} is a {@link BatchCallable}, remove requests that can
+	 * be batched with it from the {@code queue}, and return a
+	 * {@code Callable} that runs them all. Otherwise, return {@code loader}.
+	 */
+	static Callable< ? > batch( final BlockingFetchQueues< Callable< ? > > queue, final Callable< ? > loader )
+	{
+		if ( loader instanceof BatchCallable )
+		{
+			final BatchCallable first = ( BatchCallable ) loader;
+			final int maxBatchSize = first.maxBatchSize();
+			if ( maxBatchSize > 1 )
+			{
+				final List< Callable< ? > > batch = new ArrayList<>( maxBatchSize );
+				batch.add( loader );
+				if ( queue.drainTo( batch, maxBatchSize - 1, first.getPriority(), first::isBatchableWith ) > 0 )
+					return () -> {
+						first.callBatch( batch );
+						return null;
+					};
+			}
+		}
+		return loader;
+	}
+
+	private static ThreadFactory daemonThreadFactory( final IntFunction< String > threadIndexToName )
+	{
+		final int[] index = { 0 };
+		return r -> {
+			final Thread t = new Thread( r );
+			t.setDaemon( true );
+			t.setName( threadIndexToName.apply( index[ 0 ]++ ) );
+			return t;
+		};
+	}
+
+	/**
+	 * Adapts the number of running fetchers by AIMD (additive increase,
+	 * multiplicative decrease) on the latency and throughput of completed
+	 * loads.
+	 */
+	final class Adaptive
+	{
+		private static final long PERIOD_NANOS = 500_000_000L;
+
+		private static final long KEEP_ALIVE_NANOS = 60_000_000_000L;
+
+		/**
+		 * Guards {@link #target}, {@link #running}, {@link #parked}, and
+		 * starting new fetchers.
+		 */
+		final ReentrantLock lock = new ReentrantLock();
+
+		private final Condition resized = lock.newCondition();
+
+		private volatile int target;
+
+		/**
+		 * Number of fetchers that take requests from the queue.
+		 */
+		volatile int running;
+
+		/**
+		 * Number of fetchers waiting in {@link #admit(Fetcher)}.
+		 */
+		private int parked;
+
+		private final LongAdder numLoads = new LongAdder();
+
+		private final LongAdder loadNanos = new LongAdder();
+
+		private final AtomicLong nextAdaptation;
+
+		/**
+		 * Only accessed by the thread that won {@link #nextAdaptation}.
+		 */
+		private long lastAdaptation;
+
+		/**
+		 * Only accessed by the thread that won {@link #nextAdaptation}.
+		 */
+		private final Aimd aimd;
+
+		Adaptive( final int minFetchers, final int maxFetchers )
+		{
+			target = minFetchers;
+			running = minFetchers;
+			aimd = new Aimd( minFetchers, maxFetchers );
+			lastAdaptation = System.nanoTime();
+			nextAdaptation = new AtomicLong( lastAdaptation + PERIOD_NANOS );
+		}
+
+		/**
+		 * Called by a fetcher before it takes the next request. If more
+		 * fetchers are running than targeted, the fetcher waits until it is
+		 * needed again.
+		 *
+		 * @return {@code false} if the fetcher should terminate.
+		 */
+		boolean admit( final Fetcher fetcher )
+		{
+			if ( running <= target )
+				return true;
+
+			lock.lock();
+			try
+			{
+				if ( running <= target )
+					return true;
+
+				setRunning( running - 1 );
+				++parked;
+				long nanos = KEEP_ALIVE_NANOS;
+				while ( running >= target && !fetcher.shutdown )
+				{
+					if ( nanos <= 0 )
+					{
+						--parked;
+						fetchers.remove( fetcher );
+						return false;
+					}
+					try
+					{
+						nanos = resized.awaitNanos( nanos );
+					}
+					catch ( final InterruptedException e )
+					{}
+				}
+				--parked;
+				if ( fetcher.shutdown )
+					return false;
+				setRunning( running + 1 );
+				return true;
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Called by a fetcher after each load.
+		 */
+		void completed( final long nanos )
+		{
+			numLoads.increment();
+			loadNanos.add( nanos );
+			final long now = System.nanoTime();
+			final long next = nextAdaptation.get();
+			if ( now - next >= 0 && nextAdaptation.compareAndSet( next, now + PERIOD_NANOS ) )
+				adapt( now );
+		}
+
+		private void adapt( final long now )
+		{
+			final long n = numLoads.sumThenReset();
+			final long t = loadNanos.sumThenReset();
+			final long elapsed = now - lastAdaptation;
+			lastAdaptation = now;
+			final int current = target;
+			final int next = aimd.next( current, n, t, elapsed, !queue.isEmpty() );
+			if ( next != current )
+				resize( next );
+		}
+
+		private void resize( final int newTarget )
+		{
+			lock.lock();
+			try
+			{
+				if ( shutdown )
+					return;
+				target = newTarget;
+				if ( running < target )
+				{
+					if ( parked > 0 )
+						resized.signalAll();
+					final int numStart = target - running - parked;
+					if ( numStart > 0 )
+					{
+						setRunning( running + numStart );
+						startFetchers( numStart );
+					}
+				}
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+
+		private void setRunning( final int running )
+		{
+			this.running = running;
+			queue.setNumConsumers( running );
+		}
 	}
 
-	static final class Fetcher extends Thread
+	/**
+	 * The decision logic of {@link Adaptive}: computes the next target number
+	 * of fetchers from the loads completed in the last period. Not
+	 * thread-safe.
+	 */
+	static final class Aimd
+	{
+		private static final double CONGESTION_FACTOR = 2.0;
+
+		private final int minFetchers;
+
+		private final int maxFetchers;
+
+		private double baselineLatency;
+
+		private double lastThroughput;
+
+		private boolean increased;
+
+		Aimd( final int minFetchers, final int maxFetchers )
+		{
+			this.minFetchers = minFetchers;
+			this.maxFetchers = maxFetchers;
+		}
+
+		/**
+		 * Returns the target number of fetchers for the next period.
+		 *
+		 * @param current
+		 *            the current target number of fetchers.
+		 * @param numLoads
+		 *            number of loads completed in the last period.
+		 * @param loadNanos
+		 *            sum of the durations of these loads.
+		 * @param elapsedNanos
+		 *            duration of the last period.
+		 * @param queued
+		 *            whether requests are waiting in the queue.
+		 */
+		int next( final int current, final long numLoads, final long loadNanos, final long elapsedNanos, final boolean queued )
+		{
+			if ( numLoads == 0 || elapsedNanos <= 0 )
+				return current;
+
+			final double latency = ( double ) loadNanos / numLoads;
+			final double throughput = ( double ) numLoads / elapsedNanos;
+			if ( baselineLatency == 0 || latency < baselineLatency )
+				baselineLatency = latency;
+			else
+				baselineLatency += ( latency - baselineLatency ) / 16;
+
+			final int next;
+			if ( latency > CONGESTION_FACTOR * baselineLatency )
+				next = Math.max( minFetchers, current / 2 );
+			else if ( increased && throughput <= lastThroughput )
+				next = Math.max( minFetchers, current - 1 );
+			else if ( queued )
+				next = Math.min( maxFetchers, current + 1 );
+			else
+				next = current;
+
+			increased = next > current;
+			lastThroughput = throughput;
+			return next;
+		}
+	}
+
+	/**
+	 * Submits tasks to an {@link Executor} that poll and load requests until
+	 * the queue is empty.
+	 */
+	final class Drain
+	{
+		final int parallelism;
+
+		private final Executor executor;
+
+		private final AtomicInteger numTasks = new AtomicInteger();
+
+		private final AtomicBoolean wakeUpScheduled = new AtomicBoolean();
+
+		/**
+		 * Resumes fetching after {@link #pauseUntil(long)}. Its thread is
+		 * started when the first wake-up is scheduled, and it is shut down
+		 * with the fetchers.
+		 */
+		private final ScheduledExecutorService timer;
+
+		Drain( final int parallelism, final Executor executor )
+		{
+			this.parallelism = parallelism;
+			this.executor = executor;
+			this.timer = Executors.newSingleThreadScheduledExecutor( r -> {
+				final Thread t = new Thread( r, "FetcherThreads-timer" );
+				t.setDaemon( true );
+				return t;
+			} );
+		}
+
+		/**
+		 * Submit a task, unless {@code parallelism} tasks are running already
+		 * or fetching is paused.
+		 */
+		void schedule()
+		{
+			if ( shutdown || queue.isPaused() )
+				return;
+			if ( pauseUntilTimeMillis > System.currentTimeMillis() )
+			{
+				scheduleWakeUp();
+				return;
+			}
+			while ( true )
+			{
+				final int c = numTasks.get();
+				if ( c >= parallelism )
+					return;
+				if ( numTasks.compareAndSet( c, c + 1 ) )
+					break;
+			}
+			try
+			{
+				executor.execute( this::run );
+			}
+			catch ( final RuntimeException e )
+			{
+				numTasks.decrementAndGet();
+				throw e;
+			}
+		}
+
+		/**
+		 * Schedule a task for when {@link #pauseUntil(long)} expires.
+		 */
+		void scheduleWakeUp()
+		{
+			final long delay = pauseUntilTimeMillis - System.currentTimeMillis();
+			if ( delay > 0 && !shutdown && wakeUpScheduled.compareAndSet( false, true ) )
+			{
+				try
+				{
+					timer.schedule( () -> {
+						wakeUpScheduled.set( false );
+						schedule();
+					}, delay, TimeUnit.MILLISECONDS );
+				}
+				catch ( final RejectedExecutionException e )
+				{
+					// shut down concurrently
+				}
+			}
+		}
+
+		void shutdown()
+		{
+			timer.shutdownNow();
+		}
+
+		private void run()
+		{
+			queue.registerConsumer();
+			fetching.set( Boolean.TRUE );
+			try
+			{
+				while ( !shutdown && pauseUntilTimeMillis <= System.currentTimeMillis() )
+				{
+					final Callable< ? > polled = queue.poll();
+					if ( polled == null )
+						break;
+					final Callable< ? > loader = batch( queue, polled );
+					try
+					{
+						loader.call();
+					}
+					catch ( final ExecutionException e )
+					{
+						if ( ! ( e.getCause() instanceof InterruptedException ) )
+							e.printStackTrace();
+					}
+					catch ( final InterruptedException e )
+					{
+						Thread.currentThread().interrupt();
+						break;
+					}
+					catch ( final Exception e )
+					{
+						e.printStackTrace();
+					}
+				}
+			}
+			finally
+			{
+				fetching.remove();
+				queue.deregisterConsumer();
+				numTasks.decrementAndGet();
+			}
+
+			// A request may have been added after the queue was found empty,
+			// but before the task count was decremented.
+			if ( !queue.isEmpty() )
+				schedule();
+		}
+	}
+
+	static final class Fetcher implements Runnable
 	{
 		private final BlockingFetchQueues< Callable< ? > > queue;
 
-		private final Object lock = new Object();
+		private final Adaptive adaptive;
+
+		private final ReentrantLock lock = new ReentrantLock();
+
+		private final Condition wake = lock.newCondition();
 
 		private volatile long pauseUntilTimeMillis = 0;
 
 		private volatile boolean shutdown = false;
 
+		Thread thread;
+
 		public Fetcher( final BlockingFetchQueues< Callable< ? > > queue )
+		{
+			this( queue, null );
+		}
+
+		Fetcher( final BlockingFetchQueues< Callable< ? > > queue, final Adaptive adaptive )
 		{
 			this.queue = queue;
+			this.adaptive = adaptive;
 		}
 
 		@Override
 		public final void run()
+		{
+			fetching.set( Boolean.TRUE );
+			try
+			{
+				fetch();
+			}
+			finally
+			{
+				fetching.remove();
+			}
+		}
+
+		private void fetch()
 		{
 			Callable< ? > loader = null;
 			while ( true )
 			{
+				if ( adaptive != null && loader == null && !adaptive.admit( this ) )
+					return;
 				while ( loader == null )
 				{
 					try
 					{
-						loader = queue.take();
+						loader = batch( queue, queue.take() );
 					}
 					catch ( final InterruptedException e )
 					{}
@@ -163,19 +835,22 @@ public class FetcherThreads
 				long waitMillis = pauseUntilTimeMillis - System.currentTimeMillis();
 				while ( waitMillis > 0 )
 				{
+					lock.lock();
 					try
 					{
-						synchronized ( lock )
-						{
-							lock.wait( waitMillis );
-						}
+						wake.await( waitMillis, TimeUnit.MILLISECONDS );
 					}
 					catch ( final InterruptedException e )
 					{}
+					finally
+					{
+						lock.unlock();
+					}
 					if ( shutdown )
 						return;
 					waitMillis = pauseUntilTimeMillis - System.currentTimeMillis();
 				}
+				final long t0 = System.nanoTime();
 				try
 				{
 					loader.call();
@@ -192,6 +867,8 @@ public class FetcherThreads
 				{
 					e.printStackTrace();
 				}
+				if ( adaptive != null && loader == null )
+					adaptive.completed( System.nanoTime() - t0 );
 				if ( shutdown )
 					return;
 			}
@@ -200,22 +877,27 @@ public class FetcherThreads
 		public void pauseUntil( final long timeMillis )
 		{
 			pauseUntilTimeMillis = timeMillis;
-			interrupt();
+			thread.interrupt();
 		}
 
 		public void wakeUp()
 		{
 			pauseUntilTimeMillis = 0;
-			synchronized ( lock )
+			lock.lock();
+			try
+			{
+				wake.signal();
+			}
+			finally
 			{
-				lock.notify();
+				lock.unlock();
 			}
 		}
 
 		public void shutdown()
 		{
 			shutdown = true;
-			interrupt();
+			thread.interrupt();
 		}
 	}
 }
@@ -34,18 +34,39 @@
 package net.imglib2.cache.ref;
 
 import java.lang.ref.SoftReference;
-import java.util.LinkedHashMap;
-import java.util.Map.Entry;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Predicate;
 
 import net.imglib2.cache.CacheLoader;
 import net.imglib2.cache.LoaderCache;
+import net.imglib2.cache.RemovalCause;
+import net.imglib2.cache.RemovalListener;
+import net.imglib2.cache.stats.CacheStats;
 
 /**
  * A cache that forwards to some other cache (usually
  * {@link WeakRefLoaderCache}) and additionally keeps {@link SoftReference}s to
- * the <em>N</em> most recently accessed values.
+ * <em>N</em> frequently and recently accessed values.
+ * <p>
+ * Which values are retained is decided by a W-TinyLFU policy: Newly accessed
+ * values enter a small window (1% of <em>N</em>). Values evicted from the
+ * window are admitted to the main region only if they have been accessed more
+ * often (as estimated by a {@link FrequencySketch}) than the value they would
+ * replace. This makes the cache resistant to pollution by one-off scans over
+ * many values. Scans can additionally be excluded entirely by running them
+ * with {@link BulkAccess}.
+ * <p>
+ * Both regions approximate LRU order with the CLOCK algorithm, so that a hit
+ * only sets a flag and does not need to take a lock. Invalidated values are
+ * only marked as removed, and are dropped from their region when the clock
+ * hand passes over them, so that invalidation does not need to search the
+ * regions.
+ * <p>
+ * With {@code maxSoftRefs == 0}, no values are retained.
  *
  * @param <K>
  *            key type
@@ -60,16 +81,22 @@ public class BoundedSoftRefLoaderCache< K, V > implements LoaderCache< K, V >
 
 	private final BoundedSoftRefLoaderCache< K, V >.SoftRefs softRefs;
 
+	/**
+	 * {@link #cache} if it is a {@link WeakRefLoaderCache}, which is told
+	 * about evictions. Otherwise {@code null}.
+	 */
+	private final WeakRefLoaderCache< K, V > weakCache;
+
 	public BoundedSoftRefLoaderCache( final int maxSoftRefs, final LoaderCache< K, V > cache )
 	{
 		this.cache = cache;
+		this.weakCache = cache instanceof WeakRefLoaderCache ? ( WeakRefLoaderCache< K, V > ) cache : null;
 		this.softRefs = new SoftRefs( maxSoftRefs );
 	}
 
 	public BoundedSoftRefLoaderCache( final int maxSoftRefs )
 	{
-		this.cache = new WeakRefLoaderCache<>();
-		this.softRefs = new SoftRefs( maxSoftRefs );
+		this( maxSoftRefs, new WeakRefLoaderCache<>() );
 	}
 
 	@Override
@@ -112,7 +139,7 @@ public class BoundedSoftRefLoaderCache< K, V > implements LoaderCache< K, V >
 	public void invalidateIf( final long parallelismThreshold, final Predicate< K > condition )
 	{
 		cache.invalidateIf( parallelismThreshold, condition );
-		softRefs.keySet().removeIf( condition );
+		softRefs.removeIf( condition );
 	}
 
 	@Override
@@ -122,43 +149,260 @@ public class BoundedSoftRefLoaderCache< K, V > implements LoaderCache< K, V >
 		cache.invalidateAll( parallelismThreshold );
 	}
 
-	class SoftRefs extends LinkedHashMap< K, SoftReference< V > >
+	/**
+	 * Register a listener with the backing cache. If the backing cache is a
+	 * {@link WeakRefLoaderCache} (the default), values that are
+	 * garbage-collected after they were evicted from the bounded set of soft
+	 * references are reported as {@link RemovalCause#EVICTED}, other values as
+	 * {@link RemovalCause#COLLECTED}.
+	 */
+	@Override
+	public void addRemovalListener( final RemovalListener< ? super K, ? super V > listener, final Executor executor )
+	{
+		cache.addRemovalListener( listener, executor );
+	}
+
+	@Override
+	public void removeRemovalListener( final RemovalListener< ? super K, ? super V > listener )
 	{
-		private static final long serialVersionUID = 1L;
+		cache.removeRemovalListener( listener );
+	}
 
+	/**
+	 * Returns the statistics of the backing cache.
+	 */
+	@Override
+	public CacheStats stats()
+	{
+		return cache.stats();
+	}
+
+	static final class Node< K, V >
+	{
+		final K key;
+
+		volatile SoftReference< V > ref;
+
+		/**
+		 * Set on every hit, cleared when the clock hand passes over this node.
+		 */
+		volatile boolean referenced;
+
+		Node( final K key, final V value )
+		{
+			this.key = key;
+			this.ref = new SoftReference<>( value );
+		}
+	}
+
+	class SoftRefs
+	{
 		private final int maxSoftRefs;
 
+		private final int maxWindow;
+
+		private final int maxMain;
+
+		private final ConcurrentHashMap< K, Node< K, V > > map;
+
+		/**
+		 * Admission window, as a clock ring. The head is the current position
+		 * of the clock hand.
+		 */
+		private final ArrayDeque< Node< K, V > > window;
+
+		/**
+		 * Main region, as a clock ring. The head is the current position of
+		 * the clock hand.
+		 */
+		private final ArrayDeque< Node< K, V > > main;
+
+		private final FrequencySketch sketch;
+
+		/**
+		 * Guards {@link #window}, {@link #main}, and structural modifications
+		 * of {@link #map}. Not required for hits.
+		 */
+		private final ReentrantLock lock = new ReentrantLock();
+
 		public SoftRefs( final int maxSoftRefs )
 		{
-			super( maxSoftRefs, 0.75f, true );
 			this.maxSoftRefs = maxSoftRefs;
+			maxWindow = Math.max( 1, maxSoftRefs / 100 );
+			maxMain = Math.max( 0, maxSoftRefs - maxWindow );
+			map = new ConcurrentHashMap<>( maxSoftRefs + 1 );
+			window = new ArrayDeque<>( maxWindow + 1 );
+			main = new ArrayDeque<>( maxMain + 1 );
+			sketch = new FrequencySketch( maxSoftRefs );
+		}
+
+		void touch( final K key, final V value )
+		{
+			if ( maxSoftRefs <= 0 || BulkAccess.isActive() )
+				return;
+
+			final Node< K, V > node = map.get( key );
+			if ( node != null && node.ref.get() != null )
+			{
+				// Count at most one access per revolution of the clock hand,
+				// so that repeated hits on a hot value do not write to shared
+				// memory.
+				if ( !node.referenced )
+				{
+					node.referenced = true;
+					sketch.increment( key );
+				}
+				return;
+			}
+
+			sketch.increment( key );
+			lock.lock();
+			try
+			{
+				insert( key, value );
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+
+		private void insert( final K key, final V value )
+		{
+			Node< K, V > node = map.get( key );
+			if ( node != null )
+			{
+				if ( node.ref.get() == null )
+					node.ref = new SoftReference<>( value );
+				node.referenced = true;
+				return;
+			}
+
+			if ( weakCache != null )
+				weakCache.setEvicted( key, value, false );
+			node = new Node<>( key, value );
+			map.put( key, node );
+			window.add( node );
+			if ( window.size() > maxWindow )
+				admit( sweep( window ) );
 		}
 
-		@Override
-		protected boolean removeEldestEntry( final Entry< K, SoftReference< V > > eldest )
+		/**
+		 * Advance the clock hand of {@code region} to the first node that has
+		 * not been referenced since the hand last passed it (or whose value
+		 * has been garbage-collected or invalidated), and remove that node
+		 * from the region.
+		 * Referenced nodes that the hand passes get a second chance.
+		 */
+		private Node< K, V > sweep( final ArrayDeque< Node< K, V > > region )
 		{
-			if ( size() > maxSoftRefs )
+			while ( true )
+			{
+				final Node< K, V > node = region.poll();
+				if ( node.referenced && node.ref.get() != null )
+				{
+					node.referenced = false;
+					region.add( node );
+				}
+				else
+					return node;
+			}
+		}
+
+		/**
+		 * Move a candidate evicted from the window to the main region, if it
+		 * is accessed more frequently than the main region's victim.
+		 */
+		private void admit( final Node< K, V > candidate )
+		{
+			if ( candidate.ref.get() == null )
+			{
+				evict( candidate );
+				return;
+			}
+
+			if ( main.size() < maxMain )
+			{
+				main.add( candidate );
+				return;
+			}
+
+			if ( maxMain > 0 )
 			{
-				eldest.getValue().clear();
-				return true;
+				final Node< K, V > victim = sweep( main );
+				if ( victim.ref.get() == null || sketch.frequency( candidate.key ) > sketch.frequency( victim.key ) )
+				{
+					evict( victim );
+					main.add( candidate );
+					return;
+				}
+				main.addFirst( victim );
 			}
-			else
-				return false;
+			evict( candidate );
 		}
 
-		synchronized void touch( final K key, final V value )
+		private void evict( final Node< K, V > node )
 		{
-			final SoftReference< V > ref = get( key );
-			if ( ref == null || ref.get() == null )
-				put( key, new SoftReference<>( value ) );
+			map.remove( node.key, node );
+			final V value = node.ref.get();
+			if ( value != null && weakCache != null )
+				weakCache.setEvicted( node.key, value, true );
+			node.ref.clear();
 		}
 
-		@Override
-		public synchronized void clear()
+		/**
+		 * Remove the node for {@code key} from the map, and clear its
+		 * reference. The node stays in its region until the clock hand passes
+		 * over it.
+		 */
+		void remove( final K key )
 		{
-			for ( final SoftReference< V > ref : values() )
-				ref.clear();
-			super.clear();
+			lock.lock();
+			try
+			{
+				final Node< K, V > node = map.remove( key );
+				if ( node != null )
+					node.ref.clear();
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+
+		void removeIf( final Predicate< K > condition )
+		{
+			lock.lock();
+			try
+			{
+				map.values().removeIf( node -> {
+					if ( !condition.test( node.key ) )
+						return false;
+					node.ref.clear();
+					return true;
+				} );
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+
+		void clear()
+		{
+			lock.lock();
+			try
+			{
+				for ( final Node< K, V > node : map.values() )
+					node.ref.clear();
+				map.clear();
+				window.clear();
+				main.clear();
+			}
+			finally
+			{
+				lock.unlock();
+			}
 		}
 	}
 }
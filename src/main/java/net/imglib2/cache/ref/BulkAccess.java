@@ -0,0 +1,124 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.ref;
+
+import java.util.concurrent.Callable;
+
+import net.imglib2.cache.volatiles.CacheHints;
+
+/**
+ * Marks cache accesses of the current thread as a bulk sweep. While bulk
+ * access is active, bounded caches ({@link BoundedSoftRefLoaderCache},
+ * {@link GuardedStrongRefLoaderCache}, {@link GuardedStrongRefLoaderRemoverCache})
+ * do not promote accessed or loaded values into their strongly (or softly)
+ * referenced tier, and do not count the accesses towards the frequency
+ * estimates of their eviction policy. Values are still returned as usual, and
+ * they stay in the cache as long as they are referenced elsewhere.
+ * <p>
+ * Use this for one-off passes over a large image (for example, computing a
+ * histogram of a {@code CachedCellImg}), so that the pass does not flush the
+ * working set of interactive use. Bulk access is a property of the current
+ * thread. If the sweep is multi-threaded, each worker has to enable it.
+ * <p>
+ * For volatile caches, the same behaviour can be requested per access through
+ * {@link CacheHints#isPromote()}.
+ *
+ * @author Tobias Pietzsch
+ */
+public final class BulkAccess
+{
+	private static final ThreadLocal< boolean[] > active = ThreadLocal.withInitial( () -> new boolean[ 1 ] );
+
+	/**
+	 * Run {@code task} on the current thread with bulk access enabled.
+	 */
+	public static void run( final Runnable task )
+	{
+		final boolean[] flag = active.get();
+		final boolean previous = flag[ 0 ];
+		flag[ 0 ] = true;
+		try
+		{
+			task.run();
+		}
+		finally
+		{
+			flag[ 0 ] = previous;
+		}
+	}
+
+	/**
+	 * Call {@code task} on the current thread with bulk access enabled.
+	 *
+	 * @return the result of {@code task}.
+	 */
+	public static < T > T call( final Callable< T > task ) throws Exception
+	{
+		final boolean[] flag = active.get();
+		final boolean previous = flag[ 0 ];
+		flag[ 0 ] = true;
+		try
+		{
+			return task.call();
+		}
+		finally
+		{
+			flag[ 0 ] = previous;
+		}
+	}
+
+	/**
+	 * Returns {@code true} if bulk access is enabled for the current thread.
+	 */
+	public static boolean isActive()
+	{
+		return active.get()[ 0 ];
+	}
+
+	/**
+	 * Enable or disable bulk access for the current thread.
+	 *
+	 * @return the previous state, to be restored by the caller.
+	 */
+	static boolean setActive( final boolean bulk )
+	{
+		final boolean[] flag = active.get();
+		final boolean previous = flag[ 0 ];
+		flag[ 0 ] = bulk;
+		return previous;
+	}
+
+	private BulkAccess()
+	{}
+}
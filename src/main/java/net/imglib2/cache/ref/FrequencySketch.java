@@ -0,0 +1,179 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.ref;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A probabilistic estimate of how often keys have been accessed recently. This
+ * is a count-min sketch with four 4-bit counters per key, packed into a
+ * {@code long[]} table. To keep the sketch focused on recent history, all
+ * counters are halved after a number of increments proportional to the
+ * capacity of the cache it is used for.
+ * <p>
+ * Used by {@link BoundedSoftRefLoaderCache} to decide whether a candidate
+ * value should be admitted to the cache at the expense of the victim chosen
+ * by the eviction policy (TinyLFU admission).
+ * <p>
+ * This class is thread-safe. Each counter is incremented by a single
+ * compare-and-set of the {@code long} that contains it, so that a saturated
+ * counter never overflows into its neighbour. Halving is done word by word,
+ * also by compare-and-set, by the one thread whose increment reached the
+ * sample size. Increments that happen while the counters are being halved may
+ * or may not be halved, which only makes the estimate slightly less accurate.
+ *
+ * @author Tobias Pietzsch
+ */
+final class FrequencySketch
+{
+	private static final long[] SEEDS = {
+			0xc3a5c85c97cb3127L,
+			0xb492b66fbe98f273L,
+			0x9ae16a3b2f90404fL,
+			0xcbf29ce484222325L };
+
+	private static final long RESET_MASK = 0x7777777777777777L;
+
+	private static final long ONE_MASK = 0x1111111111111111L;
+
+	private final AtomicLongArray table;
+
+	private final int tableMask;
+
+	private final int sampleSize;
+
+	private final AtomicInteger size = new AtomicInteger();
+
+	/**
+	 * @param maximumSize
+	 *            the maximum number of entries of the cache that this sketch
+	 *            is used for.
+	 */
+	FrequencySketch( final long maximumSize )
+	{
+		final int capacity = ( int ) Math.max( 1, Math.min( maximumSize, 1 << 30 ) );
+		table = new AtomicLongArray( capacity <= 1 ? 1 : Integer.highestOneBit( capacity - 1 ) << 1 );
+		tableMask = table.length() - 1;
+		sampleSize = ( int ) Math.min( 10L * capacity, Integer.MAX_VALUE );
+	}
+
+	/**
+	 * Returns the estimated number of occurrences of {@code key}, up to a
+	 * maximum of 15.
+	 */
+	int frequency( final Object key )
+	{
+		final int hash = spread( key.hashCode() );
+		final int start = ( hash & 3 ) << 2;
+		int frequency = Integer.MAX_VALUE;
+		for ( int i = 0; i < 4; ++i )
+		{
+			final int index = indexOf( hash, i );
+			final int count = ( int ) ( ( table.get( index ) >>> ( ( start + i ) << 2 ) ) & 0xfL );
+			frequency = Math.min( frequency, count );
+		}
+		return frequency;
+	}
+
+	/**
+	 * Increment the estimated number of occurrences of {@code key}. If the
+	 * number of increments reaches the sample size, all counters are halved.
+	 */
+	void increment( final Object key )
+	{
+		final int hash = spread( key.hashCode() );
+		final int start = ( hash & 3 ) << 2;
+		boolean added = false;
+		for ( int i = 0; i < 4; ++i )
+			added |= incrementAt( indexOf( hash, i ), start + i );
+		if ( added && size.incrementAndGet() == sampleSize )
+			reset();
+	}
+
+	/**
+	 * Increment counter {@code j} of {@code table[i]}, unless it is saturated.
+	 */
+	private boolean incrementAt( final int i, final int j )
+	{
+		final int offset = j << 2;
+		final long mask = 0xfL << offset;
+		while ( true )
+		{
+			final long word = table.get( i );
+			if ( ( word & mask ) == mask )
+				return false;
+			if ( table.compareAndSet( i, word, word + ( 1L << offset ) ) )
+				return true;
+		}
+	}
+
+	/**
+	 * Halve all counters. Only the thread whose increment made {@link #size}
+	 * reach {@link #sampleSize} calls this, and {@code size} does not reach
+	 * {@code sampleSize} again before it is reduced at the end.
+	 */
+	private void reset()
+	{
+		int odd = 0;
+		for ( int i = 0; i < table.length(); ++i )
+		{
+			while ( true )
+			{
+				final long word = table.get( i );
+				if ( table.compareAndSet( i, word, ( word >>> 1 ) & RESET_MASK ) )
+				{
+					odd += Long.bitCount( word & ONE_MASK );
+					break;
+				}
+			}
+		}
+		final int lost = odd >>> 2;
+		size.updateAndGet( s -> Math.max( 0, ( s >>> 1 ) - lost ) );
+	}
+
+	private int indexOf( final int hash, final int i )
+	{
+		long h = ( hash + SEEDS[ i ] ) * SEEDS[ i ];
+		h += h >>> 32;
+		return ( int ) h & tableMask;
+	}
+
+	private static int spread( int x )
+	{
+		x = ( ( x >>> 16 ) ^ x ) * 0x45d9f3b;
+		x = ( ( x >>> 16 ) ^ x ) * 0x45d9f3b;
+		return ( x >>> 16 ) ^ x;
+	}
+}
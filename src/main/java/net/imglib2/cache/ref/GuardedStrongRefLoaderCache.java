@@ -40,10 +40,18 @@ import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Predicate;
 
+import net.imglib2.cache.BatchedValueLoader;
 import net.imglib2.cache.CacheLoader;
 import net.imglib2.cache.LoaderCache;
+import net.imglib2.cache.RemovalCause;
+import net.imglib2.cache.RemovalListener;
+import net.imglib2.cache.stats.CacheStats;
+import net.imglib2.cache.stats.CacheTracing;
+import net.imglib2.cache.stats.StatsCounter;
 
 /**
  * A {@link LoaderCache} that is backed by a cache with strong references to
@@ -57,6 +65,12 @@ import net.imglib2.cache.LoaderCache;
  * where two distinct values are associated to the same key (associated
  * conceptually by the application, not by the cache map).
  * </p>
+ * <p>
+ * The backing cache evicts using W-TinyLFU, which protects frequently used
+ * values from being flushed by one-off scans. Scans running with
+ * {@link BulkAccess} do not touch the backing cache at all: Values they load
+ * are only weakly referenced, and hits do not count towards frequency.
+ * </p>
  *
  * @param <K>
  *            key type
@@ -71,6 +85,10 @@ public class GuardedStrongRefLoaderCache< K, V > implements LoaderCache< K, V >
 
 	final ReferenceQueue< V > queue = new ReferenceQueue<>();
 
+	final StatsCounter stats = new StatsCounter();
+
+	final RemovalListeners< K, V > listeners = new RemovalListeners<>();
+
 	final Cache< K, V > strongCache;
 
 	static final class CacheWeakReference< V > extends WeakReference< V >
@@ -98,6 +116,15 @@ public class GuardedStrongRefLoaderCache< K, V > implements LoaderCache< K, V >
 
 		boolean loaded;
 
+		/**
+		 * Set when the value is evicted from the strongly referenced set. When
+		 * it is garbage-collected afterwards, this is reported as
+		 * {@link RemovalCause#EVICTED}.
+		 */
+		volatile boolean evicted;
+
+		final ReentrantLock lock = new ReentrantLock();
+
 		public Entry( final K key )
 		{
 			this.key = key;
@@ -120,41 +147,79 @@ public class GuardedStrongRefLoaderCache< K, V > implements LoaderCache< K, V >
 		{
 			map.remove( key, this );
 		}
+
+		/**
+		 * Remove this entry after its value was garbage-collected.
+		 */
+		void collected()
+		{
+			remove();
+			stats.recordEviction();
+			CacheTracing.evicted( key );
+			listeners.notify( key, null, evicted ? RemovalCause.EVICTED : RemovalCause.COLLECTED );
+		}
 	}
 
 	public GuardedStrongRefLoaderCache( final long maximumSize )
 	{
-		strongCache = Caffeine.newBuilder().maximumSize( maximumSize ).build();
+		strongCache = Caffeine.newBuilder()
+				.maximumSize( maximumSize )
+				.< K, V >evictionListener( ( key, value, cause ) -> evicted( key, value ) )
+				.build();
+	}
+
+	/**
+	 * Called when {@code value} is evicted from the strongly referenced set.
+	 */
+	private void evicted( final K key, final V value )
+	{
+		final Entry entry = map.get( key );
+		if ( entry != null && entry.getValue() == value )
+			entry.evicted = true;
 	}
 
 	@Override
 	public V getIfPresent( final K key )
 	{
 		cleanUp();
-		final V value = strongCache.getIfPresent( key );
+		V value = getStrong( key );
+		if ( value == null )
+		{
+			final Entry entry = map.get( key );
+			value = entry == null ? null : entry.getValue();
+		}
 		if ( value != null )
-			return value;
-		final Entry entry = map.get( key );
-		return entry == null ? null : entry.getValue();
+			stats.recordHit();
+		else
+			stats.recordMiss();
+		return value;
 	}
 
 	@Override
 	public V get( final K key, final CacheLoader< ? super K, ? extends V > loader ) throws ExecutionException
 	{
 		cleanUp();
-		V value = strongCache.getIfPresent( key );
+		V value = getStrong( key );
 		if ( value != null )
+		{
+			stats.recordHit();
 			return value;
+		}
 		final Entry entry = map.computeIfAbsent( key, ( k ) -> new Entry( k ) );
 		value = entry.getValue();
-		if ( value == null )
+		if ( value != null )
+			stats.recordHit();
+		else
 		{
-			synchronized ( entry )
+			entry.lock.lock();
+			try
 			{
 				if ( entry.loaded )
 				{
 					value = entry.getValue();
-					if ( value == null )
+					if ( value != null )
+						stats.recordHit();
+					else
 					{
 						/*
 						 * The entry was already loaded, but its value has been
@@ -166,23 +231,39 @@ public class GuardedStrongRefLoaderCache< K, V > implements LoaderCache< K, V >
 				}
 				else
 				{
+					stats.recordMiss();
+					final long loadStart = System.nanoTime();
 					try
 					{
 						value = loader.get( key );
+						final long loadTime = System.nanoTime() - loadStart + BatchedValueLoader.loadTimeShare( loader );
+						stats.recordLoadSuccess( loadTime );
+						CacheTracing.loaded( key, loadTime, true );
 						entry.setValue( value );
-						strongCache.put( key, value );
+						if ( !BulkAccess.isActive() )
+							strongCache.put( key, value );
 					}
 					catch ( final InterruptedException e )
 					{
+						final long loadTime = System.nanoTime() - loadStart;
+						stats.recordLoadFailure( loadTime );
+						CacheTracing.loaded( key, loadTime, false );
 						Thread.currentThread().interrupt();
 						throw new ExecutionException( e );
 					}
 					catch ( final Exception e )
 					{
+						final long loadTime = System.nanoTime() - loadStart;
+						stats.recordLoadFailure( loadTime );
+						CacheTracing.loaded( key, loadTime, false );
 						throw new ExecutionException( e );
 					}
 				}
 			}
+			finally
+			{
+				entry.lock.unlock();
+			}
 		}
 		return value;
 	}
@@ -208,7 +289,12 @@ public class GuardedStrongRefLoaderCache< K, V > implements LoaderCache< K, V >
 			strongCache.invalidate( key );
 			final CacheWeakReference< V > ref = entry.ref;
 			if ( ref != null )
+			{
+				final V value = ref.get();
+				if ( value != null )
+					listeners.notify( entry.key, value, RemovalCause.INVALIDATED );
 				ref.clear();
+			}
 			entry.ref = null;
 		}
 	}
@@ -224,7 +310,12 @@ public class GuardedStrongRefLoaderCache< K, V > implements LoaderCache< K, V >
 				entry.remove();
 				final CacheWeakReference< V > ref = entry.ref;
 				if ( ref != null )
+				{
+					final V value = ref.get();
+					if ( value != null )
+						listeners.notify( entry.key, value, RemovalCause.INVALIDATED );
 					ref.clear();
+				}
 				entry.ref = null;
 			}
 		} );
@@ -240,12 +331,54 @@ public class GuardedStrongRefLoaderCache< K, V > implements LoaderCache< K, V >
 			entry.remove();
 			final CacheWeakReference< V > ref = entry.ref;
 			if ( ref != null )
+			{
+				final V value = ref.get();
+				if ( value != null )
+					listeners.notify( entry.key, value, RemovalCause.INVALIDATED );
 				ref.clear();
+			}
 			entry.ref = null;
 		} );
 		strongCache.invalidateAll();
 	}
 
+	/**
+	 * Get value from the backing cache, without recording the access if
+	 * {@link BulkAccess} is active.
+	 */
+	private V getStrong( final K key )
+	{
+		return BulkAccess.isActive()
+				? strongCache.policy().getIfPresentQuietly( key )
+				: strongCache.getIfPresent( key );
+	}
+
+	/**
+	 * Register a listener that is notified on {@code executor} when entries
+	 * are removed from this cache. Values that are garbage-collected after
+	 * they were evicted from the strongly referenced set are reported as
+	 * {@link RemovalCause#EVICTED}, values that were never in the strongly
+	 * referenced set (because they were loaded with {@link BulkAccess}) as
+	 * {@link RemovalCause#COLLECTED}, both with a {@code null} value.
+	 */
+	@Override
+	public void addRemovalListener( final RemovalListener< ? super K, ? super V > listener, final Executor executor )
+	{
+		listeners.add( listener, executor );
+	}
+
+	@Override
+	public void removeRemovalListener( final RemovalListener< ? super K, ? super V > listener )
+	{
+		listeners.remove( listener );
+	}
+
+	@Override
+	public CacheStats stats()
+	{
+		return stats.snapshot();
+	}
+
 	/**
 	 * Remove entries from the cache whose references have been
 	 * garbage-collected.
@@ -258,7 +391,7 @@ public class GuardedStrongRefLoaderCache< K, V > implements LoaderCache< K, V >
 			final CacheWeakReference< V > poll = ( CacheWeakReference< V > ) queue.poll();
 			if ( poll == null )
 				break;
-			poll.entry.remove();
+			poll.entry.collected();
 		}
 	}
 }
@@ -42,12 +42,19 @@ import java.lang.ref.WeakReference;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Predicate;
 
 import java.util.stream.Collectors;
 import net.imglib2.cache.CacheLoader;
 import net.imglib2.cache.CacheRemover;
 import net.imglib2.cache.LoaderRemoverCache;
+import net.imglib2.cache.RemovalCause;
+import net.imglib2.cache.RemovalListener;
+import net.imglib2.cache.stats.CacheStats;
+import net.imglib2.cache.stats.CacheTracing;
+import net.imglib2.cache.stats.StatsCounter;
 
 /**
  * A {@link LoaderRemoverCache} that is backed by a cache with strong references to
@@ -62,6 +69,12 @@ import net.imglib2.cache.LoaderRemoverCache;
  * conceptually by the application, not by the cache map).
  * </p>
  * <p>
+ * The backing cache evicts using W-TinyLFU, which protects frequently used
+ * values from being flushed by one-off scans. Scans running with
+ * {@link BulkAccess} do not touch the backing cache at all: Values they load
+ * are only weakly referenced, and hits do not count towards frequency.
+ * </p>
+ * <p>
  * TODO: Consider periodically calling {@link #cleanUp()} from a background
  * thread. Otherwise, freeing memory depends on the cache being regularly used.
  * (This is different for PhantomRefs than for Weak/SoftRefs. PhantomRefs must
@@ -83,6 +96,10 @@ public class GuardedStrongRefLoaderRemoverCache< K, V, D > implements LoaderRemo
 
 	final ReferenceQueue< V > queue = new ReferenceQueue<>();
 
+	final StatsCounter stats = new StatsCounter();
+
+	final RemovalListeners< K, V > listeners = new RemovalListeners<>();
+
 	final Cache< K, V > strongCache;
 
 	static final class CachePhantomReference< V > extends PhantomReference< V >
@@ -108,8 +125,17 @@ public class GuardedStrongRefLoaderRemoverCache< K, V, D > implements LoaderRemo
 
 		boolean loaded;
 
+		/**
+		 * Set when the value is evicted from the strongly referenced set. When
+		 * it is garbage-collected afterwards, this is reported as
+		 * {@link RemovalCause#EVICTED}.
+		 */
+		volatile boolean evicted;
+
 		private D valueData;
 
+		final ReentrantLock lock = new ReentrantLock();
+
 		public Entry( final K key )
 		{
 			this.key = key;
@@ -133,54 +159,90 @@ public class GuardedStrongRefLoaderRemoverCache< K, V, D > implements LoaderRemo
 			this.valueData = remover.extract( value );
 		}
 
-		public synchronized void remove()
+		public void remove()
 		{
-			if ( remover != null )
+			lock.lock();
+			try
 			{
-				phantomRef.clear(); // TODO: probably not necessary with Java 10 anymore
-				phantomRef = null;
-				remover.onRemoval( key, valueData );
-				remover = null;
-				valueData = null;
+				if ( remover != null )
+				{
+					phantomRef.clear(); // TODO: probably not necessary with Java 10 anymore
+					phantomRef = null;
+					remover.onRemoval( key, valueData );
+					remover = null;
+					valueData = null;
+					listeners.notify( key, null, evicted ? RemovalCause.EVICTED : RemovalCause.COLLECTED );
 
+				}
+				map.remove( key, this );
+			}
+			finally
+			{
+				lock.unlock();
 			}
-			map.remove( key, this );
 		}
 	}
 
 	public GuardedStrongRefLoaderRemoverCache( final long maximumSize )
 	{
-		strongCache = Caffeine.newBuilder().maximumSize( maximumSize ).build();
+		strongCache = Caffeine.newBuilder()
+				.maximumSize( maximumSize )
+				.< K, V >evictionListener( ( key, value, cause ) -> evicted( key, value ) )
+				.build();
+	}
+
+	/**
+	 * Called when {@code value} is evicted from the strongly referenced set.
+	 */
+	private void evicted( final K key, final V value )
+	{
+		final Entry entry = map.get( key );
+		if ( entry != null && entry.getValue() == value )
+			entry.evicted = true;
 	}
 
 	@Override
 	public V getIfPresent( final K key )
 	{
 		cleanUp();
-		final V value = strongCache.getIfPresent( key );
+		V value = getStrong( key );
+		if ( value == null )
+		{
+			final Entry entry = map.get( key );
+			value = entry == null ? null : entry.getValue();
+		}
 		if ( value != null )
-			return value;
-		final Entry entry = map.get( key );
-		return entry == null ? null : entry.getValue();
+			stats.recordHit();
+		else
+			stats.recordMiss();
+		return value;
 	}
 
 	@Override
 	public V get( final K key, final CacheLoader< ? super K, ? extends V > loader, final CacheRemover< ? super K, V, D > remover ) throws ExecutionException
 	{
 		cleanUp();
-		V value = strongCache.getIfPresent( key );
+		V value = getStrong( key );
 		if ( value != null )
+		{
+			stats.recordHit();
 			return value;
+		}
 		final Entry entry = map.computeIfAbsent( key, ( k ) -> new Entry( k ) );
 		value = entry.getValue();
-		if ( value == null )
+		if ( value != null )
+			stats.recordHit();
+		else
 		{
-			synchronized ( entry )
+			entry.lock.lock();
+			try
 			{
 				if ( entry.loaded )
 				{
 					value = entry.getValue();
-					if ( value == null )
+					if ( value != null )
+						stats.recordHit();
+					else
 					{
 						/*
 						 * The entry was already loaded, but its value has been
@@ -191,23 +253,39 @@ public class GuardedStrongRefLoaderRemoverCache< K, V, D > implements LoaderRemo
 				}
 				else
 				{
+					stats.recordMiss();
+					final long loadStart = System.nanoTime();
 					try
 					{
 						value = loader.get( key );
+						final long loadTime = System.nanoTime() - loadStart;
+						stats.recordLoadSuccess( loadTime );
+						CacheTracing.loaded( key, loadTime, true );
 						entry.setValue( value, remover );
-						strongCache.put( key, value );
+						if ( !BulkAccess.isActive() )
+							strongCache.put( key, value );
 					}
 					catch ( final InterruptedException e )
 					{
+						final long loadTime = System.nanoTime() - loadStart;
+						stats.recordLoadFailure( loadTime );
+						CacheTracing.loaded( key, loadTime, false );
 						Thread.currentThread().interrupt();
 						throw new ExecutionException( e );
 					}
 					catch ( final Exception e )
 					{
+						final long loadTime = System.nanoTime() - loadStart;
+						stats.recordLoadFailure( loadTime );
+						CacheTracing.loaded( key, loadTime, false );
 						throw new ExecutionException( e );
 					}
 				}
 			}
+			finally
+			{
+				entry.lock.unlock();
+			}
 		}
 
 		if ( value == null )
@@ -271,12 +349,20 @@ public class GuardedStrongRefLoaderRemoverCache< K, V, D > implements LoaderRemo
 		if ( entry != null )
 		{
 			strongCache.invalidate( key );
-			synchronized ( entry )
+			entry.lock.lock();
+			try
 			{
+				final V value = entry.getValue();
+				if ( value != null )
+					listeners.notify( entry.key, value, RemovalCause.INVALIDATED );
 				entry.phantomRef.clear();
 				entry.phantomRef = null;
 				entry.remover = null;
 			}
+			finally
+			{
+				entry.lock.unlock();
+			}
 		}
 	}
 
@@ -288,13 +374,21 @@ public class GuardedStrongRefLoaderRemoverCache< K, V, D > implements LoaderRemo
 			if ( condition.test( entry.key ) )
 			{
 				strongCache.invalidate( entry.key );
-				synchronized ( entry )
+				entry.lock.lock();
+				try
 				{
 					map.remove( entry.key, entry );
+					final V value = entry.getValue();
+					if ( value != null )
+						listeners.notify( entry.key, value, RemovalCause.INVALIDATED );
 					entry.phantomRef.clear();
 					entry.phantomRef = null;
 					entry.remover = null;
 				}
+				finally
+				{
+					entry.lock.unlock();
+				}
 			}
 		} );
 	}
@@ -304,17 +398,63 @@ public class GuardedStrongRefLoaderRemoverCache< K, V, D > implements LoaderRemo
 	{
 		map.forEachValue( parallelismThreshold, entry ->
 		{
-			synchronized ( entry )
+			entry.lock.lock();
+			try
 			{
 				map.remove( entry.key, entry );
+				final V value = entry.getValue();
+				if ( value != null )
+					listeners.notify( entry.key, value, RemovalCause.INVALIDATED );
 				entry.phantomRef.clear();
 				entry.phantomRef = null;
 				entry.remover = null;
 			}
+			finally
+			{
+				entry.lock.unlock();
+			}
 		} );
 		strongCache.invalidateAll();
 	}
 
+	/**
+	 * Get value from the backing cache, without recording the access if
+	 * {@link BulkAccess} is active.
+	 */
+	private V getStrong( final K key )
+	{
+		return BulkAccess.isActive()
+				? strongCache.policy().getIfPresentQuietly( key )
+				: strongCache.getIfPresent( key );
+	}
+
+	/**
+	 * Register a listener that is notified on {@code executor} when entries
+	 * are removed from this cache. Values that are garbage-collected after
+	 * they were evicted from the strongly referenced set are reported as
+	 * {@link RemovalCause#EVICTED}, values that were never in the strongly
+	 * referenced set (because they were loaded with {@link BulkAccess}) as
+	 * {@link RemovalCause#COLLECTED}, both with a {@code null} value, after
+	 * their data has been passed to the {@link CacheRemover}.
+	 */
+	@Override
+	public void addRemovalListener( final RemovalListener< ? super K, ? super V > listener, final Executor executor )
+	{
+		listeners.add( listener, executor );
+	}
+
+	@Override
+	public void removeRemovalListener( final RemovalListener< ? super K, ? super V > listener )
+	{
+		listeners.remove( listener );
+	}
+
+	@Override
+	public CacheStats stats()
+	{
+		return stats.snapshot();
+	}
+
 	/**
 	 * Remove entries from the cache whose references have been
 	 * garbage-collected. The {@link CacheRemover} (specified in
@@ -330,6 +470,8 @@ public class GuardedStrongRefLoaderRemoverCache< K, V, D > implements LoaderRemo
 			if ( pr == null )
 				break;
 			pr.entry.remove();
+			stats.recordEviction();
+			CacheTracing.evicted( pr.entry.key );
 		}
 	}
 }
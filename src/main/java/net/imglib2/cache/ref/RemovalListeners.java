@@ -0,0 +1,92 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.ref;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+import net.imglib2.cache.RemovalCause;
+import net.imglib2.cache.RemovalListener;
+
+/**
+ * The {@link RemovalListener}s registered with a cache. Each listener is
+ * notified on its own {@link Executor}, so that notification does not slow
+ * down the thread that caused the removal. If no listeners are registered,
+ * {@link #notify(Object, Object, RemovalCause)} does nothing.
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ *
+ * @author Tobias Pietzsch
+ */
+final class RemovalListeners< K, V >
+{
+	private static final class Registration< K, V >
+	{
+		final RemovalListener< ? super K, ? super V > listener;
+
+		final Executor executor;
+
+		Registration( final RemovalListener< ? super K, ? super V > listener, final Executor executor )
+		{
+			this.listener = listener;
+			this.executor = executor;
+		}
+	}
+
+	private final CopyOnWriteArrayList< Registration< K, V > > registrations = new CopyOnWriteArrayList<>();
+
+	void add( final RemovalListener< ? super K, ? super V > listener, final Executor executor )
+	{
+		registrations.add( new Registration<>( listener, executor ) );
+	}
+
+	void remove( final RemovalListener< ? super K, ? super V > listener )
+	{
+		registrations.removeIf( r -> r.listener == listener );
+	}
+
+	boolean isEmpty()
+	{
+		return registrations.isEmpty();
+	}
+
+	void notify( final K key, final V value, final RemovalCause cause )
+	{
+		for ( final Registration< K, V > r : registrations )
+			r.executor.execute( () -> r.listener.onRemoval( key, value, cause ) );
+	}
+}
@@ -39,12 +39,19 @@ import java.lang.ref.SoftReference;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import net.imglib2.cache.CacheLoader;
 import net.imglib2.cache.CacheRemover;
 import net.imglib2.cache.LoaderRemoverCache;
+import net.imglib2.cache.RemovalCause;
+import net.imglib2.cache.RemovalListener;
+import net.imglib2.cache.stats.CacheStats;
+import net.imglib2.cache.stats.CacheTracing;
+import net.imglib2.cache.stats.StatsCounter;
 
 /**
  * TODO: Consider periodically calling {@link #cleanUp()} from a background
@@ -67,6 +74,10 @@ public class SoftRefLoaderRemoverCache< K, V, D > implements LoaderRemoverCache<
 
 	final ReferenceQueue< V > queue = new ReferenceQueue<>();
 
+	final StatsCounter stats = new StatsCounter();
+
+	final RemovalListeners< K, V > listeners = new RemovalListeners<>();
+
 	static final class CachePhantomReference< V > extends PhantomReference< V >
 	{
 		final SoftRefLoaderRemoverCache< ?, V, ? >.Entry entry;
@@ -92,6 +103,8 @@ public class SoftRefLoaderRemoverCache< K, V, D > implements LoaderRemoverCache<
 
 		private D valueData;
 
+		final ReentrantLock lock = new ReentrantLock();
+
 		public Entry( final K key )
 		{
 			this.key = key;
@@ -115,17 +128,26 @@ public class SoftRefLoaderRemoverCache< K, V, D > implements LoaderRemoverCache<
 			this.valueData = remover.extract( value );
 		}
 
-		public synchronized void remove()
+		public void remove()
 		{
-			if ( remover != null )
+			lock.lock();
+			try
 			{
-				phantomRef.clear(); // TODO: probably not necessary with Java 10 anymore
-				phantomRef = null;
-				remover.onRemoval( key, valueData );
-				remover = null;
-				valueData = null;
+				if ( remover != null )
+				{
+					phantomRef.clear(); // TODO: probably not necessary with Java 10 anymore
+					phantomRef = null;
+					remover.onRemoval( key, valueData );
+					remover = null;
+					valueData = null;
+					listeners.notify( key, null, RemovalCause.COLLECTED );
+				}
+				map.remove( key, this );
+			}
+			finally
+			{
+				lock.unlock();
 			}
-			map.remove( key, this );
 		}
 	}
 
@@ -134,7 +156,12 @@ public class SoftRefLoaderRemoverCache< K, V, D > implements LoaderRemoverCache<
 	{
 		cleanUp();
 		final Entry entry = map.get( key );
-		return entry == null ? null : entry.getValue();
+		final V value = entry == null ? null : entry.getValue();
+		if ( value != null )
+			stats.recordHit();
+		else
+			stats.recordMiss();
+		return value;
 	}
 
 	@Override
@@ -143,14 +170,19 @@ public class SoftRefLoaderRemoverCache< K, V, D > implements LoaderRemoverCache<
 		cleanUp();
 		final Entry entry = map.computeIfAbsent( key, ( k ) -> new Entry( k ) );
 		V value = entry.getValue();
-		if ( value == null )
+		if ( value != null )
+			stats.recordHit();
+		else
 		{
-			synchronized ( entry )
+			entry.lock.lock();
+			try
 			{
 				if ( entry.loaded )
 				{
 					value = entry.getValue();
-					if ( value == null )
+					if ( value != null )
+						stats.recordHit();
+					else
 					{
 						/*
 						 * The entry was already loaded, but its value has been
@@ -161,22 +193,37 @@ public class SoftRefLoaderRemoverCache< K, V, D > implements LoaderRemoverCache<
 				}
 				else
 				{
+					stats.recordMiss();
+					final long loadStart = System.nanoTime();
 					try
 					{
 						value = loader.get( key );
+						final long loadTime = System.nanoTime() - loadStart;
+						stats.recordLoadSuccess( loadTime );
+						CacheTracing.loaded( key, loadTime, true );
 						entry.setValue( value, remover );
 					}
 					catch ( final InterruptedException e )
 					{
+						final long loadTime = System.nanoTime() - loadStart;
+						stats.recordLoadFailure( loadTime );
+						CacheTracing.loaded( key, loadTime, false );
 						Thread.currentThread().interrupt();
 						throw new ExecutionException( e );
 					}
 					catch ( final Exception e )
 					{
+						final long loadTime = System.nanoTime() - loadStart;
+						stats.recordLoadFailure( loadTime );
+						CacheTracing.loaded( key, loadTime, false );
 						throw new ExecutionException( e );
 					}
 				}
 			}
+			finally
+			{
+				entry.lock.unlock();
+			}
 		}
 
 		if ( value == null )
@@ -239,12 +286,20 @@ public class SoftRefLoaderRemoverCache< K, V, D > implements LoaderRemoverCache<
 		final Entry entry = map.remove( key );
 		if ( entry != null )
 		{
-			synchronized ( entry )
+			entry.lock.lock();
+			try
 			{
+				final V value = entry.getValue();
+				if ( value != null )
+					listeners.notify( entry.key, value, RemovalCause.INVALIDATED );
 				entry.phantomRef.clear();
 				entry.phantomRef = null;
 				entry.remover = null;
 			}
+			finally
+			{
+				entry.lock.unlock();
+			}
 		}
 	}
 
@@ -255,13 +310,21 @@ public class SoftRefLoaderRemoverCache< K, V, D > implements LoaderRemoverCache<
 		{
 			if ( condition.test( entry.key ) )
 			{
-				synchronized ( entry )
+				entry.lock.lock();
+				try
 				{
 					map.remove( entry.key, entry );
+					final V value = entry.getValue();
+					if ( value != null )
+						listeners.notify( entry.key, value, RemovalCause.INVALIDATED );
 					entry.phantomRef.clear();
 					entry.phantomRef = null;
 					entry.remover = null;
 				}
+				finally
+				{
+					entry.lock.unlock();
+				}
 			}
 		} );
 	}
@@ -271,16 +334,48 @@ public class SoftRefLoaderRemoverCache< K, V, D > implements LoaderRemoverCache<
 	{
 		map.forEachValue( parallelismThreshold, entry ->
 		{
-			synchronized ( entry )
+			entry.lock.lock();
+			try
 			{
 				map.remove( entry.key, entry );
+				final V value = entry.getValue();
+				if ( value != null )
+					listeners.notify( entry.key, value, RemovalCause.INVALIDATED );
 				entry.phantomRef.clear();
 				entry.phantomRef = null;
 				entry.remover = null;
 			}
+			finally
+			{
+				entry.lock.unlock();
+			}
 		} );
 	}
 
+	/**
+	 * Register a listener that is notified on {@code executor} when entries
+	 * are removed from this cache. Values that are garbage-collected are
+	 * reported as {@link RemovalCause#COLLECTED} with a {@code null} value,
+	 * after their data has been passed to the {@link CacheRemover}.
+	 */
+	@Override
+	public void addRemovalListener( final RemovalListener< ? super K, ? super V > listener, final Executor executor )
+	{
+		listeners.add( listener, executor );
+	}
+
+	@Override
+	public void removeRemovalListener( final RemovalListener< ? super K, ? super V > listener )
+	{
+		listeners.remove( listener );
+	}
+
+	@Override
+	public CacheStats stats()
+	{
+		return stats.snapshot();
+	}
+
 	/**
 	 * Remove entries from the cache whose references have been
 	 * garbage-collected. The {@link CacheRemover} (specified in
@@ -296,6 +391,8 @@ public class SoftRefLoaderRemoverCache< K, V, D > implements LoaderRemoverCache<
 			if ( pr == null )
 				break;
 			pr.entry.remove();
+			stats.recordEviction();
+			CacheTracing.evicted( pr.entry.key );
 		}
 	}
 }
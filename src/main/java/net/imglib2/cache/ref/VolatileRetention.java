@@ -0,0 +1,69 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.ref;
+
+/**
+ * How {@link WeakRefVolatileCache} and {@link WeakRefVolatileLoaderCache} hold
+ * the (valid and invalid) values of their entries, in addition to the
+ * {@link java.lang.ref.WeakReference}s by which entries are indexed.
+ * <p>
+ * With {@link #SOFT} and {@link #STRONG} retention, a valid value is no longer
+ * retained when other entries were used more recently. The entry stays in the
+ * cache until its value is collected. Removal listeners are then notified with
+ * {@link net.imglib2.cache.RemovalCause#EVICTED} (instead of
+ * {@link net.imglib2.cache.RemovalCause#COLLECTED}).
+ *
+ * @author Tobias Pietzsch
+ */
+public enum VolatileRetention
+{
+	/**
+	 * Only weak references. Values are collected as soon as nobody else
+	 * holds them, in particular invalid values, which are then re-created on
+	 * the next request.
+	 */
+	WEAK,
+
+	/**
+	 * Additionally, {@link java.lang.ref.SoftReference}s to the values of a
+	 * bounded number of recently used entries.
+	 */
+	SOFT,
+
+	/**
+	 * Additionally, strong references to the values of a bounded number of
+	 * recently used entries.
+	 */
+	STRONG
+}
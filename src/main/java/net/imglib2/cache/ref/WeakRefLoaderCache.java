@@ -37,10 +37,18 @@ import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Predicate;
 
+import net.imglib2.cache.BatchedValueLoader;
 import net.imglib2.cache.CacheLoader;
 import net.imglib2.cache.LoaderCache;
+import net.imglib2.cache.RemovalCause;
+import net.imglib2.cache.RemovalListener;
+import net.imglib2.cache.stats.CacheStats;
+import net.imglib2.cache.stats.CacheTracing;
+import net.imglib2.cache.stats.StatsCounter;
 
 public class WeakRefLoaderCache< K, V > implements LoaderCache< K, V >
 {
@@ -48,6 +56,10 @@ public class WeakRefLoaderCache< K, V > implements LoaderCache< K, V >
 
 	final ReferenceQueue< V > queue = new ReferenceQueue<>();
 
+	final StatsCounter stats = new StatsCounter();
+
+	final RemovalListeners< K, V > listeners = new RemovalListeners<>();
+
 	static final class CacheWeakReference< V > extends WeakReference< V >
 	{
 		private final WeakRefLoaderCache< ?, V >.Entry entry;
@@ -73,6 +85,14 @@ public class WeakRefLoaderCache< K, V > implements LoaderCache< K, V >
 
 		boolean loaded;
 
+		/**
+		 * Set while the value is evicted from a {@link BoundedSoftRefLoaderCache}
+		 * on top of this cache. See {@link #setEvicted(Object, Object, boolean)}.
+		 */
+		volatile boolean evicted;
+
+		final ReentrantLock lock = new ReentrantLock();
+
 		public Entry( final K key )
 		{
 			this.key = key;
@@ -95,6 +115,31 @@ public class WeakRefLoaderCache< K, V > implements LoaderCache< K, V >
 		{
 			map.remove( key, this );
 		}
+
+		/**
+		 * Remove this entry after its value was garbage-collected.
+		 */
+		void collected()
+		{
+			remove();
+			stats.recordEviction();
+			CacheTracing.evicted( key );
+			listeners.notify( key, null, evicted ? RemovalCause.EVICTED : RemovalCause.COLLECTED );
+		}
+	}
+
+	/**
+	 * Mark the entry for {@code key} as evicted (or no longer evicted) from
+	 * the bounded set of a {@link BoundedSoftRefLoaderCache}, if its value is
+	 * {@code value}. When the value of an evicted entry is garbage-collected,
+	 * it is reported as {@link RemovalCause#EVICTED} instead of
+	 * {@link RemovalCause#COLLECTED}.
+	 */
+	void setEvicted( final K key, final V value, final boolean evicted )
+	{
+		final Entry entry = map.get( key );
+		if ( entry != null && entry.getValue() == value )
+			entry.evicted = evicted;
 	}
 
 	@Override
@@ -102,7 +147,12 @@ public class WeakRefLoaderCache< K, V > implements LoaderCache< K, V >
 	{
 		cleanUp();
 		final Entry entry = map.get( key );
-		return entry == null ? null : entry.getValue();
+		final V value = entry == null ? null : entry.getValue();
+		if ( value != null )
+			stats.recordHit();
+		else
+			stats.recordMiss();
+		return value;
 	}
 
 	@Override
@@ -111,14 +161,19 @@ public class WeakRefLoaderCache< K, V > implements LoaderCache< K, V >
 		cleanUp();
 		final Entry entry = map.computeIfAbsent( key, ( k ) -> new Entry( k ) );
 		V value = entry.getValue();
-		if ( value == null )
+		if ( value != null )
+			stats.recordHit();
+		else
 		{
-			synchronized ( entry )
+			entry.lock.lock();
+			try
 			{
 				if ( entry.loaded )
 				{
 					value = entry.getValue();
-					if ( value == null )
+					if ( value != null )
+						stats.recordHit();
+					else
 					{
 						/*
 						 * The entry was already loaded, but its value has been
@@ -130,22 +185,37 @@ public class WeakRefLoaderCache< K, V > implements LoaderCache< K, V >
 				}
 				else
 				{
+					stats.recordMiss();
+					final long loadStart = System.nanoTime();
 					try
 					{
 						value = loader.get( key );
+						final long loadTime = System.nanoTime() - loadStart + BatchedValueLoader.loadTimeShare( loader );
+						stats.recordLoadSuccess( loadTime );
+						CacheTracing.loaded( key, loadTime, true );
 						entry.setValue( value );
 					}
 					catch ( final InterruptedException e )
 					{
+						final long loadTime = System.nanoTime() - loadStart;
+						stats.recordLoadFailure( loadTime );
+						CacheTracing.loaded( key, loadTime, false );
 						Thread.currentThread().interrupt();
 						throw new ExecutionException( e );
 					}
 					catch ( final Exception e )
 					{
+						final long loadTime = System.nanoTime() - loadStart;
+						stats.recordLoadFailure( loadTime );
+						CacheTracing.loaded( key, loadTime, false );
 						throw new ExecutionException( e );
 					}
 				}
 			}
+			finally
+			{
+				entry.lock.unlock();
+			}
 		}
 		return value;
 	}
@@ -170,7 +240,12 @@ public class WeakRefLoaderCache< K, V > implements LoaderCache< K, V >
 		{
 			final CacheWeakReference< V > ref = entry.ref;
 			if ( ref != null )
+			{
+				final V value = ref.get();
+				if ( value != null )
+					listeners.notify( entry.key, value, RemovalCause.INVALIDATED );
 				ref.clear();
+			}
 			entry.ref = null;
 		}
 	}
@@ -185,7 +260,12 @@ public class WeakRefLoaderCache< K, V > implements LoaderCache< K, V >
 				entry.remove();
 				final CacheWeakReference< V > ref = entry.ref;
 				if ( ref != null )
+				{
+					final V value = ref.get();
+					if ( value != null )
+						listeners.notify( entry.key, value, RemovalCause.INVALIDATED );
 					ref.clear();
+				}
 				entry.ref = null;
 			}
 		} );
@@ -201,11 +281,41 @@ public class WeakRefLoaderCache< K, V > implements LoaderCache< K, V >
 			entry.remove();
 			final CacheWeakReference< V > ref = entry.ref;
 			if ( ref != null )
+			{
+				final V value = ref.get();
+				if ( value != null )
+					listeners.notify( entry.key, value, RemovalCause.INVALIDATED );
 				ref.clear();
+			}
 			entry.ref = null;
 		} );
 	}
 
+	/**
+	 * Register a listener that is notified on {@code executor} when entries
+	 * are removed from this cache. Values that are garbage-collected are
+	 * reported as {@link RemovalCause#COLLECTED} with a {@code null} value
+	 * (or as {@link RemovalCause#EVICTED} if they were evicted from a
+	 * {@link BoundedSoftRefLoaderCache} on top of this cache).
+	 */
+	@Override
+	public void addRemovalListener( final RemovalListener< ? super K, ? super V > listener, final Executor executor )
+	{
+		listeners.add( listener, executor );
+	}
+
+	@Override
+	public void removeRemovalListener( final RemovalListener< ? super K, ? super V > listener )
+	{
+		listeners.remove( listener );
+	}
+
+	@Override
+	public CacheStats stats()
+	{
+		return stats.snapshot();
+	}
+
 	/**
 	 * Remove entries from the cache whose references have been
 	 * garbage-collected.
@@ -218,7 +328,7 @@ public class WeakRefLoaderCache< K, V > implements LoaderCache< K, V >
 			final CacheWeakReference< V > poll = ( CacheWeakReference< V > ) queue.poll();
 			if ( poll == null )
 				break;
-			poll.entry.remove();
+			poll.entry.collected();
 		}
 	}
 }
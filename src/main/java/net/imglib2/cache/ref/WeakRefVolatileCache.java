@@ -33,192 +33,127 @@
  */
 package net.imglib2.cache.ref;
 
-import java.lang.ref.ReferenceQueue;
-import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.function.Predicate;
 
+import net.imglib2.cache.BatchCacheLoader;
 import net.imglib2.cache.Cache;
-import net.imglib2.cache.iotiming.CacheIoTiming;
-import net.imglib2.cache.iotiming.IoStatistics;
-import net.imglib2.cache.iotiming.IoTimeBudget;
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.cache.LoaderCache;
+import net.imglib2.cache.RemovalCause;
+import net.imglib2.cache.RemovalListener;
 import net.imglib2.cache.queue.BlockingFetchQueues;
-import net.imglib2.cache.queue.FetcherThreads;
+import net.imglib2.cache.queue.CancellationToken;
+import net.imglib2.cache.stats.CacheStats;
 import net.imglib2.cache.volatiles.CacheHints;
 import net.imglib2.cache.volatiles.CreateInvalid;
 import net.imglib2.cache.volatiles.VolatileCache;
-
+import net.imglib2.cache.volatiles.VolatileCacheLoader;
+
+/**
+ * A {@link VolatileCache} that holds values by {@link java.lang.ref.WeakReference}s
+ * and loads them from a backing {@link Cache}, through the
+ * {@link BlockingFetchQueues fetch queue} where requested. Invalid values are
+ * created by a {@link CreateInvalid} that is shared by all keys. For cells,
+ * {@link net.imglib2.cache.img.CreateInvalidVolatileCell} creates invalid
+ * values that share their data with all invalid cells of the same size.
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ *
+ * @author Tobias Pietzsch
+ */
 public class WeakRefVolatileCache< K, V > implements VolatileCache< K, V >
 {
-	final ConcurrentHashMap< K, Entry > map = new ConcurrentHashMap<>();
-
-	final ReferenceQueue< V > queue = new ReferenceQueue<>();
-
-	final Cache< K, V > backingCache;
-
-	final BlockingFetchQueues< Callable< ? > > fetchQueue;
-
-	final CreateInvalid< ? super K, ? extends V > createInvalid;
-
-	/*
-	 * Possible states of CacheWeakReference.loaded
-	 */
-	static final int NOTLOADED = 0;
-	static final int INVALID = 1;
-	static final int VALID = 2;
-
-	static final class CacheWeakReference< V > extends WeakReference< V >
-	{
-		private final WeakRefVolatileCache< ?, V >.Entry entry;
-
-		final int loaded;
-
-		public CacheWeakReference( final V referent )
-		{
-			super( referent );
-			entry = null;
-			loaded = NOTLOADED;
-		}
+	private final WeakRefVolatileCacheCore< K, V > core;
 
-		public CacheWeakReference( final V referent, final ReferenceQueue< V > remove, final WeakRefVolatileCache< ?, V >.Entry entry, final int loaded )
-		{
-			super( referent, remove );
-			this.entry = entry;
-			this.loaded = loaded;
-		}
-
-		public void clean()
-		{
-			if ( entry.ref == this )
-				entry.remove();
-		}
-	}
+	private final VolatileCacheLoader< K, V > loader;
 
-	final class Entry
+	public WeakRefVolatileCache(
+			final Cache< K, V > backingCache,
+			final BlockingFetchQueues< Callable< ? > > fetchQueue,
+			final CreateInvalid< ? super K, ? extends V > createInvalid )
 	{
-		final K key;
-
-		CacheWeakReference< V > ref;
-
-		long enqueueFrame;
-
-		public Entry( final K key )
-		{
-			this.key = key;
-			this.ref = new CacheWeakReference<>( null );
-			this.enqueueFrame = -1;
-		}
-
-		public void setInvalid( final V value )
-		{
-			ref = new CacheWeakReference<>( value, queue, this, INVALID );
-		}
-
-		// Precondition: caller must hold lock on this.
-		public void setValid( final V	 value )
-		{
-			ref = new CacheWeakReference<>( value, queue, this, VALID );
-			enqueueFrame = Long.MAX_VALUE;
-			notifyAll();
-		}
-
-		public void remove()
-		{
-			map.remove( key, this );
-		}
-
-		public V tryCreateInvalid() throws ExecutionException
-		{
-			try
-			{
-				return createInvalid.createInvalid( key );
-			}
-			catch ( final InterruptedException e )
-			{
-				Thread.currentThread().interrupt();
-				throw new ExecutionException( e );
-			}
-			catch ( final Exception e )
-			{
-				throw new ExecutionException( e );
-			}
-		}
+		this( backingCache, fetchQueue, createInvalid, VolatileRetention.WEAK, 0 );
 	}
 
+	/**
+	 * Create a cache that holds values by weak references, and additionally
+	 * holds the values of up to {@code maxRetained} recently used entries by
+	 * soft or strong references, as specified by {@code retention}. Retaining
+	 * invalid values avoids re-creating them (and re-enqueueing their loading)
+	 * after every garbage collection.
+	 *
+	 * @param backingCache
+	 *            cache from which valid values are loaded.
+	 * @param fetchQueue
+	 *            queue into which asynchronous loading requests are put.
+	 * @param createInvalid
+	 *            creates invalid values for keys that are not loaded yet.
+	 * @param retention
+	 *            how values are held in addition to weak references.
+	 * @param maxRetained
+	 *            maximum number of entries whose values are retained. This
+	 *            is a count of entries, not a memory bound: choose it with
+	 *            the size of the values in mind. Ignored for
+	 *            {@link VolatileRetention#WEAK}.
+	 */
 	public WeakRefVolatileCache(
 			final Cache< K, V > backingCache,
 			final BlockingFetchQueues< Callable< ? > > fetchQueue,
-			final CreateInvalid< ? super K, ? extends V > createInvalid )
+			final CreateInvalid< ? super K, ? extends V > createInvalid,
+			final VolatileRetention retention,
+			final int maxRetained )
 	{
-		this.backingCache = backingCache;
-		this.fetchQueue = fetchQueue;
-		this.createInvalid = createInvalid;
+		core = new WeakRefVolatileCacheCore<>( new BackingLoaderCache<>( backingCache ), fetchQueue, retention, maxRetained );
+		loader = new BackingCacheLoader<>( backingCache, createInvalid );
 	}
 
 	@Override
 	public V getIfPresent( final Object key, final CacheHints hints ) throws ExecutionException
 	{
-		final Entry entry = map.get( key );
-		if ( entry == null )
-			return null;
+		return core.getIfPresent( key, hints );
+	}
 
-		final CacheWeakReference< V > ref = entry.ref;
-		final V v = ref.get();
-		if ( v != null && ref.loaded == VALID )
-			return v;
+	@Override
+	public V get( final K key, final CacheHints hints ) throws ExecutionException
+	{
+		return core.get( key, loader, hints );
+	}
 
-		cleanUp();
-		switch ( hints.getLoadingStrategy() )
-		{
-		case BLOCKING:
-			return getBlocking( entry );
-		case BUDGETED:
-			if ( estimatedBugdetTimeLeft( hints ) > 0 )
-				return getBudgeted( entry, hints );
-		case VOLATILE:
-			enqueue( entry, hints );
-		case DONTLOAD:
-		default:
-			return v;
-		}
+	/**
+	 * Register a listener that is notified on {@code executor} when entries
+	 * are removed from this cache. Only valid values are reported. See
+	 * {@link VolatileRetention} for when values are {@link RemovalCause#EVICTED
+	 * evicted}.
+	 */
+	@Override
+	public void addRemovalListener( final RemovalListener< ? super K, ? super V > listener, final Executor executor )
+	{
+		core.addRemovalListener( listener, executor );
 	}
 
 	@Override
-	public V get( final K key, final CacheHints hints ) throws ExecutionException
+	public void removeRemovalListener( final RemovalListener< ? super K, ? super V > listener )
 	{
-		/*
-		 * Get existing entry for key or create it.
-		 */
-		final Entry entry = map.computeIfAbsent( key, k -> new Entry( k ) );
-
-		final CacheWeakReference< V > ref = entry.ref;
-		V v = ref.get();
-		if ( v != null && ref.loaded == VALID )
-			return v;
-
-		cleanUp();
-		switch ( hints.getLoadingStrategy() )
-		{
-		case BLOCKING:
-			v = getBlocking( entry );
-			break;
-		case BUDGETED:
-			v = getBudgeted( entry, hints );
-			break;
-		case VOLATILE:
-			v = getVolatile( entry, hints );
-			break;
-		case DONTLOAD:
-			v = getDontLoad( entry );
-			break;
-		}
+		core.removeRemovalListener( listener );
+	}
 
-		if ( v == null )
-			return get( key, hints );
-		else
-			return v;
+	/**
+	 * Returns statistics where hits and misses refer to requests for valid
+	 * values to this cache, and all other counters are taken from the backing
+	 * cache.
+	 */
+	@Override
+	public CacheStats stats()
+	{
+		return core.stats();
 	}
 
 	/**
@@ -227,338 +162,170 @@ public class WeakRefVolatileCache< K, V > implements VolatileCache< K, V >
 	 */
 	public void cleanUp()
 	{
-		while ( true )
-		{
-			@SuppressWarnings( "unchecked" )
-			final CacheWeakReference< V > poll = ( CacheWeakReference< V > ) queue.poll();
-			if ( poll == null )
-				break;
-			poll.clean();
-		}
+		core.cleanUp();
 	}
 
 	@Override
 	public void invalidate( final K key )
 	{
-		try
-		{
-			// stop fetcher threads to avoid concurrent load for key
-			fetchQueue.pause();
-
-			// remove entry from this cache
-			final Entry entry = map.remove( key );
-			if ( entry != null )
-			{
-				final CacheWeakReference< V > ref = entry.ref;
-				if ( ref != null )
-					ref.clear();
-				entry.ref = null;
-			}
-
-			// remove entry from backingCache
-			backingCache.invalidate( key );
-
-			// resume fetcher threads
-			fetchQueue.resume();
-		}
-		catch ( final InterruptedException e )
-		{
-			throw new RuntimeException( e );
-		}
+		core.invalidate( key );
 	}
 
 	@Override
 	public void invalidateIf( final long parallelismThreshold, final Predicate< K > condition )
 	{
-		try
-		{
-			// stop fetcher threads to avoid concurrent load for key
-			fetchQueue.pause();
-
-			// remove matching entries from this cache
-			map.forEachValue( parallelismThreshold, entry ->
-			{
-				if ( condition.test( entry.key ) )
-				{
-					entry.remove();
-					final CacheWeakReference< V > ref = entry.ref;
-					if ( ref != null )
-						ref.clear();
-					entry.ref = null;
-				}
-			} );
-
-			// remove matching entries from backingCache
-			backingCache.invalidateIf( parallelismThreshold, condition );
-
-			// resume fetcher threads
-			fetchQueue.resume();
-		}
-		catch ( final InterruptedException e )
-		{
-			throw new RuntimeException( e );
-		}
+		core.invalidateIf( parallelismThreshold, condition );
 	}
 
 	@Override
 	public void invalidateAll( final long parallelismThreshold )
 	{
-		try
-		{
-			// stop fetcher threads to avoid concurrent load for key
-			fetchQueue.pause();
-
-			// remove all entries from this cache
-			// TODO: We could also simply do map.clear(). Pros/Cons?
-			map.forEachValue( parallelismThreshold, entry ->
-			{
-				entry.remove();
-				final CacheWeakReference< V > ref = entry.ref;
-				if ( ref != null )
-					ref.clear();
-				entry.ref = null;
-			} );
-
-			// remove all entries from backingCache
-			backingCache.invalidateAll( parallelismThreshold );
-
-			// resume fetcher threads
-			fetchQueue.resume();
-		}
-		catch ( final InterruptedException e )
-		{
-			throw new RuntimeException( e );
-		}
+		core.invalidateAll( parallelismThreshold );
+	}
 
+	/**
+	 * Cancel fetching of all entries with keys matching {@code condition}.
+	 * Fetches that are waiting in the queue are dropped. For fetches that are
+	 * already running, the {@link CancellationToken} is cancelled, so that
+	 * loaders that support it can abort. Cancelled entries will be enqueued
+	 * again when they are next requested.
+	 * <p>
+	 * For example, when the view changes, request the currently wanted keys
+	 * with their priorities, and cancel the rest with
+	 * {@code cancelFetchIf( key -> !wanted.contains( key ) )}.
+	 *
+	 * @param condition
+	 *            condition on keys of entries to cancel
+	 */
+	public void cancelFetchIf( final Predicate< K > condition )
+	{
+		core.cancelFetchIf( condition );
 	}
 
-	// ================ private methods =====================
+	/**
+	 * Returns the number of entries whose values are retained in addition to
+	 * weak references. This is always {@code 0} for
+	 * {@link VolatileRetention#WEAK}.
+	 */
+	public int getNumRetained()
+	{
+		return core.getNumRetained();
+	}
 
-	private V getDontLoad( final Entry entry ) throws ExecutionException
+	/**
+	 * The loader used for all entries. Creates invalid values with
+	 * {@code createInvalid} and tells the core how many keys the backing cache
+	 * loads at once. Loading itself is done by {@link BackingLoaderCache},
+	 * which ignores the loader.
+	 */
+	private static final class BackingCacheLoader< K, V > implements VolatileCacheLoader< K, V >, BatchCacheLoader< K, V >
 	{
-		synchronized( entry )
+		private final Cache< K, V > backingCache;
+
+		private final CreateInvalid< ? super K, ? extends V > createInvalid;
+
+		BackingCacheLoader( final Cache< K, V > backingCache, final CreateInvalid< ? super K, ? extends V > createInvalid )
 		{
-			final CacheWeakReference< V > ref = entry.ref;
-			V v = ref.get();
-			if ( v == null && ref.loaded != NOTLOADED )
-			{
-				map.remove( entry.key, entry );
-				return null;
-			}
-
-			if ( ref.loaded == VALID )
-				return v;
-
-			final V vl = backingCache.getIfPresent( entry.key );
-			if ( vl != null )
-			{
-				entry.setValid( vl );
-				return vl;
-			}
-
-			if ( ref.loaded == NOTLOADED )
-			{
-				v = entry.tryCreateInvalid();
-				entry.setInvalid( v );
-			}
-
-			return v;
+			this.backingCache = backingCache;
+			this.createInvalid = createInvalid;
 		}
-	}
 
-	private V getVolatile( final Entry entry, final CacheHints hints ) throws ExecutionException
-	{
-		synchronized( entry )
+		@Override
+		public V createInvalid( final K key ) throws Exception
 		{
-			final CacheWeakReference< V > ref = entry.ref;
-			V v = ref.get();
-			if ( v == null && ref.loaded != NOTLOADED )
-			{
-				map.remove( entry.key, entry );
-				return null;
-			}
-
-			if ( ref.loaded == VALID )
-				return v;
-
-			final V vl = backingCache.getIfPresent( entry.key );
-			if ( vl != null )
-			{
-				entry.setValid( vl );
-				return vl;
-			}
-
-			if ( ref.loaded == NOTLOADED )
-			{
-				v = entry.tryCreateInvalid();
-				entry.setInvalid( v );
-			}
-
-			enqueue( entry, hints );
-			return v;
+			return createInvalid.createInvalid( key );
 		}
-	}
 
-	private V getBudgeted( final Entry entry, final CacheHints hints ) throws ExecutionException
-	{
-		synchronized( entry )
+		@Override
+		public V get( final K key ) throws Exception
 		{
-			CacheWeakReference< V > ref = entry.ref;
-			V v = ref.get();
-			if ( v == null && ref.loaded != NOTLOADED )
-			{
-//				printEntryCollected( "map.remove getBudgeted 1", entry );
-				map.remove( entry.key, entry );
-				return null;
-			}
-
-			if ( ref.loaded == VALID )
-				return v;
-
-			final V vl = backingCache.getIfPresent( entry.key );
-			if ( vl != null )
-			{
-				entry.setValid( vl );
-				return vl;
-			}
-
-			enqueue( entry, hints );
-
-			final int priority = hints.getQueuePriority();
-			final IoStatistics stats = CacheIoTiming.getIoStatistics();
-			final IoTimeBudget budget = stats.getIoTimeBudget();
-			final long timeLeft = budget.timeLeft( priority );
-			if ( timeLeft > 0 )
-			{
-				final long t0 = stats.getIoNanoTime();
-				stats.start();
-				try
-				{
-					entry.wait( timeLeft  / 1000000l, 1 );
-					// releases and re-acquires entry lock
-				}
-				catch ( final InterruptedException e )
-				{}
-				stats.stop();
-				final long t = stats.getIoNanoTime() - t0;
-				budget.use( t, priority );
-			}
-
-			ref = entry.ref;
-			v = ref.get();
-			if ( v == null )
-			{
-				if ( ref.loaded == NOTLOADED )
-				{
-					v = entry.tryCreateInvalid();
-					entry.setInvalid( v );
-					return v;
-				}
-				else
-				{
-//					printEntryCollected( "map.remove getBudgeted 2", entry );
-					map.remove( entry.key, entry );
-					return null;
-				}
-			}
-			return v;
+			return backingCache.get( key );
 		}
-	}
 
-	private V getBlocking( final Entry entry ) throws ExecutionException
-	{
-		synchronized( entry )
+		@Override
+		public Map< K, V > getAll( final Collection< ? extends K > keys ) throws Exception
 		{
-			final CacheWeakReference< V > ref = entry.ref;
-			final V v = ref.get();
-			if ( v == null && ref.loaded != NOTLOADED )
-			{
-//				printEntryCollected( "map.remove getBlocking 1", entry );
-				map.remove( entry.key, entry );
-				return null;
-			}
-
-			if ( ref.loaded == VALID ) // v.isValid()
-				return v;
+			return backingCache.getAll( keys );
 		}
-		final V vl = backingCache.get( entry.key );
-		synchronized( entry )
+
+		@Override
+		public int maxBatchSize()
 		{
-			final CacheWeakReference< V > ref = entry.ref;
-			final V v = ref.get();
-			if ( v == null && ref.loaded != NOTLOADED )
-			{
-//				printEntryCollected( "map.remove getBlocking 2", entry );
-				map.remove( entry.key, entry );
-				return null;
-			}
-
-			if ( ref.loaded == VALID ) // v.isValid()
-				return v;
-
-			// entry.loaded == INVALID
-			entry.setValid( vl );
-			return vl;
+			return backingCache.maxBatchSize();
 		}
 	}
 
 	/**
-	 * {@link Callable} to put into the fetch queue. Loads data for a specific key.
+	 * Wraps the backing {@link Cache} as a {@link LoaderCache} that ignores
+	 * the loader argument.
 	 */
-	final class FetchEntry implements Callable< Void >
+	private static final class BackingLoaderCache< K, V > implements LoaderCache< K, V >
 	{
-		final K key;
+		private final Cache< K, V > cache;
 
-		public FetchEntry( final K key )
+		BackingLoaderCache( final Cache< K, V > cache )
 		{
-			this.key = key;
+			this.cache = cache;
 		}
 
-		/**
-		 * If this key's entry is not yet valid, then load it. After the method
-		 * returns, the entry is guaranteed to be valid.
-		 *
-		 * @throws ExecutionException
-		 *             if the entry could not be loaded. If the queue is handled
-		 *             by {@link FetcherThreads} then loading will be retried
-		 *             until it succeeds.
-		 */
 		@Override
-		public Void call() throws ExecutionException
+		public V getIfPresent( final K key )
 		{
-			final Entry entry = map.get( key );
-			if ( entry != null )
-				getBlocking( entry );
-			return null;
+			return cache.getIfPresent( key );
 		}
-	}
 
-	/**
-	 * Enqueue the {@link Entry} if it hasn't been enqueued for this frame
-	 * already.
-	 */
-	private void enqueue( final Entry entry, final CacheHints hints )
-	{
-		final long currentQueueFrame = fetchQueue.getCurrentFrame();
-		if ( entry.enqueueFrame < currentQueueFrame )
+		@Override
+		public V get( final K key, final CacheLoader< ? super K, ? extends V > loader ) throws ExecutionException
 		{
-			entry.enqueueFrame = currentQueueFrame;
-			fetchQueue.put( new FetchEntry( entry.key ), hints.getQueuePriority(), hints.isEnqueuToFront() );
+			return cache.get( key );
 		}
-	}
 
-	/**
-	 * Estimate of how much time is left for budgeted loading.
-	 *
-	 * @param hints
-	 *            specifies the budget priority level.
-	 * @return time left for budgeted loading.
-	 */
-	private long estimatedBugdetTimeLeft( final CacheHints hints )
-	{
-		final int priority = hints.getQueuePriority();
-		final IoStatistics stats = CacheIoTiming.getIoStatistics();
-		final IoTimeBudget budget = stats.getIoTimeBudget();
-		return budget.estimateTimeLeft( priority );
+		@Override
+		public Map< K, V > getAll( final Collection< ? extends K > keys, final CacheLoader< ? super K, ? extends V > loader ) throws ExecutionException
+		{
+			return cache.getAll( keys );
+		}
+
+		@Override
+		public void persist( final K key )
+		{
+			cache.persist( key );
+		}
+
+		@Override
+		public void persistIf( final Predicate< K > condition )
+		{
+			cache.persistIf( condition );
+		}
+
+		@Override
+		public void persistAll()
+		{
+			cache.persistAll();
+		}
+
+		@Override
+		public void invalidate( final K key )
+		{
+			cache.invalidate( key );
+		}
+
+		@Override
+		public void invalidateIf( final long parallelismThreshold, final Predicate< K > condition )
+		{
+			cache.invalidateIf( parallelismThreshold, condition );
+		}
+
+		@Override
+		public void invalidateAll( final long parallelismThreshold )
+		{
+			cache.invalidateAll( parallelismThreshold );
+		}
+
+		@Override
+		public CacheStats stats()
+		{
+			return cache.stats();
+		}
 	}
 }
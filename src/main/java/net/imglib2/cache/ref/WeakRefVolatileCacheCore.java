@@ -0,0 +1,1226 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.ref;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import net.imglib2.cache.BatchCacheLoader;
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.cache.LoaderCache;
+import net.imglib2.cache.RemovalCause;
+import net.imglib2.cache.RemovalListener;
+import net.imglib2.cache.iotiming.CacheIoTiming;
+import net.imglib2.cache.iotiming.IoStatistics;
+import net.imglib2.cache.iotiming.IoTimeBudget;
+import net.imglib2.cache.queue.BatchCallable;
+import net.imglib2.cache.queue.Keyed;
+import net.imglib2.cache.queue.BlockingFetchQueues;
+import net.imglib2.cache.queue.CancellationToken;
+import net.imglib2.cache.queue.FetcherThreads;
+import net.imglib2.cache.queue.Revocable;
+import net.imglib2.cache.stats.CacheStats;
+import net.imglib2.cache.stats.CacheTracing;
+import net.imglib2.cache.stats.FetchMetrics;
+import net.imglib2.cache.stats.StatsCounter;
+import net.imglib2.cache.volatiles.CacheHints;
+import net.imglib2.cache.volatiles.LoadingStrategy;
+import net.imglib2.cache.volatiles.VolatileCacheLoader;
+
+/**
+ * The shared implementation of {@link WeakRefVolatileCache} and
+ * {@link WeakRefVolatileLoaderCache}. Values are held by {@link WeakReference}s
+ * and loaded from a backing {@link LoaderCache}, with a
+ * {@link VolatileCacheLoader} that is specified per entry (and forgotten once
+ * the entry is {@code VALID}).
+ * <p>
+ * The {@code VALID}/{@code INVALID}/{@code NOTLOADED} state machine of
+ * entries, the {@link LoadingStrategy}s, and enqueueing into the fetch queue
+ * live here, so that both facades share them.
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ *
+ * @author Tobias Pietzsch
+ */
+final class WeakRefVolatileCacheCore< K, V >
+{
+	final ConcurrentHashMap< K, Entry > map = new ConcurrentHashMap<>();
+
+	final ReferenceQueue< V > queue = new ReferenceQueue<>();
+
+	/**
+	 * Counts hits and misses of valid values in this cache. Loads are counted
+	 * by the backing cache.
+	 */
+	final StatsCounter stats = new StatsCounter();
+
+	final RemovalListeners< K, V > listeners = new RemovalListeners<>();
+
+	final LoaderCache< K, V > backingCache;
+
+	final BlockingFetchQueues< Callable< ? > > fetchQueue;
+
+	/*
+	 * Possible states of CacheWeakReference.loaded
+	 */
+	static final int NOTLOADED = 0;
+	static final int INVALID = 1;
+	static final int VALID = 2;
+
+	@SuppressWarnings( "rawtypes" )
+	private static final AtomicReferenceFieldUpdater< WeakRefVolatileCacheCore.Entry, CacheWeakReference > REF =
+			AtomicReferenceFieldUpdater.newUpdater( WeakRefVolatileCacheCore.Entry.class, CacheWeakReference.class, "ref" );
+
+	@SuppressWarnings( "rawtypes" )
+	private static final AtomicReferenceFieldUpdater< WeakRefVolatileCacheCore.Entry, WeakRefVolatileCacheCore.FetchEntry > FETCH_ENTRY =
+			AtomicReferenceFieldUpdater.newUpdater( WeakRefVolatileCacheCore.Entry.class, WeakRefVolatileCacheCore.FetchEntry.class, "fetchEntry" );
+
+	@SuppressWarnings( "rawtypes" )
+	private static final AtomicReferenceFieldUpdater< WeakRefVolatileCacheCore.Entry, CompletableFuture > VALID_FUTURE =
+			AtomicReferenceFieldUpdater.newUpdater( WeakRefVolatileCacheCore.Entry.class, CompletableFuture.class, "validFuture" );
+
+	static final class CacheWeakReference< V > extends WeakReference< V >
+	{
+		private final WeakRefVolatileCacheCore< ?, V >.Entry entry;
+
+		final int loaded;
+
+		public CacheWeakReference( final V referent )
+		{
+			super( referent );
+			entry = null;
+			loaded = NOTLOADED;
+		}
+
+		public CacheWeakReference( final V referent, final ReferenceQueue< V > remove, final WeakRefVolatileCacheCore< ?, V >.Entry entry, final int loaded )
+		{
+			super( referent, remove );
+			this.entry = entry;
+			this.loaded = loaded;
+		}
+
+		public void clean()
+		{
+			if ( entry.ref == this )
+				entry.collected( loaded == VALID );
+		}
+	}
+
+	/**
+	 * The state of an entry is determined by its {@link #ref}, which moves
+	 * from {@code NOTLOADED} to {@code INVALID} to {@code VALID} (possibly
+	 * skipping {@code INVALID}). Transitions are made by compare-and-set, so
+	 * that concurrent requests for an entry do not block each other.
+	 */
+	final class Entry
+	{
+		final K key;
+
+		volatile CacheWeakReference< V > ref;
+
+		/**
+		 * The most recently enqueued {@code FetchEntry} for this entry, or
+		 * {@code null}. Revoked when the entry is enqueued again.
+		 */
+		volatile FetchEntry fetchEntry;
+
+		/**
+		 * Set when the value was loaded by a {@code FetchEntry} taken from the
+		 * prefetch deque, cleared on the next hit. Only maintained if
+		 * {@link FetchMetrics} are installed.
+		 */
+		boolean prefetched;
+
+		/**
+		 * Completed when the entry becomes {@code VALID}. Created by the first
+		 * thread that waits for the entry.
+		 */
+		volatile CompletableFuture< Void > validFuture;
+
+		/**
+		 * The loader for this entry, or {@code null} once it is {@code VALID}.
+		 */
+		volatile VolatileCacheLoader< ? super K, ? extends V > loader;
+
+		/**
+		 * The value (or a {@link SoftReference} to it) if this entry is
+		 * retained by the {@link Retainer}, or {@code null}.
+		 */
+		volatile Object retained;
+
+		/**
+		 * Whether this entry is in the clock of the {@link Retainer}. Written
+		 * only under the {@code Retainer} lock, but read without it by
+		 * {@link Retainer#retain(Entry, Object)}.
+		 */
+		volatile boolean inClock;
+
+		/**
+		 * Set on every hit, cleared when the clock hand of the
+		 * {@link Retainer} passes over this entry. This is only a hint for
+		 * the CLOCK algorithm, and is deliberately not {@code volatile}: a
+		 * hit that is not seen by the clock hand in time only makes the entry
+		 * a candidate for release one round earlier.
+		 */
+		boolean referenced;
+
+		/**
+		 * Set when the {@link Retainer} releases the valid value of this entry
+		 * because other entries were used more recently, cleared when the
+		 * value is retained again. When the value is garbage-collected
+		 * afterwards, this is reported as {@link RemovalCause#EVICTED}.
+		 */
+		volatile boolean evicted;
+
+		public Entry( final K key, final VolatileCacheLoader< ? super K, ? extends V > loader )
+		{
+			this.key = key;
+			this.loader = loader;
+			this.ref = new CacheWeakReference<>( null );
+		}
+
+		/**
+		 * Make {@code value} the valid value of this entry. If the entry
+		 * became valid concurrently, its current value is returned instead.
+		 * Returns {@code null} (and removes the entry) if the value of the
+		 * entry has been garbage-collected.
+		 */
+		V setValid( final V value )
+		{
+			while ( true )
+			{
+				final CacheWeakReference< V > ref = this.ref;
+				final V v = ref.get();
+				if ( v == null && ref.loaded != NOTLOADED )
+				{
+					remove();
+					return null;
+				}
+
+				if ( ref.loaded == VALID )
+					return v;
+
+				if ( REF.compareAndSet( this, ref, new CacheWeakReference<>( value, queue, this, VALID ) ) )
+				{
+					loader = null;
+					fetchEntry = null;
+					final CompletableFuture< Void > future = validFuture;
+					if ( future != null )
+						future.complete( null );
+					if ( retainer != null )
+						retainer.retain( this, value );
+					return value;
+				}
+			}
+		}
+
+		/**
+		 * Returns the current value of this entry, after setting an invalid
+		 * value if the entry is {@code NOTLOADED}. Returns {@code null} (and
+		 * removes the entry) if the value of the entry has been
+		 * garbage-collected.
+		 */
+		V getOrSetInvalid() throws ExecutionException
+		{
+			while ( true )
+			{
+				// read loader before ref: it is non-null unless ref is VALID
+				final VolatileCacheLoader< ? super K, ? extends V > loader = this.loader;
+				final CacheWeakReference< V > ref = this.ref;
+				final V v = ref.get();
+				if ( v != null )
+					return v;
+
+				if ( ref.loaded != NOTLOADED )
+				{
+					remove();
+					return null;
+				}
+
+				final V invalid = tryCreateInvalid( loader );
+				if ( REF.compareAndSet( this, ref, new CacheWeakReference<>( invalid, queue, this, INVALID ) ) )
+				{
+					if ( retainer != null )
+						retainer.retain( this, invalid );
+					return invalid;
+				}
+			}
+		}
+
+		/**
+		 * Wait until this entry becomes {@code VALID}, or until
+		 * {@code System.nanoTime()} reaches {@code deadline}.
+		 */
+		void awaitValid( final long deadline )
+		{
+			CompletableFuture< Void > future = validFuture;
+			if ( future == null )
+			{
+				future = new CompletableFuture<>();
+				if ( !VALID_FUTURE.compareAndSet( this, null, future ) )
+					future = validFuture;
+			}
+
+			// setValid() may have missed the future, check again
+			if ( ref.loaded == VALID )
+				return;
+
+			final long timeout = deadline - System.nanoTime();
+			if ( timeout <= 0 )
+				return;
+
+			try
+			{
+				future.get( timeout, TimeUnit.NANOSECONDS );
+			}
+			catch ( final InterruptedException | ExecutionException | TimeoutException e )
+			{}
+		}
+
+		public void remove()
+		{
+			map.remove( key, this );
+		}
+
+		/**
+		 * Remove this entry after its value was garbage-collected. Listeners
+		 * are only notified if the value was {@code VALID}: invalid values are
+		 * placeholders created by this cache, not values of the backing cache.
+		 */
+		void collected( final boolean valid )
+		{
+			remove();
+			if ( valid )
+				listeners.notify( key, null, evicted ? RemovalCause.EVICTED : RemovalCause.COLLECTED );
+		}
+
+		V tryCreateInvalid( final VolatileCacheLoader< ? super K, ? extends V > loader ) throws ExecutionException
+		{
+			try
+			{
+				return loader.createInvalid( key );
+			}
+			catch ( final InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+				throw new ExecutionException( e );
+			}
+			catch ( final Exception e )
+			{
+				throw new ExecutionException( e );
+			}
+		}
+	}
+
+	/**
+	 * Retains values beyond their weak references, or {@code null} for
+	 * {@link VolatileRetention#WEAK}.
+	 */
+	private final Retainer retainer;
+
+	WeakRefVolatileCacheCore(
+			final LoaderCache< K, V > backingCache,
+			final BlockingFetchQueues< Callable< ? > > fetchQueue,
+			final VolatileRetention retention,
+			final int maxRetained )
+	{
+		this.fetchQueue = fetchQueue;
+		this.backingCache = backingCache;
+		this.retainer = retention == VolatileRetention.WEAK
+				? null
+				: new Retainer( retention == VolatileRetention.SOFT, maxRetained );
+	}
+
+	/**
+	 * Keeps soft or strong references to the values of at most
+	 * {@code maxRetained} entries, so that (in particular invalid) values are
+	 * not collected as soon as they are only weakly reachable. Which entries
+	 * are retained is decided by the CLOCK algorithm, so that a hit only sets
+	 * a flag and does not need to take a lock.
+	 * <p>
+	 * {@code maxRetained} is a count of entries. The size of values is not
+	 * accounted for.
+	 * <p>
+	 * Entries that are removed from the cache are dropped lazily, when the
+	 * clock hand passes over them.
+	 */
+	final class Retainer
+	{
+		private final boolean soft;
+
+		private final int maxRetained;
+
+		/**
+		 * Retained entries, as a clock ring. The head is the current position
+		 * of the clock hand.
+		 */
+		private final ArrayDeque< Entry > clock;
+
+		private final ReentrantLock lock = new ReentrantLock();
+
+		Retainer( final boolean soft, final int maxRetained )
+		{
+			this.soft = soft;
+			this.maxRetained = Math.max( 1, maxRetained );
+			clock = new ArrayDeque<>( this.maxRetained + 1 );
+		}
+
+		/**
+		 * Retain {@code value} as the value of {@code entry}, replacing the
+		 * previously retained value of {@code entry}, if any.
+		 */
+		void retain( final Entry entry, final V value )
+		{
+			final Object retained = soft ? new SoftReference<>( value ) : value;
+			entry.evicted = false;
+			entry.retained = retained;
+			entry.referenced = true;
+			if ( entry.inClock )
+				return;
+
+			lock.lock();
+			try
+			{
+				if ( !entry.inClock )
+				{
+					/*
+					 * release() may have cleared retained after it was set
+					 * above. (release() clears inClock before retained, so if
+					 * inClock was seen to be true above, a concurrent
+					 * release() at worst drops the value, and never leaves a
+					 * value retained outside the clock.)
+					 */
+					entry.retained = retained;
+					entry.inClock = true;
+					clock.add( entry );
+					while ( clock.size() > maxRetained )
+						evict( sweep() );
+				}
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+
+		void touch( final Entry entry )
+		{
+			if ( !entry.referenced )
+				entry.referenced = true;
+		}
+
+		/**
+		 * Advance the clock hand to the first entry that has not been
+		 * referenced since the hand last passed it (or that has been removed
+		 * from the cache), and remove that entry from the clock.
+		 */
+		private Entry sweep()
+		{
+			while ( true )
+			{
+				final Entry entry = clock.poll();
+				if ( entry.referenced && map.get( entry.key ) == entry )
+				{
+					entry.referenced = false;
+					clock.add( entry );
+				}
+				else
+					return entry;
+			}
+		}
+
+		private void release( final Entry entry )
+		{
+			entry.inClock = false;
+			entry.retained = null;
+		}
+
+		/**
+		 * Release {@code entry}, and mark it as evicted if its value is valid.
+		 */
+		private void evict( final Entry entry )
+		{
+			release( entry );
+			final CacheWeakReference< V > ref = entry.ref;
+			if ( ref != null && ref.loaded == VALID && map.get( entry.key ) == entry )
+				entry.evicted = true;
+		}
+
+		/**
+		 * Returns the number of retained entries (including entries that
+		 * have been removed from the cache but not yet passed by the clock
+		 * hand).
+		 */
+		int size()
+		{
+			lock.lock();
+			try
+			{
+				return clock.size();
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+
+		void clear()
+		{
+			lock.lock();
+			try
+			{
+				for ( final Entry entry : clock )
+					release( entry );
+				clock.clear();
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of entries whose values are retained beyond their
+	 * weak references. This is always {@code 0} for
+	 * {@link VolatileRetention#WEAK}.
+	 */
+	public int getNumRetained()
+	{
+		return retainer == null ? 0 : retainer.size();
+	}
+
+	public V getIfPresent( final Object key, final CacheHints hints ) throws ExecutionException
+	{
+		final Entry entry = map.get( key );
+		if ( entry == null )
+		{
+			stats.recordMiss();
+			return null;
+		}
+
+		final CacheWeakReference< V > ref = entry.ref;
+		final V v = ref.get();
+		if ( v != null && ref.loaded == VALID )
+		{
+			stats.recordHit();
+			if ( entry.prefetched )
+				prefetchHit( entry );
+			if ( retainer != null )
+				retainer.touch( entry );
+			return v;
+		}
+
+		stats.recordMiss();
+		cleanUp();
+		switch ( hints.getLoadingStrategy() )
+		{
+		case BLOCKING:
+			return getBlocking( entry, hints.isPromote() );
+		case BUDGETED:
+			if ( estimatedBugdetTimeLeft( hints ) > 0 )
+				return getBudgeted( entry, hints );
+		case VOLATILE:
+			enqueue( entry, hints );
+		case DONTLOAD:
+		default:
+			return v;
+		}
+	}
+
+	public V get( final K key, final VolatileCacheLoader< ? super K, ? extends V > loader, final CacheHints hints ) throws ExecutionException
+	{
+		/*
+		 * Get existing entry for key or create it.
+		 */
+		final Entry entry = map.computeIfAbsent( key, k -> new Entry( k, loader ) );
+
+		final CacheWeakReference< V > ref = entry.ref;
+		V v = ref.get();
+		if ( v != null && ref.loaded == VALID )
+		{
+			stats.recordHit();
+			if ( entry.prefetched )
+				prefetchHit( entry );
+			if ( retainer != null )
+				retainer.touch( entry );
+			return v;
+		}
+
+		stats.recordMiss();
+		cleanUp();
+		switch ( hints.getLoadingStrategy() )
+		{
+		case BLOCKING:
+			v = getBlocking( entry, hints.isPromote() );
+			break;
+		case BUDGETED:
+			v = getBudgeted( entry, hints );
+			break;
+		case VOLATILE:
+			v = getVolatile( entry, hints );
+			break;
+		case DONTLOAD:
+			v = getDontLoad( entry );
+			break;
+		}
+
+		if ( v == null )
+			return get( key, loader, hints );
+		else
+			return v;
+	}
+
+	/**
+	 * Register a listener that is notified on {@code executor} when entries
+	 * are removed from this cache.
+	 */
+	public void addRemovalListener( final RemovalListener< ? super K, ? super V > listener, final Executor executor )
+	{
+		listeners.add( listener, executor );
+	}
+
+	public void removeRemovalListener( final RemovalListener< ? super K, ? super V > listener )
+	{
+		listeners.remove( listener );
+	}
+
+	/**
+	 * Returns statistics where hits and misses refer to requests for valid
+	 * values to this cache, and all other counters are taken from the backing
+	 * cache.
+	 */
+	public CacheStats stats()
+	{
+		final CacheStats own = stats.snapshot();
+		final CacheStats backing = backingCache.stats();
+		return new CacheStats(
+				own.getHitCount(),
+				own.getMissCount(),
+				backing.getLoadSuccessCount(),
+				backing.getLoadFailureCount(),
+				backing.getTotalLoadTime(),
+				backing.getLoadTimeHistogram(),
+				backing.getEvictionCount(),
+				backing.getWriteBackCount(),
+				backing.getWriteBackBytes() );
+	}
+
+	/**
+	 * Remove entries from the cache whose references have been
+	 * garbage-collected.
+	 */
+	public void cleanUp()
+	{
+		while ( true )
+		{
+			@SuppressWarnings( "unchecked" )
+			final CacheWeakReference< V > poll = ( CacheWeakReference< V > ) queue.poll();
+			if ( poll == null )
+				break;
+			poll.clean();
+		}
+	}
+
+	public void invalidate( final K key )
+	{
+		try
+		{
+			// stop fetcher threads to avoid concurrent load for key
+			fetchQueue.pause();
+
+			// remove entry from this cache
+			final Entry entry = map.remove( key );
+			if ( entry != null )
+			{
+				final CacheWeakReference< V > ref = entry.ref;
+				if ( ref != null )
+				{
+					final V value = ref.get();
+					if ( value != null )
+						listeners.notify( entry.key, value, RemovalCause.INVALIDATED );
+					ref.clear();
+				}
+				entry.ref = null;
+				entry.loader = null;
+				entry.retained = null;
+			}
+
+			// remove entry from backingCache
+			backingCache.invalidate( key );
+
+			// resume fetcher threads
+			fetchQueue.resume();
+		}
+		catch ( final InterruptedException e )
+		{
+			throw new RuntimeException( e );
+		}
+	}
+
+	public void invalidateIf( final long parallelismThreshold, final Predicate< K > condition )
+	{
+		try
+		{
+			// stop fetcher threads to avoid concurrent load for key
+			fetchQueue.pause();
+
+			// remove matching entries from this cache
+			map.forEachValue( parallelismThreshold, entry ->
+			{
+				if ( condition.test( entry.key ) )
+				{
+					entry.remove();
+					final CacheWeakReference< V > ref = entry.ref;
+					if ( ref != null )
+					{
+						final V value = ref.get();
+						if ( value != null )
+							listeners.notify( entry.key, value, RemovalCause.INVALIDATED );
+						ref.clear();
+					}
+					entry.ref = null;
+					entry.loader = null;
+					entry.retained = null;
+				}
+			} );
+
+			// remove matching entries from backingCache
+			backingCache.invalidateIf( parallelismThreshold, condition );
+
+			// resume fetcher threads
+			fetchQueue.resume();
+		}
+		catch ( final InterruptedException e )
+		{
+			throw new RuntimeException( e );
+		}
+	}
+
+	public void invalidateAll( final long parallelismThreshold )
+	{
+		try
+		{
+			// stop fetcher threads to avoid concurrent load for key
+			fetchQueue.pause();
+
+			// remove all entries from this cache
+			// TODO: We could also simply do map.clear(). Pros/Cons?
+			map.forEachValue( parallelismThreshold, entry -> {
+				entry.remove();
+				final CacheWeakReference< V > ref = entry.ref;
+				if ( ref != null )
+				{
+					final V value = ref.get();
+					if ( value != null )
+						listeners.notify( entry.key, value, RemovalCause.INVALIDATED );
+					ref.clear();
+				}
+				entry.ref = null;
+				entry.loader = null;
+				entry.retained = null;
+			} );
+
+			if ( retainer != null )
+				retainer.clear();
+
+			// remove all entries from backingCache
+			backingCache.invalidateAll( parallelismThreshold );
+
+			// resume fetcher threads
+			fetchQueue.resume();
+		}
+		catch ( final InterruptedException e )
+		{
+			throw new RuntimeException( e );
+		}
+
+	}
+
+	// ================ private methods =====================
+
+	private V getDontLoad( final Entry entry ) throws ExecutionException
+	{
+		if ( entry.ref.loaded != VALID )
+		{
+			final V vl = backingCache.getIfPresent( entry.key );
+			if ( vl != null )
+				return entry.setValid( vl );
+		}
+		return entry.getOrSetInvalid();
+	}
+
+	private V getVolatile( final Entry entry, final CacheHints hints ) throws ExecutionException
+	{
+		final V v = getDontLoad( entry );
+		if ( v != null )
+			enqueue( entry, hints );
+		return v;
+	}
+
+	private V getBudgeted( final Entry entry, final CacheHints hints ) throws ExecutionException
+	{
+		final CacheWeakReference< V > ref = entry.ref;
+		final V v = ref.get();
+		if ( v == null && ref.loaded != NOTLOADED )
+		{
+			entry.remove();
+			return null;
+		}
+
+		if ( ref.loaded == VALID )
+			return v;
+
+		final V vl = backingCache.getIfPresent( entry.key );
+		if ( vl != null )
+			return entry.setValid( vl );
+
+		enqueue( entry, hints );
+
+		final int priority = hints.getQueuePriority();
+		final IoStatistics stats = CacheIoTiming.getIoStatistics();
+		final IoTimeBudget budget = stats.getIoTimeBudget();
+		final long timeLeft = budget.timeLeft( priority );
+		if ( timeLeft > 0 )
+		{
+			final long start = System.nanoTime();
+			final long deadline = start + timeLeft;
+			final long t0 = stats.getIoNanoTime();
+			stats.start();
+			entry.awaitValid( deadline );
+			stats.stop();
+			final long t = stats.getIoNanoTime() - t0;
+			budget.use( t, priority );
+			if ( CacheTracing.isEnabled() )
+				CacheTracing.budgetWait( entry.key, priority, System.nanoTime() - start, entry.ref.loaded == VALID );
+		}
+
+		return entry.getOrSetInvalid();
+	}
+
+	private V getBlocking( final Entry entry, final boolean promote ) throws ExecutionException
+	{
+		// read loader before ref: it is non-null unless ref is VALID
+		final VolatileCacheLoader< ? super K, ? extends V > loader = entry.loader;
+		final CacheWeakReference< V > ref = entry.ref;
+		final V v = ref.get();
+		if ( v == null && ref.loaded != NOTLOADED )
+		{
+			entry.remove();
+			return null;
+		}
+
+		if ( ref.loaded == VALID ) // v.isValid()
+			return v;
+
+		final V vl;
+		if ( promote )
+			vl = backingCache.get( entry.key, loader );
+		else
+		{
+			final boolean bulk = BulkAccess.setActive( true );
+			try
+			{
+				vl = backingCache.get( entry.key, loader );
+			}
+			finally
+			{
+				BulkAccess.setActive( bulk );
+			}
+		}
+		return entry.setValid( vl );
+	}
+
+	/**
+	 * Returns {@code true} if {@code entry} is not valid yet. Removes the entry
+	 * if its value has been garbage-collected.
+	 */
+	private boolean isLoadRequired( final Entry entry )
+	{
+		final CacheWeakReference< V > ref = entry.ref;
+		if ( ref.get() == null && ref.loaded != NOTLOADED )
+		{
+			entry.remove();
+			return false;
+		}
+		return ref.loaded != VALID;
+	}
+
+	/**
+	 * {@link Callable} to put into the fetch queue. Loads data for a specific key.
+	 */
+	final class FetchEntry implements BatchCallable, Keyed, Revocable
+	{
+		final K key;
+
+		final int priority;
+
+		final boolean promote;
+
+		final int maxBatchSize;
+
+		/**
+		 * The queue frame in which this {@code FetchEntry} was enqueued.
+		 */
+		final long frame;
+
+		/**
+		 * Set when a fetcher starts running this {@code FetchEntry}.
+		 */
+		volatile boolean taken;
+
+		/**
+		 * Set when this {@code FetchEntry} is replaced by a new one, or
+		 * cancelled.
+		 */
+		volatile boolean revoked;
+
+		final CancellationToken token = new CancellationToken();
+
+		public FetchEntry( final K key, final int priority, final boolean promote, final long frame, final int maxBatchSize )
+		{
+			this.key = key;
+			this.priority = priority;
+			this.promote = promote;
+			this.frame = frame;
+			this.maxBatchSize = maxBatchSize;
+		}
+
+		@Override
+		public K getKey()
+		{
+			return key;
+		}
+
+		@Override
+		public boolean isRevoked()
+		{
+			return revoked;
+		}
+
+		@Override
+		public int maxBatchSize()
+		{
+			return maxBatchSize;
+		}
+
+		@Override
+		public int getPriority()
+		{
+			return priority;
+		}
+
+		private WeakRefVolatileCacheCore< K, V > cache()
+		{
+			return WeakRefVolatileCacheCore.this;
+		}
+
+		@Override
+		public boolean isBatchableWith( final Object other )
+		{
+			if ( !( other instanceof WeakRefVolatileCacheCore.FetchEntry ) )
+				return false;
+			final WeakRefVolatileCacheCore< ?, ? >.FetchEntry f = ( WeakRefVolatileCacheCore< ?, ? >.FetchEntry ) other;
+			return f.cache() == WeakRefVolatileCacheCore.this && f.promote == promote;
+		}
+
+		/**
+		 * Load the entries of all {@code FetchEntry}s in {@code batch} that
+		 * are not yet valid, with one {@link LoaderCache#getAll(java.util.Collection, CacheLoader)} call
+		 * per loader. Only the
+		 * {@link CancellationToken} of this {@code FetchEntry} is observed.
+		 */
+		@Override
+		public void callBatch( final List< Callable< ? > > batch ) throws ExecutionException
+		{
+			// group entries by loader, so that each group can be loaded as a batch
+			final Map< VolatileCacheLoader< ? super K, ? extends V >, List< Entry > > groups = new IdentityHashMap<>();
+			final List< FetchEntry > fetched = new ArrayList<>( batch.size() );
+			final List< Entry > fetchedEntries = new ArrayList<>( batch.size() );
+			for ( final Callable< ? > c : batch )
+			{
+				@SuppressWarnings( "unchecked" )
+				final FetchEntry f = ( FetchEntry ) c;
+				f.taken = true;
+				if ( f.revoked )
+					continue;
+				final Entry entry = map.get( f.key );
+				if ( entry != null && isLoadRequired( entry ) )
+				{
+					final VolatileCacheLoader< ? super K, ? extends V > loader = entry.loader;
+					if ( loader != null )
+					{
+						groups.computeIfAbsent( loader, l -> new ArrayList<>() ).add( entry );
+						fetched.add( f );
+						fetchedEntries.add( entry );
+					}
+				}
+			}
+			if ( groups.isEmpty() )
+				return;
+
+			final CancellationToken previous = CancellationToken.setCurrent( token );
+			final boolean bulk = BulkAccess.setActive( !promote );
+			final FetchMetrics metrics = fetchQueue.getMetrics();
+			final long t0 = metrics == null ? 0 : System.nanoTime();
+			try
+			{
+				for ( final VolatileCacheLoader< ? super K, ? extends V > loader : groups.keySet() )
+				{
+					final List< Entry > entries = groups.get( loader );
+					final List< K > keys = new ArrayList<>( entries.size() );
+					for ( final Entry entry : entries )
+						keys.add( entry.key );
+					final Map< K, V > values = backingCache.getAll( keys, loader );
+					for ( final Entry entry : entries )
+					{
+						final V vl = values.get( entry.key );
+						if ( vl != null )
+							entry.setValid( vl );
+					}
+				}
+				if ( metrics != null )
+					completed( metrics, fetched, fetchedEntries, System.nanoTime() - t0 );
+			}
+			catch ( final ExecutionException e )
+			{
+				for ( int i = 0; i < fetched.size(); ++i )
+					fetched.get( i ).failed( fetchedEntries.get( i ) );
+				if ( !token.isCancelled() )
+					throw e;
+			}
+			finally
+			{
+				BulkAccess.setActive( bulk );
+				CancellationToken.setCurrent( previous );
+			}
+		}
+
+		/**
+		 * If this key's entry is not yet valid, then load it. After the method
+		 * returns, the entry is guaranteed to be valid.
+		 *
+		 * @throws ExecutionException
+		 *             if the entry could not be loaded. If the queue is handled
+		 *             by dedicated {@link FetcherThreads} then loading will be
+		 *             retried until it succeeds. In any case, the entry no
+		 *             longer refers to this {@code FetchEntry}, so that the
+		 *             next request for the entry enqueues it again.
+		 */
+		@Override
+		public Void call() throws ExecutionException
+		{
+			taken = true;
+			if ( revoked )
+				return null;
+			final Entry entry = map.get( key );
+			if ( entry != null )
+			{
+				final CancellationToken previous = CancellationToken.setCurrent( token );
+				final FetchMetrics metrics = fetchQueue.getMetrics();
+				final long t0 = metrics == null ? 0 : System.nanoTime();
+				try
+				{
+					getBlocking( entry, promote );
+					if ( metrics != null )
+						completed( metrics, this, entry, System.nanoTime() - t0 );
+				}
+				catch ( final ExecutionException e )
+				{
+					failed( entry );
+					if ( !token.isCancelled() )
+						throw e;
+				}
+				finally
+				{
+					CancellationToken.setCurrent( previous );
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Called when loading failed. Because this {@code FetchEntry} is
+		 * {@link #taken}, {@link #enqueue(Entry, CacheHints)} would not
+		 * replace it, so it is removed from the {@code entry}.
+		 */
+		void failed( final Entry entry )
+		{
+			FETCH_ENTRY.compareAndSet( entry, this, null );
+		}
+
+		/**
+		 * Remove this {@code FetchEntry} from the queue, if it is still
+		 * waiting, and cancel its {@link CancellationToken}, if it is
+		 * running.
+		 */
+		void cancel()
+		{
+			revoked = true;
+			token.cancel();
+		}
+	}
+
+	/**
+	 * Cancel fetching of all entries with keys matching {@code condition}.
+	 * Fetches that are waiting in the queue are dropped. For fetches that are
+	 * already running, the {@link CancellationToken} is cancelled, so that
+	 * loaders that support it can abort. Cancelled entries will be enqueued
+	 * again when they are next requested.
+	 * <p>
+	 * For example, when the view changes, request the currently wanted keys
+	 * with their priorities, and cancel the rest with
+	 * {@code cancelFetchIf( key -> !wanted.contains( key ) )}.
+	 *
+	 * @param condition
+	 *            condition on keys of entries to cancel
+	 */
+	public void cancelFetchIf( final Predicate< K > condition )
+	{
+		map.forEachValue( Long.MAX_VALUE, entry ->
+		{
+			final FetchEntry pending = entry.fetchEntry;
+			if ( pending != null && condition.test( entry.key ) && FETCH_ENTRY.compareAndSet( entry, pending, null ) )
+				pending.cancel();
+		} );
+	}
+
+	/**
+	 * Report a completed {@code FetchEntry} to the installed
+	 * {@link FetchMetrics}. A {@code FetchEntry} that was enqueued in an
+	 * earlier frame than the current one has been moved to the prefetch deque,
+	 * and the next hit on its entry counts as a prefetch hit.
+	 */
+	private void completed( final FetchMetrics metrics, final FetchEntry fetchEntry, final Entry entry, final long serviceNanos )
+	{
+		final boolean prefetched = fetchQueue.getCurrentFrame() > fetchEntry.frame;
+		metrics.completed( fetchEntry.priority, serviceNanos, prefetched );
+		if ( prefetched )
+			entry.prefetched = true;
+	}
+
+	/**
+	 * Report the {@code FetchEntry}s of a batch as completed, dividing the
+	 * time taken for the batch evenly among them.
+	 */
+	private void completed( final FetchMetrics metrics, final List< FetchEntry > fetched, final List< Entry > entries, final long serviceNanos )
+	{
+		final int n = fetched.size();
+		for ( int i = 0; i < n; ++i )
+			completed( metrics, fetched.get( i ), entries.get( i ), serviceNanos / n );
+	}
+
+	private void prefetchHit( final Entry entry )
+	{
+		entry.prefetched = false;
+		final FetchMetrics metrics = fetchQueue.getMetrics();
+		if ( metrics != null )
+			metrics.prefetchHit();
+	}
+
+	/**
+	 * Enqueue the {@link Entry} if it hasn't been enqueued for this frame
+	 * already, or if it has been enqueued with lower priority.
+	 * <p>
+	 * If a {@link FetchEntry} enqueued earlier is still waiting in the queue
+	 * (or in the prefetch deque), it is revoked and replaced, so that there is
+	 * only one {@code FetchEntry} per entry in the queue. If a fetcher is
+	 * already running the earlier {@code FetchEntry}, nothing is enqueued. The
+	 * replacement is made by compare-and-set on {@link Entry#fetchEntry}.
+	 */
+	private void enqueue( final Entry entry, final CacheHints hints )
+	{
+		final long currentQueueFrame = fetchQueue.getCurrentFrame();
+		final int priority = hints.getQueuePriority();
+		while ( true )
+		{
+			final FetchEntry pending = entry.fetchEntry;
+			if ( pending != null && ( pending.taken || ( pending.frame >= currentQueueFrame && priority >= pending.priority ) ) )
+				return;
+			final VolatileCacheLoader< ? super K, ? extends V > loader = entry.loader;
+			if ( loader == null )
+				return; // VALID
+
+			final FetchEntry fetchEntry = new FetchEntry( entry.key, priority, hints.isPromote(), currentQueueFrame, maxBatchSize( loader ) );
+			if ( FETCH_ENTRY.compareAndSet( entry, pending, fetchEntry ) )
+			{
+				if ( pending != null )
+					pending.revoked = true;
+				fetchQueue.put( fetchEntry, priority, hints.isEnqueuToFront() );
+				return;
+			}
+		}
+	}
+
+	private static int maxBatchSize( final CacheLoader< ?, ? > loader )
+	{
+		return loader instanceof BatchCacheLoader
+				? ( ( BatchCacheLoader< ?, ? > ) loader ).maxBatchSize()
+				: 1;
+	}
+
+	/**
+	 * Estimate of how much time is left for budgeted loading.
+	 *
+	 * @param hints
+	 *            specifies the budget priority level.
+	 * @return time left for budgeted loading.
+	 */
+	private long estimatedBugdetTimeLeft( final CacheHints hints )
+	{
+		final int priority = hints.getQueuePriority();
+		final IoStatistics stats = CacheIoTiming.getIoStatistics();
+		final IoTimeBudget budget = stats.getIoTimeBudget();
+		return budget.estimateTimeLeft( priority );
+	}
+}
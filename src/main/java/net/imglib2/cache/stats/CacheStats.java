@@ -0,0 +1,284 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.stats;
+
+import java.util.Arrays;
+
+/**
+ * An immutable snapshot of the performance counters of a cache, obtained by
+ * {@code stats()}.
+ * <p>
+ * Load times are recorded in nanoseconds, both as a total and as a histogram
+ * with power-of-two buckets: bucket {@code i} counts loads that took at least
+ * {@code 2^i} and less than {@code 2^(i+1)} nanoseconds (the last bucket also
+ * counts all longer loads).
+ *
+ * @author Tobias Pietzsch
+ */
+public final class CacheStats
+{
+	/**
+	 * Number of buckets of the load time histogram.
+	 */
+	public static final int NUM_HISTOGRAM_BUCKETS = 40;
+
+	private static final CacheStats EMPTY = new CacheStats( 0, 0, 0, 0, 0, new long[ NUM_HISTOGRAM_BUCKETS ], 0, 0, 0 );
+
+	private final long hitCount;
+
+	private final long missCount;
+
+	private final long loadSuccessCount;
+
+	private final long loadFailureCount;
+
+	private final long totalLoadTime;
+
+	private final long[] loadTimeHistogram;
+
+	private final long evictionCount;
+
+	private final long writeBackCount;
+
+	private final long writeBackBytes;
+
+	public CacheStats(
+			final long hitCount,
+			final long missCount,
+			final long loadSuccessCount,
+			final long loadFailureCount,
+			final long totalLoadTime,
+			final long[] loadTimeHistogram,
+			final long evictionCount,
+			final long writeBackCount,
+			final long writeBackBytes )
+	{
+		if ( loadTimeHistogram.length != NUM_HISTOGRAM_BUCKETS )
+			throw new IllegalArgumentException( "expected " + NUM_HISTOGRAM_BUCKETS + " histogram buckets" );
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.loadSuccessCount = loadSuccessCount;
+		this.loadFailureCount = loadFailureCount;
+		this.totalLoadTime = totalLoadTime;
+		this.loadTimeHistogram = loadTimeHistogram.clone();
+		this.evictionCount = evictionCount;
+		this.writeBackCount = writeBackCount;
+		this.writeBackBytes = writeBackBytes;
+	}
+
+	/**
+	 * Returns statistics with all counters zero.
+	 */
+	public static CacheStats empty()
+	{
+		return EMPTY;
+	}
+
+	/**
+	 * Returns the histogram bucket for a load that took {@code nanos}
+	 * nanoseconds.
+	 */
+	static int histogramBucket( final long nanos )
+	{
+		final int bucket = 63 - Long.numberOfLeadingZeros( Math.max( 1, nanos ) );
+		return Math.min( bucket, NUM_HISTOGRAM_BUCKETS - 1 );
+	}
+
+	/**
+	 * Number of lookups that found a value in the cache.
+	 */
+	public long getHitCount()
+	{
+		return hitCount;
+	}
+
+	/**
+	 * Number of lookups that did not find a value in the cache.
+	 */
+	public long getMissCount()
+	{
+		return missCount;
+	}
+
+	public long getRequestCount()
+	{
+		return hitCount + missCount;
+	}
+
+	/**
+	 * Ratio of hits to requests, or {@code 1} if there were no requests.
+	 */
+	public double getHitRate()
+	{
+		final long requestCount = getRequestCount();
+		return requestCount == 0 ? 1.0 : ( double ) hitCount / requestCount;
+	}
+
+	public long getLoadSuccessCount()
+	{
+		return loadSuccessCount;
+	}
+
+	public long getLoadFailureCount()
+	{
+		return loadFailureCount;
+	}
+
+	public long getLoadCount()
+	{
+		return loadSuccessCount + loadFailureCount;
+	}
+
+	/**
+	 * Total time spent loading values (successfully or not), in nanoseconds.
+	 */
+	public long getTotalLoadTime()
+	{
+		return totalLoadTime;
+	}
+
+	/**
+	 * Average time spent loading a value, in nanoseconds.
+	 */
+	public double getAverageLoadPenalty()
+	{
+		final long loadCount = getLoadCount();
+		return loadCount == 0 ? 0.0 : ( double ) totalLoadTime / loadCount;
+	}
+
+	/**
+	 * Returns a copy of the load time histogram. Bucket {@code i} counts loads
+	 * that took {@code [2^i, 2^(i+1))} nanoseconds.
+	 */
+	public long[] getLoadTimeHistogram()
+	{
+		return loadTimeHistogram.clone();
+	}
+
+	/**
+	 * Number of values that were removed from the cache because they were
+	 * garbage-collected or evicted by a size bound (not counting explicit
+	 * invalidation).
+	 */
+	public long getEvictionCount()
+	{
+		return evictionCount;
+	}
+
+	/**
+	 * Number of values that were written back (for example, to disk) when
+	 * they were evicted or persisted.
+	 */
+	public long getWriteBackCount()
+	{
+		return writeBackCount;
+	}
+
+	/**
+	 * Number of bytes that were written back.
+	 */
+	public long getWriteBackBytes()
+	{
+		return writeBackBytes;
+	}
+
+	/**
+	 * Returns the sum of these and {@code other} statistics.
+	 */
+	public CacheStats plus( final CacheStats other )
+	{
+		final long[] histogram = new long[ NUM_HISTOGRAM_BUCKETS ];
+		for ( int i = 0; i < NUM_HISTOGRAM_BUCKETS; ++i )
+			histogram[ i ] = loadTimeHistogram[ i ] + other.loadTimeHistogram[ i ];
+		return new CacheStats(
+				hitCount + other.hitCount,
+				missCount + other.missCount,
+				loadSuccessCount + other.loadSuccessCount,
+				loadFailureCount + other.loadFailureCount,
+				totalLoadTime + other.totalLoadTime,
+				histogram,
+				evictionCount + other.evictionCount,
+				writeBackCount + other.writeBackCount,
+				writeBackBytes + other.writeBackBytes );
+	}
+
+	@Override
+	public boolean equals( final Object o )
+	{
+		if ( this == o )
+			return true;
+		if ( !( o instanceof CacheStats ) )
+			return false;
+		final CacheStats that = ( CacheStats ) o;
+		return hitCount == that.hitCount
+				&& missCount == that.missCount
+				&& loadSuccessCount == that.loadSuccessCount
+				&& loadFailureCount == that.loadFailureCount
+				&& totalLoadTime == that.totalLoadTime
+				&& Arrays.equals( loadTimeHistogram, that.loadTimeHistogram )
+				&& evictionCount == that.evictionCount
+				&& writeBackCount == that.writeBackCount
+				&& writeBackBytes == that.writeBackBytes;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		int result = Long.hashCode( hitCount );
+		result = 31 * result + Long.hashCode( missCount );
+		result = 31 * result + Long.hashCode( loadSuccessCount );
+		result = 31 * result + Long.hashCode( loadFailureCount );
+		result = 31 * result + Long.hashCode( totalLoadTime );
+		result = 31 * result + Arrays.hashCode( loadTimeHistogram );
+		result = 31 * result + Long.hashCode( evictionCount );
+		result = 31 * result + Long.hashCode( writeBackCount );
+		result = 31 * result + Long.hashCode( writeBackBytes );
+		return result;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "CacheStats{" +
+				"hitCount=" + hitCount +
+				", missCount=" + missCount +
+				", loadSuccessCount=" + loadSuccessCount +
+				", loadFailureCount=" + loadFailureCount +
+				", totalLoadTime=" + totalLoadTime +
+				", evictionCount=" + evictionCount +
+				", writeBackCount=" + writeBackCount +
+				", writeBackBytes=" + writeBackBytes +
+				'}';
+	}
+}
@@ -0,0 +1,181 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.stats;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registers {@link CacheStats} of a cache with the platform
+ * {@link MBeanServer}, for example
+ *
+ * <pre>
+ * {@code
+ * ObjectName name = CacheStatsJmx.register( "myImg", img.getCache()::stats );
+ * ...
+ * CacheStatsJmx.unregister( name );
+ * }
+ * </pre>
+ *
+ * The bean takes a fresh snapshot for every attribute that is read.
+ *
+ * @author Tobias Pietzsch
+ */
+public final class CacheStatsJmx
+{
+	private CacheStatsJmx()
+	{}
+
+	/**
+	 * Register an {@link CacheStatsMXBean} named
+	 * {@code net.imglib2.cache:type=CacheStats,name=<name>}.
+	 *
+	 * @return the {@code ObjectName} under which the bean was registered
+	 * @throws IllegalStateException
+	 *             if the bean could not be registered (for example, because
+	 *             the name is already taken)
+	 */
+	public static ObjectName register( final String name, final Supplier< CacheStats > stats )
+	{
+		try
+		{
+			final ObjectName objectName = new ObjectName( "net.imglib2.cache:type=CacheStats,name=" + ObjectName.quote( name ) );
+			ManagementFactory.getPlatformMBeanServer().registerMBean( new Bean( stats ), objectName );
+			return objectName;
+		}
+		catch ( final JMException e )
+		{
+			throw new IllegalStateException( e );
+		}
+	}
+
+	/**
+	 * Unregister a bean previously registered with
+	 * {@link #register(String, Supplier)}. Does nothing if it is not
+	 * registered.
+	 */
+	public static void unregister( final ObjectName objectName )
+	{
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try
+		{
+			if ( server.isRegistered( objectName ) )
+				server.unregisterMBean( objectName );
+		}
+		catch ( final JMException e )
+		{
+			throw new IllegalStateException( e );
+		}
+	}
+
+	private static final class Bean implements CacheStatsMXBean
+	{
+		private final Supplier< CacheStats > stats;
+
+		Bean( final Supplier< CacheStats > stats )
+		{
+			this.stats = stats;
+		}
+
+		@Override
+		public long getHitCount()
+		{
+			return stats.get().getHitCount();
+		}
+
+		@Override
+		public long getMissCount()
+		{
+			return stats.get().getMissCount();
+		}
+
+		@Override
+		public double getHitRate()
+		{
+			return stats.get().getHitRate();
+		}
+
+		@Override
+		public long getLoadSuccessCount()
+		{
+			return stats.get().getLoadSuccessCount();
+		}
+
+		@Override
+		public long getLoadFailureCount()
+		{
+			return stats.get().getLoadFailureCount();
+		}
+
+		@Override
+		public long getTotalLoadTime()
+		{
+			return stats.get().getTotalLoadTime();
+		}
+
+		@Override
+		public double getAverageLoadPenalty()
+		{
+			return stats.get().getAverageLoadPenalty();
+		}
+
+		@Override
+		public long[] getLoadTimeHistogram()
+		{
+			return stats.get().getLoadTimeHistogram();
+		}
+
+		@Override
+		public long getEvictionCount()
+		{
+			return stats.get().getEvictionCount();
+		}
+
+		@Override
+		public long getWriteBackCount()
+		{
+			return stats.get().getWriteBackCount();
+		}
+
+		@Override
+		public long getWriteBackBytes()
+		{
+			return stats.get().getWriteBackBytes();
+		}
+	}
+}
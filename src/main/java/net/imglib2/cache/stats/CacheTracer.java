@@ -0,0 +1,124 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.stats;
+
+import net.imglib2.cache.CacheRemover;
+import net.imglib2.cache.IoSync;
+import net.imglib2.cache.img.DiskCellCache;
+import net.imglib2.cache.queue.BlockingFetchQueues;
+import net.imglib2.cache.queue.Keyed;
+
+/**
+ * Receives events about individual cache operations, for diagnosing stalls.
+ * A tracer is installed with {@link CacheTracing#setTracer(CacheTracer)}.
+ * <p>
+ * Methods are called synchronously on the thread that performed the
+ * operation, so implementations must be thread-safe and fast. For example, an
+ * implementation (in a module targeting Java 11 or later) can emit JDK Flight
+ * Recorder events. All methods do nothing by default.
+ * <p>
+ * Durations and times are in nanoseconds.
+ *
+ * @author Tobias Pietzsch
+ */
+public interface CacheTracer
+{
+	/**
+	 * A value was loaded for {@code key} on a cache miss.
+	 *
+	 * @param success
+	 *            whether loading succeeded (or threw an exception)
+	 */
+	default void loaded( final Object key, final long duration, final boolean success )
+	{}
+
+	/**
+	 * The value for {@code key} was evicted or garbage-collected.
+	 */
+	default void evicted( final Object key )
+	{}
+
+	/**
+	 * Data for {@code key} was written back by a writer thread of
+	 * {@link IoSync}.
+	 *
+	 * @param bytes
+	 *            the number of bytes written, or -1 if the
+	 *            {@link CacheRemover} does not know (see
+	 *            {@link CacheRemover#getWriteBackBytes(Object, Object)})
+	 */
+	default void wroteBack( final Object key, final long bytes, final long duration )
+	{}
+
+	/**
+	 * {@code bytes} bytes for {@code key} were read from disk by
+	 * {@link DiskCellCache}.
+	 */
+	default void diskRead( final Object key, final long bytes, final long duration )
+	{}
+
+	/**
+	 * {@code bytes} bytes for {@code key} were written to disk by
+	 * {@link DiskCellCache}.
+	 */
+	default void diskWritten( final Object key, final long bytes, final long duration )
+	{}
+
+	/**
+	 * A request for {@code key} was enqueued into a
+	 * {@link BlockingFetchQueues} with the given {@code priority} (or
+	 * {@link FetchMetrics#PREFETCH}). If the queued element is not
+	 * {@link Keyed}, {@code key} is the element itself.
+	 */
+	default void fetchEnqueued( final Object key, final int priority )
+	{}
+
+	/**
+	 * A request for {@code key} was taken from a {@link BlockingFetchQueues}
+	 * after waiting {@code waitTime} in the queue. If the queued element is
+	 * not {@link Keyed}, {@code key} is the element itself.
+	 */
+	default void fetchDequeued( final Object key, final int priority, final long waitTime )
+	{}
+
+	/**
+	 * A BUDGETED request for {@code key} blocked for {@code duration} waiting
+	 * for its value to be loaded.
+	 *
+	 * @param valid
+	 *            whether the value was valid when waiting ended
+	 */
+	default void budgetWait( final Object key, final int priority, final long duration, final boolean valid )
+	{}
+}
@@ -0,0 +1,125 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.stats;
+
+/**
+ * Holds the global {@link CacheTracer}, and forwards events to it. If no
+ * tracer is installed (the default), forwarding costs one volatile read, and
+ * callers can check {@link #isEnabled()} to avoid measuring durations.
+ *
+ * @author Tobias Pietzsch
+ */
+public final class CacheTracing
+{
+	private static volatile CacheTracer tracer = null;
+
+	/**
+	 * Install {@code tracer}, or disable tracing if {@code tracer == null}.
+	 */
+	public static void setTracer( final CacheTracer tracer )
+	{
+		CacheTracing.tracer = tracer;
+	}
+
+	/**
+	 * Returns the installed tracer, or {@code null} if tracing is disabled.
+	 */
+	public static CacheTracer getTracer()
+	{
+		return tracer;
+	}
+
+	public static boolean isEnabled()
+	{
+		return tracer != null;
+	}
+
+	public static void loaded( final Object key, final long duration, final boolean success )
+	{
+		final CacheTracer t = tracer;
+		if ( t != null )
+			t.loaded( key, duration, success );
+	}
+
+	public static void evicted( final Object key )
+	{
+		final CacheTracer t = tracer;
+		if ( t != null )
+			t.evicted( key );
+	}
+
+	public static void wroteBack( final Object key, final long bytes, final long duration )
+	{
+		final CacheTracer t = tracer;
+		if ( t != null )
+			t.wroteBack( key, bytes, duration );
+	}
+
+	public static void diskRead( final Object key, final long bytes, final long duration )
+	{
+		final CacheTracer t = tracer;
+		if ( t != null )
+			t.diskRead( key, bytes, duration );
+	}
+
+	public static void diskWritten( final Object key, final long bytes, final long duration )
+	{
+		final CacheTracer t = tracer;
+		if ( t != null )
+			t.diskWritten( key, bytes, duration );
+	}
+
+	public static void fetchEnqueued( final Object key, final int priority )
+	{
+		final CacheTracer t = tracer;
+		if ( t != null )
+			t.fetchEnqueued( key, priority );
+	}
+
+	public static void fetchDequeued( final Object key, final int priority, final long waitTime )
+	{
+		final CacheTracer t = tracer;
+		if ( t != null )
+			t.fetchDequeued( key, priority, waitTime );
+	}
+
+	public static void budgetWait( final Object key, final int priority, final long duration, final boolean valid )
+	{
+		final CacheTracer t = tracer;
+		if ( t != null )
+			t.budgetWait( key, priority, duration, valid );
+	}
+
+	private CacheTracing() {}
+}
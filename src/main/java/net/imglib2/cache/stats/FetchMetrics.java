@@ -0,0 +1,85 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.stats;
+
+/**
+ * Receives events from the fetch pipeline of volatile caches: requests are
+ * enqueued into a {@code BlockingFetchQueues}, taken by a fetcher, and
+ * completed.
+ * <p>
+ * Metrics are installed with {@code BlockingFetchQueues.setMetrics()}. If no
+ * metrics are installed, no calls are made, and the service time of requests
+ * is not measured. The queues still take a timestamp when a request is
+ * enqueued and when it is taken, because they need it for aging and for their
+ * own wait time statistics ({@code BlockingFetchQueues.getMeanWaitNanos()}).
+ * {@link FetchStatsCounter} is an implementation that accumulates
+ * {@link FetchStats}.
+ *
+ * @author Tobias Pietzsch
+ */
+public interface FetchMetrics
+{
+	/**
+	 * Pseudo priority level of requests that are taken from the prefetch
+	 * deque.
+	 */
+	int PREFETCH = -1;
+
+	/**
+	 * A request was enqueued with the given {@code priority}.
+	 */
+	void enqueued( int priority );
+
+	/**
+	 * A request was taken from the queue of the given {@code priority} (or
+	 * from the prefetch deque, if {@code priority == PREFETCH}) after waiting
+	 * {@code waitNanos} nanoseconds.
+	 */
+	void dequeued( int priority, long waitNanos );
+
+	/**
+	 * A request that was enqueued with the given {@code priority} completed
+	 * after {@code serviceNanos} nanoseconds of loading.
+	 *
+	 * @param prefetched
+	 *            whether the request was taken from the prefetch deque.
+	 */
+	void completed( int priority, long serviceNanos, boolean prefetched );
+
+	/**
+	 * A value that was loaded by a request taken from the prefetch deque was
+	 * requested.
+	 */
+	void prefetchHit();
+}
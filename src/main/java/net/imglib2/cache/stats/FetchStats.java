@@ -0,0 +1,212 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.stats;
+
+/**
+ * Statistics of the fetch pipeline of volatile caches, per priority level.
+ * Instances are immutable snapshots, obtained from
+ * {@link FetchStatsCounter#snapshot()}.
+ * <p>
+ * For each priority level, and for the prefetch deque
+ * ({@link FetchMetrics#PREFETCH}), there are counts of enqueued, dequeued, and
+ * completed requests, and totals and histograms of the time requests waited
+ * in the queue, and of the time it took to load them (service time).
+ * Histograms have {@link CacheStats#NUM_HISTOGRAM_BUCKETS} buckets, bucket
+ * {@code i} counting times in {@code [2^i, 2^(i+1))} nanoseconds.
+ * <p>
+ * The prefetch hit rate tells how many of the values loaded by requests
+ * taken from the prefetch deque were requested afterwards.
+ *
+ * @author Tobias Pietzsch
+ */
+public final class FetchStats
+{
+	private final Level[] levels;
+
+	private final Level prefetch;
+
+	private final long prefetchHitCount;
+
+	FetchStats( final Level[] levels, final Level prefetch, final long prefetchHitCount )
+	{
+		this.levels = levels;
+		this.prefetch = prefetch;
+		this.prefetchHitCount = prefetchHitCount;
+	}
+
+	/**
+	 * Returns the number of priority levels for which events were recorded.
+	 */
+	public int getNumPriorities()
+	{
+		return levels.length;
+	}
+
+	/**
+	 * Returns statistics for the given {@code priority}, or for the prefetch
+	 * deque if {@code priority == }{@link FetchMetrics#PREFETCH}.
+	 */
+	public Level getLevel( final int priority )
+	{
+		if ( priority == FetchMetrics.PREFETCH )
+			return prefetch;
+		return priority >= 0 && priority < levels.length ? levels[ priority ] : Level.EMPTY;
+	}
+
+	/**
+	 * Returns how many values loaded by requests taken from the prefetch deque
+	 * were requested afterwards.
+	 */
+	public long getPrefetchHitCount()
+	{
+		return prefetchHitCount;
+	}
+
+	/**
+	 * Returns the ratio of prefetch hits to completed requests taken from the
+	 * prefetch deque, or 0 if there were none.
+	 */
+	public double getPrefetchHitRate()
+	{
+		final long n = prefetch.getCompletionCount();
+		return n == 0 ? 0 : ( double ) prefetchHitCount / n;
+	}
+
+	/**
+	 * Statistics of one priority level.
+	 */
+	public static final class Level
+	{
+		static final Level EMPTY = new Level( 0, 0, 0, new long[ CacheStats.NUM_HISTOGRAM_BUCKETS ], 0, 0, new long[ CacheStats.NUM_HISTOGRAM_BUCKETS ] );
+
+		private final long enqueueCount;
+
+		private final long dequeueCount;
+
+		private final long totalWaitTime;
+
+		private final long[] waitTimeHistogram;
+
+		private final long completionCount;
+
+		private final long totalServiceTime;
+
+		private final long[] serviceTimeHistogram;
+
+		Level(
+				final long enqueueCount,
+				final long dequeueCount,
+				final long totalWaitTime,
+				final long[] waitTimeHistogram,
+				final long completionCount,
+				final long totalServiceTime,
+				final long[] serviceTimeHistogram )
+		{
+			this.enqueueCount = enqueueCount;
+			this.dequeueCount = dequeueCount;
+			this.totalWaitTime = totalWaitTime;
+			this.waitTimeHistogram = waitTimeHistogram;
+			this.completionCount = completionCount;
+			this.totalServiceTime = totalServiceTime;
+			this.serviceTimeHistogram = serviceTimeHistogram;
+		}
+
+		public long getEnqueueCount()
+		{
+			return enqueueCount;
+		}
+
+		public long getDequeueCount()
+		{
+			return dequeueCount;
+		}
+
+		/**
+		 * Returns the total time (in nanoseconds) that dequeued requests
+		 * waited in the queue.
+		 */
+		public long getTotalWaitTime()
+		{
+			return totalWaitTime;
+		}
+
+		/**
+		 * Returns the mean time (in nanoseconds) that dequeued requests waited
+		 * in the queue.
+		 */
+		public double getAverageWaitTime()
+		{
+			return dequeueCount == 0 ? 0 : ( double ) totalWaitTime / dequeueCount;
+		}
+
+		/**
+		 * Returns a copy of the wait time histogram.
+		 */
+		public long[] getWaitTimeHistogram()
+		{
+			return waitTimeHistogram.clone();
+		}
+
+		public long getCompletionCount()
+		{
+			return completionCount;
+		}
+
+		/**
+		 * Returns the total time (in nanoseconds) spent loading completed
+		 * requests.
+		 */
+		public long getTotalServiceTime()
+		{
+			return totalServiceTime;
+		}
+
+		/**
+		 * Returns the mean time (in nanoseconds) spent loading completed
+		 * requests.
+		 */
+		public double getAverageServiceTime()
+		{
+			return completionCount == 0 ? 0 : ( double ) totalServiceTime / completionCount;
+		}
+
+		/**
+		 * Returns a copy of the service time histogram.
+		 */
+		public long[] getServiceTimeHistogram()
+		{
+			return serviceTimeHistogram.clone();
+		}
+	}
+}
@@ -0,0 +1,178 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.stats;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link FetchMetrics} that accumulate per-priority counters and histograms of
+ * wait and service times. Like {@link StatsCounter}, counters are striped
+ * {@link LongAdder}s.
+ *
+ * @author Tobias Pietzsch
+ */
+public final class FetchStatsCounter implements FetchMetrics
+{
+	private volatile LevelCounter[] levels = new LevelCounter[ 0 ];
+
+	private final LevelCounter prefetch = new LevelCounter();
+
+	private final LongAdder prefetchHitCount = new LongAdder();
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private static final class LevelCounter
+	{
+		final LongAdder enqueueCount = new LongAdder();
+
+		final LongAdder dequeueCount = new LongAdder();
+
+		final LongAdder totalWaitTime = new LongAdder();
+
+		final LongAdder[] waitTimeHistogram = histogram();
+
+		final LongAdder completionCount = new LongAdder();
+
+		final LongAdder totalServiceTime = new LongAdder();
+
+		final LongAdder[] serviceTimeHistogram = histogram();
+
+		private static LongAdder[] histogram()
+		{
+			final LongAdder[] histogram = new LongAdder[ CacheStats.NUM_HISTOGRAM_BUCKETS ];
+			for ( int i = 0; i < histogram.length; ++i )
+				histogram[ i ] = new LongAdder();
+			return histogram;
+		}
+
+		private static long[] sum( final LongAdder[] histogram )
+		{
+			final long[] sums = new long[ histogram.length ];
+			for ( int i = 0; i < sums.length; ++i )
+				sums[ i ] = histogram[ i ].sum();
+			return sums;
+		}
+
+		FetchStats.Level snapshot()
+		{
+			return new FetchStats.Level(
+					enqueueCount.sum(),
+					dequeueCount.sum(),
+					totalWaitTime.sum(),
+					sum( waitTimeHistogram ),
+					completionCount.sum(),
+					totalServiceTime.sum(),
+					sum( serviceTimeHistogram ) );
+		}
+	}
+
+	private LevelCounter level( final int priority )
+	{
+		if ( priority == PREFETCH )
+			return prefetch;
+		final int i = Math.max( priority, 0 );
+		final LevelCounter[] levels = this.levels;
+		return i < levels.length ? levels[ i ] : grow( i );
+	}
+
+	private LevelCounter grow( final int priority )
+	{
+		lock.lock();
+		try
+		{
+			if ( priority >= levels.length )
+			{
+				final LevelCounter[] newLevels = Arrays.copyOf( levels, priority + 1 );
+				for ( int i = levels.length; i < newLevels.length; ++i )
+					newLevels[ i ] = new LevelCounter();
+				levels = newLevels;
+			}
+			return levels[ priority ];
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void enqueued( final int priority )
+	{
+		level( priority ).enqueueCount.increment();
+	}
+
+	@Override
+	public void dequeued( final int priority, final long waitNanos )
+	{
+		final LevelCounter level = level( priority );
+		level.dequeueCount.increment();
+		level.totalWaitTime.add( waitNanos );
+		level.waitTimeHistogram[ CacheStats.histogramBucket( waitNanos ) ].increment();
+	}
+
+	/**
+	 * Requests taken from the prefetch deque are counted at the
+	 * {@link #PREFETCH} level.
+	 */
+	@Override
+	public void completed( final int priority, final long serviceNanos, final boolean prefetched )
+	{
+		final LevelCounter level = level( prefetched ? PREFETCH : priority );
+		level.completionCount.increment();
+		level.totalServiceTime.add( serviceNanos );
+		level.serviceTimeHistogram[ CacheStats.histogramBucket( serviceNanos ) ].increment();
+	}
+
+	@Override
+	public void prefetchHit()
+	{
+		prefetchHitCount.increment();
+	}
+
+	/**
+	 * Returns a snapshot of the current counter values. Counters that are
+	 * updated concurrently with this call may or may not be reflected in the
+	 * snapshot.
+	 */
+	public FetchStats snapshot()
+	{
+		final LevelCounter[] levels = this.levels;
+		final FetchStats.Level[] snapshots = new FetchStats.Level[ levels.length ];
+		for ( int i = 0; i < levels.length; ++i )
+			snapshots[ i ] = levels[ i ].snapshot();
+		return new FetchStats( snapshots, prefetch.snapshot(), prefetchHitCount.sum() );
+	}
+}
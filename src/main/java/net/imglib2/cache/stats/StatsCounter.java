@@ -0,0 +1,141 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.stats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulates the performance counters of a cache. Counters are striped
+ * {@link LongAdder}s, so that recording from many threads concurrently does
+ * not contend on a single memory location.
+ *
+ * @author Tobias Pietzsch
+ */
+public final class StatsCounter
+{
+	private final LongAdder hitCount = new LongAdder();
+
+	private final LongAdder missCount = new LongAdder();
+
+	private final LongAdder loadSuccessCount = new LongAdder();
+
+	private final LongAdder loadFailureCount = new LongAdder();
+
+	private final LongAdder totalLoadTime = new LongAdder();
+
+	private final LongAdder[] loadTimeHistogram;
+
+	private final LongAdder evictionCount = new LongAdder();
+
+	private final LongAdder writeBackCount = new LongAdder();
+
+	private final LongAdder writeBackBytes = new LongAdder();
+
+	public StatsCounter()
+	{
+		loadTimeHistogram = new LongAdder[ CacheStats.NUM_HISTOGRAM_BUCKETS ];
+		for ( int i = 0; i < loadTimeHistogram.length; ++i )
+			loadTimeHistogram[ i ] = new LongAdder();
+	}
+
+	public void recordHit()
+	{
+		hitCount.increment();
+	}
+
+	public void recordMiss()
+	{
+		missCount.increment();
+	}
+
+	/**
+	 * Record a successful load that took {@code loadTime} nanoseconds.
+	 */
+	public void recordLoadSuccess( final long loadTime )
+	{
+		loadSuccessCount.increment();
+		recordLoadTime( loadTime );
+	}
+
+	/**
+	 * Record a failed load that took {@code loadTime} nanoseconds.
+	 */
+	public void recordLoadFailure( final long loadTime )
+	{
+		loadFailureCount.increment();
+		recordLoadTime( loadTime );
+	}
+
+	private void recordLoadTime( final long loadTime )
+	{
+		totalLoadTime.add( loadTime );
+		loadTimeHistogram[ CacheStats.histogramBucket( loadTime ) ].increment();
+	}
+
+	public void recordEviction()
+	{
+		evictionCount.increment();
+	}
+
+	/**
+	 * Record that a value of {@code bytes} bytes was written back.
+	 */
+	public void recordWriteBack( final long bytes )
+	{
+		writeBackCount.increment();
+		writeBackBytes.add( bytes );
+	}
+
+	/**
+	 * Returns a snapshot of the current counter values. Counters that are
+	 * updated concurrently with this call may or may not be reflected in the
+	 * snapshot.
+	 */
+	public CacheStats snapshot()
+	{
+		final long[] histogram = new long[ loadTimeHistogram.length ];
+		for ( int i = 0; i < histogram.length; ++i )
+			histogram[ i ] = loadTimeHistogram[ i ].sum();
+		return new CacheStats(
+				hitCount.sum(),
+				missCount.sum(),
+				loadSuccessCount.sum(),
+				loadFailureCount.sum(),
+				totalLoadTime.sum(),
+				histogram,
+				evictionCount.sum(),
+				writeBackCount.sum(),
+				writeBackBytes.sum() );
+	}
+}
@@ -33,9 +33,13 @@
  */
 package net.imglib2.cache.util;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.function.Predicate;
 
 import net.imglib2.cache.AbstractCache;
+import net.imglib2.cache.RemovalListener;
+import net.imglib2.cache.stats.CacheStats;
 
 /**
  * Wraps a {@code Cache<L,V>} as a {@code Cache<K,V>}, using a
@@ -59,6 +63,12 @@ public class AbstractCacheKeyAdapter< K, L, V, C extends AbstractCache< L, V > >
 
 	protected final KeyBimap< K, L > keymap;
 
+	/**
+	 * Listeners registered with the underlying cache, which map keys back
+	 * before notifying the listeners registered with this adapter.
+	 */
+	private final ConcurrentHashMap< RemovalListener< ? super K, ? super V >, RemovalListener< L, V > > listeners = new ConcurrentHashMap<>();
+
 	public AbstractCacheKeyAdapter( final C cache, final KeyBimap< K, L > keymap )
 	{
 		this.cache = cache;
@@ -112,4 +122,45 @@ public class AbstractCacheKeyAdapter< K, L, V, C extends AbstractCache< L, V > >
 	{
 		cache.invalidateIf( parallelismThreshold, l -> keymap.getSource( l ) != null );
 	}
+
+	/**
+	 * Register a listener that is notified on {@code executor} when entries
+	 * are removed from the underlying cache. Removed entries whose keys are
+	 * not mapped by this adapter are not reported.
+	 */
+	@Override
+	public void addRemovalListener( final RemovalListener< ? super K, ? super V > listener, final Executor executor )
+	{
+		final RemovalListener< L, V > mapped = ( l, value, cause ) -> {
+			final K k = keymap.getSource( l );
+			if ( k != null )
+				listener.onRemoval( k, value, cause );
+		};
+		if ( listeners.putIfAbsent( listener, mapped ) == null )
+		{
+			try
+			{
+				cache.addRemovalListener( mapped, executor );
+			}
+			catch ( final RuntimeException e )
+			{
+				listeners.remove( listener, mapped );
+				throw e;
+			}
+		}
+	}
+
+	@Override
+	public void removeRemovalListener( final RemovalListener< ? super K, ? super V > listener )
+	{
+		final RemovalListener< L, V > mapped = listeners.remove( listener );
+		if ( mapped != null )
+			cache.removeRemovalListener( mapped );
+	}
+
+	@Override
+	public CacheStats stats()
+	{
+		return cache.stats();
+	}
 }
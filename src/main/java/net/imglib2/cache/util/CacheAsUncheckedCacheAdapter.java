@@ -34,10 +34,13 @@
 package net.imglib2.cache.util;
 
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.function.Predicate;
 
 import net.imglib2.cache.Cache;
+import net.imglib2.cache.RemovalListener;
 import net.imglib2.cache.UncheckedCache;
+import net.imglib2.cache.stats.CacheStats;
 
 /**
  * Wraps a {@code Cache<K,V>} as an {@code UncheckedCache<K,V>}. This is done by
@@ -114,4 +117,22 @@ public class CacheAsUncheckedCacheAdapter< K, V > implements UncheckedCache< K,
 	{
 		cache.invalidateAll( parallelismThreshold );
 	}
+
+	@Override
+	public void addRemovalListener( final RemovalListener< ? super K, ? super V > listener, final Executor executor )
+	{
+		cache.addRemovalListener( listener, executor );
+	}
+
+	@Override
+	public void removeRemovalListener( final RemovalListener< ? super K, ? super V > listener )
+	{
+		cache.removeRemovalListener( listener );
+	}
+
+	@Override
+	public CacheStats stats()
+	{
+		return cache.stats();
+	}
 }
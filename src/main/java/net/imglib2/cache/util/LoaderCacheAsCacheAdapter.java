@@ -33,12 +33,18 @@
  */
 package net.imglib2.cache.util;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.function.Predicate;
 
+import net.imglib2.cache.BatchCacheLoader;
 import net.imglib2.cache.Cache;
 import net.imglib2.cache.CacheLoader;
 import net.imglib2.cache.LoaderCache;
+import net.imglib2.cache.RemovalListener;
+import net.imglib2.cache.stats.CacheStats;
 
 /**
  * Wraps a {@code LoaderCache<K,V>} as a {@code Cache<K,V>}. This is done by
@@ -76,6 +82,20 @@ public class LoaderCacheAsCacheAdapter< K, V > implements Cache< K, V >
 		return cache.get( key, loader );
 	}
 
+	@Override
+	public Map< K, V > getAll( final Collection< ? extends K > keys ) throws ExecutionException
+	{
+		return cache.getAll( keys, loader );
+	}
+
+	@Override
+	public int maxBatchSize()
+	{
+		return loader instanceof BatchCacheLoader
+				? ( ( BatchCacheLoader< K, V > ) loader ).maxBatchSize()
+				: 1;
+	}
+
 	@Override
 	public void persist( final K key )
 	{
@@ -111,4 +131,22 @@ public class LoaderCacheAsCacheAdapter< K, V > implements Cache< K, V >
 	{
 		cache.invalidateAll( parallelismThreshold );
 	}
+
+	@Override
+	public void addRemovalListener( final RemovalListener< ? super K, ? super V > listener, final Executor executor )
+	{
+		cache.addRemovalListener( listener, executor );
+	}
+
+	@Override
+	public void removeRemovalListener( final RemovalListener< ? super K, ? super V > listener )
+	{
+		cache.removeRemovalListener( listener );
+	}
+
+	@Override
+	public CacheStats stats()
+	{
+		return cache.stats();
+	}
 }
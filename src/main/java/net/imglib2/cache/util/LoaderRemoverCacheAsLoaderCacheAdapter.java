@@ -34,12 +34,15 @@
 package net.imglib2.cache.util;
 
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.function.Predicate;
 
 import net.imglib2.cache.CacheLoader;
 import net.imglib2.cache.CacheRemover;
 import net.imglib2.cache.LoaderCache;
 import net.imglib2.cache.LoaderRemoverCache;
+import net.imglib2.cache.RemovalListener;
+import net.imglib2.cache.stats.CacheStats;
 
 /**
  * Wraps a {@code LoaderRemoverCache<K,V>} as a {@code LoaderCache<K,V>}. This
@@ -116,4 +119,22 @@ public class LoaderRemoverCacheAsLoaderCacheAdapter< K, V, D > implements Loader
 		cache.invalidateAll( parallelismThreshold );
 		remover.invalidateAll( parallelismThreshold );
 	}
+
+	@Override
+	public void addRemovalListener( final RemovalListener< ? super K, ? super V > listener, final Executor executor )
+	{
+		cache.addRemovalListener( listener, executor );
+	}
+
+	@Override
+	public void removeRemovalListener( final RemovalListener< ? super K, ? super V > listener )
+	{
+		cache.removeRemovalListener( listener );
+	}
+
+	@Override
+	public CacheStats stats()
+	{
+		return cache.stats().plus( remover.stats() );
+	}
 }
@@ -34,12 +34,15 @@
 package net.imglib2.cache.util;
 
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.function.Predicate;
 
 import net.imglib2.cache.CacheLoader;
 import net.imglib2.cache.CacheRemover;
 import net.imglib2.cache.LoaderRemoverCache;
+import net.imglib2.cache.RemovalListener;
 import net.imglib2.cache.RemoverCache;
+import net.imglib2.cache.stats.CacheStats;
 
 /**
  * Wraps a {@code LoaderRemoverCache<K,V>} as a {@code RemoverCache<K,V>}. This
@@ -113,4 +116,22 @@ public class LoaderRemoverCacheAsRemoverCacheAdapter< K, V, D > implements Remov
 	{
 		cache.invalidateAll( parallelismThreshold );
 	}
+
+	@Override
+	public void addRemovalListener( final RemovalListener< ? super K, ? super V > listener, final Executor executor )
+	{
+		cache.addRemovalListener( listener, executor );
+	}
+
+	@Override
+	public void removeRemovalListener( final RemovalListener< ? super K, ? super V > listener )
+	{
+		cache.removeRemovalListener( listener );
+	}
+
+	@Override
+	public CacheStats stats()
+	{
+		return cache.stats();
+	}
 }
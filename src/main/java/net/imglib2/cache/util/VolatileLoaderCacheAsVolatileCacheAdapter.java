@@ -34,8 +34,11 @@
 package net.imglib2.cache.util;
 
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.function.Predicate;
 
+import net.imglib2.cache.RemovalListener;
+import net.imglib2.cache.stats.CacheStats;
 import net.imglib2.cache.volatiles.CacheHints;
 import net.imglib2.cache.volatiles.VolatileCache;
 import net.imglib2.cache.volatiles.VolatileCacheLoader;
@@ -82,4 +85,22 @@ public class VolatileLoaderCacheAsVolatileCacheAdapter< K, V > implements Volati
 	{
 		cache.invalidateAll( parallelismThreshold );
 	}
+
+	@Override
+	public void addRemovalListener( final RemovalListener< ? super K, ? super V > listener, final Executor executor )
+	{
+		cache.addRemovalListener( listener, executor );
+	}
+
+	@Override
+	public void removeRemovalListener( final RemovalListener< ? super K, ? super V > listener )
+	{
+		cache.removeRemovalListener( listener );
+	}
+
+	@Override
+	public CacheStats stats()
+	{
+		return cache.stats();
+	}
 }
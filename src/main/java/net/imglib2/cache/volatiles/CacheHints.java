@@ -51,6 +51,10 @@ import net.imglib2.cache.queue.BlockingFetchQueues;
  * <p>
  * In BigDataViewer, priorities usually correspond to resolution levels in some
  * way. For example this can be used to load low-resolution data first.
+ * <p>
+ * Finally, {@link #isPromote()} specifies whether accessed entries should be
+ * promoted into the bounded tier of the backing cache. This should be
+ * {@code false} for bulk sweeps that should not flush the working set.
  *
  * @author Tobias Pietzsch
  */
@@ -62,6 +66,8 @@ public class CacheHints
 
 	private final boolean enqueuToFront;
 
+	private final boolean promote;
+
 	/**
 	 *
 	 * @param loadingStrategy
@@ -69,14 +75,30 @@ public class CacheHints
 	 * @param enqueuToFront
 	 */
 	public CacheHints( final LoadingStrategy loadingStrategy, final int queuePriority, final boolean enqueuToFront )
+	{
+		this( loadingStrategy, queuePriority, enqueuToFront, true );
+	}
+
+	/**
+	 *
+	 * @param loadingStrategy
+	 * @param queuePriority
+	 * @param enqueuToFront
+	 * @param promote
+	 *            whether accessed entries should be promoted into the bounded
+	 *            tier of the backing cache (see {@link #isPromote()}).
+	 */
+	public CacheHints( final LoadingStrategy loadingStrategy, final int queuePriority, final boolean enqueuToFront, final boolean promote )
 	{
 		this.loadingStrategy = loadingStrategy;
 		this.queuePriority = queuePriority;
 		this.enqueuToFront = enqueuToFront;
+		this.promote = promote;
 
 		int value = loadingStrategy.hashCode();
 		value = 31 * value + queuePriority;
 		value = 31 * value + Boolean.hashCode( enqueuToFront );
+		value = 31 * value + Boolean.hashCode( promote );
 		hashcode = value;
 	}
 
@@ -118,6 +140,19 @@ public class CacheHints
 		return enqueuToFront;
 	}
 
+	/**
+	 * Return true if entries that are accessed or loaded with these hints
+	 * should be promoted into the bounded (strongly or softly referenced) tier
+	 * of the backing cache. Return false for bulk sweeps: Then loading is
+	 * done with {@code net.imglib2.cache.ref.BulkAccess} enabled, and the
+	 * sweep does not evict the working set.
+	 *
+	 * @return true if accessed entries should be promoted (default).
+	 */
+	public boolean isPromote()
+	{
+		return promote;
+	}
 
 	@Override
 	public boolean equals( final Object other )
@@ -127,7 +162,7 @@ public class CacheHints
 		if ( !( other instanceof CacheHints ) )
 			return false;
 		final CacheHints that = ( CacheHints ) other;
-		return ( this.loadingStrategy == that.loadingStrategy ) && ( this.queuePriority == that.queuePriority ) && ( this.enqueuToFront == that.enqueuToFront );
+		return ( this.loadingStrategy == that.loadingStrategy ) && ( this.queuePriority == that.queuePriority ) && ( this.enqueuToFront == that.enqueuToFront ) && ( this.promote == that.promote );
 	}
 
 	private final int hashcode;
@@ -141,6 +176,6 @@ public class CacheHints
 	@Override
 	public String toString()
 	{
-		return "(" + loadingStrategy + ", " + queuePriority + ", " + Boolean.toString( enqueuToFront ) + ")";
+		return "(" + loadingStrategy + ", " + queuePriority + ", " + Boolean.toString( enqueuToFront ) + ( promote ? "" : ", no promote" ) + ")";
 	}
 }
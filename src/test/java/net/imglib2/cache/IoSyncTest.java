@@ -0,0 +1,133 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class IoSyncTest
+{
+	/**
+	 * Stores values in a map, and remembers the name of the thread that wrote
+	 * them.
+	 */
+	static class MapIo implements CacheLoader< Integer, String >, CacheRemover< Integer, String, String >
+	{
+		final ConcurrentHashMap< Integer, String > stored = new ConcurrentHashMap<>();
+
+		final ConcurrentHashMap< Integer, String > writerThread = new ConcurrentHashMap<>();
+
+		final CountDownLatch written;
+
+		MapIo( final int numWrites )
+		{
+			written = new CountDownLatch( numWrites );
+		}
+
+		@Override
+		public String get( final Integer key )
+		{
+			return stored.get( key );
+		}
+
+		@Override
+		public void onRemoval( final Integer key, final String valueData )
+		{
+			stored.put( key, valueData );
+			writerThread.put( key, Thread.currentThread().getName() );
+			written.countDown();
+		}
+
+		@Override
+		public CompletableFuture< Void > persist( final Integer key, final String valueData )
+		{
+			onRemoval( key, valueData );
+			return CompletableFuture.completedFuture( null );
+		}
+
+		@Override
+		public String extract( final String value )
+		{
+			return value;
+		}
+
+		@Override
+		public String reconstruct( final Integer key, final String valueData )
+		{
+			return valueData;
+		}
+	}
+
+	/**
+	 * Writer threads are created by the given {@link ThreadFactory}, and
+	 * removed values are written through them and can be loaded afterwards.
+	 */
+	@Test
+	public void testThreadFactory() throws Exception
+	{
+		final AtomicInteger numThreads = new AtomicInteger();
+		final ThreadFactory factory = r -> {
+			final Thread t = new Thread( r, "custom-writer-" + numThreads.getAndIncrement() );
+			t.setDaemon( true );
+			return t;
+		};
+		final MapIo io = new MapIo( 20 );
+		final IoSync< Integer, String, String > iosync = new IoSync<>( io, io, 2, 10, factory );
+		try
+		{
+			assertEquals( 2, numThreads.get() );
+			for ( int key = 0; key < 20; ++key )
+				iosync.onRemoval( key, "value" + key );
+			assertTrue( io.written.await( 10, TimeUnit.SECONDS ) );
+			for ( int key = 0; key < 20; ++key )
+			{
+				assertEquals( "value" + key, iosync.get( key ) );
+				assertTrue( io.writerThread.get( key ).startsWith( "custom-writer-" ) );
+			}
+		}
+		finally
+		{
+			iosync.shutdown();
+		}
+	}
+}
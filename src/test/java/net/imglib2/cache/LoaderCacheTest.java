@@ -0,0 +1,112 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.cache.ref.GuardedStrongRefLoaderCache;
+import net.imglib2.cache.ref.SoftRefLoaderCache;
+import net.imglib2.cache.ref.WeakRefLoaderCache;
+import net.imglib2.cache.stats.CacheStats;
+
+import org.junit.Test;
+
+public class LoaderCacheTest
+{
+	/**
+	 * Loads {@code "value-<key>"} values, taking 10 ms per batch.
+	 */
+	static class SlowBatchLoader implements BatchCacheLoader< Integer, String >
+	{
+		final AtomicInteger numBatches = new AtomicInteger();
+
+		@Override
+		public Map< Integer, String > getAll( final Collection< ? extends Integer > keys ) throws Exception
+		{
+			numBatches.incrementAndGet();
+			Thread.sleep( 10 );
+			final Map< Integer, String > values = new HashMap<>();
+			for ( final Integer key : keys )
+				values.put( key, "value-" + key );
+			return values;
+		}
+
+		@Override
+		public int maxBatchSize()
+		{
+			return 4;
+		}
+	}
+
+	/**
+	 * getAll() loads missing keys in batches of {@code maxBatchSize()}, and
+	 * records a load per key, with the duration of each batch split across
+	 * its keys.
+	 */
+	@Test
+	public void testGetAll() throws Exception
+	{
+		testGetAll( new SoftRefLoaderCache<>() );
+		testGetAll( new WeakRefLoaderCache<>() );
+		testGetAll( new GuardedStrongRefLoaderCache<>( 100 ) );
+	}
+
+	private void testGetAll( final LoaderCache< Integer, String > cache ) throws Exception
+	{
+		final SlowBatchLoader loader = new SlowBatchLoader();
+		cache.get( 0, loader );
+
+		final Map< Integer, String > values = cache.getAll( Arrays.asList( 0, 1, 2, 3, 4, 5, 6, 7, 8 ), loader );
+		assertEquals( 9, values.size() );
+		for ( int key = 0; key < 9; ++key )
+			assertEquals( "value-" + key, values.get( key ) );
+		assertEquals( 3, loader.numBatches.get() );
+
+		final CacheStats stats = cache.stats();
+		assertEquals( 9, stats.getLoadSuccessCount() );
+		assertTrue( stats.getTotalLoadTime() >= TimeUnit.MILLISECONDS.toNanos( 30 ) );
+		long histogramCount = 0;
+		for ( final long count : stats.getLoadTimeHistogram() )
+			histogramCount += count;
+		assertEquals( 9, histogramCount );
+	}
+}
@@ -0,0 +1,94 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.img;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.type.numeric.integer.IntType;
+
+import org.junit.Test;
+
+public class CachedCellImgTest
+{
+	/**
+	 * Test that prefetching loads each cell intersecting the interval once.
+	 */
+	@Test
+	public void testPrefetch() throws Exception
+	{
+		final AtomicLong numLoads = new AtomicLong();
+		final CachedCellImg< IntType, ? > img = new ReadOnlyCachedCellImgFactory().create(
+				new long[] { 100, 100 },
+				new IntType(),
+				cell -> {
+					numLoads.incrementAndGet();
+					cell.forEach( t -> t.set( 1 ) );
+				},
+				ReadOnlyCachedCellImgOptions.options().cellDimensions( 10 ) );
+
+		final AtomicLong numProgress = new AtomicLong();
+		final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			// cells 1..3 x 0..2
+			img.prefetch( new FinalInterval( new long[] { 15, -5 }, new long[] { 35, 25 } ), executor, 3, true,
+					( numLoaded, numCells ) -> {
+						assertEquals( 9, numCells );
+						numProgress.incrementAndGet();
+					} ).get();
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+		assertEquals( 9, numLoads.get() );
+		assertEquals( 9, numProgress.get() );
+
+		final ExecutorService executor2 = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			img.materialize( executor2 );
+		}
+		finally
+		{
+			executor2.shutdown();
+		}
+		assertEquals( 100, numLoads.get() );
+	}
+}
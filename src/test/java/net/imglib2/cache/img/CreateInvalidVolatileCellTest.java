@@ -0,0 +1,117 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.img;
+
+import static net.imglib2.img.basictypeaccess.AccessFlags.DIRTY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import net.imglib2.img.basictypeaccess.AccessFlags;
+import net.imglib2.img.basictypeaccess.volatiles.array.DirtyVolatileByteArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileByteArray;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.PrimitiveType;
+import net.imglib2.util.Fraction;
+
+import org.junit.Test;
+
+public class CreateInvalidVolatileCellTest
+{
+	/**
+	 * A 4x4 grid of cells. Interior cells are 30x30, cells at the right and
+	 * bottom border are 10x30 and 30x10, respectively, and the corner cell is
+	 * 10x10.
+	 */
+	private final CellGrid grid = new CellGrid( new long[] { 100, 100 }, new int[] { 30, 30 } );
+
+	/**
+	 * Cells with the same number of pixels share one invalid access, cells
+	 * with a different number of pixels get their own.
+	 */
+	@Test
+	public void testSharing() throws Exception
+	{
+		final CreateInvalidVolatileCell< VolatileByteArray > createInvalid = CreateInvalidVolatileCell.get( grid, new Fraction(), PrimitiveType.BYTE, AccessFlags.setOf() );
+
+		final Cell< VolatileByteArray > interior1 = createInvalid.createInvalid( 0L );
+		final Cell< VolatileByteArray > interior2 = createInvalid.createInvalid( 5L );
+		final Cell< VolatileByteArray > right = createInvalid.createInvalid( 3L );
+		final Cell< VolatileByteArray > bottom = createInvalid.createInvalid( 12L );
+		final Cell< VolatileByteArray > corner = createInvalid.createInvalid( 15L );
+
+		assertSame( interior1.getData(), interior2.getData() );
+		assertNotSame( interior1.getData(), right.getData() );
+		assertNotSame( interior1.getData(), corner.getData() );
+		assertNotSame( right.getData(), corner.getData() );
+
+		// 10x30 and 30x10 have the same number of pixels
+		assertSame( right.getData(), bottom.getData() );
+
+		assertFalse( interior1.getData().isValid() );
+		assertEquals( 900, interior1.getData().getArrayLength() );
+		assertEquals( 300, right.getData().getArrayLength() );
+		assertEquals( 100, corner.getData().getArrayLength() );
+
+		// cell geometry is per key
+		assertEquals( 30, interior2.min( 0 ) );
+		assertEquals( 30, interior2.min( 1 ) );
+		assertEquals( 10, corner.dimension( 0 ) );
+	}
+
+	/**
+	 * Shared dirty accesses are created non-dirty. A shared access that has
+	 * been written to is replaced for subsequent invalid cells.
+	 */
+	@Test
+	public void testDirty() throws Exception
+	{
+		final CreateInvalidVolatileCell< DirtyVolatileByteArray > createInvalid = CreateInvalidVolatileCell.get( grid, new Fraction(), PrimitiveType.BYTE, AccessFlags.setOf( DIRTY ) );
+
+		final DirtyVolatileByteArray a1 = createInvalid.createInvalid( 0L ).getData();
+		final DirtyVolatileByteArray a2 = createInvalid.createInvalid( 1L ).getData();
+		assertSame( a1, a2 );
+		assertFalse( a1.isDirty() );
+
+		a1.setValue( 0, ( byte ) 1 );
+
+		final DirtyVolatileByteArray a3 = createInvalid.createInvalid( 2L ).getData();
+		assertNotSame( a1, a3 );
+		assertFalse( a3.isDirty() );
+		assertEquals( 0, a3.getValue( 0 ) );
+		assertSame( a3, createInvalid.createInvalid( 4L ).getData() );
+	}
+}
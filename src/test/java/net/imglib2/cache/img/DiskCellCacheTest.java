@@ -0,0 +1,236 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.img;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.cache.iotiming.CacheIoTiming;
+import net.imglib2.cache.iotiming.IoStatistics;
+import net.imglib2.img.basictypeaccess.AccessFlags;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.PrimitiveType;
+import net.imglib2.util.Fraction;
+
+import org.junit.Test;
+
+public class DiskCellCacheTest
+{
+	/**
+	 * Cells of 30 floats (120 bytes), and a 10 float (40 bytes) cell at the
+	 * end.
+	 */
+	private final CellGrid grid = new CellGrid( new long[] { 100 }, new int[] { 30 } );
+
+	private final AtomicInteger numBackingLoads = new AtomicInteger();
+
+	private final CacheLoader< Long, Cell< FloatArray > > backingLoader = key -> {
+		numBackingLoads.incrementAndGet();
+		final long[] min = new long[ 1 ];
+		final int[] dims = new int[ 1 ];
+		grid.getCellDimensions( key, min, dims );
+		final float[] data = new float[ dims[ 0 ] ];
+		for ( int i = 0; i < data.length; ++i )
+			data[ i ] = min[ 0 ] + i;
+		return new Cell<>( dims, min, new FloatArray( data ) );
+	};
+
+	/**
+	 * Cells that are not on disk are counted as backing loader cells with
+	 * their data size. Cells written to and read from disk are counted with
+	 * the bytes written and read.
+	 */
+	@Test
+	public void testByteCounts() throws Exception
+	{
+		final Path dir = DiskCellCache.createTempDirectory( "DiskCellCacheTest", true );
+		final DiskCellCache< FloatArray > cache = new DiskCellCache<>( dir, grid, backingLoader, AccessIo.get( PrimitiveType.FLOAT, AccessFlags.setOf() ), new Fraction() );
+
+		final Cell< FloatArray > cell0 = cache.get( 0L );
+		final Cell< FloatArray > cell3 = cache.get( 3L );
+		assertEquals( 2, numBackingLoads.get() );
+		assertEquals( 2, cache.getBackingLoaderThroughput().getReadOps() );
+		assertEquals( 120 + 40, cache.getBackingLoaderThroughput().getReadBytes() );
+		assertEquals( 0, cache.getDiskThroughput().getReadOps() );
+
+		cache.onRemoval( 0L, cell0.getData() );
+		cache.onRemoval( 3L, cell3.getData() );
+		assertEquals( 2, cache.getDiskThroughput().getWriteOps() );
+		assertEquals( 160, cache.getDiskThroughput().getWriteBytes() );
+		assertEquals( 2, cache.stats().getWriteBackCount() );
+		assertEquals( 160, cache.stats().getWriteBackBytes() );
+
+		final IoStatistics statistics = new IoStatistics();
+		final AtomicReference< Cell< FloatArray > > reloaded = new AtomicReference<>();
+		CacheIoTiming.runWith( statistics, () -> {
+			try
+			{
+				reloaded.set( cache.get( 3L ) );
+			}
+			catch ( final Exception e )
+			{
+				throw new RuntimeException( e );
+			}
+		} );
+		assertEquals( 2, numBackingLoads.get() );
+		assertEquals( 1, cache.getDiskThroughput().getReadOps() );
+		assertEquals( 40, cache.getDiskThroughput().getReadBytes() );
+		assertEquals( 40, statistics.getIoBytes() );
+		assertEquals( 90f, reloaded.get().getData().getValue( 0 ), 0 );
+		assertEquals( 99f, reloaded.get().getData().getValue( 9 ), 0 );
+
+		final String loaded = cache.getBackingLoaderThroughput().toString();
+		assertTrue( loaded, loaded.startsWith( "loaded cell data: 2 ops, 160 bytes" ) );
+		assertFalse( loaded, loaded.contains( ";" ) );
+		assertTrue( cache.getDiskThroughput().toString().startsWith( "disk read: 1 ops, 40 bytes" ) );
+	}
+
+	/**
+	 * Byte cells are saved with a relative put, which advances the position
+	 * of the buffer. They must still be written to and read back from disk.
+	 */
+	@Test
+	public void testByteRoundTrip() throws Exception
+	{
+		final CacheLoader< Long, Cell< ByteArray > > byteLoader = key -> {
+			final long[] min = new long[ 1 ];
+			final int[] dims = new int[ 1 ];
+			grid.getCellDimensions( key, min, dims );
+			final byte[] data = new byte[ dims[ 0 ] ];
+			for ( int i = 0; i < data.length; ++i )
+				data[ i ] = ( byte ) ( min[ 0 ] + i + 7 );
+			return new Cell<>( dims, min, new ByteArray( data ) );
+		};
+		final Path dir = DiskCellCache.createTempDirectory( "DiskCellCacheTest", true );
+		final DiskCellCache< ByteArray > cache = new DiskCellCache<>( dir, grid, byteLoader, AccessIo.get( PrimitiveType.BYTE, AccessFlags.setOf() ), new Fraction() );
+
+		cache.onRemoval( 1L, cache.get( 1L ).getData() );
+		cache.onRemoval( 3L, cache.get( 3L ).getData() );
+		assertEquals( 30, dir.resolve( "1" ).toFile().length() );
+		assertEquals( 10, dir.resolve( "3" ).toFile().length() );
+
+		final ByteArray reloaded1 = cache.get( 1L ).getData();
+		final ByteArray reloaded3 = cache.get( 3L ).getData();
+		assertEquals( 2, cache.getDiskThroughput().getReadOps() );
+		for ( int i = 0; i < 30; ++i )
+			assertEquals( ( byte ) ( 30 + i + 7 ), reloaded1.getValue( i ) );
+		for ( int i = 0; i < 10; ++i )
+			assertEquals( ( byte ) ( 90 + i + 7 ), reloaded3.getValue( i ) );
+	}
+
+	/**
+	 * Cells of every primitive type are written to disk and read back
+	 * unchanged.
+	 */
+	@Test
+	public void testRoundTripAllTypes() throws Exception
+	{
+		for ( final PrimitiveType type : new PrimitiveType[] {
+				PrimitiveType.BYTE, PrimitiveType.CHAR, PrimitiveType.SHORT, PrimitiveType.INT,
+				PrimitiveType.LONG, PrimitiveType.FLOAT, PrimitiveType.DOUBLE } )
+			roundTrip( AccessIo.get( type, AccessFlags.setOf() ) );
+	}
+
+	private < A > void roundTrip( final AccessIo< A > accessIo ) throws Exception
+	{
+		final int bytesPerElement = accessIo.getBytesPerElement();
+		final CacheLoader< Long, Cell< A > > loader = key -> {
+			final long[] min = new long[ 1 ];
+			final int[] dims = new int[ 1 ];
+			grid.getCellDimensions( key, min, dims );
+			return new Cell<>( dims, min, accessIo.load( pattern( key, dims[ 0 ] * bytesPerElement ), dims[ 0 ] ) );
+		};
+		final Path dir = DiskCellCache.createTempDirectory( "DiskCellCacheTest", true );
+		final DiskCellCache< A > cache = new DiskCellCache<>( dir, grid, loader, accessIo, new Fraction() );
+
+		for ( long key = 0; key < 4; ++key )
+			cache.onRemoval( key, cache.get( key ).getData() );
+		for ( long key = 0; key < 4; ++key )
+		{
+			final int numElements = key < 3 ? 30 : 10;
+			final ByteBuffer saved = ByteBuffer.allocate( numElements * bytesPerElement );
+			accessIo.save( cache.get( key ).getData(), saved, numElements );
+			assertArrayEquals( pattern( key, numElements * bytesPerElement ).array(), saved.array() );
+		}
+		assertEquals( 4, cache.getDiskThroughput().getReadOps() );
+	}
+
+	private static ByteBuffer pattern( final long key, final int numBytes )
+	{
+		final ByteBuffer bytes = ByteBuffer.allocate( numBytes );
+		for ( int i = 0; i < numBytes; ++i )
+			bytes.put( i, ( byte ) ( 31 * key + i + 1 ) );
+		return bytes;
+	}
+
+	/**
+	 * A cell file that is shorter than the cell is not loaded as zero-filled
+	 * data.
+	 */
+	@Test
+	public void testShortFile() throws Exception
+	{
+		final Path dir = DiskCellCache.createTempDirectory( "DiskCellCacheTest", true );
+		final DiskCellCache< FloatArray > cache = new DiskCellCache<>( dir, grid, backingLoader, AccessIo.get( PrimitiveType.FLOAT, AccessFlags.setOf() ), new Fraction() );
+
+		cache.onRemoval( 1L, cache.get( 1L ).getData() );
+		try ( final RandomAccessFile file = new RandomAccessFile( dir.resolve( "1" ).toFile(), "rw" ) )
+		{
+			file.setLength( 100 );
+		}
+		try
+		{
+			cache.get( 1L );
+			fail( "expected EOFException" );
+		}
+		catch ( final EOFException e )
+		{
+			assertEquals( 0, cache.getDiskThroughput().getReadOps() );
+		}
+	}
+}
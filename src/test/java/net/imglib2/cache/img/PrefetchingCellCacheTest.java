@@ -0,0 +1,171 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.img;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.cache.Cache;
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.cache.queue.BlockingFetchQueues;
+import net.imglib2.cache.queue.FetcherThreads;
+import net.imglib2.cache.ref.BulkAccess;
+import net.imglib2.cache.ref.SoftRefLoaderCache;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+
+import org.junit.Test;
+
+public class PrefetchingCellCacheTest
+{
+	/**
+	 * A 10x10 grid of 10x10 cells.
+	 */
+	private final CellGrid grid = new CellGrid( new long[] { 100, 100 }, new int[] { 10, 10 } );
+
+	/**
+	 * Names of the threads that loaded each cell.
+	 */
+	private final ConcurrentHashMap< Long, String > loadedBy = new ConcurrentHashMap<>();
+
+	/**
+	 * Whether {@link BulkAccess} was active when each cell was loaded.
+	 */
+	private final ConcurrentHashMap< Long, Boolean > loadedInBulk = new ConcurrentHashMap<>();
+
+	private final CacheLoader< Long, Cell< String > > loader = key -> {
+		loadedBy.put( key, Thread.currentThread().getName() );
+		loadedInBulk.put( key, BulkAccess.isActive() );
+		final long[] min = new long[ 2 ];
+		final int[] dims = new int[ 2 ];
+		grid.getCellDimensions( key, min, dims );
+		return new Cell<>( dims, min, "cell-" + key );
+	};
+
+	private final Cache< Long, Cell< String > > backingCache = new SoftRefLoaderCache< Long, Cell< String > >().withLoader( loader );
+
+	/**
+	 * Moving along a row predicts the next cell in the direction of movement
+	 * and the face-adjacent neighbours, which are loaded on the given
+	 * executor.
+	 */
+	@Test
+	public void testPredictions() throws Exception
+	{
+		final PrefetchingCellCache< String > cache = new PrefetchingCellCache<>( backingCache, grid, 1, Runnable::run, 256, Long.MAX_VALUE / 4 );
+		cache.get( 11L );
+		cache.get( 12L );
+
+		// next in direction of movement
+		assertTrue( loadedBy.containsKey( 13L ) );
+		// face-adjacent neighbours of 12
+		assertTrue( loadedBy.containsKey( 2L ) );
+		assertTrue( loadedBy.containsKey( 22L ) );
+		// not adjacent to 11 or 12
+		assertTrue( !loadedBy.containsKey( 55L ) );
+	}
+
+	/**
+	 * Without an executor, prefetching runs on dedicated threads, not in the
+	 * common pool.
+	 */
+	@Test
+	public void testDefaultExecutor() throws Exception
+	{
+		final PrefetchingCellCache< String > cache = new PrefetchingCellCache<>( backingCache, grid, 1 );
+		cache.get( 44L );
+		cache.get( 45L );
+		final long deadline = System.currentTimeMillis() + 10_000;
+		while ( !loadedBy.containsKey( 46L ) && System.currentTimeMillis() < deadline )
+			Thread.sleep( 5 );
+		assertTrue( loadedBy.get( 46L ).startsWith( "PrefetchingCellCache-" ) );
+	}
+
+	/**
+	 * Requests made by fetcher threads do not cause predictions.
+	 */
+	@Test
+	public void testNoPredictionsFromFetchers() throws Exception
+	{
+		final PrefetchingCellCache< String > cache = new PrefetchingCellCache<>( backingCache, grid, 1, Runnable::run, 256, Long.MAX_VALUE / 4 );
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 1, 0 );
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		final FetcherThreads fetchers = FetcherThreads.onExecutor( queue, 1, executor );
+		try
+		{
+			final CountDownLatch done = new CountDownLatch( 1 );
+			queue.put( () -> cache.get( 11L ), 0, false );
+			queue.put( () -> cache.get( 12L ), 0, false );
+			queue.put( () -> {
+				done.countDown();
+				return null;
+			}, 0, false );
+			assertTrue( done.await( 10, TimeUnit.SECONDS ) );
+			assertEquals( 2, loadedBy.size() );
+		}
+		finally
+		{
+			fetchers.shutdown();
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Predicted cells are loaded with bulk access active. Requests with bulk
+	 * access active do not cause predictions.
+	 */
+	@Test
+	public void testBulkAccess() throws Exception
+	{
+		final PrefetchingCellCache< String > cache = new PrefetchingCellCache<>( backingCache, grid, 1, Runnable::run, 256, Long.MAX_VALUE / 4 );
+		cache.get( 11L );
+		cache.get( 12L );
+		assertFalse( loadedInBulk.get( 11L ) );
+		assertTrue( loadedInBulk.get( 13L ) );
+		assertTrue( loadedInBulk.get( 22L ) );
+
+		loadedBy.clear();
+		BulkAccess.call( () -> cache.get( 55L ) );
+		BulkAccess.call( () -> cache.get( 56L ) );
+		assertEquals( 2, loadedBy.size() );
+	}
+}
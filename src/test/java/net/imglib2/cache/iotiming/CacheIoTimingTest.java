@@ -0,0 +1,136 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.iotiming;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class CacheIoTimingTest
+{
+	/**
+	 * By default, threads of the same ThreadGroup share statistics, and
+	 * threads of different groups do not.
+	 */
+	@Test
+	public void testThreadGroups() throws InterruptedException
+	{
+		final IoStatistics own = CacheIoTiming.getIoStatistics();
+		assertSame( own, CacheIoTiming.getIoStatistics( Thread.currentThread().getThreadGroup() ) );
+		assertSame( own.getIoTimeBudget(), CacheIoTiming.getIoTimeBudget() );
+
+		final AtomicReference< IoStatistics > sameGroup = new AtomicReference<>();
+		final Thread t1 = new Thread( () -> sameGroup.set( CacheIoTiming.getIoStatistics() ) );
+		t1.start();
+		t1.join();
+		assertSame( own, sameGroup.get() );
+
+		final ThreadGroup group = new ThreadGroup( "CacheIoTimingTest" );
+		final AtomicReference< IoStatistics > otherGroup = new AtomicReference<>();
+		final Thread t2 = new Thread( group, () -> otherGroup.set( CacheIoTiming.getIoStatistics() ) );
+		t2.start();
+		t2.join();
+		assertNotSame( own, otherGroup.get() );
+		assertSame( otherGroup.get(), CacheIoTiming.getIoStatistics( group ) );
+	}
+
+	/**
+	 * runWith() makes statistics current for the duration of the runnable,
+	 * on the calling thread only, and restores the previous statistics
+	 * afterwards, also when nested or when the runnable throws.
+	 */
+	@Test
+	public void testRunWith() throws InterruptedException
+	{
+		final IoStatistics group = CacheIoTiming.getIoStatistics();
+		final IoStatistics outer = new IoStatistics();
+		final IoStatistics inner = new IoStatistics();
+		final AtomicReference< IoStatistics > otherThread = new AtomicReference<>();
+
+		CacheIoTiming.runWith( outer, () -> {
+			assertSame( outer, CacheIoTiming.getIoStatistics() );
+			assertSame( outer.getIoTimeBudget(), CacheIoTiming.getIoTimeBudget() );
+
+			CacheIoTiming.runWith( inner, () -> assertSame( inner, CacheIoTiming.getIoStatistics() ) );
+			assertSame( outer, CacheIoTiming.getIoStatistics() );
+
+			final Thread t = new Thread( () -> otherThread.set( CacheIoTiming.getIoStatistics() ) );
+			t.start();
+			try
+			{
+				t.join();
+			}
+			catch ( final InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+			}
+		} );
+		assertSame( group, CacheIoTiming.getIoStatistics() );
+		assertSame( group, otherThread.get() );
+
+		try
+		{
+			CacheIoTiming.runWith( outer, () -> {
+				throw new IllegalStateException();
+			} );
+			fail();
+		}
+		catch ( final IllegalStateException e )
+		{}
+		assertSame( group, CacheIoTiming.getIoStatistics() );
+	}
+
+	/**
+	 * setIoStatistics() returns the previously set statistics, and setting
+	 * {@code null} reverts to the ThreadGroup statistics.
+	 */
+	@Test
+	public void testSetIoStatistics()
+	{
+		final IoStatistics group = CacheIoTiming.getIoStatistics();
+		final IoStatistics a = new IoStatistics();
+		final IoStatistics b = new IoStatistics();
+
+		assertNull( CacheIoTiming.setIoStatistics( a ) );
+		assertSame( a, CacheIoTiming.setIoStatistics( b ) );
+		assertSame( b, CacheIoTiming.getIoStatistics() );
+		assertSame( b, CacheIoTiming.setIoStatistics( null ) );
+		assertSame( group, CacheIoTiming.getIoStatistics() );
+	}
+}
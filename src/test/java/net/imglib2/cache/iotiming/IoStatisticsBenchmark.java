@@ -0,0 +1,163 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.iotiming;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.imglib2.util.StopWatch;
+
+/**
+ * Compares the IO time accounting that every {@code BUDGETED} request does
+ * while it waits (read IO time, start, stop, read IO time, use budget) on
+ * {@link IoStatistics} and {@link IoTimeBudget} with the previous
+ * implementation, where all of these were {@code synchronized}. Run
+ * {@link #main(String[])} to benchmark with 1 to 64 threads.
+ *
+ * @author Tobias Pietzsch
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class IoStatisticsBenchmark
+{
+	private IoStatistics stats;
+
+	private SynchronizedIoStatistics synchronizedStats;
+
+	@Setup
+	public void setup()
+	{
+		stats = new IoStatistics();
+		stats.getIoTimeBudget().reset( new long[] { Long.MAX_VALUE / 2 } );
+		synchronizedStats = new SynchronizedIoStatistics();
+	}
+
+	@Benchmark
+	public long budgetedAccounting()
+	{
+		final IoTimeBudget budget = stats.getIoTimeBudget();
+		final long t0 = stats.getIoNanoTime();
+		stats.start();
+		stats.stop();
+		final long t = stats.getIoNanoTime() - t0;
+		budget.use( t, 0 );
+		return t;
+	}
+
+	@Benchmark
+	public long budgetedAccountingSynchronized()
+	{
+		final long t0 = synchronizedStats.getIoNanoTime();
+		synchronizedStats.start();
+		synchronizedStats.stop();
+		final long t = synchronizedStats.getIoNanoTime() - t0;
+		synchronizedStats.use( t );
+		return t;
+	}
+
+	/**
+	 * The previous {@link IoStatistics} and {@link IoTimeBudget}
+	 * implementation, reduced to what is needed for the benchmark.
+	 */
+	static class SynchronizedIoStatistics
+	{
+		private final ConcurrentHashMap< Thread, StopWatch > perThreadStopWatches = new ConcurrentHashMap<>();
+
+		private final StopWatch stopWatch = StopWatch.createStopped();
+
+		private int numRunningThreads;
+
+		private long budget = Long.MAX_VALUE / 2;
+
+		synchronized void start()
+		{
+			getThreadStopWatch().start();
+			if ( numRunningThreads++ == 0 )
+				stopWatch.start();
+		}
+
+		synchronized void stop()
+		{
+			getThreadStopWatch().stop();
+			if ( --numRunningThreads == 0 )
+				stopWatch.stop();
+		}
+
+		long getIoNanoTime()
+		{
+			return stopWatch.nanoTime();
+		}
+
+		synchronized void use( final long t )
+		{
+			budget -= t;
+		}
+
+		private StopWatch getThreadStopWatch()
+		{
+			return perThreadStopWatches.computeIfAbsent( Thread.currentThread(), k -> StopWatch.createStopped() );
+		}
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		for ( final int threads : new int[] { 1, 2, 4, 8, 16, 32, 64 } )
+		{
+			final Options options = new OptionsBuilder()
+					.include( IoStatisticsBenchmark.class.getSimpleName() )
+					.threads( threads )
+					.build();
+			new Runner( options ).run();
+		}
+	}
+}
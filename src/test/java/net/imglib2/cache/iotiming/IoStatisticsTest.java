@@ -0,0 +1,134 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.iotiming;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class IoStatisticsTest
+{
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos( 1 );
+
+	/**
+	 * Nested start/stop pairs on one thread are timed once, from the
+	 * outermost start to the outermost stop.
+	 */
+	@Test
+	public void testNested() throws InterruptedException
+	{
+		final IoStatistics stats = new IoStatistics();
+
+		final long t0 = System.nanoTime();
+		stats.start();
+		Thread.sleep( 20 );
+		stats.start();
+		Thread.sleep( 20 );
+		// IO time of one thread grows at the rate of wall-clock time
+		assertTrue( stats.getCumulativeIoNanoTime() <= System.nanoTime() - t0 );
+		stats.stop();
+		// still inside the outer pair
+		final long io = stats.getIoNanoTime();
+		Thread.sleep( 20 );
+		assertTrue( stats.getIoNanoTime() >= io + 20 * MS );
+		stats.stop();
+		final long elapsed = System.nanoTime() - t0;
+
+		final long ioTime = stats.getIoNanoTime();
+		final long cumulative = stats.getCumulativeIoNanoTime();
+		assertTrue( ioTime >= 60 * MS );
+		assertTrue( ioTime <= elapsed );
+		assertEquals( ioTime, cumulative );
+
+		// stopped: no longer growing
+		Thread.sleep( 10 );
+		assertEquals( ioTime, stats.getIoNanoTime() );
+		assertEquals( cumulative, stats.getCumulativeIoNanoTime() );
+	}
+
+	/**
+	 * A stop() without matching start() is ignored.
+	 */
+	@Test
+	public void testUnbalancedStop() throws InterruptedException
+	{
+		final IoStatistics stats = new IoStatistics();
+		stats.stop();
+		assertEquals( 0, stats.getIoNanoTime() );
+		assertEquals( 0, stats.getCumulativeIoNanoTime() );
+
+		stats.start();
+		Thread.sleep( 10 );
+		stats.stop();
+		assertTrue( stats.getIoNanoTime() >= 10 * MS );
+		assertEquals( stats.getIoNanoTime(), stats.getCumulativeIoNanoTime() );
+	}
+
+	/**
+	 * IO of concurrent threads counts once towards the wall-clock IO time,
+	 * and per thread towards the cumulative IO time.
+	 */
+	@Test
+	public void testConcurrent() throws InterruptedException
+	{
+		final IoStatistics stats = new IoStatistics();
+		final Runnable io = () -> {
+			stats.start();
+			try
+			{
+				Thread.sleep( 50 );
+			}
+			catch ( final InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+			}
+			stats.stop();
+		};
+		final long t0 = System.nanoTime();
+		final Thread a = new Thread( io );
+		final Thread b = new Thread( io );
+		a.start();
+		b.start();
+		a.join();
+		b.join();
+		final long elapsed = System.nanoTime() - t0;
+
+		assertTrue( stats.getIoNanoTime() >= 50 * MS );
+		assertTrue( stats.getIoNanoTime() <= elapsed );
+		assertTrue( stats.getCumulativeIoNanoTime() >= 100 * MS );
+	}
+}
@@ -0,0 +1,145 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.iotiming;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class IoThroughputTest
+{
+	private static final long SECOND = 1_000_000_000L;
+
+	private final AtomicLong time = new AtomicLong( 1000 * SECOND );
+
+	private final IoThroughput throughput = new IoThroughput( "in", "out", time::get );
+
+	private void advance( final int seconds )
+	{
+		time.addAndGet( seconds * SECOND );
+	}
+
+	/**
+	 * Totals count all recorded operations and bytes, per stream.
+	 */
+	@Test
+	public void testTotals()
+	{
+		throughput.recordRead( 100 );
+		throughput.recordRead( 50 );
+		throughput.recordWrite( 7 );
+		assertEquals( 2, throughput.getReadOps() );
+		assertEquals( 150, throughput.getReadBytes() );
+		assertEquals( 1, throughput.getWriteOps() );
+		assertEquals( 7, throughput.getWriteBytes() );
+
+		final String s = throughput.toString();
+		assertTrue( s, s.startsWith( "in: 2 ops, 150 bytes" ) );
+		assertTrue( s, s.contains( "out: 1 ops, 7 bytes" ) );
+	}
+
+	/**
+	 * Rates are averaged over completed seconds, at most the last
+	 * WINDOW_SECONDS of them. The current second is not counted.
+	 */
+	@Test
+	public void testRollingRates()
+	{
+		for ( int i = 0; i < 10; ++i )
+			throughput.recordRead( 100 );
+		// no completed second yet
+		assertEquals( 0, throughput.getReadBytesPerSecond(), 0 );
+
+		advance( 1 );
+		assertEquals( 1000, throughput.getReadBytesPerSecond(), 0 );
+		assertEquals( 10, throughput.getReadOpsPerSecond(), 0 );
+		assertEquals( 0, throughput.getWriteBytesPerSecond(), 0 );
+
+		// recorded in the current second: not yet counted
+		throughput.recordRead( 1000 );
+		assertEquals( 1000, throughput.getReadBytesPerSecond(), 0 );
+
+		advance( 1 );
+		assertEquals( 1000, throughput.getReadBytesPerSecond(), 0 );
+		assertEquals( 5.5, throughput.getReadOpsPerSecond(), 0 );
+
+		// average over 5 seconds
+		advance( 3 );
+		assertEquals( 400, throughput.getReadBytesPerSecond(), 0 );
+
+		// the first second drops out of the window
+		advance( 1 );
+		assertEquals( 200, throughput.getReadBytesPerSecond(), 0 );
+
+		advance( 10 );
+		assertEquals( 0, throughput.getReadBytesPerSecond(), 0 );
+		assertEquals( 2000, throughput.getReadBytes() );
+	}
+
+	/**
+	 * Buckets of the ring are reset when they are reused for a later second.
+	 */
+	@Test
+	public void testBucketReuse()
+	{
+		throughput.recordWrite( 1_000_000 );
+		for ( int s = 0; s < 20; ++s )
+		{
+			advance( 1 );
+			throughput.recordWrite( 10 );
+		}
+		advance( 1 );
+		assertEquals( 10, throughput.getWriteBytesPerSecond(), 0 );
+		assertEquals( 1, throughput.getWriteOpsPerSecond(), 0 );
+	}
+
+	/**
+	 * A read-only {@link IoThroughput} shows only the reading stream and
+	 * rejects writes.
+	 */
+	@Test( expected = UnsupportedOperationException.class )
+	public void testReadOnly()
+	{
+		final IoThroughput readOnly = new IoThroughput( "in" );
+		readOnly.recordRead( 10 );
+		final String s = readOnly.toString();
+		assertTrue( s, s.startsWith( "in: 1 ops, 10 bytes" ) );
+		assertFalse( s, s.contains( ";" ) );
+		readOnly.recordWrite( 10 );
+	}
+}
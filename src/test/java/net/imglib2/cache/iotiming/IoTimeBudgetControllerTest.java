@@ -0,0 +1,145 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.iotiming;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class IoTimeBudgetControllerTest
+{
+	private static final long MS = 1_000_000L;
+
+	/**
+	 * With misses in every frame, the level 0 budget converges to the time
+	 * left of the target frame time after rendering, from either side.
+	 */
+	@Test
+	public void testConvergence()
+	{
+		// 50 fps: 20 ms per frame, initial budget 10 ms
+		final IoTimeBudgetController controller = new IoTimeBudgetController( 50 );
+		assertEquals( 10 * MS, controller.getBudget()[ 0 ] );
+
+		// rendering takes 8 ms, so 12 ms are left
+		long previous = controller.getBudget()[ 0 ];
+		for ( int i = 0; i < 40; ++i )
+		{
+			final long b = controller.update( 8 * MS, 0, 5, 0 )[ 0 ];
+			assertTrue( b >= previous );
+			assertTrue( b <= 12 * MS );
+			previous = b;
+		}
+		assertEquals( 12 * MS, previous, 0.01 * MS );
+
+		// rendering gets slower, 16 ms, so 4 ms are left
+		for ( int i = 0; i < 40; ++i )
+		{
+			final long b = controller.update( 16 * MS, 0, 5, 0 )[ 0 ];
+			assertTrue( b <= previous );
+			previous = b;
+		}
+		assertEquals( 4 * MS, previous, 0.01 * MS );
+	}
+
+	/**
+	 * Frames without misses do not increase the budget, but cap it to the
+	 * time left.
+	 */
+	@Test
+	public void testNoMisses()
+	{
+		final IoTimeBudgetController controller = new IoTimeBudgetController( 50 );
+		for ( int i = 0; i < 20; ++i )
+			assertEquals( 10 * MS, controller.update( 2 * MS, 0, 0, 0 )[ 0 ] );
+
+		final IoTimeBudgetController slow = new IoTimeBudgetController( 50 );
+		assertEquals( 5 * MS, slow.update( 15 * MS, 0, 0, 0 )[ 0 ] );
+		assertEquals( 5 * MS, slow.update( 15 * MS, 0, 0, 0 )[ 0 ] );
+	}
+
+	/**
+	 * A frame that blocked in IO and missed the target frame time halves the
+	 * budget.
+	 */
+	@Test
+	public void testOverrun()
+	{
+		final IoTimeBudgetController controller = new IoTimeBudgetController( 50 );
+		// 25 ms frame, 20 ms of which blocked in IO: render time 5 ms
+		assertEquals( 5 * MS, controller.update( 25 * MS, 20 * MS, 5, 0 )[ 0 ] );
+		assertEquals( 2500_000L, controller.update( 25 * MS, 20 * MS, 5, 0 )[ 0 ] );
+	}
+
+	/**
+	 * The budget is set to 0 while loads take much longer than the time
+	 * left, and recovers when loads get faster again.
+	 */
+	@Test
+	public void testRecoveryFromZero()
+	{
+		final IoTimeBudgetController controller = new IoTimeBudgetController( 50 );
+
+		// 10 ms left, loads take 50 ms
+		assertEquals( 0, controller.update( 10 * MS, 0, 5, 50 * MS )[ 0 ] );
+		assertEquals( 0, controller.update( 10 * MS, 0, 5, 50 * MS )[ 0 ] );
+
+		// loads take 1 ms
+		long previous = 0;
+		boolean recovered = false;
+		for ( int i = 0; i < 60; ++i )
+		{
+			final long b = controller.update( 10 * MS, 0, 5, 1 * MS )[ 0 ];
+			assertTrue( b >= previous );
+			recovered |= b > 0;
+			previous = b;
+		}
+		assertTrue( recovered );
+		assertEquals( 10 * MS, previous, 0.01 * MS );
+	}
+
+	/**
+	 * The budget of each level is the budget of the previous level times the
+	 * level ratio.
+	 */
+	@Test
+	public void testLevels()
+	{
+		final IoTimeBudgetController controller = new IoTimeBudgetController( 50, 3, 0.5 );
+		assertArrayEquals( new long[] { 10 * MS, 5 * MS, 2500_000L }, controller.getBudget() );
+		assertArrayEquals( new long[] { 5 * MS, 2500_000L, 1250_000L }, controller.update( 15 * MS, 0, 0, 0 ) );
+	}
+}
@@ -0,0 +1,328 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class BlockingFetchQueuesTest
+{
+	/**
+	 * Elements are taken by priority, then in the order given by front/back
+	 * enqueueing. After clearToPrefetch(), the prefetch deque holds the
+	 * highest priority queue first.
+	 */
+	@Test
+	public void testOrdering() throws InterruptedException
+	{
+		final BlockingFetchQueues< String > queue = new BlockingFetchQueues<>( 3, 1 );
+		queue.put( "1a", 1, false );
+		queue.put( "2a", 2, false );
+		queue.put( "0a", 0, false );
+		queue.put( "0b", 0, false );
+		queue.put( "0c", 0, true );
+		queue.put( "1b", 7, false ); // clamped to 2
+
+		assertEquals( "0c", queue.take() );
+		assertEquals( "0a", queue.take() );
+
+		final long frame = queue.getCurrentFrame();
+		queue.clearToPrefetch();
+		assertEquals( frame + 1, queue.getCurrentFrame() );
+		queue.put( "0d", 0, false );
+
+		assertEquals( "0d", queue.take() );
+		assertEquals( "0b", queue.take() );
+		assertEquals( "1a", queue.take() );
+		assertEquals( "2a", queue.take() );
+		assertEquals( "1b", queue.take() );
+	}
+
+	static class RevocableElement implements Revocable
+	{
+		final String name;
+
+		boolean revoked;
+
+		RevocableElement( final String name )
+		{
+			this.name = name;
+		}
+
+		@Override
+		public boolean isRevoked()
+		{
+			return revoked;
+		}
+	}
+
+	/**
+	 * Revoked elements are skipped by take() and dropped by clearToPrefetch().
+	 */
+	@Test
+	public void testRevoked() throws InterruptedException
+	{
+		final BlockingFetchQueues< RevocableElement > queue = new BlockingFetchQueues<>( 2, 1 );
+		final RevocableElement a = new RevocableElement( "a" );
+		final RevocableElement b = new RevocableElement( "b" );
+		final RevocableElement c = new RevocableElement( "c" );
+		queue.put( a, 1, false );
+		queue.put( b, 1, false );
+		queue.put( c, 1, false );
+		b.revoked = true;
+		queue.clearToPrefetch();
+		a.revoked = true;
+		final RevocableElement a2 = new RevocableElement( "a2" );
+		queue.put( a2, 0, false );
+
+		assertEquals( "a2", queue.take().name );
+		assertEquals( "c", queue.take().name );
+	}
+
+	/**
+	 * drainTo() removes matching elements of one priority level, up to the
+	 * given number, and leaves the others in order.
+	 */
+	@Test
+	public void testDrainTo() throws InterruptedException
+	{
+		final BlockingFetchQueues< String > queue = new BlockingFetchQueues<>( 2, 1 );
+		for ( final String s : new String[] { "a1", "b1", "a2", "a3", "a4" } )
+			queue.put( s, 1, false );
+		queue.put( "a0", 0, false );
+
+		final List< String > batch = new ArrayList<>();
+		assertEquals( 2, queue.drainTo( batch, 2, 1, s -> s.startsWith( "a" ) ) );
+		assertEquals( Arrays.asList( "a1", "a2" ), batch );
+
+		assertEquals( "a0", queue.take() );
+		assertEquals( "b1", queue.take() );
+		assertEquals( "a3", queue.take() );
+	}
+
+	/**
+	 * With an aging threshold, an element that has waited longer than the
+	 * threshold is taken before elements of higher priority. Without, strict
+	 * priority order applies.
+	 */
+	@Test
+	public void testAging() throws InterruptedException
+	{
+		final AtomicLong time = new AtomicLong();
+		final BlockingFetchQueues< String > queue = new BlockingFetchQueues<>( 2, 1, 16, time::get );
+		queue.setAgingThreshold( 10, TimeUnit.NANOSECONDS );
+		queue.put( "low", 1, false );
+		time.addAndGet( 20 );
+		queue.put( "high1", 0, false );
+		queue.put( "high2", 0, false );
+
+		assertEquals( "low", queue.take() );
+		assertEquals( "high1", queue.take() );
+		assertEquals( 1, queue.getNumTaken( 1 ) );
+		assertEquals( 20, queue.getMaxWaitNanos( 1 ) );
+
+		queue.setAgingThreshold( 0, TimeUnit.NANOSECONDS );
+		queue.put( "low", 1, false );
+		time.addAndGet( 20 );
+		queue.put( "high3", 0, false );
+		assertEquals( "high2", queue.take() );
+		assertEquals( "high3", queue.take() );
+		assertEquals( "low", queue.take() );
+	}
+
+	/**
+	 * Only the ends of each deque are checked for aged elements. An old
+	 * element in the middle of a deque (because elements were enqueued both
+	 * at the front and at the back) is aged out once it reaches an end.
+	 */
+	@Test
+	public void testAgingEnds() throws InterruptedException
+	{
+		final AtomicLong time = new AtomicLong();
+		final BlockingFetchQueues< String > queue = new BlockingFetchQueues<>( 2, 1, 16, time::get );
+		queue.setAgingThreshold( 10, TimeUnit.NANOSECONDS );
+		queue.put( "old", 1, false );
+		time.addAndGet( 5 );
+		queue.put( "front", 1, true );
+		queue.put( "back", 1, false );
+		time.addAndGet( 20 );
+		queue.put( "high1", 0, false );
+		queue.put( "high2", 0, false );
+
+		// "front" and "back" are aged too, "old" is not visible
+		assertEquals( "front", queue.take() );
+		// now "old" is at the front
+		assertEquals( "old", queue.take() );
+		assertEquals( "back", queue.take() );
+		assertEquals( "high1", queue.take() );
+	}
+
+	/**
+	 * drainTo() does not drain a level while an element of another level is
+	 * aged.
+	 */
+	@Test
+	public void testDrainToAging() throws InterruptedException
+	{
+		final AtomicLong time = new AtomicLong();
+		final BlockingFetchQueues< String > queue = new BlockingFetchQueues<>( 2, 1, 16, time::get );
+		queue.setAgingThreshold( 10, TimeUnit.NANOSECONDS );
+		queue.put( "low", 1, false );
+		time.addAndGet( 5 );
+		queue.put( "high1", 0, false );
+		queue.put( "high2", 0, false );
+
+		final List< String > batch = new ArrayList<>();
+		assertEquals( 1, queue.drainTo( batch, 1, 0, e -> true ) );
+		assertEquals( Arrays.asList( "high1" ), batch );
+
+		// "low" has waited 12, "high2" has waited 7
+		time.addAndGet( 7 );
+		assertEquals( 0, queue.drainTo( batch, 1, 0, e -> true ) );
+		assertEquals( "low", queue.take() );
+		assertEquals( 1, queue.drainTo( batch, 1, 0, e -> true ) );
+		assertEquals( Arrays.asList( "high1", "high2" ), batch );
+	}
+
+	/**
+	 * All elements put by concurrent producers are taken exactly once, and no
+	 * consumer stays blocked while elements are available.
+	 */
+	@Test
+	public void testConcurrentPutTake() throws InterruptedException
+	{
+		final int numConsumers = 4;
+		final int numProducers = 4;
+		final int numElements = 20000;
+		final BlockingFetchQueues< Integer > queue = new BlockingFetchQueues<>( 4, numConsumers );
+		final ConcurrentHashMap< Integer, Boolean > taken = new ConcurrentHashMap<>();
+		final CountDownLatch done = new CountDownLatch( numProducers * numElements );
+		final AtomicInteger duplicates = new AtomicInteger();
+
+		final Thread[] consumers = new Thread[ numConsumers ];
+		for ( int i = 0; i < numConsumers; ++i )
+		{
+			consumers[ i ] = new Thread( () -> {
+				try
+				{
+					while ( true )
+					{
+						if ( taken.put( queue.take(), true ) != null )
+							duplicates.incrementAndGet();
+						done.countDown();
+					}
+				}
+				catch ( final InterruptedException e )
+				{}
+			} );
+			consumers[ i ].start();
+		}
+
+		final Thread[] producers = new Thread[ numProducers ];
+		for ( int p = 0; p < numProducers; ++p )
+		{
+			final int offset = p * numElements;
+			producers[ p ] = new Thread( () -> {
+				for ( int i = 0; i < numElements; ++i )
+					queue.put( offset + i, i % 4, i % 3 == 0 );
+			} );
+			producers[ p ].start();
+		}
+
+		final boolean completed = done.await( 30, TimeUnit.SECONDS );
+		for ( final Thread consumer : consumers )
+			consumer.interrupt();
+		assertTrue( completed );
+		assertEquals( 0, duplicates.get() );
+		assertEquals( numProducers * numElements, taken.size() );
+	}
+
+	/**
+	 * pause() returns only when all consumers wait in take(), and no element
+	 * is taken until resume().
+	 */
+	@Test
+	public void testPause() throws InterruptedException
+	{
+		final BlockingFetchQueues< Integer > queue = new BlockingFetchQueues<>( 1, 2 );
+		final AtomicInteger count = new AtomicInteger();
+		final Thread[] consumers = new Thread[ 2 ];
+		for ( int i = 0; i < consumers.length; ++i )
+		{
+			consumers[ i ] = new Thread( () -> {
+				try
+				{
+					while ( true )
+					{
+						queue.take();
+						count.incrementAndGet();
+					}
+				}
+				catch ( final InterruptedException e )
+				{}
+			} );
+			consumers[ i ].start();
+		}
+
+		queue.pause();
+		queue.put( 1, 0, false );
+		queue.put( 2, 0, false );
+		Thread.sleep( 100 );
+		assertEquals( 0, count.get() );
+
+		queue.resume();
+		final long deadline = System.currentTimeMillis() + 10000;
+		while ( count.get() < 2 && System.currentTimeMillis() < deadline )
+			Thread.sleep( 10 );
+		assertEquals( 2, count.get() );
+
+		for ( final Thread consumer : consumers )
+			consumer.interrupt();
+		for ( final Thread consumer : consumers )
+			consumer.join( 1000 );
+		assertFalse( consumers[ 0 ].isAlive() || consumers[ 1 ].isAlive() );
+	}
+}
@@ -0,0 +1,105 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.queue;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CancellationException;
+
+import org.junit.Test;
+
+public class CancellationTokenTest
+{
+	/**
+	 * Outside of a cancellable load, the current token is never cancelled.
+	 */
+	@Test
+	public void testNever()
+	{
+		final CancellationToken never = CancellationToken.current();
+		never.cancel();
+		assertFalse( never.isCancelled() );
+		never.throwIfCancelled();
+		assertSame( never, CancellationToken.current() );
+	}
+
+	/**
+	 * A token made current is returned by current() until the previous token
+	 * is restored, and only on the current thread.
+	 */
+	@Test
+	public void testCurrent() throws InterruptedException
+	{
+		final CancellationToken never = CancellationToken.current();
+		final CancellationToken token = new CancellationToken();
+		final CancellationToken previous = CancellationToken.setCurrent( token );
+		try
+		{
+			assertNull( previous );
+			assertSame( token, CancellationToken.current() );
+
+			final CancellationToken[] other = new CancellationToken[ 1 ];
+			final Thread thread = new Thread( () -> other[ 0 ] = CancellationToken.current() );
+			thread.start();
+			thread.join();
+			assertSame( never, other[ 0 ] );
+		}
+		finally
+		{
+			CancellationToken.setCurrent( previous );
+		}
+		assertSame( never, CancellationToken.current() );
+	}
+
+	@Test
+	public void testCancel()
+	{
+		final CancellationToken token = new CancellationToken();
+		assertFalse( token.isCancelled() );
+		token.throwIfCancelled();
+		token.cancel();
+		assertTrue( token.isCancelled() );
+		try
+		{
+			token.throwIfCancelled();
+			fail();
+		}
+		catch ( final CancellationException e )
+		{}
+	}
+}
@@ -0,0 +1,361 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.cache.ref.SoftRefLoaderCache;
+import net.imglib2.cache.ref.WeakRefVolatileLoaderCache;
+import net.imglib2.cache.volatiles.CacheHints;
+import net.imglib2.cache.volatiles.LoadingStrategy;
+import net.imglib2.cache.volatiles.VolatileCacheLoader;
+
+import org.junit.Test;
+
+public class FetcherThreadsTest
+{
+	private static final CacheHints VOLATILE = new CacheHints( LoadingStrategy.VOLATILE, 0, false );
+
+	/**
+	 * Creates {@code "invalid"} values, and loads {@code "valid"} values.
+	 * Loading the keys in {@link #failOnce} throws an exception the first
+	 * time.
+	 */
+	static class Loader implements VolatileCacheLoader< Integer, String >
+	{
+		final ConcurrentHashMap< Integer, AtomicInteger > numLoads = new ConcurrentHashMap<>();
+
+		final ConcurrentHashMap< Integer, Boolean > failOnce = new ConcurrentHashMap<>();
+
+		@Override
+		public String createInvalid( final Integer key )
+		{
+			return new String( "invalid" );
+		}
+
+		@Override
+		public String get( final Integer key ) throws Exception
+		{
+			numLoads.computeIfAbsent( key, k -> new AtomicInteger() ).incrementAndGet();
+			if ( failOnce.remove( key ) != null )
+				throw new Exception( "simulated transient failure" );
+			return new String( "valid" );
+		}
+
+		int numLoads( final Integer key )
+		{
+			final AtomicInteger n = numLoads.get( key );
+			return n == null ? 0 : n.get();
+		}
+	}
+
+	/**
+	 * Request {@code key} with VOLATILE strategy until it is valid, or fail
+	 * after 10 seconds.
+	 */
+	static String awaitValid( final WeakRefVolatileLoaderCache< Integer, String > cache, final Integer key, final VolatileCacheLoader< Integer, String > loader ) throws ExecutionException, InterruptedException
+	{
+		final long deadline = System.currentTimeMillis() + 10_000;
+		while ( true )
+		{
+			final String value = cache.get( key, loader, VOLATILE );
+			if ( value.equals( "valid" ) )
+				return value;
+			assertTrue( "key " + key + " did not become valid", System.currentTimeMillis() < deadline );
+			Thread.sleep( 5 );
+		}
+	}
+
+	/**
+	 * Executor-driven fetching loads all requested keys, each once.
+	 */
+	@Test
+	public void testOnExecutor() throws Exception
+	{
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 1, 0 );
+		final ExecutorService executor = Executors.newFixedThreadPool( 2 );
+		final FetcherThreads fetchers = FetcherThreads.onExecutor( queue, 2, executor );
+		try
+		{
+			final Loader loader = new Loader();
+			final WeakRefVolatileLoaderCache< Integer, String > cache = new WeakRefVolatileLoaderCache<>( new SoftRefLoaderCache<>(), queue );
+			for ( int key = 0; key < 50; ++key )
+				cache.get( key, loader, VOLATILE );
+			for ( int key = 0; key < 50; ++key )
+			{
+				awaitValid( cache, key, loader );
+				assertEquals( 1, loader.numLoads( key ) );
+			}
+		}
+		finally
+		{
+			fetchers.shutdown();
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * With executor-driven fetching, a key whose load failed once is loaded
+	 * again when it is requested again.
+	 */
+	@Test
+	public void testOnExecutorRetryAfterFailure() throws Exception
+	{
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 1, 0 );
+		final ExecutorService executor = Executors.newFixedThreadPool( 1 );
+		final FetcherThreads fetchers = FetcherThreads.onExecutor( queue, 1, executor );
+		try
+		{
+			final Loader loader = new Loader();
+			loader.failOnce.put( 7, true );
+			final WeakRefVolatileLoaderCache< Integer, String > cache = new WeakRefVolatileLoaderCache<>( new SoftRefLoaderCache<>(), queue );
+			awaitValid( cache, 7, loader );
+			assertEquals( 2, loader.numLoads( 7 ) );
+		}
+		finally
+		{
+			fetchers.shutdown();
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * With executor-driven fetching, nothing is loaded while paused, and
+	 * fetching resumes when the pause expires.
+	 */
+	@Test
+	public void testOnExecutorPause() throws Exception
+	{
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 1, 0 );
+		final ExecutorService executor = Executors.newFixedThreadPool( 1 );
+		final FetcherThreads fetchers = FetcherThreads.onExecutor( queue, 1, executor );
+		try
+		{
+			final Loader loader = new Loader();
+			final WeakRefVolatileLoaderCache< Integer, String > cache = new WeakRefVolatileLoaderCache<>( new SoftRefLoaderCache<>(), queue );
+			fetchers.pauseFor( 200 );
+			cache.get( 1, loader, VOLATILE );
+			Thread.sleep( 50 );
+			assertEquals( 0, loader.numLoads( 1 ) );
+			awaitValid( cache, 1, loader );
+			assertEquals( 1, loader.numLoads( 1 ) );
+		}
+		finally
+		{
+			fetchers.shutdown();
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Fetcher threads are created by the given {@link ThreadFactory}, and
+	 * load requested keys.
+	 */
+	@Test
+	public void testCreateWithFactory() throws Exception
+	{
+		final AtomicInteger numThreads = new AtomicInteger();
+		final ThreadFactory factory = r -> {
+			final Thread t = new Thread( r, "custom-fetcher-" + numThreads.getAndIncrement() );
+			t.setDaemon( true );
+			return t;
+		};
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 1, 3 );
+		final FetcherThreads fetchers = FetcherThreads.createWithFactory( queue, 3, factory );
+		try
+		{
+			assertEquals( 3, numThreads.get() );
+			final Loader loader = new Loader()
+			{
+				@Override
+				public String get( final Integer key ) throws Exception
+				{
+					assertTrue( Thread.currentThread().getName().startsWith( "custom-fetcher-" ) );
+					return super.get( key );
+				}
+			};
+			final WeakRefVolatileLoaderCache< Integer, String > cache = new WeakRefVolatileLoaderCache<>( new SoftRefLoaderCache<>(), queue );
+			for ( int key = 0; key < 10; ++key )
+				awaitValid( cache, key, loader );
+		}
+		finally
+		{
+			fetchers.shutdown();
+		}
+	}
+
+	/**
+	 * The constructor taking a thread naming function accepts a lambda
+	 * without a cast.
+	 */
+	@Test
+	public void testThreadNames() throws Exception
+	{
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 1, 1 );
+		final FetcherThreads fetchers = new FetcherThreads( queue, 1, i -> "named-fetcher-" + i );
+		try
+		{
+			final String[] name = new String[ 1 ];
+			final Loader loader = new Loader()
+			{
+				@Override
+				public String get( final Integer key ) throws Exception
+				{
+					name[ 0 ] = Thread.currentThread().getName();
+					return super.get( key );
+				}
+			};
+			final WeakRefVolatileLoaderCache< Integer, String > cache = new WeakRefVolatileLoaderCache<>( new SoftRefLoaderCache<>(), queue );
+			awaitValid( cache, 0, loader );
+			assertEquals( "named-fetcher-0", name[ 0 ] );
+		}
+		finally
+		{
+			fetchers.shutdown();
+		}
+	}
+
+	private static final long PERIOD = 500_000_000L;
+
+	private static final long MS = 1_000_000L;
+
+	/**
+	 * Feed {@code aimd} the loads of one period, completed by {@code current}
+	 * fetchers with the given latency per load. Returns the next target.
+	 */
+	private static int period( final FetcherThreads.Aimd aimd, final int current, final long latency, final boolean queued )
+	{
+		final long numLoads = current * PERIOD / latency;
+		return aimd.next( current, numLoads, numLoads * latency, PERIOD, queued );
+	}
+
+	/**
+	 * Latency of a loader that serves up to 4 requests in parallel in 10 ms
+	 * each, and queues additional requests.
+	 */
+	private static long saturatingLatency( final int numFetchers )
+	{
+		return 10 * MS * Math.max( 4, numFetchers ) / 4;
+	}
+
+	/**
+	 * While requests are queued and throughput increases, one fetcher is
+	 * added per period, up to the maximum.
+	 */
+	@Test
+	public void testAimdGrow()
+	{
+		final FetcherThreads.Aimd aimd = new FetcherThreads.Aimd( 1, 6 );
+		int target = 1;
+		for ( int expected = 2; expected <= 6; ++expected )
+		{
+			target = period( aimd, target, 10 * MS, true );
+			assertEquals( expected, target );
+		}
+		assertEquals( 6, period( aimd, target, 10 * MS, true ) );
+	}
+
+	/**
+	 * Without queued requests, the number of fetchers does not grow. Without
+	 * completed loads, it does not change.
+	 */
+	@Test
+	public void testAimdIdle()
+	{
+		final FetcherThreads.Aimd aimd = new FetcherThreads.Aimd( 1, 8 );
+		assertEquals( 3, period( aimd, 3, 10 * MS, false ) );
+		assertEquals( 3, period( aimd, 3, 10 * MS, false ) );
+		assertEquals( 3, aimd.next( 3, 0, 0, PERIOD, true ) );
+	}
+
+	/**
+	 * A fetcher that was added without increasing throughput is removed
+	 * again, so the number of fetchers stays at the loader's parallelism.
+	 */
+	@Test
+	public void testAimdPlateau()
+	{
+		final FetcherThreads.Aimd aimd = new FetcherThreads.Aimd( 1, 16 );
+		int target = 1;
+		int max = 0;
+		for ( int i = 0; i < 40; ++i )
+		{
+			target = period( aimd, target, saturatingLatency( target ), true );
+			if ( i >= 5 )
+			{
+				assertTrue( "target " + target + " in period " + i, target == 4 || target == 5 );
+				max = Math.max( max, target );
+			}
+		}
+		assertEquals( 5, max );
+	}
+
+	/**
+	 * When latency exceeds twice the baseline, the number of fetchers is
+	 * halved per period, down to the minimum.
+	 */
+	@Test
+	public void testAimdShrink()
+	{
+		final FetcherThreads.Aimd aimd = new FetcherThreads.Aimd( 1, 8 );
+		assertEquals( 8, period( aimd, 8, 10 * MS, false ) );
+		assertEquals( 4, period( aimd, 8, 50 * MS, true ) );
+		assertEquals( 2, period( aimd, 4, 50 * MS, true ) );
+		assertEquals( 1, period( aimd, 2, 50 * MS, true ) );
+		assertEquals( 1, period( aimd, 1, 50 * MS, true ) );
+	}
+
+	/**
+	 * After congestion, the number of fetchers grows again once latency is
+	 * back to normal.
+	 */
+	@Test
+	public void testAimdRecover()
+	{
+		final FetcherThreads.Aimd aimd = new FetcherThreads.Aimd( 2, 8 );
+		assertEquals( 8, period( aimd, 8, 10 * MS, false ) );
+		assertEquals( 4, period( aimd, 8, 40 * MS, true ) );
+		assertEquals( 5, period( aimd, 4, 10 * MS, true ) );
+		assertEquals( 6, period( aimd, 5, 10 * MS, true ) );
+	}
+}
@@ -0,0 +1,175 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.ref;
+
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.cache.LoaderCache;
+
+/**
+ * Compares cache hits on {@link BoundedSoftRefLoaderCache} with the previous
+ * implementation, which kept soft references in a synchronized access-order
+ * {@link LinkedHashMap}. Run {@link #main(String[])} to benchmark with 1 to 64
+ * threads.
+ *
+ * @author Tobias Pietzsch
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class BoundedSoftRefLoaderCacheBenchmark
+{
+	@Param( { "1000" } )
+	public int maxSoftRefs;
+
+	private Integer[] keys;
+
+	private Object[] values;
+
+	private LoaderCache< Integer, Object > bounded;
+
+	private LoaderCache< Integer, Object > linkedHashMap;
+
+	private final CacheLoader< Integer, Object > loader = key -> values[ key ];
+
+	@Setup
+	public void setup() throws ExecutionException
+	{
+		keys = new Integer[ maxSoftRefs ];
+		values = new Object[ maxSoftRefs ];
+		for ( int i = 0; i < maxSoftRefs; ++i )
+		{
+			keys[ i ] = i;
+			values[ i ] = new Object();
+		}
+		bounded = new BoundedSoftRefLoaderCache<>( maxSoftRefs );
+		linkedHashMap = new LinkedHashMapSoftRefLoaderCache<>( maxSoftRefs );
+		for ( final Integer key : keys )
+		{
+			bounded.get( key, loader );
+			linkedHashMap.get( key, loader );
+		}
+	}
+
+	@Benchmark
+	public Object bounded() throws ExecutionException
+	{
+		return bounded.get( keys[ ThreadLocalRandom.current().nextInt( maxSoftRefs ) ], loader );
+	}
+
+	@Benchmark
+	public Object linkedHashMap() throws ExecutionException
+	{
+		return linkedHashMap.get( keys[ ThreadLocalRandom.current().nextInt( maxSoftRefs ) ], loader );
+	}
+
+	/**
+	 * The previous {@link BoundedSoftRefLoaderCache} implementation, reduced to
+	 * what is needed for the benchmark.
+	 */
+	static class LinkedHashMapSoftRefLoaderCache< K, V > extends WeakRefLoaderCache< K, V >
+	{
+		private final LinkedHashMap< K, SoftReference< V > > softRefs;
+
+		LinkedHashMapSoftRefLoaderCache( final int maxSoftRefs )
+		{
+			softRefs = new LinkedHashMap< K, SoftReference< V > >( maxSoftRefs, 0.75f, true )
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry( final Map.Entry< K, SoftReference< V > > eldest )
+				{
+					if ( size() > maxSoftRefs )
+					{
+						eldest.getValue().clear();
+						return true;
+					}
+					else
+						return false;
+				}
+			};
+		}
+
+		@Override
+		public V get( final K key, final CacheLoader< ? super K, ? extends V > loader ) throws ExecutionException
+		{
+			final V value = super.get( key, loader );
+			synchronized ( softRefs )
+			{
+				final SoftReference< V > ref = softRefs.get( key );
+				if ( ref == null || ref.get() == null )
+					softRefs.put( key, new SoftReference<>( value ) );
+			}
+			return value;
+		}
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		for ( final int threads : new int[] { 1, 2, 4, 8, 16, 32, 64 } )
+		{
+			final Options options = new OptionsBuilder()
+					.include( BoundedSoftRefLoaderCacheBenchmark.class.getSimpleName() )
+					.threads( threads )
+					.build();
+			new Runner( options ).run();
+		}
+	}
+}
@@ -0,0 +1,251 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.ref;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.cache.RemovalCause;
+
+import org.junit.Test;
+
+public class BoundedSoftRefLoaderCacheTest
+{
+	private final AtomicInteger numLoads = new AtomicInteger();
+
+	private final CacheLoader< Integer, String > loader = key -> {
+		numLoads.incrementAndGet();
+		return new String( "value-" + key );
+	};
+
+	/**
+	 * A working set that is accessed repeatedly stays retained while a scan
+	 * over many other keys passes through the cache. Between accesses to the
+	 * working set, more keys are scanned than the cache can hold, so that
+	 * plain LRU would evict the working set.
+	 */
+	@Test
+	public void testScanResistance() throws Exception
+	{
+		final BoundedSoftRefLoaderCache< Integer, String > cache = new BoundedSoftRefLoaderCache<>( 100 );
+		final Set< Integer > evicted = ConcurrentHashMap.newKeySet();
+		cache.addRemovalListener( ( key, value, cause ) -> {
+			if ( cause == RemovalCause.EVICTED )
+				evicted.add( key );
+		}, Runnable::run );
+
+		final int numHot = 50;
+		for ( int round = 0; round < 10; ++round )
+			for ( int key = 0; key < numHot; ++key )
+				cache.get( key, loader );
+		evicted.clear();
+
+		final int numScanned = 10_000;
+		for ( int i = 0; i < numScanned; ++i )
+		{
+			cache.get( 1000 + i, loader );
+			if ( i % 150 == 0 )
+				for ( int key = 0; key < numHot; ++key )
+					cache.get( key, loader );
+		}
+
+		// evicted values are reported when they are garbage-collected
+		for ( int i = 0; i < 10 && evicted.size() < numScanned - 100; ++i )
+		{
+			System.gc();
+			Thread.sleep( 10 );
+			// expunges collected entries
+			cache.getIfPresent( -1 );
+		}
+		for ( int key = 0; key < numHot; ++key )
+			assertTrue( "hot key " + key + " was evicted", !evicted.contains( key ) );
+		assertTrue( evicted.size() >= numScanned - 100 );
+
+		// hot values are softly reachable, and survive garbage collection
+		final int loads = numLoads.get();
+		for ( int key = 0; key < numHot; ++key )
+			cache.get( key, loader );
+		assertEquals( loads, numLoads.get() );
+	}
+
+	/**
+	 * With {@code maxSoftRefs == 0}, no values are retained (and none are
+	 * evicted), so values are only weakly reachable.
+	 */
+	@Test
+	public void testMaxSoftRefsZero() throws Exception
+	{
+		final BoundedSoftRefLoaderCache< Integer, String > cache = new BoundedSoftRefLoaderCache<>( 0 );
+		final List< Object > removed = new ArrayList<>();
+		cache.addRemovalListener( ( key, value, cause ) -> removed.add( key ), Runnable::run );
+		for ( int key = 0; key < 10; ++key )
+			cache.get( key, loader );
+		assertTrue( removed.isEmpty() );
+
+		System.gc();
+		for ( int key = 0; key < 10; ++key )
+			cache.get( key, loader );
+		assertEquals( 20, numLoads.get() );
+	}
+
+	/**
+	 * Invalidated values are no longer retained, and are loaded again on the
+	 * next request.
+	 */
+	@Test
+	public void testInvalidate() throws Exception
+	{
+		final BoundedSoftRefLoaderCache< Integer, String > cache = new BoundedSoftRefLoaderCache<>( 100 );
+		final List< String > values = new ArrayList<>();
+		for ( int key = 0; key < 10; ++key )
+			values.add( cache.get( key, loader ) );
+
+		cache.invalidate( 3 );
+		cache.invalidateIf( 1, key -> key >= 8 );
+
+		assertNotSame( values.get( 3 ), cache.get( 3, loader ) );
+		assertNotSame( values.get( 8 ), cache.get( 8, loader ) );
+		assertSame( values.get( 4 ), cache.get( 4, loader ) );
+		assertEquals( 12, numLoads.get() );
+	}
+
+	/**
+	 * Run {@code numThreads} threads that each request {@code numRequests}
+	 * random keys in {@code [0, numKeys)}. Values returned for the same key
+	 * are recorded in {@code values} (holding them strongly), and must be
+	 * identical. Returns the number of threads that saw a different value.
+	 */
+	private static int hammer(
+			final BoundedSoftRefLoaderCache< Integer, String > cache,
+			final CacheLoader< Integer, String > loader,
+			final AtomicReferenceArray< String > values,
+			final int numThreads,
+			final int numRequests ) throws InterruptedException
+	{
+		final AtomicInteger failures = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch( 1 );
+		final List< Thread > threads = new ArrayList<>();
+		for ( int t = 0; t < numThreads; ++t )
+		{
+			final Thread thread = new Thread( () -> {
+				try
+				{
+					start.await();
+					final ThreadLocalRandom random = ThreadLocalRandom.current();
+					for ( int i = 0; i < numRequests; ++i )
+					{
+						final int key = random.nextInt( values.length() );
+						final String value = cache.get( key, loader );
+						if ( !values.compareAndSet( key, null, value ) && values.get( key ) != value )
+						{
+							failures.incrementAndGet();
+							return;
+						}
+					}
+				}
+				catch ( final Exception e )
+				{
+					failures.incrementAndGet();
+				}
+			} );
+			thread.start();
+			threads.add( thread );
+		}
+		start.countDown();
+		for ( final Thread thread : threads )
+			thread.join();
+		return failures.get();
+	}
+
+	/**
+	 * Concurrent hits and misses on a working set that fits into the cache
+	 * load each key exactly once, return the same value to all threads, and
+	 * evict nothing.
+	 */
+	@Test
+	public void testConcurrentHits() throws Exception
+	{
+		final BoundedSoftRefLoaderCache< Integer, String > cache = new BoundedSoftRefLoaderCache<>( 100 );
+		final AtomicInteger numEvicted = new AtomicInteger();
+		cache.addRemovalListener( ( key, value, cause ) -> numEvicted.incrementAndGet(), Runnable::run );
+
+		final int numKeys = 64;
+		assertEquals( 0, hammer( cache, loader, new AtomicReferenceArray<>( numKeys ), 4, 20_000 ) );
+		assertEquals( numKeys, numLoads.get() );
+		assertEquals( 0, numEvicted.get() );
+
+		// values are retained by the cache alone
+		System.gc();
+		for ( int key = 0; key < numKeys; ++key )
+			cache.get( key, loader );
+		assertEquals( numKeys, numLoads.get() );
+	}
+
+	/**
+	 * Concurrent requests on more keys than the cache can hold load each key
+	 * exactly once (as long as values are strongly reachable), and afterwards
+	 * the cache still retains as many values as it can hold: no entries are
+	 * lost from the bounded set of soft references.
+	 */
+	@Test
+	public void testConcurrentEviction() throws Exception
+	{
+		final BoundedSoftRefLoaderCache< Integer, String > cache = new BoundedSoftRefLoaderCache<>( 100 );
+
+		final int numKeys = 300;
+		AtomicReferenceArray< String > values = new AtomicReferenceArray<>( numKeys );
+		assertEquals( 0, hammer( cache, loader, values, 4, 20_000 ) );
+		assertEquals( numKeys, numLoads.get() );
+
+		values = null;
+		System.gc();
+		int numRetained = 0;
+		for ( int key = 0; key < numKeys; ++key )
+			if ( cache.getIfPresent( key ) != null )
+				++numRetained;
+		assertEquals( 100, numRetained );
+	}
+}
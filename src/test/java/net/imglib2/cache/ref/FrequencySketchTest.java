@@ -0,0 +1,87 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.ref;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class FrequencySketchTest
+{
+	/**
+	 * Counters saturate at 15, also when incremented concurrently, and do not
+	 * overflow into the counters of other keys.
+	 */
+	@Test
+	public void testConcurrentSaturation() throws Exception
+	{
+		final FrequencySketch sketch = new FrequencySketch( 1 << 20 );
+		final Integer hot = 42;
+		final List< Thread > threads = new ArrayList<>();
+		for ( int t = 0; t < 4; ++t )
+			threads.add( new Thread( () -> {
+				for ( int i = 0; i < 100_000; ++i )
+					sketch.increment( hot );
+			} ) );
+		threads.forEach( Thread::start );
+		for ( final Thread thread : threads )
+			thread.join();
+
+		assertEquals( 15, sketch.frequency( hot ) );
+		for ( int key = 0; key < 10_000; ++key )
+			if ( key != hot )
+				assertEquals( 0, sketch.frequency( key ) );
+	}
+
+	/**
+	 * After the sample size is reached, counters are halved.
+	 */
+	@Test
+	public void testReset()
+	{
+		final FrequencySketch sketch = new FrequencySketch( 10 );
+		final Integer key = 1;
+		for ( int i = 0; i < 8; ++i )
+			sketch.increment( key );
+		assertEquals( 8, sketch.frequency( key ) );
+
+		// sample size is 10 * 16 increments
+		for ( int i = 0; i < 160; ++i )
+			sketch.increment( 1000 + i );
+		assertEquals( 4, sketch.frequency( key ) );
+	}
+}
@@ -0,0 +1,300 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.ref;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import net.imglib2.cache.Cache;
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.cache.CacheRemover;
+import net.imglib2.cache.RemovalCause;
+import net.imglib2.cache.RemovalListener;
+import net.imglib2.cache.queue.BlockingFetchQueues;
+import net.imglib2.cache.util.KeyBimap;
+import net.imglib2.cache.volatiles.CacheHints;
+import net.imglib2.cache.volatiles.LoadingStrategy;
+import net.imglib2.cache.volatiles.VolatileCacheLoader;
+
+import org.junit.Test;
+
+public class RemovalListenerTest
+{
+	static final CacheHints VOLATILE = new CacheHints( LoadingStrategy.VOLATILE, 0, false );
+
+	static final CacheHints BLOCKING = new CacheHints( LoadingStrategy.BLOCKING, 0, false );
+
+	/**
+	 * Records removals, on the thread that reports them.
+	 */
+	static class Recorder< K, V > implements RemovalListener< K, V >
+	{
+		static class Removal
+		{
+			final Object key;
+
+			final Object value;
+
+			final RemovalCause cause;
+
+			Removal( final Object key, final Object value, final RemovalCause cause )
+			{
+				this.key = key;
+				this.value = value;
+				this.cause = cause;
+			}
+		}
+
+		final List< Removal > removals = new CopyOnWriteArrayList<>();
+
+		@Override
+		public void onRemoval( final K key, final V value, final RemovalCause cause )
+		{
+			removals.add( new Removal( key, value, cause ) );
+		}
+	}
+
+	static final CacheLoader< Integer, String > loader = key -> new String( "value-" + key );
+
+	static final VolatileCacheLoader< Integer, String > volatileLoader = new VolatileCacheLoader< Integer, String >()
+	{
+		@Override
+		public String get( final Integer key )
+		{
+			return new String( "value-" + key );
+		}
+
+		@Override
+		public String createInvalid( final Integer key )
+		{
+			return new String( "invalid-" + key );
+		}
+	};
+
+	/**
+	 * Invalidated values are reported with their value.
+	 */
+	@Test
+	public void testInvalidated() throws Exception
+	{
+		final SoftRefLoaderCache< Integer, String > cache = new SoftRefLoaderCache<>();
+		final Recorder< Integer, String > recorder = new Recorder<>();
+		cache.addRemovalListener( recorder, Runnable::run );
+
+		final String value = cache.get( 1, loader );
+		cache.invalidate( 1 );
+		assertEquals( 1, recorder.removals.size() );
+		assertEquals( 1, recorder.removals.get( 0 ).key );
+		assertSame( value, recorder.removals.get( 0 ).value );
+		assertEquals( RemovalCause.INVALIDATED, recorder.removals.get( 0 ).cause );
+
+		cache.removeRemovalListener( recorder );
+		cache.get( 2, loader );
+		cache.invalidateAll();
+		assertEquals( 1, recorder.removals.size() );
+	}
+
+	/**
+	 * Values evicted from the strongly referenced set are reported once, when
+	 * they are garbage-collected. An evicted value that is still referenced
+	 * is returned by the cache, and is not reported.
+	 */
+	@Test
+	public void testEvicted() throws Exception
+	{
+		final GuardedStrongRefLoaderCache< Integer, String > cache = new GuardedStrongRefLoaderCache<>( 2 );
+		final Recorder< Integer, String > recorder = new Recorder<>();
+		cache.addRemovalListener( recorder, Runnable::run );
+
+		final String held = cache.get( 0, loader );
+		for ( int key = 1; key < 10; ++key )
+			cache.get( key, loader );
+		final long deadline = System.currentTimeMillis() + 10_000;
+		while ( recorder.removals.size() < 7 && System.currentTimeMillis() < deadline )
+		{
+			System.gc();
+			Thread.sleep( 10 );
+			cache.cleanUp();
+		}
+		System.gc();
+		cache.cleanUp();
+
+		final Set< Object > keys = new HashSet<>();
+		for ( final Recorder.Removal removal : recorder.removals )
+		{
+			assertEquals( RemovalCause.EVICTED, removal.cause );
+			assertNull( removal.value );
+			assertTrue( keys.add( removal.key ) );
+		}
+		assertTrue( recorder.removals.size() >= 7 );
+		assertTrue( recorder.removals.size() <= 8 );
+		assertFalse( keys.contains( 0 ) );
+		assertSame( held, cache.get( 0, loader ) );
+	}
+
+	/**
+	 * Listeners can be registered through a key-mapping {@link Cache}
+	 * adapter, and are notified with mapped keys.
+	 */
+	@Test
+	public void testAdapters() throws Exception
+	{
+		final SoftRefLoaderCache< Integer, String > loaderCache = new SoftRefLoaderCache<>();
+		final Cache< Long, String > cache = loaderCache
+				.withLoader( loader )
+				.mapKeys( KeyBimap.< Long, Integer >build( Long::intValue, Integer::longValue ) );
+		final Recorder< Long, String > recorder = new Recorder<>();
+		cache.addRemovalListener( recorder, Runnable::run );
+
+		cache.get( 5L );
+		cache.invalidate( 5L );
+		assertEquals( 1, recorder.removals.size() );
+		assertEquals( 5L, recorder.removals.get( 0 ).key );
+		assertEquals( RemovalCause.INVALIDATED, recorder.removals.get( 0 ).cause );
+
+		cache.removeRemovalListener( recorder );
+		cache.get( 6L );
+		cache.invalidate( 6L );
+		assertEquals( 1, recorder.removals.size() );
+	}
+
+	/**
+	 * Remover caches report invalidated values.
+	 */
+	@Test
+	public void testRemoverCache() throws Exception
+	{
+		final SoftRefLoaderRemoverCache< Integer, String, String > cache = new SoftRefLoaderRemoverCache<>();
+		final Recorder< Integer, String > recorder = new Recorder<>();
+		cache.addRemovalListener( recorder, Runnable::run );
+
+		final CacheRemover< Integer, String, String > remover = new CacheRemover< Integer, String, String >()
+		{
+			@Override
+			public void onRemoval( final Integer key, final String valueData )
+			{}
+
+			@Override
+			public CompletableFuture< Void > persist( final Integer key, final String valueData )
+			{
+				return CompletableFuture.completedFuture( null );
+			}
+
+			@Override
+			public String extract( final String value )
+			{
+				return value;
+			}
+
+			@Override
+			public String reconstruct( final Integer key, final String valueData )
+			{
+				return valueData;
+			}
+		};
+		final String value = cache.get( 1, loader, remover );
+		cache.invalidate( 1 );
+		assertEquals( 1, recorder.removals.size() );
+		assertSame( value, recorder.removals.get( 0 ).value );
+		assertEquals( RemovalCause.INVALIDATED, recorder.removals.get( 0 ).cause );
+	}
+
+	/**
+	 * The volatile cache reports collected valid values, but not collected
+	 * invalid placeholders.
+	 */
+	@Test
+	public void testVolatileCollected() throws Exception
+	{
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 1, 0 );
+		final WeakRefVolatileLoaderCache< Integer, String > cache = new WeakRefVolatileLoaderCache<>( new WeakRefLoaderCache<>(), queue );
+		final Recorder< Integer, String > recorder = new Recorder<>();
+		cache.addRemovalListener( recorder, Runnable::run );
+
+		cache.get( 1, volatileLoader, VOLATILE );
+		cache.get( 2, volatileLoader, BLOCKING );
+		for ( int i = 0; i < 10 && recorder.removals.isEmpty(); ++i )
+		{
+			System.gc();
+			Thread.sleep( 10 );
+			cache.cleanUp();
+		}
+
+		assertEquals( 1, recorder.removals.size() );
+		assertEquals( 2, recorder.removals.get( 0 ).key );
+		assertNull( recorder.removals.get( 0 ).value );
+		assertEquals( RemovalCause.COLLECTED, recorder.removals.get( 0 ).cause );
+	}
+
+	/**
+	 * With {@link VolatileRetention#STRONG}, valid values that are no longer
+	 * retained are reported as evicted once they are garbage-collected, and
+	 * not before.
+	 */
+	@Test
+	public void testVolatileRetentionEvicted() throws Exception
+	{
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 1, 0 );
+		final WeakRefVolatileLoaderCache< Integer, String > cache = new WeakRefVolatileLoaderCache<>( new WeakRefLoaderCache<>(), queue, VolatileRetention.STRONG, 1 );
+		final Recorder< Integer, String > recorder = new Recorder<>();
+		cache.addRemovalListener( recorder, Runnable::run );
+
+		assertTrue( cache.get( 0, volatileLoader, VOLATILE ).startsWith( "invalid" ) );
+		cache.get( 1, volatileLoader, BLOCKING );
+		final String value2 = cache.get( 2, volatileLoader, BLOCKING );
+		assertTrue( recorder.removals.isEmpty() );
+
+		for ( int i = 0; i < 10 && recorder.removals.isEmpty(); ++i )
+		{
+			System.gc();
+			Thread.sleep( 10 );
+			cache.cleanUp();
+		}
+		assertEquals( 1, recorder.removals.size() );
+		assertEquals( 1, recorder.removals.get( 0 ).key );
+		assertNull( recorder.removals.get( 0 ).value );
+		assertEquals( RemovalCause.EVICTED, recorder.removals.get( 0 ).cause );
+		assertSame( value2, cache.get( 2, volatileLoader, BLOCKING ) );
+	}
+}
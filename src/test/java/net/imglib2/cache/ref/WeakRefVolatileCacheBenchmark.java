@@ -0,0 +1,166 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.ref;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.imglib2.cache.Cache;
+import net.imglib2.cache.queue.BlockingFetchQueues;
+import net.imglib2.cache.volatiles.CacheHints;
+import net.imglib2.cache.volatiles.LoadingStrategy;
+
+/**
+ * Benchmarks requests to {@link WeakRefVolatileCache} with each
+ * {@link LoadingStrategy}. {@code BLOCKING} requests go to entries that are
+ * already valid (the fast path). {@code VOLATILE}, {@code BUDGETED}, and
+ * {@code DONTLOAD} requests go to entries that stay invalid, because no
+ * fetcher takes from the queue. Run {@link #main(String[])} to benchmark with
+ * 1 to 64 threads.
+ *
+ * @author Tobias Pietzsch
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class WeakRefVolatileCacheBenchmark
+{
+	@Param( { "1000" } )
+	public int numKeys;
+
+	private Integer[] keys;
+
+	/**
+	 * Strong references to all values (valid and invalid), so that they are
+	 * not collected during the benchmark.
+	 */
+	private Object[] values;
+
+	private WeakRefVolatileCache< Integer, Object > cache;
+
+	private static final CacheHints blocking = new CacheHints( LoadingStrategy.BLOCKING, 0, false );
+
+	private static final CacheHints volatil = new CacheHints( LoadingStrategy.VOLATILE, 0, false );
+
+	private static final CacheHints budgeted = new CacheHints( LoadingStrategy.BUDGETED, 0, false );
+
+	private static final CacheHints dontLoad = new CacheHints( LoadingStrategy.DONTLOAD, 0, false );
+
+	@Setup
+	public void setup() throws ExecutionException
+	{
+		// keys [0, numKeys) are valid, keys [numKeys, 2 * numKeys) are invalid
+		keys = new Integer[ 2 * numKeys ];
+		values = new Object[ 2 * numKeys ];
+		for ( int i = 0; i < 2 * numKeys; ++i )
+		{
+			keys[ i ] = i;
+			values[ i ] = new Object();
+		}
+		final Cache< Integer, Object > backingCache = new SoftRefLoaderCache< Integer, Object >().withLoader( key -> values[ key ] );
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 1, 1 );
+		cache = new WeakRefVolatileCache<>( backingCache, queue, key -> values[ key ] );
+		for ( int i = 0; i < numKeys; ++i )
+			cache.get( keys[ i ], blocking );
+		for ( int i = numKeys; i < 2 * numKeys; ++i )
+			cache.get( keys[ i ], volatil );
+	}
+
+	private Integer validKey()
+	{
+		return keys[ ThreadLocalRandom.current().nextInt( numKeys ) ];
+	}
+
+	private Integer invalidKey()
+	{
+		return keys[ numKeys + ThreadLocalRandom.current().nextInt( numKeys ) ];
+	}
+
+	@Benchmark
+	public Object blockingValid() throws ExecutionException
+	{
+		return cache.get( validKey(), blocking );
+	}
+
+	@Benchmark
+	public Object volatileInvalid() throws ExecutionException
+	{
+		return cache.get( invalidKey(), volatil );
+	}
+
+	@Benchmark
+	public Object budgetedInvalid() throws ExecutionException
+	{
+		return cache.get( invalidKey(), budgeted );
+	}
+
+	@Benchmark
+	public Object dontLoadInvalid() throws ExecutionException
+	{
+		return cache.get( invalidKey(), dontLoad );
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		for ( final int threads : new int[] { 1, 2, 4, 8, 16, 32, 64 } )
+		{
+			final Options options = new OptionsBuilder()
+					.include( WeakRefVolatileCacheBenchmark.class.getSimpleName() )
+					.threads( threads )
+					.build();
+			new Runner( options ).run();
+		}
+	}
+}
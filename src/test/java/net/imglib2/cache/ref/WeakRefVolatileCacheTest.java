@@ -0,0 +1,224 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.ref;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.cache.BatchCacheLoader;
+import net.imglib2.cache.Cache;
+import net.imglib2.cache.queue.BatchCallable;
+import net.imglib2.cache.queue.BlockingFetchQueues;
+import net.imglib2.cache.util.LoaderCacheAsCacheAdapter;
+import net.imglib2.cache.volatiles.CacheHints;
+import net.imglib2.cache.volatiles.LoadingStrategy;
+
+import org.junit.Test;
+
+public class WeakRefVolatileCacheTest
+{
+	static final CacheHints VOLATILE = new CacheHints( LoadingStrategy.VOLATILE, 0, false );
+
+	static final CacheHints BLOCKING = new CacheHints( LoadingStrategy.BLOCKING, 0, false );
+
+	static final CacheHints DONTLOAD = new CacheHints( LoadingStrategy.DONTLOAD, 0, false );
+
+	/**
+	 * Loads {@code "valid-<key>"} values in batches of up to 8 keys, and
+	 * counts loaded keys and batches.
+	 */
+	static class Loader implements BatchCacheLoader< Integer, String >
+	{
+		final AtomicInteger numKeys = new AtomicInteger();
+
+		final AtomicInteger numBatches = new AtomicInteger();
+
+		@Override
+		public Map< Integer, String > getAll( final Collection< ? extends Integer > keys )
+		{
+			numBatches.incrementAndGet();
+			final Map< Integer, String > values = new HashMap<>();
+			for ( final Integer key : keys )
+			{
+				numKeys.incrementAndGet();
+				values.put( key, new String( "valid-" + key ) );
+			}
+			return values;
+		}
+
+		@Override
+		public int maxBatchSize()
+		{
+			return 8;
+		}
+	}
+
+	private final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 1, 0 );
+
+	private final Loader loader = new Loader();
+
+	private final Cache< Integer, String > backingCache = new LoaderCacheAsCacheAdapter<>( new SoftRefLoaderCache<>(), loader );
+
+	private final WeakRefVolatileCache< Integer, String > cache = new WeakRefVolatileCache<>( backingCache, queue, key -> new String( "invalid" ) );
+
+	/**
+	 * Take requests from the queue and run them the way fetcher threads do,
+	 * batching requests that can be batched.
+	 */
+	private void runQueue() throws Exception
+	{
+		for ( Callable< ? > c = queue.poll(); c != null; c = queue.poll() )
+		{
+			if ( c instanceof BatchCallable )
+			{
+				final BatchCallable first = ( BatchCallable ) c;
+				final List< Callable< ? > > batch = new ArrayList<>();
+				batch.add( first );
+				queue.drainTo( batch, first.maxBatchSize() - 1, first.getPriority(), first::isBatchableWith );
+				first.callBatch( batch );
+			}
+			else
+				c.call();
+		}
+	}
+
+	/**
+	 * VOLATILE returns an invalid value created by the {@code CreateInvalid},
+	 * and the enqueued request loads from the backing cache.
+	 */
+	@Test
+	public void testVolatile() throws Exception
+	{
+		final String invalid = cache.get( 1, VOLATILE );
+		assertEquals( "invalid", invalid );
+		assertNull( backingCache.getIfPresent( 1 ) );
+
+		runQueue();
+		final String valid = cache.get( 1, VOLATILE );
+		assertEquals( "valid-1", valid );
+		assertSame( valid, backingCache.getIfPresent( 1 ) );
+		assertEquals( 1, loader.numKeys.get() );
+	}
+
+	/**
+	 * BLOCKING loads from the backing cache on the calling thread, and values
+	 * already in the backing cache are used without loading.
+	 */
+	@Test
+	public void testBlocking() throws Exception
+	{
+		final String valid = cache.get( 1, BLOCKING );
+		assertEquals( "valid-1", valid );
+		assertSame( valid, cache.getIfPresent( 1, DONTLOAD ) );
+
+		final String v2 = backingCache.get( 2 );
+		assertSame( v2, cache.get( 2, VOLATILE ) );
+		assertEquals( 2, loader.numKeys.get() );
+		assertEquals( 0, queue.getQueueDepth( 0 ) );
+	}
+
+	/**
+	 * Queued requests are loaded in batches of the backing cache's
+	 * {@code maxBatchSize()}.
+	 */
+	@Test
+	public void testBatch() throws Exception
+	{
+		final List< String > invalid = new ArrayList<>();
+		for ( int key = 0; key < 20; ++key )
+			invalid.add( cache.get( key, VOLATILE ) );
+		runQueue();
+		assertEquals( 20, loader.numKeys.get() );
+		assertEquals( 3, loader.numBatches.get() );
+		for ( int key = 0; key < 20; ++key )
+			assertEquals( "valid-" + key, cache.get( key, VOLATILE ) );
+	}
+
+	/**
+	 * Invalidation removes the value from this cache and from the backing
+	 * cache.
+	 */
+	@Test
+	public void testInvalidate() throws Exception
+	{
+		for ( int key = 0; key < 4; ++key )
+			cache.get( key, BLOCKING );
+
+		cache.invalidate( 0 );
+		assertNull( cache.getIfPresent( 0, DONTLOAD ) );
+		assertNull( backingCache.getIfPresent( 0 ) );
+
+		cache.invalidateIf( 1, key -> key == 1 );
+		assertNull( cache.getIfPresent( 1, DONTLOAD ) );
+		assertNull( backingCache.getIfPresent( 1 ) );
+		assertEquals( "valid-2", cache.getIfPresent( 2, DONTLOAD ) );
+
+		cache.invalidateAll( 1 );
+		assertNull( cache.getIfPresent( 2, DONTLOAD ) );
+		assertNull( backingCache.getIfPresent( 3 ) );
+
+		assertEquals( "valid-0", cache.get( 0, BLOCKING ) );
+		assertEquals( 5, loader.numKeys.get() );
+	}
+
+	/**
+	 * Cancelled requests are dropped from the queue, and enqueued again when
+	 * requested again.
+	 */
+	@Test
+	public void testCancelFetchIf() throws Exception
+	{
+		final List< String > invalid = new ArrayList<>();
+		for ( int key = 0; key < 4; ++key )
+			invalid.add( cache.get( key, VOLATILE ) );
+		cache.cancelFetchIf( key -> key % 2 == 0 );
+		runQueue();
+		assertEquals( 2, loader.numKeys.get() );
+		assertEquals( "invalid", cache.get( 0, VOLATILE ) );
+		assertEquals( "valid-1", cache.get( 1, VOLATILE ) );
+
+		runQueue();
+		assertEquals( "valid-0", cache.get( 0, VOLATILE ) );
+		assertEquals( 3, loader.numKeys.get() );
+	}
+}
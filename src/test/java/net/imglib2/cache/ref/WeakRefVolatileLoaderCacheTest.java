@@ -0,0 +1,545 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.ref;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.imglib2.cache.iotiming.CacheIoTiming;
+import net.imglib2.cache.iotiming.IoStatistics;
+import net.imglib2.cache.queue.BlockingFetchQueues;
+import net.imglib2.cache.queue.CancellationToken;
+import net.imglib2.cache.queue.FetcherThreads;
+import net.imglib2.cache.stats.FetchMetrics;
+import net.imglib2.cache.stats.FetchStats;
+import net.imglib2.cache.stats.FetchStatsCounter;
+import net.imglib2.cache.volatiles.CacheHints;
+import net.imglib2.cache.volatiles.LoadingStrategy;
+import net.imglib2.cache.volatiles.VolatileCacheLoader;
+
+import org.junit.Test;
+
+public class WeakRefVolatileLoaderCacheTest
+{
+	static final CacheHints VOLATILE = new CacheHints( LoadingStrategy.VOLATILE, 0, false );
+
+	static final CacheHints BLOCKING = new CacheHints( LoadingStrategy.BLOCKING, 0, false );
+
+	static final CacheHints BUDGETED = new CacheHints( LoadingStrategy.BUDGETED, 0, false );
+
+	static final CacheHints DONTLOAD = new CacheHints( LoadingStrategy.DONTLOAD, 0, false );
+
+	/**
+	 * Creates {@code "invalid"} values, and loads {@code "valid-<n>"} values,
+	 * where {@code n} counts the loads of the key. If {@link #gate} is set,
+	 * loading waits for it to open.
+	 */
+	static class Loader implements VolatileCacheLoader< Integer, String >
+	{
+		final ConcurrentHashMap< Integer, AtomicInteger > numLoads = new ConcurrentHashMap<>();
+
+		final AtomicInteger numCreateInvalid = new AtomicInteger();
+
+		volatile CountDownLatch gate;
+
+		final CountDownLatch started = new CountDownLatch( 1 );
+
+		@Override
+		public String createInvalid( final Integer key )
+		{
+			numCreateInvalid.incrementAndGet();
+			return new String( "invalid" );
+		}
+
+		@Override
+		public String get( final Integer key ) throws Exception
+		{
+			final int n = numLoads.computeIfAbsent( key, k -> new AtomicInteger() ).incrementAndGet();
+			started.countDown();
+			final CountDownLatch gate = this.gate;
+			if ( gate != null )
+				gate.await();
+			return new String( "valid-" + n );
+		}
+
+		int numLoads( final Integer key )
+		{
+			final AtomicInteger n = numLoads.get( key );
+			return n == null ? 0 : n.get();
+		}
+	}
+
+	/**
+	 * Run all {@code Callable}s in {@code queue} on the current thread.
+	 * Returns how many there were.
+	 */
+	static int runQueue( final BlockingFetchQueues< Callable< ? > > queue ) throws Exception
+	{
+		int n = 0;
+		for ( Callable< ? > c = queue.poll(); c != null; c = queue.poll() )
+		{
+			c.call();
+			++n;
+		}
+		return n;
+	}
+
+	/**
+	 * VOLATILE returns an invalid value without loading, and enqueues the
+	 * key. After the queue is processed, the valid value is returned.
+	 */
+	@Test
+	public void testVolatile() throws Exception
+	{
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 1, 0 );
+		final WeakRefVolatileLoaderCache< Integer, String > cache = new WeakRefVolatileLoaderCache<>( new SoftRefLoaderCache<>(), queue );
+		final Loader loader = new Loader();
+
+		final String invalid = cache.get( 1, loader, VOLATILE );
+		assertEquals( "invalid", invalid );
+		assertEquals( 0, loader.numLoads( 1 ) );
+		assertSame( invalid, cache.getIfPresent( 1, DONTLOAD ) );
+
+		assertEquals( 1, runQueue( queue ) );
+		assertEquals( 1, loader.numLoads( 1 ) );
+
+		final String valid = cache.get( 1, loader, VOLATILE );
+		assertEquals( "valid-1", valid );
+		assertSame( valid, cache.getIfPresent( 1, DONTLOAD ) );
+		assertEquals( 0, runQueue( queue ) );
+	}
+
+	/**
+	 * BLOCKING loads on the calling thread, and does not enqueue.
+	 */
+	@Test
+	public void testBlocking() throws Exception
+	{
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 1, 0 );
+		final WeakRefVolatileLoaderCache< Integer, String > cache = new WeakRefVolatileLoaderCache<>( new SoftRefLoaderCache<>(), queue );
+		final Loader loader = new Loader();
+
+		final String invalid = cache.get( 1, loader, VOLATILE );
+		final String valid = cache.get( 1, loader, BLOCKING );
+		assertEquals( "valid-1", valid );
+		assertNotSame( invalid, valid );
+		assertEquals( "valid-1", cache.get( 2, loader, BLOCKING ) );
+
+		// the FetchEntry enqueued by the VOLATILE request does not load again
+		runQueue( queue );
+		assertEquals( 1, loader.numLoads( 1 ) );
+		assertEquals( 1, loader.numLoads( 2 ) );
+		assertSame( valid, cache.get( 1, loader, BLOCKING ) );
+	}
+
+	/**
+	 * BUDGETED waits for fetcher threads while there is IO time budget left,
+	 * and returns an invalid value (after enqueueing) when there is none.
+	 */
+	@Test
+	public void testBudgeted() throws Exception
+	{
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 1, 1 );
+		final FetcherThreads fetchers = new FetcherThreads( queue, 1 );
+		try
+		{
+			final WeakRefVolatileLoaderCache< Integer, String > cache = new WeakRefVolatileLoaderCache<>( new SoftRefLoaderCache<>(), queue );
+			final Loader loader = new Loader();
+			final IoStatistics stats = new IoStatistics();
+			final String[] values = new String[ 2 ];
+			final Exception[] exception = new Exception[ 1 ];
+			CacheIoTiming.runWith( stats, () -> {
+				try
+				{
+					// no budget: does not wait
+					loader.gate = new CountDownLatch( 1 );
+					values[ 0 ] = cache.get( 1, loader, BUDGETED );
+					loader.gate.countDown();
+
+					// enough budget: waits until loaded
+					stats.getIoTimeBudget().reset( new long[] { TimeUnit.SECONDS.toNanos( 10 ) } );
+					values[ 1 ] = cache.get( 2, loader, BUDGETED );
+				}
+				catch ( final Exception e )
+				{
+					exception[ 0 ] = e;
+				}
+			} );
+			assertNull( exception[ 0 ] );
+			assertEquals( "invalid", values[ 0 ] );
+			assertEquals( "valid-1", values[ 1 ] );
+			assertTrue( stats.getIoTimeBudget().timeLeft( 0 ) < TimeUnit.SECONDS.toNanos( 10 ) );
+		}
+		finally
+		{
+			fetchers.shutdown();
+		}
+	}
+
+	/**
+	 * Repeated requests for a key that is waiting in the queue do not enqueue
+	 * it again, and the key is loaded once.
+	 */
+	@Test
+	public void testFetchDeduplication() throws Exception
+	{
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 2, 0 );
+		final WeakRefVolatileLoaderCache< Integer, String > cache = new WeakRefVolatileLoaderCache<>( new SoftRefLoaderCache<>(), queue );
+		final Loader loader = new Loader();
+
+		final CacheHints low = new CacheHints( LoadingStrategy.VOLATILE, 1, false );
+		for ( int i = 0; i < 10; ++i )
+			cache.get( 1, loader, low );
+		assertEquals( 1, queue.getQueueDepth( 1 ) );
+
+		// a request with higher priority replaces (and revokes) the queued one
+		cache.get( 1, loader, VOLATILE );
+		assertEquals( 1, queue.getQueueDepth( 0 ) );
+		for ( int i = 0; i < 10; ++i )
+			cache.get( 1, loader, VOLATILE );
+		assertEquals( 1, queue.getQueueDepth( 0 ) );
+
+		runQueue( queue );
+		assertEquals( 1, loader.numLoads( 1 ) );
+		assertEquals( "valid-1", cache.get( 1, loader, VOLATILE ) );
+	}
+
+	/**
+	 * Invalidating a key while it is being loaded waits for the load to
+	 * finish, and discards the loaded value, so that the next request loads
+	 * it again.
+	 */
+	@Test
+	public void testInvalidateDuringLoad() throws Exception
+	{
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 1, 1 );
+		final FetcherThreads fetchers = new FetcherThreads( queue, 1 );
+		try
+		{
+			final WeakRefVolatileLoaderCache< Integer, String > cache = new WeakRefVolatileLoaderCache<>( new SoftRefLoaderCache<>(), queue );
+			final Loader loader = new Loader();
+			loader.gate = new CountDownLatch( 1 );
+			cache.get( 1, loader, VOLATILE );
+			assertTrue( loader.started.await( 10, TimeUnit.SECONDS ) );
+
+			final Thread invalidate = new Thread( () -> cache.invalidate( 1 ) );
+			invalidate.start();
+			invalidate.join( 100 );
+			assertTrue( "invalidate() should wait for the running load", invalidate.isAlive() );
+
+			loader.gate.countDown();
+			invalidate.join( 10_000 );
+			assertTrue( !invalidate.isAlive() );
+
+			assertNull( cache.getIfPresent( 1, DONTLOAD ) );
+			assertEquals( "valid-2", cache.get( 1, loader, BLOCKING ) );
+			assertEquals( 2, loader.numLoads( 1 ) );
+		}
+		finally
+		{
+			fetchers.shutdown();
+		}
+	}
+
+	/**
+	 * Hits and misses count requests for valid values. Loads are counted by
+	 * the backing cache.
+	 */
+	@Test
+	public void testStats() throws Exception
+	{
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 1, 0 );
+		final WeakRefVolatileLoaderCache< Integer, String > cache = new WeakRefVolatileLoaderCache<>( new SoftRefLoaderCache<>(), queue );
+		final Loader loader = new Loader();
+
+		final String invalid = cache.get( 1, loader, VOLATILE );
+		assertNotNull( invalid );
+		final String valid = cache.get( 1, loader, BLOCKING );
+		assertNotNull( valid );
+		cache.get( 1, loader, VOLATILE );
+		cache.get( 1, loader, VOLATILE );
+
+		assertEquals( 2, cache.stats().getHitCount() );
+		assertEquals( 2, cache.stats().getMissCount() );
+		assertEquals( 1, cache.stats().getLoadSuccessCount() );
+	}
+
+	/**
+	 * Request invalid values for keys {@code 0 ... n-1} without holding on to
+	 * them, and return how many invalid values had to be created.
+	 */
+	private static int requestInvalid( final WeakRefVolatileLoaderCache< Integer, String > cache, final Loader loader, final int n ) throws Exception
+	{
+		final int before = loader.numCreateInvalid.get();
+		for ( int key = 0; key < n; ++key )
+			cache.get( key, loader, VOLATILE );
+		return loader.numCreateInvalid.get() - before;
+	}
+
+	/**
+	 * With WEAK retention, invalid values are re-created after they have been
+	 * garbage-collected.
+	 */
+	@Test
+	public void testWeakRetention() throws Exception
+	{
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 1, 0 );
+		final WeakRefVolatileLoaderCache< Integer, String > cache = new WeakRefVolatileLoaderCache<>( new SoftRefLoaderCache<>(), queue, VolatileRetention.WEAK, 0 );
+		final Loader loader = new Loader();
+
+		assertEquals( 4, requestInvalid( cache, loader, 4 ) );
+		System.gc();
+		assertEquals( 4, requestInvalid( cache, loader, 4 ) );
+	}
+
+	/**
+	 * With STRONG retention, up to {@code maxRetained} invalid values survive
+	 * garbage collection. Beyond that, the least recently used values are
+	 * released. {@code maxRetained} counts entries, regardless of the size of
+	 * their values.
+	 */
+	@Test
+	public void testStrongRetention() throws Exception
+	{
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 1, 0 );
+		final WeakRefVolatileLoaderCache< Integer, String > cache = new WeakRefVolatileLoaderCache<>( new SoftRefLoaderCache<>(), queue, VolatileRetention.STRONG, 4 );
+		final Loader loader = new Loader();
+
+		assertEquals( 4, requestInvalid( cache, loader, 4 ) );
+		System.gc();
+		assertEquals( 0, requestInvalid( cache, loader, 4 ) );
+
+		// keys 4..7 displace keys 0..3
+		for ( int key = 4; key < 8; ++key )
+			cache.get( key, loader, VOLATILE );
+		System.gc();
+		assertEquals( 4, requestInvalid( cache, loader, 4 ) );
+	}
+
+	/**
+	 * With SOFT retention, invalid values survive garbage collection (as long
+	 * as there is no memory pressure), up to {@code maxRetained} entries.
+	 */
+	@Test
+	public void testSoftRetention() throws Exception
+	{
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 1, 0 );
+		final WeakRefVolatileLoaderCache< Integer, String > cache = new WeakRefVolatileLoaderCache<>( new SoftRefLoaderCache<>(), queue, VolatileRetention.SOFT, 4 );
+		final Loader loader = new Loader();
+
+		assertEquals( 4, requestInvalid( cache, loader, 4 ) );
+		System.gc();
+		assertEquals( 0, requestInvalid( cache, loader, 4 ) );
+
+		// keys 4..7 displace keys 0..3
+		assertEquals( 4, requestInvalid( cache, loader, 8 ) );
+		System.gc();
+		assertEquals( 4, requestInvalid( cache, loader, 4 ) );
+	}
+
+	/**
+	 * Cancelled fetches that are still queued are dropped. Cancelled keys are
+	 * enqueued again on the next request.
+	 */
+	@Test
+	public void testCancelQueued() throws Exception
+	{
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 1, 0 );
+		final WeakRefVolatileLoaderCache< Integer, String > cache = new WeakRefVolatileLoaderCache<>( new SoftRefLoaderCache<>(), queue );
+		final Loader loader = new Loader();
+
+		final List< String > invalid = new ArrayList<>();
+		for ( int key = 0; key < 4; ++key )
+			invalid.add( cache.get( key, loader, VOLATILE ) );
+		cache.cancelFetchIf( key -> key < 2 );
+		runQueue( queue );
+		assertEquals( 0, loader.numLoads( 0 ) );
+		assertEquals( 0, loader.numLoads( 1 ) );
+		assertEquals( 1, loader.numLoads( 2 ) );
+		assertEquals( 1, loader.numLoads( 3 ) );
+
+		assertEquals( "invalid", cache.get( 0, loader, VOLATILE ) );
+		assertEquals( 1, runQueue( queue ) );
+		assertEquals( 1, loader.numLoads( 0 ) );
+		assertEquals( "valid-1", cache.get( 0, loader, VOLATILE ) );
+	}
+
+	/**
+	 * A running fetch whose key is cancelled sees its CancellationToken
+	 * cancelled. If the loader aborts, the fetch completes without error, the
+	 * entry stays invalid, and the key is enqueued again on the next request.
+	 */
+	@Test
+	public void testCancelRunning() throws Exception
+	{
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 1, 0 );
+		final WeakRefVolatileLoaderCache< Integer, String > cache = new WeakRefVolatileLoaderCache<>( new SoftRefLoaderCache<>(), queue );
+		final CountDownLatch started = new CountDownLatch( 1 );
+		final AtomicInteger numAborted = new AtomicInteger();
+		final VolatileCacheLoader< Integer, String > loader = new VolatileCacheLoader< Integer, String >()
+		{
+			@Override
+			public String createInvalid( final Integer key )
+			{
+				return "invalid";
+			}
+
+			@Override
+			public String get( final Integer key ) throws Exception
+			{
+				final CancellationToken token = CancellationToken.current();
+				if ( numAborted.get() > 0 )
+					return "valid";
+				started.countDown();
+				while ( !token.isCancelled() )
+					Thread.sleep( 1 );
+				numAborted.incrementAndGet();
+				token.throwIfCancelled();
+				return "unreachable";
+			}
+		};
+
+		cache.get( 0, loader, VOLATILE );
+		final Callable< ? > fetch = queue.poll();
+		final AtomicReference< Exception > failure = new AtomicReference<>();
+		final Thread fetcher = new Thread( () -> {
+			try
+			{
+				fetch.call();
+			}
+			catch ( final Exception e )
+			{
+				failure.set( e );
+			}
+		} );
+		fetcher.start();
+		assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+
+		cache.cancelFetchIf( key -> key == 0 );
+		fetcher.join( 10_000 );
+		assertTrue( !fetcher.isAlive() );
+		assertNull( failure.get() );
+		assertEquals( 1, numAborted.get() );
+		assertEquals( "invalid", cache.getIfPresent( 0, DONTLOAD ) );
+
+		assertEquals( "invalid", cache.get( 0, loader, VOLATILE ) );
+		assertEquals( 1, runQueue( queue ) );
+		assertEquals( "valid", cache.get( 0, loader, VOLATILE ) );
+	}
+
+	/**
+	 * Installed FetchMetrics see enqueue, dequeue, and completion per
+	 * priority, with the service time of each load. Values loaded from the
+	 * prefetch deque count a prefetch hit when they are first requested.
+	 */
+	@Test
+	public void testFetchMetrics() throws Exception
+	{
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 2, 0 );
+		final FetchStatsCounter metrics = new FetchStatsCounter();
+		queue.setMetrics( metrics );
+		final WeakRefVolatileLoaderCache< Integer, String > cache = new WeakRefVolatileLoaderCache<>( new SoftRefLoaderCache<>(), queue );
+		final VolatileCacheLoader< Integer, String > loader = new VolatileCacheLoader< Integer, String >()
+		{
+			@Override
+			public String createInvalid( final Integer key )
+			{
+				return "invalid";
+			}
+
+			@Override
+			public String get( final Integer key ) throws Exception
+			{
+				// priority 1 keys are slow
+				if ( key >= 10 )
+					Thread.sleep( 20 );
+				return "valid-" + key;
+			}
+		};
+		final CacheHints priority0 = new CacheHints( LoadingStrategy.VOLATILE, 0, false );
+		final CacheHints priority1 = new CacheHints( LoadingStrategy.VOLATILE, 1, false );
+
+		cache.get( 0, loader, priority0 );
+		cache.get( 1, loader, priority0 );
+		cache.get( 10, loader, priority1 );
+		assertEquals( 3, runQueue( queue ) );
+
+		FetchStats stats = metrics.snapshot();
+		final FetchStats.Level level0 = stats.getLevel( 0 );
+		final FetchStats.Level level1 = stats.getLevel( 1 );
+		assertEquals( 2, level0.getEnqueueCount() );
+		assertEquals( 2, level0.getDequeueCount() );
+		assertEquals( 2, level0.getCompletionCount() );
+		assertEquals( 1, level1.getEnqueueCount() );
+		assertEquals( 1, level1.getDequeueCount() );
+		assertEquals( 1, level1.getCompletionCount() );
+		assertTrue( level1.getTotalServiceTime() >= TimeUnit.MILLISECONDS.toNanos( 20 ) );
+		assertTrue( level0.getAverageServiceTime() < level1.getAverageServiceTime() );
+		assertEquals( 0, stats.getLevel( FetchMetrics.PREFETCH ).getCompletionCount() );
+
+		// hits on values loaded in the current frame are not prefetch hits
+		cache.get( 0, loader, priority0 );
+		assertEquals( 0, metrics.snapshot().getPrefetchHitCount() );
+
+		// requests that were not loaded before the next frame are prefetched
+		cache.get( 2, loader, priority0 );
+		cache.get( 3, loader, priority0 );
+		queue.clearToPrefetch();
+		assertEquals( 2, runQueue( queue ) );
+		stats = metrics.snapshot();
+		assertEquals( 2, stats.getLevel( FetchMetrics.PREFETCH ).getDequeueCount() );
+		assertEquals( 2, stats.getLevel( FetchMetrics.PREFETCH ).getCompletionCount() );
+		assertEquals( 2, stats.getLevel( 0 ).getCompletionCount() );
+
+		// only the first hit on a prefetched value counts
+		cache.get( 2, loader, priority0 );
+		cache.get( 2, loader, priority0 );
+		stats = metrics.snapshot();
+		assertEquals( 1, stats.getPrefetchHitCount() );
+		assertEquals( 0.5, stats.getPrefetchHitRate(), 0 );
+	}
+}
@@ -0,0 +1,229 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.stats;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutionException;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.cache.ref.SoftRefLoaderCache;
+import net.imglib2.cache.ref.WeakRefLoaderCache;
+
+import org.junit.Test;
+
+public class CacheStatsTest
+{
+	private final CacheLoader< Integer, String > loader = key -> {
+		if ( key < 0 )
+			throw new IllegalArgumentException();
+		return new String( "value-" + key );
+	};
+
+	/**
+	 * Snapshots reflect the recorded counters. Load times are counted in
+	 * power-of-two histogram buckets.
+	 */
+	@Test
+	public void testStatsCounter()
+	{
+		final StatsCounter counter = new StatsCounter();
+		counter.recordHit();
+		counter.recordHit();
+		counter.recordMiss();
+		counter.recordLoadSuccess( 1000 );
+		counter.recordLoadSuccess( 1500 );
+		counter.recordLoadFailure( 3 );
+		counter.recordEviction();
+		counter.recordWriteBack( 100 );
+		counter.recordWriteBack( 28 );
+
+		final CacheStats stats = counter.snapshot();
+		assertEquals( 2, stats.getHitCount() );
+		assertEquals( 1, stats.getMissCount() );
+		assertEquals( 3, stats.getRequestCount() );
+		assertEquals( 2.0 / 3, stats.getHitRate(), 1e-9 );
+		assertEquals( 2, stats.getLoadSuccessCount() );
+		assertEquals( 1, stats.getLoadFailureCount() );
+		assertEquals( 3, stats.getLoadCount() );
+		assertEquals( 2503, stats.getTotalLoadTime() );
+		assertEquals( 2503.0 / 3, stats.getAverageLoadPenalty(), 1e-9 );
+		assertEquals( 1, stats.getEvictionCount() );
+		assertEquals( 2, stats.getWriteBackCount() );
+		assertEquals( 128, stats.getWriteBackBytes() );
+
+		final long[] histogram = stats.getLoadTimeHistogram();
+		assertEquals( CacheStats.NUM_HISTOGRAM_BUCKETS, histogram.length );
+		assertEquals( 1, histogram[ 1 ] ); // 3 ns
+		assertEquals( 1, histogram[ 9 ] ); // 1000 ns
+		assertEquals( 1, histogram[ 10 ] ); // 1500 ns
+	}
+
+	@Test
+	public void testHistogramBuckets()
+	{
+		assertEquals( 0, CacheStats.histogramBucket( 0 ) );
+		assertEquals( 0, CacheStats.histogramBucket( 1 ) );
+		assertEquals( 1, CacheStats.histogramBucket( 2 ) );
+		assertEquals( 1, CacheStats.histogramBucket( 3 ) );
+		assertEquals( 10, CacheStats.histogramBucket( 1024 ) );
+		assertEquals( CacheStats.NUM_HISTOGRAM_BUCKETS - 1, CacheStats.histogramBucket( Long.MAX_VALUE ) );
+	}
+
+	/**
+	 * {@code plus()} adds all counters, {@code empty()} is neutral.
+	 */
+	@Test
+	public void testPlus()
+	{
+		final StatsCounter a = new StatsCounter();
+		a.recordHit();
+		a.recordLoadSuccess( 10 );
+		final StatsCounter b = new StatsCounter();
+		b.recordMiss();
+		b.recordLoadSuccess( 10 );
+		b.recordWriteBack( 5 );
+
+		final CacheStats sum = a.snapshot().plus( b.snapshot() );
+		assertEquals( 1, sum.getHitCount() );
+		assertEquals( 1, sum.getMissCount() );
+		assertEquals( 2, sum.getLoadSuccessCount() );
+		assertEquals( 20, sum.getTotalLoadTime() );
+		assertEquals( 2, sum.getLoadTimeHistogram()[ 3 ] );
+		assertEquals( 5, sum.getWriteBackBytes() );
+		assertEquals( sum, sum.plus( CacheStats.empty() ) );
+		assertEquals( 1.0, CacheStats.empty().getHitRate(), 0 );
+	}
+
+	/**
+	 * A cache counts hits and misses of get() and getIfPresent(), and
+	 * successful and failed loads.
+	 */
+	@Test
+	public void testCacheCounts() throws Exception
+	{
+		final SoftRefLoaderCache< Integer, String > cache = new SoftRefLoaderCache<>();
+		cache.get( 1, loader );
+		cache.get( 1, loader );
+		cache.get( 2, loader );
+		cache.getIfPresent( 2 );
+		cache.getIfPresent( 3 );
+		try
+		{
+			cache.get( -1, loader );
+			fail();
+		}
+		catch ( final ExecutionException e )
+		{}
+
+		final CacheStats stats = cache.stats();
+		assertEquals( 2, stats.getHitCount() );
+		assertEquals( 4, stats.getMissCount() );
+		assertEquals( 2, stats.getLoadSuccessCount() );
+		assertEquals( 1, stats.getLoadFailureCount() );
+		assertEquals( 3, sum( stats.getLoadTimeHistogram() ) );
+		assertEquals( 0, stats.getEvictionCount() );
+	}
+
+	/**
+	 * Values that are garbage-collected are counted as evictions.
+	 */
+	@Test
+	public void testEvictionCount() throws Exception
+	{
+		final WeakRefLoaderCache< Integer, String > cache = new WeakRefLoaderCache<>();
+		for ( int key = 0; key < 10; ++key )
+			cache.get( key, loader );
+		for ( int i = 0; i < 10 && cache.stats().getEvictionCount() < 10; ++i )
+		{
+			System.gc();
+			Thread.sleep( 10 );
+			// expunges collected entries
+			cache.getIfPresent( 0 );
+		}
+		assertEquals( 10, cache.stats().getEvictionCount() );
+	}
+
+	/**
+	 * Registered statistics are readable through the platform MBean server.
+	 */
+	@Test
+	public void testJmx() throws Exception
+	{
+		final StatsCounter counter = new StatsCounter();
+		counter.recordHit();
+		counter.recordMiss();
+		counter.recordMiss();
+		final ObjectName name = CacheStatsJmx.register( "CacheStatsTest", counter::snapshot );
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try
+		{
+			assertEquals( 1L, server.getAttribute( name, "HitCount" ) );
+			assertEquals( 2L, server.getAttribute( name, "MissCount" ) );
+			counter.recordHit();
+			assertEquals( 2L, server.getAttribute( name, "HitCount" ) );
+			assertArrayEquals( counter.snapshot().getLoadTimeHistogram(), ( long[] ) server.getAttribute( name, "LoadTimeHistogram" ) );
+
+			try
+			{
+				CacheStatsJmx.register( "CacheStatsTest", counter::snapshot );
+				fail();
+			}
+			catch ( final IllegalStateException e )
+			{}
+		}
+		finally
+		{
+			CacheStatsJmx.unregister( name );
+		}
+		assertFalse( server.isRegistered( name ) );
+		// does nothing if not registered
+		CacheStatsJmx.unregister( name );
+	}
+
+	private static long sum( final long[] values )
+	{
+		long sum = 0;
+		for ( final long v : values )
+			sum += v;
+		return sum;
+	}
+}
@@ -0,0 +1,289 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.cache.IoSync;
+import net.imglib2.cache.img.AccessIo;
+import net.imglib2.cache.img.DiskCellCache;
+import net.imglib2.cache.iotiming.CacheIoTiming;
+import net.imglib2.cache.iotiming.IoStatistics;
+import net.imglib2.cache.queue.BlockingFetchQueues;
+import net.imglib2.cache.queue.FetcherThreads;
+import net.imglib2.cache.ref.SoftRefLoaderCache;
+import net.imglib2.cache.ref.WeakRefLoaderCache;
+import net.imglib2.cache.ref.WeakRefVolatileLoaderCache;
+import net.imglib2.cache.volatiles.CacheHints;
+import net.imglib2.cache.volatiles.LoadingStrategy;
+import net.imglib2.cache.volatiles.VolatileCacheLoader;
+import net.imglib2.img.basictypeaccess.AccessFlags;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.PrimitiveType;
+import net.imglib2.util.Fraction;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CacheTracerTest
+{
+	/**
+	 * Records every event as {@code "<event> <key> [<bytes>]"}, and the
+	 * durations separately.
+	 */
+	static class Recorder implements CacheTracer
+	{
+		final List< String > events = new CopyOnWriteArrayList<>();
+
+		final List< Long > durations = new CopyOnWriteArrayList<>();
+
+		final CountDownLatch wroteBack = new CountDownLatch( 1 );
+
+		@Override
+		public void loaded( final Object key, final long duration, final boolean success )
+		{
+			events.add( "loaded " + key + " " + success );
+			durations.add( duration );
+		}
+
+		@Override
+		public void evicted( final Object key )
+		{
+			events.add( "evicted " + key );
+		}
+
+		@Override
+		public void wroteBack( final Object key, final long bytes, final long duration )
+		{
+			events.add( "wroteBack " + key + " " + bytes );
+			durations.add( duration );
+			wroteBack.countDown();
+		}
+
+		@Override
+		public void diskRead( final Object key, final long bytes, final long duration )
+		{
+			events.add( "diskRead " + key + " " + bytes );
+			durations.add( duration );
+		}
+
+		@Override
+		public void diskWritten( final Object key, final long bytes, final long duration )
+		{
+			events.add( "diskWritten " + key + " " + bytes );
+			durations.add( duration );
+		}
+
+		@Override
+		public void fetchEnqueued( final Object key, final int priority )
+		{
+			events.add( "fetchEnqueued " + key + " " + priority );
+		}
+
+		@Override
+		public void fetchDequeued( final Object key, final int priority, final long waitTime )
+		{
+			events.add( "fetchDequeued " + key + " " + priority );
+			durations.add( waitTime );
+		}
+
+		@Override
+		public void budgetWait( final Object key, final int priority, final long duration, final boolean valid )
+		{
+			events.add( "budgetWait " + key + " " + priority + " " + valid );
+			durations.add( duration );
+		}
+	}
+
+	private final Recorder recorder = new Recorder();
+
+	@Before
+	public void install()
+	{
+		CacheTracing.setTracer( recorder );
+	}
+
+	@After
+	public void uninstall()
+	{
+		CacheTracing.setTracer( null );
+	}
+
+	private void assertDurations()
+	{
+		for ( final long duration : recorder.durations )
+			assertTrue( duration >= 0 );
+	}
+
+	@Test
+	public void testLoadedAndEvicted() throws Exception
+	{
+		final WeakRefLoaderCache< Integer, String > cache = new WeakRefLoaderCache<>();
+		final CacheLoader< Integer, String > loader = key -> {
+			if ( key < 0 )
+				throw new IllegalArgumentException();
+			return new String( "value-" + key );
+		};
+		cache.get( 1, loader );
+		try
+		{
+			cache.get( -1, loader );
+			fail( "expected exception" );
+		}
+		catch ( final Exception e )
+		{}
+		assertEquals( "loaded 1 true", recorder.events.get( 0 ) );
+		assertEquals( "loaded -1 false", recorder.events.get( 1 ) );
+
+		for ( int i = 0; i < 10 && !recorder.events.contains( "evicted 1" ); ++i )
+		{
+			System.gc();
+			Thread.sleep( 10 );
+			// expunges collected entries
+			cache.getIfPresent( 0 );
+		}
+		assertTrue( recorder.events.contains( "evicted 1" ) );
+		assertDurations();
+	}
+
+	static class Loader implements VolatileCacheLoader< Integer, String >
+	{
+		@Override
+		public String createInvalid( final Integer key )
+		{
+			return new String( "invalid" );
+		}
+
+		@Override
+		public String get( final Integer key )
+		{
+			return new String( "valid" );
+		}
+	}
+
+	/**
+	 * Fetch events report the key of the request, not the queued element.
+	 */
+	@Test
+	public void testFetchEvents() throws Exception
+	{
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 2, 0 );
+		final WeakRefVolatileLoaderCache< Integer, String > cache = new WeakRefVolatileLoaderCache<>( new SoftRefLoaderCache<>(), queue );
+		cache.get( 7, new Loader(), new CacheHints( LoadingStrategy.VOLATILE, 1, false ) );
+		assertEquals( "fetchEnqueued 7 1", recorder.events.get( 0 ) );
+
+		queue.poll().call();
+		assertEquals( "fetchDequeued 7 1", recorder.events.get( 1 ) );
+		assertEquals( "loaded 7 true", recorder.events.get( 2 ) );
+		assertDurations();
+	}
+
+	@Test
+	public void testBudgetWait() throws Exception
+	{
+		final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( 1, 1 );
+		final FetcherThreads fetchers = new FetcherThreads( queue, 1 );
+		try
+		{
+			final WeakRefVolatileLoaderCache< Integer, String > cache = new WeakRefVolatileLoaderCache<>( new SoftRefLoaderCache<>(), queue );
+			final IoStatistics stats = new IoStatistics();
+			stats.getIoTimeBudget().reset( new long[] { TimeUnit.SECONDS.toNanos( 10 ) } );
+			final AtomicReference< Exception > exception = new AtomicReference<>();
+			CacheIoTiming.runWith( stats, () -> {
+				try
+				{
+					cache.get( 8, new Loader(), new CacheHints( LoadingStrategy.BUDGETED, 0, false ) );
+				}
+				catch ( final Exception e )
+				{
+					exception.set( e );
+				}
+			} );
+			assertEquals( null, exception.get() );
+			assertTrue( recorder.events.contains( "budgetWait 8 0 true" ) );
+			assertDurations();
+		}
+		finally
+		{
+			fetchers.shutdown();
+		}
+	}
+
+	/**
+	 * Disk and write-back events report the number of bytes of the cell.
+	 */
+	@Test
+	public void testDiskEvents() throws Exception
+	{
+		final CellGrid grid = new CellGrid( new long[] { 100 }, new int[] { 30 } );
+		final CacheLoader< Long, Cell< FloatArray > > backingLoader = key -> {
+			final long[] min = new long[ 1 ];
+			final int[] dims = new int[ 1 ];
+			grid.getCellDimensions( key, min, dims );
+			return new Cell<>( dims, min, new FloatArray( dims[ 0 ] ) );
+		};
+		final Path dir = DiskCellCache.createTempDirectory( "CacheTracerTest", true );
+		final DiskCellCache< FloatArray > diskCache = new DiskCellCache<>( dir, grid, backingLoader, AccessIo.get( PrimitiveType.FLOAT, AccessFlags.setOf() ), new Fraction() );
+		final IoSync< Long, Cell< FloatArray >, FloatArray > iosync = new IoSync<>( diskCache );
+		try
+		{
+			iosync.onRemoval( 3L, iosync.get( 3L ).getData() );
+			assertTrue( recorder.wroteBack.await( 10, TimeUnit.SECONDS ) );
+			assertEquals( "diskWritten 3 40", recorder.events.get( 0 ) );
+			assertEquals( "wroteBack 3 40", recorder.events.get( 1 ) );
+
+			diskCache.get( 3L );
+			assertEquals( "diskRead 3 40", recorder.events.get( 2 ) );
+			assertDurations();
+		}
+		finally
+		{
+			iosync.shutdown();
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/*-
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2017 - 2025 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.cache.stats;
+
+import static net.imglib2.cache.stats.FetchMetrics.PREFETCH;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class FetchStatsCounterTest
+{
+	/**
+	 * Events are counted per priority level, with wait and service times
+	 * summed and counted in histograms.
+	 */
+	@Test
+	public void testLevels()
+	{
+		final FetchStatsCounter counter = new FetchStatsCounter();
+		counter.enqueued( 0 );
+		counter.enqueued( 0 );
+		counter.enqueued( 2 );
+		counter.dequeued( 0, 100 );
+		counter.dequeued( 0, 300 );
+		counter.dequeued( 2, 5000 );
+		counter.completed( 0, 1000, false );
+		counter.completed( 2, 4000, false );
+
+		final FetchStats stats = counter.snapshot();
+		assertEquals( 3, stats.getNumPriorities() );
+
+		final FetchStats.Level level0 = stats.getLevel( 0 );
+		assertEquals( 2, level0.getEnqueueCount() );
+		assertEquals( 2, level0.getDequeueCount() );
+		assertEquals( 400, level0.getTotalWaitTime() );
+		assertEquals( 200, level0.getAverageWaitTime(), 0 );
+		assertEquals( 1, level0.getWaitTimeHistogram()[ 6 ] ); // 100 ns
+		assertEquals( 1, level0.getWaitTimeHistogram()[ 8 ] ); // 300 ns
+		assertEquals( 1, level0.getCompletionCount() );
+		assertEquals( 1000, level0.getTotalServiceTime() );
+		assertEquals( 1, level0.getServiceTimeHistogram()[ 9 ] ); // 1000 ns
+
+		final FetchStats.Level level1 = stats.getLevel( 1 );
+		assertEquals( 0, level1.getEnqueueCount() );
+		assertEquals( 0, level1.getAverageWaitTime(), 0 );
+
+		final FetchStats.Level level2 = stats.getLevel( 2 );
+		assertEquals( 1, level2.getEnqueueCount() );
+		assertEquals( 5000, level2.getTotalWaitTime() );
+		assertEquals( 4000, level2.getAverageServiceTime(), 0 );
+
+		// levels for which nothing was recorded are empty
+		assertEquals( 0, stats.getLevel( 7 ).getEnqueueCount() );
+	}
+
+	/**
+	 * Completions of requests taken from the prefetch deque are counted at
+	 * the PREFETCH level, regardless of their priority. The prefetch hit rate
+	 * relates prefetch hits to these completions.
+	 */
+	@Test
+	public void testPrefetch()
+	{
+		final FetchStatsCounter counter = new FetchStatsCounter();
+		assertEquals( 0, counter.snapshot().getPrefetchHitRate(), 0 );
+
+		counter.enqueued( 1 );
+		counter.enqueued( 1 );
+		counter.enqueued( 1 );
+		counter.enqueued( 1 );
+		counter.dequeued( PREFETCH, 10 );
+		counter.dequeued( PREFETCH, 10 );
+		counter.dequeued( PREFETCH, 10 );
+		counter.dequeued( 1, 10 );
+		counter.completed( 1, 100, true );
+		counter.completed( 1, 100, true );
+		counter.completed( 1, 100, true );
+		counter.completed( 1, 100, false );
+		counter.prefetchHit();
+
+		final FetchStats stats = counter.snapshot();
+		assertEquals( 4, stats.getLevel( 1 ).getEnqueueCount() );
+		assertEquals( 1, stats.getLevel( 1 ).getDequeueCount() );
+		assertEquals( 1, stats.getLevel( 1 ).getCompletionCount() );
+		assertEquals( 3, stats.getLevel( PREFETCH ).getDequeueCount() );
+		assertEquals( 3, stats.getLevel( PREFETCH ).getCompletionCount() );
+		assertEquals( 1, stats.getPrefetchHitCount() );
+		assertEquals( 1.0 / 3, stats.getPrefetchHitRate(), 1e-9 );
+	}
+}